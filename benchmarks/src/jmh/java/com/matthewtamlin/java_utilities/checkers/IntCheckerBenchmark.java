@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.matthewtamlin.java_utilities.checkers;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the passing path of the {@link IntChecker} methods. None of the checks should
+ * allocate when they pass.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class IntCheckerBenchmark {
+	/**
+	 * The message to use in the checks.
+	 */
+	private static final String MESSAGE = "check failed";
+	
+	/**
+	 * The number to check. The field is not final to prevent constant folding.
+	 */
+	private int x = 5;
+	
+	/**
+	 * The number to compare {@code x} against. The field is not final to prevent constant
+	 * folding.
+	 */
+	private int y = 10;
+	
+	@Benchmark
+	public int checkLessThan() {
+		return IntChecker.checkLessThan(x, y);
+	}
+	
+	@Benchmark
+	public int checkLessThan_message() {
+		return IntChecker.checkLessThan(x, y, MESSAGE);
+	}
+	
+	@Benchmark
+	public int checkLessThanOrEqualTo() {
+		return IntChecker.checkLessThanOrEqualTo(x, y);
+	}
+	
+	@Benchmark
+	public int checkGreaterThan() {
+		return IntChecker.checkGreaterThan(y, x);
+	}
+	
+	@Benchmark
+	public int checkGreaterThanOrEqualTo() {
+		return IntChecker.checkGreaterThanOrEqualTo(y, x);
+	}
+	
+	@Benchmark
+	public int checkEqualTo() {
+		return IntChecker.checkEqualTo(x, x);
+	}
+	
+	@Benchmark
+	public int checkNotEqualTo() {
+		return IntChecker.checkNotEqualTo(x, y);
+	}
+	
+	@Benchmark
+	public int checkBetween() {
+		return IntChecker.checkBetween(x, x, y);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.matthewtamlin.java_utilities.checkers;
+
+import com.matthewtamlin.java_utilities.checkers.NullChecker.ExceptionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the passing (non-null) path of the {@link NullChecker} methods. Run with the gc
+ * profiler to confirm that the passing path does not allocate; the {@code gc.alloc.rate.norm}
+ * metric should be approximately zero bytes per operation for every benchmark except {@link
+ * #checkNotNull_eagerException()}, which is included as a baseline.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class NullCheckerBenchmark {
+	/**
+	 * The message to use in the checks.
+	 */
+	private static final String MESSAGE = "value cannot be null";
+	
+	/**
+	 * Creates the exception to throw in the checks which use factories.
+	 */
+	private static final ExceptionFactory<IllegalStateException> EXCEPTION_FACTORY =
+			new ExceptionFactory<IllegalStateException>() {
+				@Override
+				public IllegalStateException createException() {
+					return new IllegalStateException(MESSAGE);
+				}
+			};
+	
+	/**
+	 * The object to check. The field is not final to prevent constant folding.
+	 */
+	private Object object;
+	
+	/**
+	 * The collection to check, contains no null elements.
+	 */
+	private List<Object> collection;
+	
+	/**
+	 * Initialises the benchmark state.
+	 */
+	@Setup
+	public void setup() {
+		object = new Object();
+		collection = new ArrayList<>();
+		
+		for (int i = 0; i < 10; i++) {
+			collection.add(new Object());
+		}
+	}
+	
+	@Benchmark
+	public Object checkNotNull_noMessage() {
+		return NullChecker.checkNotNull(object);
+	}
+	
+	@Benchmark
+	public Object checkNotNull_message() {
+		return NullChecker.checkNotNull(object, MESSAGE);
+	}
+	
+	@Benchmark
+	public Object checkNotNull_exceptionFactory() {
+		return NullChecker.checkNotNull(object, EXCEPTION_FACTORY);
+	}
+	
+	@Benchmark
+	public Object checkNotNull_eagerException() {
+		return NullChecker.checkNotNull(object, new IllegalStateException(MESSAGE));
+	}
+	
+	@Benchmark
+	public Object checkEachElementIsNotNull_message() {
+		return NullChecker.checkEachElementIsNotNull(collection, MESSAGE);
+	}
+	
+	@Benchmark
+	public Object checkEachElementIsNotNull_exceptionFactory() {
+		return NullChecker.checkEachElementIsNotNull(collection, EXCEPTION_FACTORY);
+	}
+}
\ No newline at end of file
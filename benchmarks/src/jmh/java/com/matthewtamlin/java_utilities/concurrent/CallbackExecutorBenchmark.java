@@ -0,0 +1,135 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.matthewtamlin.java_utilities.concurrent;
+
+import com.matthewtamlin.java_utilities.concurrent.CallbackExecutor.OnExecutionCompleteListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for executing a batch of small CPU bound tasks with a {@link CallbackExecutor} and
+ * waiting for the completion callback. Each measurement covers a complete batch. Single shot
+ * mode is used because every batch needs a new CallbackExecutor, and each CallbackExecutor
+ * creates its own thread pool.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class CallbackExecutorBenchmark {
+	/**
+	 * The amount of work each task performs, measured in JMH tokens.
+	 */
+	private static final long TASK_TOKENS = 100;
+	
+	/**
+	 * The number of threads to use when the executor is backed by a fixed thread pool.
+	 */
+	private static final int FIXED_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+	
+	/**
+	 * The type of thread pool to use.
+	 */
+	@Param({"single", "fixed", "cached", "workStealing"})
+	private String executorType;
+	
+	/**
+	 * The number of tasks in each batch.
+	 */
+	@Param({"1000", "100000"})
+	private int batchSize;
+	
+	/**
+	 * The executor under test, recreated for every batch.
+	 */
+	private CallbackExecutor executor;
+	
+	/**
+	 * Counts down when the executor delivers its completion callback.
+	 */
+	private CountDownLatch executionComplete;
+	
+	/**
+	 * Creates a new executor and queues a full batch of tasks.
+	 */
+	@Setup(Level.Invocation)
+	public void setup() {
+		executor = createExecutor();
+		executionComplete = new CountDownLatch(1);
+		
+		executor.registerOnExecutionCompleteListener(new OnExecutionCompleteListener() {
+			@Override
+			public void onExecutionComplete(final CallbackExecutor callbackExecutor) {
+				executionComplete.countDown();
+			}
+		});
+		
+		final Runnable task = new Runnable() {
+			@Override
+			public void run() {
+				Blackhole.consumeCPU(TASK_TOKENS);
+			}
+		};
+		
+		for (int i = 0; i < batchSize; i++) {
+			executor.addToQueue(task);
+		}
+	}
+	
+	/**
+	 * Closes the executor, so that its pool threads are stopped before the next batch.
+	 */
+	@TearDown(Level.Invocation)
+	public void tearDown() {
+		executor.close();
+	}
+	
+	@Benchmark
+	public void executeBatch() throws InterruptedException {
+		executor.execute();
+		executionComplete.await();
+	}
+	
+	/**
+	 * @return a new CallbackExecutor of the type specified by {@code executorType}
+	 */
+	private CallbackExecutor createExecutor() {
+		switch (executorType) {
+			case "single":
+				return CallbackExecutor.usingSingleThreadExecutor();
+			case "fixed":
+				return CallbackExecutor.usingFixedThreadPool(FIXED_POOL_SIZE);
+			case "cached":
+				return CallbackExecutor.usingCachedThreadPool();
+			case "workStealing":
+				return CallbackExecutor.usingWorkStealingPool(FIXED_POOL_SIZE);
+			default:
+				throw new IllegalStateException("unknown executor type: " + executorType);
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.matthewtamlin.java_utilities.concurrent;
+
+import com.matthewtamlin.java_utilities.concurrent.CallbackExecutor.OnExecutionCompleteListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for executing a batch of I/O bound tasks with a {@link CallbackExecutor} and
+ * waiting for the completion callback. Each task blocks for a fixed time without using the CPU,
+ * so the time per batch shows how many tasks can be blocked at once. Divide the batch size by
+ * the score to get the throughput in tasks per millisecond. The virtual executor type only uses
+ * virtual threads when the benchmarks are run on Java 21 or later, and otherwise measures the
+ * cached thread pool fallback.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class CallbackExecutorBlockingBenchmark {
+	/**
+	 * The number of threads to use when the executor is backed by a fixed thread pool.
+	 */
+	private static final int FIXED_POOL_SIZE = 200;
+	
+	/**
+	 * The type of thread pool to use.
+	 */
+	@Param({"fixed", "cached", "virtual"})
+	private String executorType;
+	
+	/**
+	 * The number of tasks in each batch.
+	 */
+	@Param({"10000"})
+	private int batchSize;
+	
+	/**
+	 * The time each task blocks for, measured in milliseconds.
+	 */
+	@Param({"10"})
+	private int blockTimeMs;
+	
+	/**
+	 * The executor under test, recreated for every batch.
+	 */
+	private CallbackExecutor executor;
+	
+	/**
+	 * Counts down when the executor delivers its completion callback.
+	 */
+	private CountDownLatch executionComplete;
+	
+	/**
+	 * Creates a new executor and queues a full batch of tasks.
+	 */
+	@Setup(Level.Invocation)
+	public void setup() {
+		executor = createExecutor();
+		executionComplete = new CountDownLatch(1);
+		
+		executor.registerOnExecutionCompleteListener(new OnExecutionCompleteListener() {
+			@Override
+			public void onExecutionComplete(final CallbackExecutor callbackExecutor) {
+				executionComplete.countDown();
+			}
+		});
+		
+		final Runnable task = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(blockTimeMs);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		
+		for (int i = 0; i < batchSize; i++) {
+			executor.addToQueue(task);
+		}
+	}
+	
+	/**
+	 * Waits for the executor to release its threads so they do not affect the next batch.
+	 */
+	@TearDown(Level.Invocation)
+	public void tearDown() {
+		executor.close();
+	}
+	
+	@Benchmark
+	public void executeBatch() throws InterruptedException {
+		executor.execute();
+		executionComplete.await();
+	}
+	
+	/**
+	 * @return a new CallbackExecutor of the type specified by {@code executorType}
+	 */
+	private CallbackExecutor createExecutor() {
+		switch (executorType) {
+			case "fixed":
+				return CallbackExecutor.usingFixedThreadPool(FIXED_POOL_SIZE);
+			case "cached":
+				return CallbackExecutor.usingCachedThreadPool();
+			case "virtual":
+				return CallbackExecutor.usingVirtualThreads();
+			default:
+				throw new IllegalStateException("unknown executor type: " + executorType);
+		}
+	}
+}
\ No newline at end of file
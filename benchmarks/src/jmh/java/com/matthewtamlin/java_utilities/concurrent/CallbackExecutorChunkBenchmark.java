@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.matthewtamlin.java_utilities.concurrent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for executing a large batch of very small tasks, where the cost of dispatching each
+ * task dominates the cost of running it. Compares dispatching each task on its own with
+ * dispatching the tasks in chunks, and measures the overhead of recording metrics for every task.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class CallbackExecutorChunkBenchmark {
+	/**
+	 * The amount of work each task performs, measured in JMH tokens.
+	 */
+	private static final long TASK_TOKENS = 10;
+	
+	/**
+	 * The number of threads in the pool.
+	 */
+	private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors();
+	
+	/**
+	 * The maximum number of tasks in each chunk, where 1 disables chunking.
+	 */
+	@Param({"1", "1000"})
+	private int chunkSize;
+	
+	/**
+	 * Whether or not metrics are enabled.
+	 */
+	@Param({"false", "true"})
+	private boolean metrics;
+	
+	/**
+	 * The number of tasks in the batch.
+	 */
+	@Param({"1000000"})
+	private int taskCount;
+	
+	/**
+	 * The tasks to execute, shared between invocations.
+	 */
+	private List<Runnable> tasks;
+	
+	/**
+	 * The executor under test, recreated for every batch.
+	 */
+	private CallbackExecutor executor;
+	
+	/**
+	 * Creates the tasks.
+	 */
+	@Setup
+	public void setupTasks() {
+		tasks = new ArrayList<>(taskCount);
+		
+		final Runnable task = new Runnable() {
+			@Override
+			public void run() {
+				Blackhole.consumeCPU(TASK_TOKENS);
+			}
+		};
+		
+		for (int i = 0; i < taskCount; i++) {
+			tasks.add(task);
+		}
+	}
+	
+	/**
+	 * Creates a new executor and queues the batch.
+	 */
+	@Setup(Level.Invocation)
+	public void setup() {
+		executor = CallbackExecutor.usingFixedThreadPool(POOL_SIZE);
+		executor.setChunkSize(chunkSize);
+		
+		if (metrics) {
+			executor.enableMetrics();
+		}
+		
+		executor.addAllToQueue(tasks);
+	}
+	
+	/**
+	 * Closes the executor, so that idle pool threads do not accumulate across invocations.
+	 */
+	@TearDown(Level.Invocation)
+	public void tearDown() {
+		executor.close();
+	}
+	
+	@Benchmark
+	public void executeBatch() throws InterruptedException {
+		executor.execute();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.matthewtamlin.java_utilities.concurrent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures contention when many producer threads add tasks to the same {@link CallbackExecutor}.
+ * Each benchmark uses a different number of producer threads, and each measurement is the time
+ * taken for every producer to add {@link #TASKS_PER_PRODUCER} tasks. Perfect scaling would give
+ * the same time for every thread count (given enough cores). A new executor is created for each
+ * iteration so that memory use stays bounded, and execution is only started when the executor
+ * is closed at the end of the iteration.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10, batchSize = CallbackExecutorIntakeBenchmark.TASKS_PER_PRODUCER)
+@Measurement(iterations = 20, batchSize = CallbackExecutorIntakeBenchmark.TASKS_PER_PRODUCER)
+@State(Scope.Benchmark)
+public class CallbackExecutorIntakeBenchmark {
+	/**
+	 * The number of tasks each producer adds in each measurement.
+	 */
+	static final int TASKS_PER_PRODUCER = 10000;
+	
+	/**
+	 * The task to add. The same instance is added repeatedly since it is never run.
+	 */
+	private static final Runnable TASK = new Runnable() {
+		@Override
+		public void run() {}
+	};
+	
+	/**
+	 * The executor under test, shared by all producers.
+	 */
+	private CallbackExecutor executor;
+	
+	/**
+	 * Creates a new executor for each iteration.
+	 */
+	@Setup(Level.Iteration)
+	public void setup() {
+		executor = CallbackExecutor.usingSingleThreadExecutor();
+	}
+	
+	/**
+	 * Closes the executor at the end of each iteration. The queued tasks are empty, so running
+	 * them during shutdown is cheap and is not measured.
+	 */
+	@TearDown(Level.Iteration)
+	public void tearDown() {
+		executor.close();
+	}
+	
+	@Benchmark
+	@Threads(1)
+	public void addToQueue_1Producer() {
+		executor.addToQueue(TASK);
+	}
+	
+	@Benchmark
+	@Threads(4)
+	public void addToQueue_4Producers() {
+		executor.addToQueue(TASK);
+	}
+	
+	@Benchmark
+	@Threads(16)
+	public void addToQueue_16Producers() {
+		executor.addToQueue(TASK);
+	}
+	
+	@Benchmark
+	@Threads(64)
+	public void addToQueue_64Producers() {
+		executor.addToQueue(TASK);
+	}
+}
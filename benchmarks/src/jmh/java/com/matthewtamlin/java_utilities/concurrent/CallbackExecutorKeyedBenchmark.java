@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.matthewtamlin.java_utilities.concurrent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for executing a batch of tasks which must run in order per key. Compares running
+ * every task on a single thread, which is the only way to keep the order without keys, with
+ * running keyed tasks in serial lanes over a fixed thread pool.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class CallbackExecutorKeyedBenchmark {
+	/**
+	 * The amount of work each task performs, measured in JMH tokens.
+	 */
+	private static final long TASK_TOKENS = 1000;
+	
+	/**
+	 * The number of threads in the pool used for keyed execution.
+	 */
+	private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors();
+	
+	/**
+	 * The execution mode, either a single thread or keyed lanes.
+	 */
+	@Param({"single", "keyed"})
+	private String mode;
+	
+	/**
+	 * The number of distinct keys.
+	 */
+	@Param({"1", "16", "1024"})
+	private int keyCount;
+	
+	/**
+	 * The number of tasks in each batch.
+	 */
+	@Param({"100000"})
+	private int batchSize;
+	
+	/**
+	 * The executor under test, recreated for every batch.
+	 */
+	private CallbackExecutor executor;
+	
+	/**
+	 * Creates a new executor and queues a full batch of tasks, spreading the tasks evenly
+	 * across the keys.
+	 */
+	@Setup(Level.Invocation)
+	public void setup() {
+		final Runnable task = new Runnable() {
+			@Override
+			public void run() {
+				Blackhole.consumeCPU(TASK_TOKENS);
+			}
+		};
+		
+		if ("keyed".equals(mode)) {
+			executor = CallbackExecutor.usingFixedThreadPool(POOL_SIZE);
+			
+			for (int i = 0; i < batchSize; i++) {
+				executor.addToQueue(Integer.valueOf(i % keyCount), task);
+			}
+		} else {
+			executor = CallbackExecutor.usingSingleThreadExecutor();
+			
+			for (int i = 0; i < batchSize; i++) {
+				executor.addToQueue(task);
+			}
+		}
+	}
+	
+	/**
+	 * Closes the executor and waits for its pool to terminate.
+	 */
+	@TearDown(Level.Invocation)
+	public void tearDown() {
+		executor.close();
+	}
+	
+	@Benchmark
+	public void executeBatch() throws InterruptedException {
+		executor.execute();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+	}
+}
\ No newline at end of file
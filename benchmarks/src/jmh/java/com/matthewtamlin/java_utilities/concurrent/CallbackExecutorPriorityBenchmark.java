@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.matthewtamlin.java_utilities.concurrent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the makespan of a batch with skewed task durations, comparing FIFO dispatch to
+ * longest-first priority dispatch. The batch contains many short tasks followed by a few long
+ * tasks, which is the worst case for FIFO since the long tasks start last. Tasks block rather
+ * than use the CPU, so the results do not depend on the number of processors.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class CallbackExecutorPriorityBenchmark {
+	/**
+	 * The number of threads in the pool.
+	 */
+	private static final int POOL_SIZE = 4;
+	
+	/**
+	 * The duration of each short task, measured in milliseconds.
+	 */
+	private static final int SHORT_TASK_MS = 1;
+	
+	/**
+	 * The duration of each long task, measured in milliseconds.
+	 */
+	private static final int LONG_TASK_MS = 100;
+	
+	/**
+	 * The number of short tasks in each batch.
+	 */
+	@Param({"400"})
+	private int shortTaskCount;
+	
+	/**
+	 * The number of long tasks in each batch.
+	 */
+	@Param({"2"})
+	private int longTaskCount;
+	
+	/**
+	 * The order to dispatch tasks in, either FIFO or longest task first.
+	 */
+	@Param({"fifo", "longestFirst"})
+	private String ordering;
+	
+	/**
+	 * The executor under test, recreated for every batch.
+	 */
+	private CallbackExecutor executor;
+	
+	/**
+	 * Creates a new executor and queues the short tasks followed by the long tasks, using the
+	 * task durations as the priorities.
+	 */
+	@Setup(Level.Invocation)
+	public void setup() {
+		executor = CallbackExecutor.usingFixedThreadPool(POOL_SIZE);
+		
+		if ("longestFirst".equals(ordering)) {
+			executor.enablePriorityOrdering();
+		}
+		
+		for (int i = 0; i < shortTaskCount; i++) {
+			executor.addToQueue(sleepingTask(SHORT_TASK_MS), SHORT_TASK_MS);
+		}
+		
+		for (int i = 0; i < longTaskCount; i++) {
+			executor.addToQueue(sleepingTask(LONG_TASK_MS), LONG_TASK_MS);
+		}
+	}
+	
+	/**
+	 * Closes the executor, so that its threads do not compete with the next invocation.
+	 */
+	@TearDown(Level.Invocation)
+	public void tearDown() {
+		executor.close();
+	}
+	
+	@Benchmark
+	public void executeBatch() throws InterruptedException {
+		executor.execute();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+	}
+	
+	/**
+	 * Creates a task which blocks for a fixed time.
+	 *
+	 * @param durationMs
+	 * 		the time to block for, measured in milliseconds
+	 *
+	 * @return the new task
+	 */
+	private static Runnable sleepingTask(final int durationMs) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(durationMs);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+	}
+}
\ No newline at end of file
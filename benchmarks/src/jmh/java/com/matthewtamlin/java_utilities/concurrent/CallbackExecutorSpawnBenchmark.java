@@ -0,0 +1,133 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.matthewtamlin.java_utilities.concurrent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for executing a recursive workload, where each task spawns two subtasks until a
+ * fixed depth is reached. Compares a fixed thread pool, where every subtask goes through one
+ * shared queue, with a work-stealing pool, where subtasks are pushed onto per-thread queues.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class CallbackExecutorSpawnBenchmark {
+	/**
+	 * The amount of work each task performs, measured in JMH tokens.
+	 */
+	private static final long TASK_TOKENS = 100;
+	
+	/**
+	 * The number of threads in each pool.
+	 */
+	private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors();
+	
+	/**
+	 * The type of thread pool to use.
+	 */
+	@Param({"fixed", "workStealing"})
+	private String executorType;
+	
+	/**
+	 * The depth of the task tree. The tree contains 2^(depth + 1) - 1 tasks.
+	 */
+	@Param({"16"})
+	private int depth;
+	
+	/**
+	 * The executor under test, recreated for every tree.
+	 */
+	private CallbackExecutor executor;
+	
+	/**
+	 * Creates a new executor and queues the root of the tree.
+	 */
+	@Setup(Level.Invocation)
+	public void setup() {
+		executor = "workStealing".equals(executorType) ?
+				CallbackExecutor.usingWorkStealingPool(POOL_SIZE) :
+				CallbackExecutor.usingFixedThreadPool(POOL_SIZE);
+		
+		executor.addToQueue(new TreeTask(executor, depth));
+	}
+	
+	/**
+	 * Closes the executor and waits for its pool to terminate.
+	 */
+	@TearDown(Level.Invocation)
+	public void tearDown() {
+		executor.close();
+	}
+	
+	@Benchmark
+	public void executeTree() throws InterruptedException {
+		executor.execute();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+	}
+	
+	/**
+	 * A task which spawns two children until the maximum depth is reached.
+	 */
+	private static class TreeTask implements Runnable {
+		/**
+		 * The executor to spawn the children in.
+		 */
+		private final CallbackExecutor executor;
+		
+		/**
+		 * The number of levels below this task.
+		 */
+		private final int remainingDepth;
+		
+		/**
+		 * Constructs a new TreeTask.
+		 *
+		 * @param executor
+		 * 		the executor to spawn the children in
+		 * @param remainingDepth
+		 * 		the number of levels below this task
+		 */
+		private TreeTask(final CallbackExecutor executor, final int remainingDepth) {
+			this.executor = executor;
+			this.remainingDepth = remainingDepth;
+		}
+		
+		@Override
+		public void run() {
+			if (remainingDepth > 0) {
+				executor.spawn(new TreeTask(executor, remainingDepth - 1));
+				executor.spawn(new TreeTask(executor, remainingDepth - 1));
+			}
+			
+			Blackhole.consumeCPU(TASK_TOKENS);
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.matthewtamlin.java_utilities.file;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares updating a {@link DirectorySnapshot} of an unchanged tree against a full search of the
+ * same tree with {@link PathFinder}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class DirectorySnapshotBenchmark {
+	/**
+	 * The number of directory levels below the root.
+	 */
+	@Param({"3"})
+	private int depth;
+	
+	/**
+	 * The number of sub-directories in each directory (excluding the bottom level).
+	 */
+	@Param({"8"})
+	private int directoriesPerLevel;
+	
+	/**
+	 * The number of files in each directory.
+	 */
+	@Param({"64"})
+	private int filesPerDirectory;
+	
+	/**
+	 * The root of the generated tree.
+	 */
+	private Path root;
+	
+	/**
+	 * A snapshot of the generated tree.
+	 */
+	private DirectorySnapshot snapshot;
+	
+	/**
+	 * Generates the file tree and captures the snapshot.
+	 *
+	 * @throws IOException
+	 * 		if the tree cannot be created
+	 */
+	@Setup
+	public void setup() throws IOException {
+		root = FileTrees.createTree(depth, directoriesPerLevel, filesPerDirectory);
+		snapshot = DirectorySnapshot.capture(root);
+	}
+	
+	/**
+	 * Deletes the file tree.
+	 *
+	 * @throws IOException
+	 * 		if the tree cannot be deleted
+	 */
+	@TearDown
+	public void tearDown() throws IOException {
+		FileTrees.deleteTree(root);
+	}
+	
+	@Benchmark
+	public Set<Path> fullSearch() throws IOException {
+		return PathFinder.searchDownTreeFrom(root);
+	}
+	
+	@Benchmark
+	public DirectorySnapshot.Changes snapshotUpdate() throws IOException {
+		return snapshot.update();
+	}
+	
+	@Benchmark
+	public DirectorySnapshot.Changes snapshotUpdate_checkAllFiles() throws IOException {
+		return snapshot.update(true);
+	}
+}
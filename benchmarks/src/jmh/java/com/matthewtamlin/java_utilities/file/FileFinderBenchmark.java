@@ -0,0 +1,119 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.matthewtamlin.java_utilities.file;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for searching a generated file tree with {@link FileFinder}. The tree is created
+ * once per trial in a temporary directory and deleted afterwards.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class FileFinderBenchmark {
+	/**
+	 * The number of directory levels below the root.
+	 */
+	@Param({"3"})
+	private int depth;
+	
+	/**
+	 * The number of sub-directories in each directory (excluding the bottom level).
+	 */
+	@Param({"8"})
+	private int directoriesPerLevel;
+	
+	/**
+	 * The number of files in each directory.
+	 */
+	@Param({"16"})
+	private int filesPerDirectory;
+	
+	/**
+	 * The root of the generated tree.
+	 */
+	private File root;
+	
+	/**
+	 * The pool to use for parallel searches.
+	 */
+	private ForkJoinPool pool;
+	
+	/**
+	 * Generates the file tree.
+	 *
+	 * @throws IOException
+	 * 		if the tree cannot be created
+	 */
+	@Setup
+	public void setup() throws IOException {
+		root = FileTrees.createTree(depth, directoriesPerLevel, filesPerDirectory).toFile();
+		pool = new ForkJoinPool();
+	}
+	
+	/**
+	 * Shuts down the pool and deletes the file tree.
+	 *
+	 * @throws IOException
+	 * 		if the tree cannot be deleted
+	 */
+	@TearDown
+	public void tearDown() throws IOException {
+		pool.shutdown();
+		FileTrees.deleteTree(root.toPath());
+	}
+	
+	@Benchmark
+	public Set<File> searchDownTreeFrom() {
+		return FileFinder.searchDownTreeFrom(root);
+	}
+	
+	@Benchmark
+	public Set<File> searchDownTreeInParallelFrom() {
+		return FileFinder.searchDownTreeInParallelFrom(root, pool);
+	}
+	
+	@Benchmark
+	public void iterateDownTreeFrom(final Blackhole blackhole) {
+		for (final File f : FileFinder.iterateDownTreeFrom(root)) {
+			blackhole.consume(f);
+		}
+	}
+	
+	@Benchmark
+	public File iterateDownTreeFrom_firstFile() throws IOException {
+		try (final FileFinder.TreeIterator iterator = FileFinder.iteratorDownTreeFrom(root)) {
+			return iterator.next();
+		}
+	}
+}
\ No newline at end of file
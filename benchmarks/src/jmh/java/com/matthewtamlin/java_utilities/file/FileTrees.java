@@ -0,0 +1,108 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.matthewtamlin.java_utilities.file;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Creates and deletes file trees for use in benchmarks.
+ */
+public class FileTrees {
+	/**
+	 * Creates a uniform file tree in a new temporary directory.
+	 *
+	 * @param depth
+	 * 		the number of directory levels below the root
+	 * @param directoriesPerLevel
+	 * 		the number of sub-directories in each directory (excluding the bottom level)
+	 * @param filesPerDirectory
+	 * 		the number of empty files in each directory
+	 *
+	 * @return the root of the tree
+	 *
+	 * @throws IOException
+	 * 		if the tree cannot be created
+	 */
+	public static Path createTree(final int depth, final int directoriesPerLevel,
+			final int filesPerDirectory) throws IOException {
+		final Path root = Files.createTempDirectory("file-finder-benchmark");
+		populate(root, depth, directoriesPerLevel, filesPerDirectory);
+		
+		return root;
+	}
+	
+	/**
+	 * Recursively deletes a file tree.
+	 *
+	 * @param root
+	 * 		the root of the tree to delete
+	 *
+	 * @throws IOException
+	 * 		if the tree cannot be deleted
+	 */
+	public static void deleteTree(final Path root) throws IOException {
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs)
+					throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+			
+			@Override
+			public FileVisitResult postVisitDirectory(final Path dir, final IOException e)
+					throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+	
+	/**
+	 * Populates a directory with files and sub-directories.
+	 *
+	 * @param dir
+	 * 		the directory to populate
+	 * @param remainingDepth
+	 * 		the number of directory levels to create below {@code dir}
+	 * @param directoriesPerLevel
+	 * 		the number of sub-directories to create in each directory
+	 * @param filesPerDirectory
+	 * 		the number of empty files to create in each directory
+	 *
+	 * @throws IOException
+	 * 		if a file or directory cannot be created
+	 */
+	private static void populate(final Path dir, final int remainingDepth,
+			final int directoriesPerLevel, final int filesPerDirectory) throws IOException {
+		for (int i = 0; i < filesPerDirectory; i++) {
+			Files.createFile(dir.resolve("file" + i));
+		}
+		
+		if (remainingDepth > 0) {
+			for (int i = 0; i < directoriesPerLevel; i++) {
+				final Path subDir = Files.createDirectory(dir.resolve("dir" + i));
+				populate(subDir, remainingDepth - 1, directoriesPerLevel, filesPerDirectory);
+			}
+		}
+	}
+}
\ No newline at end of file
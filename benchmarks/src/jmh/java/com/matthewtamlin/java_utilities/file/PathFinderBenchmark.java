@@ -0,0 +1,112 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.matthewtamlin.java_utilities.file;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the NIO based {@link PathFinder} against the java.io based {@link FileFinder}. The
+ * default parameters generate a tree of 1111 directories with 900 files each (999,900 files in
+ * total), so the setup takes some time and needs around a million free inodes. Use smaller
+ * parameters (e.g. {@code -p filesPerDirectory=10}) for a quick comparison.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PathFinderBenchmark {
+	/**
+	 * The number of directory levels below the root.
+	 */
+	@Param({"3"})
+	private int depth;
+	
+	/**
+	 * The number of sub-directories in each directory (excluding the bottom level).
+	 */
+	@Param({"10"})
+	private int directoriesPerLevel;
+	
+	/**
+	 * The number of files in each directory.
+	 */
+	@Param({"900"})
+	private int filesPerDirectory;
+	
+	/**
+	 * The root of the generated tree.
+	 */
+	private Path root;
+	
+	/**
+	 * Generates the file tree.
+	 *
+	 * @throws IOException
+	 * 		if the tree cannot be created
+	 */
+	@Setup
+	public void setup() throws IOException {
+		root = FileTrees.createTree(depth, directoriesPerLevel, filesPerDirectory);
+	}
+	
+	/**
+	 * Deletes the file tree.
+	 *
+	 * @throws IOException
+	 * 		if the tree cannot be deleted
+	 */
+	@TearDown
+	public void tearDown() throws IOException {
+		FileTrees.deleteTree(root);
+	}
+	
+	@Benchmark
+	public Set<File> fileFinder() {
+		return FileFinder.searchDownTreeFrom(root.toFile());
+	}
+	
+	@Benchmark
+	public Set<Path> pathFinder() throws IOException {
+		return PathFinder.searchDownTreeFrom(root);
+	}
+	
+	@Benchmark
+	public Set<Path> pathFinder_filtered() throws IOException {
+		// Prunes one sub-directory at every level and only accepts the first file in each
+		return PathFinder.searchDownTreeFrom(root, Integer.MAX_VALUE, PathFilters.named("file0"),
+				PathFilters.not(PathFilters.named("dir0")));
+	}
+}
\ No newline at end of file
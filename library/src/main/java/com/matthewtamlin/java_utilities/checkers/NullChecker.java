@@ -65,9 +65,12 @@ public class NullChecker {
 	 * 		if {@code object} is null
 	 */
 	public static <T> T checkNotNull(final T object, final String message) {
-		final String exceptionMessage = message == null ? DEFAULT_MESSAGE : message;
-		
-		return checkNotNull(object, new IllegalArgumentException(exceptionMessage));
+		// The exception is only constructed on failure so that passing checks don't allocate
+		if (object != null) {
+			return object;
+		} else {
+			throw new IllegalArgumentException(message == null ? DEFAULT_MESSAGE : message);
+		}
 	}
 	
 	/**
@@ -104,6 +107,40 @@ public class NullChecker {
 		}
 	}
 	
+	/**
+	 * Checks that the supplied object is not null. If the check passes then the object is
+	 * returned, otherwise an exception is obtained from the supplied factory and thrown. The
+	 * factory is only used if the check fails, so passing checks incur no allocation.
+	 *
+	 * @param object
+	 * 		the object to check
+	 * @param exceptionFactory
+	 * 		creates the exception to throw if {@code object} is null, not null
+	 * @param <T>
+	 * 		the type of object being checked
+	 * @param <E>
+	 * 		the type of exception to throw if the check fails
+	 *
+	 * @return {@code object}
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code exceptionFactory} is null
+	 * @throws E
+	 * 		if {@code object} is null
+	 */
+	public static <T, E extends Exception> T checkNotNull(final T object,
+			final ExceptionFactory<E> exceptionFactory) throws E {
+		if (exceptionFactory == null) {
+			throw new IllegalArgumentException("exceptionFactory cannot be null");
+		}
+		
+		if (object != null) {
+			return object;
+		} else {
+			throw exceptionFactory.createException();
+		}
+	}
+	
 	/**
 	 * Checks that each element in the supplied Collection is not null. If the check passes then
 	 * the collection is returned, otherwise an IllegalArgumentException is thrown. The
@@ -152,10 +189,14 @@ public class NullChecker {
 	 */
 	public static <C extends Collection> C checkEachElementIsNotNull(final C collection,
 			final String message) {
-		final String exceptionMessage = message == null ? DEFAULT_MESSAGE : message;
+		checkNotNull(collection, "collection cannot be null");
 		
-		return checkEachElementIsNotNull(collection,
-				new IllegalArgumentException(exceptionMessage));
+		// The exception is only constructed on failure so that passing checks don't allocate
+		if (containsNull(collection)) {
+			throw new IllegalArgumentException(message == null ? DEFAULT_MESSAGE : message);
+		}
+		
+		return collection;
 	}
 	
 	/**
@@ -182,21 +223,95 @@ public class NullChecker {
 	 * @throws ConcurrentModificationException
 	 * 		if {@code collection} is concurrently modified while this method executes
 	 */
-	@SuppressWarnings("WhileLoopReplaceableByForEach")
 	public static <C extends Collection, E extends Exception> C checkEachElementIsNotNull(
 			final C collection, final E exception) throws E {
 		checkNotNull(collection, "collection cannot be null");
 		
+		if (containsNull(collection)) {
+			throw exception;
+		}
+		
+		// No element triggered the exception, therefore the collection must be entirely non-null
+		return collection;
+	}
+	
+	/**
+	 * Checks that each element in the supplied Collection is not null. If the check passes then
+	 * the collection is returned, otherwise an exception is obtained from the supplied factory
+	 * and thrown. The factory is only used if the check fails, so passing checks incur no
+	 * exception allocation. The collection must not be concurrently modified while this method
+	 * executes or else a ConcurrentModificationException will be thrown.
+	 *
+	 * @param collection
+	 * 		the collection to check, not null
+	 * @param exceptionFactory
+	 * 		creates the exception to throw if the check fails, not null
+	 * @param <C>
+	 * 		the type of collection being checked
+	 * @param <E>
+	 * 		the type of exception to throw if the check fails
+	 *
+	 * @return {@code object}
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code collection} is null
+	 * @throws IllegalArgumentException
+	 * 		if {@code exceptionFactory} is null
+	 * @throws E
+	 * 		if {@code collection} contains at least one null element
+	 * @throws ConcurrentModificationException
+	 * 		if {@code collection} is concurrently modified while this method executes
+	 */
+	public static <C extends Collection, E extends Exception> C checkEachElementIsNotNull(
+			final C collection, final ExceptionFactory<E> exceptionFactory) throws E {
+		checkNotNull(collection, "collection cannot be null");
+		checkNotNull(exceptionFactory, "exceptionFactory cannot be null");
+		
+		if (containsNull(collection)) {
+			throw exceptionFactory.createException();
+		}
+		
+		return collection;
+	}
+	
+	/**
+	 * Determines whether or not the supplied collection contains at least one null element.
+	 *
+	 * @param collection
+	 * 		the collection to check, not null
+	 *
+	 * @return true if at least one element is null, false otherwise
+	 *
+	 * @throws ConcurrentModificationException
+	 * 		if {@code collection} is concurrently modified while this method executes
+	 */
+	@SuppressWarnings("WhileLoopReplaceableByForEach")
+	private static boolean containsNull(final Collection collection) {
 		// Use an iterator so that an exception occurs if the collection is modified concurrently
 		final Iterator iterator = collection.iterator();
 		
 		while (iterator.hasNext()) {
 			if (iterator.next() == null) {
-				throw exception;
+				return true;
 			}
 		}
 		
-		// No element triggered the exception, therefore the collection must be entirely non-null
-		return collection;
+		return false;
+	}
+	
+	/**
+	 * Creates exceptions on demand, so that checks only pay for exception construction (and the
+	 * associated stack trace capture) when they fail.
+	 *
+	 * @param <E>
+	 * 		the type of exception created
+	 */
+	public interface ExceptionFactory<E extends Exception> {
+		/**
+		 * Called when a check fails.
+		 *
+		 * @return the exception to throw, not null
+		 */
+		E createException();
 	}
 }
\ No newline at end of file
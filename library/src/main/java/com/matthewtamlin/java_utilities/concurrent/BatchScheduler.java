@@ -0,0 +1,607 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.matthewtamlin.java_utilities.concurrent;
+
+import com.matthewtamlin.java_utilities.concurrent.CallbackExecutor.OnExecutionCompleteListener;
+import com.matthewtamlin.java_utilities.testing.Tested;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs batches of tasks after a delay or at a fixed rate, using {@link CallbackExecutor}s which
+ * share one thread pool. Each run of a batch uses a new CallbackExecutor, which is filled with
+ * tasks by a {@link BatchFactory} just before the run starts, so recurring jobs (such as
+ * periodically rescanning a directory tree) don't need a separate scheduled executor beside the
+ * pool.
+ * <p>
+ * Scheduled batches are tracked by a hierarchical timing wheel which is advanced by a single
+ * daemon thread, so scheduling, cancelling and expiring a batch are constant time operations
+ * even when thousands of batches are scheduled. Deadlines are rounded up to the next tick, so a
+ * batch may start up to one tick late. The ticker thread never runs batches itself, it only
+ * passes them to the pool. If the pool throws anything other than a
+ * RejectedExecutionException, the exception is passed to the uncaught exception handler of the
+ * ticker thread and the other batches are unaffected.
+ * <p>
+ * Cancelled batches are removed lazily: a cancelled batch stays in the wheel until its next
+ * deadline, and is discarded then instead of running. Until that happens the scheduler still
+ * references the batch and its factory, so factories which hold large objects should release
+ * them when their batch is cancelled.
+ *
+ * @deprecated this entire library has been deprecated.
+ */
+@SuppressWarnings("WeakerAccess") // This is a public API class
+@Tested(testMethod = "automated")
+@Deprecated
+public class BatchScheduler implements Closeable {
+	/**
+	 * The default tick duration, measured in nanoseconds.
+	 */
+	private static final long DEFAULT_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+	
+	/**
+	 * The pool to run the batches on.
+	 */
+	private final ExecutorService executorService;
+	
+	/**
+	 * The duration of each tick, measured in nanoseconds.
+	 */
+	private final long tickNanos;
+	
+	/**
+	 * The time of tick zero, according to {@link System#nanoTime()}.
+	 */
+	private final long startTime = System.nanoTime();
+	
+	/**
+	 * The scheduled batches. Only accessed by the ticker thread.
+	 */
+	private final TimingWheel wheel = new TimingWheel();
+	
+	/**
+	 * The timeouts which are waiting to be added to the wheel by the ticker thread.
+	 */
+	private final Queue<TimingWheel.Timeout> newTimeouts = new ConcurrentLinkedQueue<>();
+	
+	/**
+	 * The timeouts which expired on the current tick. Only accessed by the ticker thread.
+	 */
+	private final List<TimingWheel.Timeout> expiredTimeouts = new ArrayList<>();
+	
+	/**
+	 * The thread which advances the wheel.
+	 */
+	private final Thread ticker;
+	
+	/**
+	 * Whether or not the scheduler has been shut down.
+	 */
+	private volatile boolean isShutdown = false;
+	
+	/**
+	 * Constructs a new BatchScheduler. The ticker thread must be started separately.
+	 *
+	 * @param executorService
+	 * 		the pool to run the batches on, not null
+	 * @param tickNanos
+	 * 		the duration of each tick, measured in nanoseconds, greater than zero
+	 */
+	private BatchScheduler(final ExecutorService executorService, final long tickNanos) {
+		this.executorService = executorService;
+		this.tickNanos = tickNanos;
+		
+		ticker = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				runTicker();
+			}
+		}, "BatchScheduler-ticker");
+		
+		ticker.setDaemon(true);
+	}
+	
+	/**
+	 * Constructs a new BatchScheduler which runs batches on an existing ExecutorService, with a
+	 * tick duration of 10 milliseconds. The ExecutorService is not owned by the BatchScheduler,
+	 * so it is never shut down by it.
+	 *
+	 * @param executorService
+	 * 		the ExecutorService to run the batches on, not null
+	 *
+	 * @return the new BatchScheduler
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code executorService} is null
+	 */
+	public static BatchScheduler usingExecutorService(final ExecutorService executorService) {
+		return usingExecutorService(executorService, DEFAULT_TICK_NANOS, TimeUnit.NANOSECONDS);
+	}
+	
+	/**
+	 * Constructs a new BatchScheduler which runs batches on an existing ExecutorService. The
+	 * tick duration is the precision of the scheduler: shorter ticks start batches closer to
+	 * their deadlines, but wake the ticker thread more often. The ExecutorService is not owned by
+	 * the BatchScheduler, so it is never shut down by it.
+	 *
+	 * @param executorService
+	 * 		the ExecutorService to run the batches on, not null
+	 * @param tickDuration
+	 * 		the duration of each tick, greater than zero
+	 * @param unit
+	 * 		the unit of {@code tickDuration}, not null
+	 *
+	 * @return the new BatchScheduler
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code executorService} or {@code unit} is null, or if {@code tickDuration} is not
+	 * 		greater than zero
+	 */
+	public static BatchScheduler usingExecutorService(final ExecutorService executorService,
+			final long tickDuration, final TimeUnit unit) {
+		if (executorService == null) {
+			throw new IllegalArgumentException("executorService cannot be null");
+		}
+		
+		if (unit == null) {
+			throw new IllegalArgumentException("unit cannot be null");
+		}
+		
+		if (tickDuration <= 0 || unit.toNanos(tickDuration) <= 0) {
+			throw new IllegalArgumentException("tickDuration must be greater than zero");
+		}
+		
+		final BatchScheduler scheduler = new BatchScheduler(executorService,
+				unit.toNanos(tickDuration));
+		
+		scheduler.ticker.start();
+		
+		return scheduler;
+	}
+	
+	/**
+	 * Schedules a batch to run once after a delay.
+	 *
+	 * @param factory
+	 * 		the factory which adds the tasks to the batch when the delay elapses, not null
+	 * @param delay
+	 * 		the time to wait before starting the batch, not negative
+	 * @param unit
+	 * 		the unit of {@code delay}, not null
+	 *
+	 * @return a handle which can be used to cancel the batch, not null
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code factory} or {@code unit} is null, or if {@code delay} is negative
+	 * @throws IllegalStateException
+	 * 		if the scheduler has been shut down
+	 */
+	public ScheduledBatch schedule(final BatchFactory factory, final long delay,
+			final TimeUnit unit) {
+		return scheduleBatch(factory, delay, 0, unit);
+	}
+	
+	/**
+	 * Schedules a batch to run repeatedly at a fixed rate. The first run starts after the initial
+	 * delay, and each later run is due one period after the previous run was due, so the runs
+	 * don't drift. Runs never overlap: if a run is still executing when the next run is due, the
+	 * next run starts as soon as it finishes, and further runs which are due in the meantime are
+	 * skipped.
+	 *
+	 * @param factory
+	 * 		the factory which adds the tasks to the batch before each run, not null
+	 * @param initialDelay
+	 * 		the time to wait before starting the first run, not negative
+	 * @param period
+	 * 		the time between runs, greater than zero
+	 * @param unit
+	 * 		the unit of {@code initialDelay} and {@code period}, not null
+	 *
+	 * @return a handle which can be used to cancel the batch, not null
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code factory} or {@code unit} is null, if {@code initialDelay} is negative, or
+	 * 		if {@code period} is not greater than zero
+	 * @throws IllegalStateException
+	 * 		if the scheduler has been shut down
+	 */
+	public ScheduledBatch scheduleAtFixedRate(final BatchFactory factory,
+			final long initialDelay, final long period, final TimeUnit unit) {
+		if (period <= 0) {
+			throw new IllegalArgumentException("period must be greater than zero");
+		}
+		
+		return scheduleBatch(factory, initialDelay, period, unit);
+	}
+	
+	/**
+	 * Stops the scheduler. Batches which have not started will never start, but runs which have
+	 * already started are allowed to finish. The pool is not shut down.
+	 */
+	public void shutdown() {
+		isShutdown = true;
+		LockSupport.unpark(ticker);
+	}
+	
+	/**
+	 * @return true if the scheduler has been shut down, false otherwise
+	 */
+	public boolean isShutdown() {
+		return isShutdown;
+	}
+	
+	/**
+	 * Shuts down the scheduler. Equivalent to calling {@link #shutdown()}.
+	 */
+	@Override
+	public void close() {
+		shutdown();
+	}
+	
+	/**
+	 * Validates the arguments and schedules a batch.
+	 *
+	 * @param factory
+	 * 		the factory which adds the tasks to the batch, not null
+	 * @param delay
+	 * 		the time to wait before the first run, not negative
+	 * @param period
+	 * 		the time between runs, or zero if the batch only runs once
+	 * @param unit
+	 * 		the unit of {@code delay} and {@code period}, not null
+	 *
+	 * @return a handle for the batch, not null
+	 */
+	private ScheduledBatch scheduleBatch(final BatchFactory factory, final long delay,
+			final long period, final TimeUnit unit) {
+		if (factory == null) {
+			throw new IllegalArgumentException("factory cannot be null");
+		}
+		
+		if (unit == null) {
+			throw new IllegalArgumentException("unit cannot be null");
+		}
+		
+		if (delay < 0) {
+			throw new IllegalArgumentException("delay cannot be negative");
+		}
+		
+		if (isShutdown) {
+			throw new IllegalStateException("the scheduler has been shut down");
+		}
+		
+		// Round up, so that no run starts before it is due
+		final long periodTicks = (unit.toNanos(period) + tickNanos - 1) / tickNanos;
+		final long deadline = System.nanoTime() - startTime + unit.toNanos(delay);
+		final long deadlineTick = (deadline + tickNanos - 1) / tickNanos;
+		
+		final ScheduledBatch batch = new ScheduledBatch(this, factory, periodTicks);
+		batch.timeout = new TimingWheel.Timeout(deadlineTick, batch.onDeadline);
+		
+		newTimeouts.add(batch.timeout);
+		
+		return batch;
+	}
+	
+	/**
+	 * Advances the wheel in step with the clock and expires the due timeouts, until the
+	 * scheduler is shut down. Runs on the ticker thread.
+	 */
+	private void runTicker() {
+		while (!isShutdown) {
+			final long elapsedTicks = (System.nanoTime() - startTime) / tickNanos;
+			
+			// More than one tick may be processed if the thread woke late
+			while (wheel.getCurrentTick() < elapsedTicks) {
+				wheel.tick(expiredTimeouts);
+			}
+			
+			TimingWheel.Timeout timeout;
+			
+			while ((timeout = newTimeouts.poll()) != null) {
+				addToWheel(timeout);
+			}
+			
+			// Periodic timeouts may expire again while catching up, so the list can grow
+			for (int i = 0; i < expiredTimeouts.size(); i++) {
+				try {
+					expiredTimeouts.get(i).action.run();
+				} catch (final RuntimeException e) {
+					// Don't let one faulty batch stop the ticker, since that would stop them all
+					final Thread thread = Thread.currentThread();
+					thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+				}
+			}
+			
+			expiredTimeouts.clear();
+			
+			final long nextTickTime = startTime + (wheel.getCurrentTick() + 1) * tickNanos;
+			LockSupport.parkNanos(this, nextTickTime - System.nanoTime());
+		}
+	}
+	
+	/**
+	 * Adds a timeout to the wheel, or expires it if its deadline has already been reached. Must
+	 * only be called by the ticker thread.
+	 *
+	 * @param timeout
+	 * 		the timeout to add, not null
+	 */
+	private void addToWheel(final TimingWheel.Timeout timeout) {
+		if (!wheel.add(timeout)) {
+			expiredTimeouts.add(timeout);
+		}
+	}
+	
+	/**
+	 * Interface definition for an object which creates the tasks for each run of a batch.
+	 */
+	public interface BatchFactory {
+		/**
+		 * Called on a pool thread before each run of the batch. Implementations should add the
+		 * tasks (and any listeners) to the supplied executor, but must not start execution.
+		 *
+		 * @param callbackExecutor
+		 * 		a new CallbackExecutor which uses the scheduler's pool, not null
+		 */
+		void createBatch(CallbackExecutor callbackExecutor);
+	}
+	
+	/**
+	 * A handle to a batch which has been scheduled.
+	 */
+	public static final class ScheduledBatch {
+		/**
+		 * The batch is not running.
+		 */
+		private static final int IDLE = 0;
+		
+		/**
+		 * The batch is running.
+		 */
+		private static final int RUNNING = 1;
+		
+		/**
+		 * The batch is running, and another run became due while it was running.
+		 */
+		private static final int RUNNING_WITH_RUN_PENDING = 2;
+		
+		/**
+		 * The scheduler which the batch was scheduled with.
+		 */
+		private final BatchScheduler scheduler;
+		
+		/**
+		 * Creates the tasks for each run.
+		 */
+		private final BatchFactory factory;
+		
+		/**
+		 * The number of ticks between runs, or zero if the batch only runs once.
+		 */
+		private final long periodTicks;
+		
+		/**
+		 * Whether the batch is idle, running, or running with another run pending.
+		 */
+		private final AtomicInteger runState = new AtomicInteger(IDLE);
+		
+		/**
+		 * The number of runs which have finished.
+		 */
+		private final AtomicLong completedRunCount = new AtomicLong();
+		
+		/**
+		 * The number of runs which could not be started, because the factory threw an exception
+		 * or execution could not be started.
+		 */
+		private final AtomicLong failedRunCount = new AtomicLong();
+		
+		/**
+		 * Whether or not the batch has been cancelled.
+		 */
+		private volatile boolean isCancelled = false;
+		
+		/**
+		 * The timeout which triggers the next run. Only modified by the ticker thread once
+		 * scheduled.
+		 */
+		private TimingWheel.Timeout timeout;
+		
+		/**
+		 * Called by the ticker thread when the next run is due.
+		 */
+		private final Runnable onDeadline = new Runnable() {
+			@Override
+			public void run() {
+				if (isCancelled || scheduler.isShutdown) {
+					return;
+				}
+				
+				if (periodTicks > 0) {
+					timeout.deadlineTick += periodTicks;
+					scheduler.addToWheel(timeout);
+				}
+				
+				requestRun();
+			}
+		};
+		
+		/**
+		 * Starts a run on the pool.
+		 */
+		private final Runnable run = new Runnable() {
+			@Override
+			public void run() {
+				final CallbackExecutor executor = CallbackExecutor.usingExecutorService(
+						scheduler.executorService);
+				
+				// Set by whichever finishes the run first, so that the run only finishes once
+				final AtomicBoolean isRunFinished = new AtomicBoolean();
+				
+				executor.registerOnExecutionCompleteListener(new OnExecutionCompleteListener() {
+					@Override
+					public void onExecutionComplete(final CallbackExecutor callbackExecutor) {
+						if (isRunFinished.compareAndSet(false, true)) {
+							completedRunCount.incrementAndGet();
+							onRunComplete();
+						}
+					}
+				});
+				
+				boolean isStarted = false;
+				
+				try {
+					factory.createBatch(executor);
+					executor.execute();
+					isStarted = true;
+				} finally {
+					// The batch may never complete, so make sure later runs can still start
+					if (!isStarted && isRunFinished.compareAndSet(false, true)) {
+						failedRunCount.incrementAndGet();
+						onRunComplete();
+					}
+				}
+			}
+		};
+		
+		/**
+		 * Constructs a new ScheduledBatch.
+		 *
+		 * @param scheduler
+		 * 		the scheduler which the batch was scheduled with, not null
+		 * @param factory
+		 * 		creates the tasks for each run, not null
+		 * @param periodTicks
+		 * 		the number of ticks between runs, or zero if the batch only runs once
+		 */
+		private ScheduledBatch(final BatchScheduler scheduler, final BatchFactory factory,
+				final long periodTicks) {
+			this.scheduler = scheduler;
+			this.factory = factory;
+			this.periodTicks = periodTicks;
+		}
+		
+		/**
+		 * Cancels the batch, so that no more runs are started. A run which has already started
+		 * is allowed to finish. The batch is not removed from the scheduler straight away: it
+		 * stays in the timing wheel until its next run would have been due, so the scheduler
+		 * keeps a reference to the factory until then.
+		 */
+		public void cancel() {
+			isCancelled = true;
+		}
+		
+		/**
+		 * @return true if the batch has been cancelled, false otherwise
+		 */
+		public boolean isCancelled() {
+			return isCancelled;
+		}
+		
+		/**
+		 * @return true if the batch runs at a fixed rate, false if it only runs once
+		 */
+		public boolean isPeriodic() {
+			return periodTicks > 0;
+		}
+		
+		/**
+		 * @return the number of runs of the batch which have finished, not including the runs
+		 * which failed to start
+		 */
+		public long getCompletedRunCount() {
+			return completedRunCount.get();
+		}
+		
+		/**
+		 * @return the number of runs of the batch which failed to start, because the factory
+		 * threw an exception or execution could not be started
+		 */
+		public long getFailedRunCount() {
+			return failedRunCount.get();
+		}
+		
+		/**
+		 * Starts a run, or marks a run as pending if the previous run has not finished.
+		 */
+		private void requestRun() {
+			while (true) {
+				final int state = runState.get();
+				
+				if (state == IDLE) {
+					if (runState.compareAndSet(IDLE, RUNNING)) {
+						startRun();
+						return;
+					}
+				} else if (state == RUNNING) {
+					if (runState.compareAndSet(RUNNING, RUNNING_WITH_RUN_PENDING)) {
+						return;
+					}
+				} else {
+					// A run is already pending, so this run is skipped
+					return;
+				}
+			}
+		}
+		
+		/**
+		 * Called when a run finishes or fails to start. Starts the pending run, if there is one.
+		 */
+		private void onRunComplete() {
+			while (true) {
+				final int state = runState.get();
+				
+				if (state == RUNNING_WITH_RUN_PENDING && !isCancelled && !scheduler.isShutdown) {
+					if (runState.compareAndSet(RUNNING_WITH_RUN_PENDING, RUNNING)) {
+						startRun();
+						return;
+					}
+				} else if (runState.compareAndSet(state, IDLE)) {
+					return;
+				}
+			}
+		}
+		
+		/**
+		 * Passes a run to the pool. If the pool rejects the run, the batch is cancelled. If the
+		 * pool fails in any other way, the exception is rethrown and the next run can still
+		 * start when it is due.
+		 */
+		private void startRun() {
+			try {
+				scheduler.executorService.execute(run);
+			} catch (final RejectedExecutionException e) {
+				isCancelled = true;
+				runState.set(IDLE);
+			} catch (final RuntimeException e) {
+				runState.set(IDLE);
+				throw e;
+			}
+		}
+	}
+}
\ No newline at end of file
@@ -18,75 +18,438 @@ package com.matthewtamlin.java_utilities.concurrent;
 
 import com.matthewtamlin.java_utilities.testing.Tested;
 
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.io.Closeable;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Executes a queue of Runnables and delivers callbacks when all Runnables have finished.
  * Submitted tasks are not executed until the {@link #execute()} method is called,
  * and no new Runnables may be submitted once execution has begun. Runnables can be executed
- * using a single thread, a cached thread pool, or a fixed thread pool.
+ * using a single thread, a cached thread pool, a fixed thread pool, virtual threads, or a
+ * work-stealing pool. Running tasks can spawn subtasks, and callbacks are only delivered once
+ * the whole tree of tasks has finished.
+ * <p>
+ * Alternatively, execution can be started with {@link #executeContinuously()}, in which case
+ * tasks can be added while execution is in progress and callbacks are delivered as each epoch
+ * of tasks completes. This allows a single executor and thread pool to process a steady stream
+ * of work.
+ * <p>
+ * Tasks which fail do not prevent callbacks from being delivered. The outcome of each task is
+ * reported to the {@link OnTaskCompleteListener}s, and execution can optionally be cancelled
+ * when a task fails, so that the remaining tasks do not waste resources.
+ * <p>
+ * Callables can also be submitted, in which case a {@link CallbackFuture} is returned for each
+ * result. The future for the entire batch is available from {@link #getBatchFuture()}.
+ * <p>
+ * Executors created with {@link #usingSingleThreadExecutor()}, {@link #usingCachedThreadPool()},
+ * {@link #usingFixedThreadPool(int)}, {@link #usingVirtualThreads()} and {@link
+ * #usingWorkStealingPool()} own their thread pools, and shut them down once all
+ * tasks have finished. Executors created with {@link #usingExecutorService(ExecutorService)}
+ * share an externally owned pool, which is never shut down by the CallbackExecutor. This allows
+ * many instances to share one tuned pool. Either way, {@link #shutdown()} and {@link #close()}
+ * can be used to stop accepting tasks and release resources.
  *
  * @deprecated this entire library has been deprecated.
  */
 @SuppressWarnings("WeakerAccess") // This is a public API class
 @Tested(testMethod = "automated")
 @Deprecated
-public class CallbackExecutor {
+public class CallbackExecutor implements Closeable {
+	/**
+	 * Execution state which indicates that execution has not started.
+	 */
+	private static final int NOT_STARTED = 0;
+	
+	/**
+	 * Execution state which indicates that execution was started by {@link #execute()}.
+	 */
+	private static final int BATCH = 1;
+	
+	/**
+	 * Execution state which indicates that execution was started by {@link
+	 * #executeContinuously()}.
+	 */
+	private static final int CONTINUOUS = 2;
+	
+	/**
+	 * The {@code Executors.newVirtualThreadPerTaskExecutor()} method, or null if the runtime does
+	 * not support virtual threads. Reflection is used so that the library can still target older
+	 * versions of Java.
+	 */
+	private static final Method VIRTUAL_THREAD_EXECUTOR_FACTORY =
+			findVirtualThreadExecutorFactory();
+	
+	/**
+	 * The task being run by the current thread, used to find the parent of spawned subtasks.
+	 */
+	private static final ThreadLocal<QueuedTask> CURRENT_TASK = new ThreadLocal<>();
+	
+	/**
+	 * Updates the states of queued tasks, so that each task does not need its own atomic.
+	 */
+	private static final AtomicIntegerFieldUpdater<QueuedTask> TASK_STATE =
+			AtomicIntegerFieldUpdater.newUpdater(QueuedTask.class, "state");
+	
+	/**
+	 * Marks a timestamp which was not recorded because nothing needed it.
+	 */
+	private static final long NOT_RECORDED = Long.MIN_VALUE;
+	
+	/**
+	 * The default number of lanes for keyed tasks.
+	 */
+	private static final int DEFAULT_LANE_COUNT = 64;
+	
 	/**
 	 * The ExecutorService which actually runs the tasks.
 	 */
 	private final ExecutorService executorService;
 	
 	/**
-	 * The tasks to run.
+	 * Whether or not the ExecutorService was created by this CallbackExecutor, and should be
+	 * shut down when this CallbackExecutor terminates.
+	 */
+	private final boolean ownsExecutorService;
+	
+	/**
+	 * Released once all tasks have finished and all callbacks have been delivered.
+	 */
+	private final CountDownLatch terminationLatch = new CountDownLatch(1);
+	
+	/**
+	 * The tasks which have been added but not yet passed to the executor service. A lock-free
+	 * queue is used so that many threads can add tasks without contention.
+	 */
+	private volatile Queue<QueuedTask> tasks = new ConcurrentLinkedQueue<>();
+	
+	/**
+	 * Whether or not tasks are dispatched in priority order rather than FIFO order.
+	 */
+	private volatile boolean isPriorityOrdered = false;
+	
+	/**
+	 * Provides a sequence number for each task in priority mode, so that tasks with the same
+	 * priority are dispatched in FIFO order.
+	 */
+	private final AtomicLong sequenceNumbers = new AtomicLong(0);
+	
+	/**
+	 * The number of threads in the executor service, or zero if the number is unknown or
+	 * unbounded.
+	 */
+	private final int threadCount;
+	
+	/**
+	 * Limits the number of tasks in the queue, or null if the queue is unbounded. Each queued
+	 * task holds one permit until it is passed to the executor service.
+	 */
+	private volatile Semaphore queueSlots = null;
+	
+	/**
+	 * What to do when a task is added and the queue is full.
+	 */
+	private volatile OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+	
+	/**
+	 * The maximum number of tasks which can be passed to the executor service at once.
+	 */
+	private volatile int maxInFlightTasks = Integer.MAX_VALUE;
+	
+	/**
+	 * Limits the rate at which queued tasks are dispatched, null if the rate is not limited.
+	 */
+	private volatile RateLimiter rateLimiter;
+	
+	/**
+	 * Whether or not a dispatch is scheduled to run when the rate limit next allows a task.
+	 */
+	private final AtomicBoolean isDispatchScheduled = new AtomicBoolean();
+	
+	/**
+	 * Dispatches queued tasks once the rate limit allows.
+	 */
+	private final Runnable scheduledDispatch = new Runnable() {
+		@Override
+		public void run() {
+			isDispatchScheduled.set(false);
+			
+			try {
+				dispatchQueuedTasks();
+			} catch (final RuntimeException e) {
+				// Don't let the failure escape into the timer, which also runs the timeouts
+				final Thread thread = Thread.currentThread();
+				thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+			}
+		}
+	};
+	
+	/**
+	 * Tasks which were rejected by the executor service and have not yet been reported.
+	 */
+	private final Queue<QueuedTask> rejectedTasks = new ConcurrentLinkedQueue<>();
+	
+	/**
+	 * Whether or not a thread is reporting the rejected tasks. Only one thread reports them at a
+	 * time, so that reporting a rejected task never recurses into reporting another.
+	 */
+	private final AtomicBoolean isReportingRejectedTasks = new AtomicBoolean();
+	
+	/**
+	 * The number of lanes to create for keyed tasks.
+	 */
+	private volatile int laneCount = DEFAULT_LANE_COUNT;
+	
+	/**
+	 * The serial lanes for keyed tasks, null until the first keyed task is added.
+	 */
+	private volatile Lane[] lanes;
+	
+	/**
+	 * Ensures that the lanes are only created once.
+	 */
+	private final Object laneLock = new Object();
+	
+	/**
+	 * The maximum number of queued tasks to pass to the executor service as a single unit.
+	 */
+	private volatile int chunkSize = 1;
+	
+	/**
+	 * The number of tasks (or chunks of tasks) which have been passed to the executor service
+	 * but have not finished.
+	 */
+	private final AtomicInteger inFlightTaskCount = new AtomicInteger(0);
+	
+	/**
+	 * The first epoch, which contains all tasks queued before execution starts. In batch mode
+	 * this is the only epoch.
+	 */
+	private final Epoch firstEpoch = new Epoch(0);
+	
+	/**
+	 * The epoch which new tasks are added to, or null if no more tasks can be added. This is
+	 * always changed before the previous epoch is closed, so a thread which fails to add a task
+	 * to a closed epoch will always see the change when it tries again.
+	 */
+	private final AtomicReference<Epoch> currentEpoch = new AtomicReference<>(firstEpoch);
+	
+	/**
+	 * The execution state, one of {@link #NOT_STARTED}, {@link #BATCH} or {@link #CONTINUOUS}.
+	 */
+	private final AtomicInteger executionState = new AtomicInteger(NOT_STARTED);
+	
+	/**
+	 * The tasks which are currently running, so that they can be interrupted if execution is
+	 * cancelled. Tasks are only added if {@link #interruptOnCancel} is true.
+	 */
+	private final Set<Interruptible> runningTasks =
+			Collections.newSetFromMap(new ConcurrentHashMap<Interruptible, Boolean>());
+	
+	/**
+	 * The status to report for tasks which are cancelled, or null if execution has not been
+	 * cancelled. Either {@link TaskOutcome.Status#CANCELLED} or {@link
+	 * TaskOutcome.Status#TIMED_OUT}.
+	 */
+	private final AtomicReference<TaskOutcome.Status> cancellationReason =
+			new AtomicReference<>();
+	
+	/**
+	 * The maximum time each task can run for, measured in nanoseconds, or zero if there is no
+	 * limit.
+	 */
+	private volatile long taskTimeoutNanos = 0;
+	
+	/**
+	 * The maximum time execution can run for, measured in nanoseconds, or zero if there is no
+	 * limit.
+	 */
+	private volatile long batchTimeoutNanos = 0;
+	
+	/**
+	 * Cancels execution when the batch timeout expires, or null if there is no batch timeout.
+	 */
+	private volatile Future<?> batchTimeoutFuture = null;
+	
+	/**
+	 * The tasks which were interrupted or skipped because a timeout expired.
+	 */
+	private final Queue<Runnable> timedOutTasks = new ConcurrentLinkedQueue<>();
+	
+	/**
+	 * Whether or not execution should be cancelled when a task fails.
+	 */
+	private volatile boolean cancelOnFailure = false;
+	
+	/**
+	 * Whether or not the threads running tasks should be interrupted when execution is
+	 * cancelled.
+	 */
+	private volatile boolean interruptOnCancel = true;
+	
+	/**
+	 * Epochs which have completed but have not yet been delivered to the listeners, keyed by
+	 * epoch number. Epochs can complete in any order, but are always delivered in order.
+	 */
+	private final Map<Long, Epoch> completedEpochs = new ConcurrentHashMap<>();
+	
+	/**
+	 * The number of the next epoch to deliver to the listeners. Guarded by {@link #epochLock}.
+	 */
+	private long nextEpochToDeliver = 0;
+	
+	/**
+	 * Ensures that completed epochs are added to the pending deliveries in order. The callbacks
+	 * are never delivered while the lock is held.
+	 */
+	private final Object epochLock = new Object();
+	
+	/**
+	 * The listeners to notify when execution completes. Copy-on-write sets are used for all
+	 * listeners, so that callbacks are delivered to a snapshot without locking and a slow
+	 * listener never blocks registration.
+	 */
+	private final Set<OnExecutionCompleteListener> onExecutionCompleteListeners =
+			new CopyOnWriteArraySet<>();
+	
+	/**
+	 * The listeners to notify when each epoch completes.
+	 */
+	private final Set<OnEpochCompleteListener> onEpochCompleteListeners =
+			new CopyOnWriteArraySet<>();
+	
+	/**
+	 * The listeners to notify when each task completes.
+	 */
+	private final Set<OnTaskCompleteListener> onTaskCompleteListeners =
+			new CopyOnWriteArraySet<>();
+	
+	/**
+	 * The listeners to notify at each progress interval.
+	 */
+	private final Set<OnProgressListener> onProgressListeners = new CopyOnWriteArraySet<>();
+	
+	/**
+	 * The metrics recorded for the tasks, or null if metrics are not enabled.
+	 */
+	private volatile Metrics metrics;
+	
+	/**
+	 * The interval between progress callbacks, measured in nanoseconds, or zero if progress
+	 * callbacks are disabled.
+	 */
+	private volatile long progressIntervalNanos;
+	
+	/**
+	 * Delivers the progress callbacks periodically, null if progress callbacks are disabled or
+	 * execution has not started.
 	 */
-	private final Queue<Runnable> tasks = new LinkedList<>();
+	private volatile Future<?> progressFuture;
 	
 	/**
-	 * A count of the number of tasks which have completed. An atomic integer is needed since
-	 * this variable is used by multiple threads to determine if callbacks should be delivered.
+	 * The executor to deliver the epoch and execution callbacks on, or null to deliver them on
+	 * the thread which completed the last task.
 	 */
-	private final AtomicInteger numberOfCompletedTasks = new AtomicInteger(0);
+	private volatile Executor callbackExecutor;
 	
 	/**
-	 * The listeners to notify when execution completes.
+	 * The epoch and progress callback deliveries waiting to run, in order.
 	 */
-	private final Set<OnExecutionCompleteListener> onExecutionCompleteListeners = new HashSet<>();
+	private final Queue<Runnable> pendingDeliveries = new ConcurrentLinkedQueue<>();
 	
 	/**
-	 * A flag to indicate whether or not execution of the tests has started.
+	 * Whether or not the pending deliveries are being drained, either by a drain scheduled on
+	 * the callback executor or by a thread which completed a task. Only one drain runs at a
+	 * time, so callbacks are delivered in order even if many threads complete epochs.
 	 */
-	private boolean executionHasBegun = false;
+	private final AtomicBoolean isDeliveryScheduled = new AtomicBoolean();
+	
+	/**
+	 * Runs the pending deliveries on the callback executor.
+	 */
+	private final Runnable deliveryDrain = new Runnable() {
+		@Override
+		public void run() {
+			try {
+				runPendingDeliveries();
+			} finally {
+				isDeliveryScheduled.set(false);
+				
+				// A delivery may have been added after the last poll, or one may have thrown
+				if (!pendingDeliveries.isEmpty()) {
+					scheduleDeliveryDrain();
+				}
+			}
+		}
+	};
+	
+	/**
+	 * Completes when all tasks have finished executing.
+	 */
+	private final CallbackFuture<Void> batchFuture = new CallbackFuture<>(new Runnable() {
+		@Override
+		public void run() {
+			// Nothing to do, the future is run to mark the batch as complete
+		}
+	}, null);
 	
 	/**
 	 * Constructs a new CallbackExecutor which uses a single thread executor to execute the tasks.
-	 * See {@link Executors#newSingleThreadExecutor()}.
+	 * See {@link Executors#newSingleThreadExecutor()}. The executor is shut down once all tasks
+	 * have finished.
 	 *
 	 * @return the new CallbackExecutor
 	 */
 	public static CallbackExecutor usingSingleThreadExecutor() {
-		return new CallbackExecutor(Executors.newSingleThreadExecutor());
+		return new CallbackExecutor(Executors.newSingleThreadExecutor(), true, 1);
 	}
 	
 	/**
 	 * Constructs a new CallbackExecutor which uses a cached thread pool to execute the tasks.
-	 * See {@link Executors#newCachedThreadPool()}.
+	 * See {@link Executors#newCachedThreadPool()}. The pool is shut down once all tasks have
+	 * finished.
 	 *
 	 * @return the new CallbackExecutor
 	 */
 	public static CallbackExecutor usingCachedThreadPool() {
-		return new CallbackExecutor(Executors.newCachedThreadPool());
+		return new CallbackExecutor(Executors.newCachedThreadPool(), true, 0);
 	}
 	
 	/**
 	 * Constructs a new CallbackExecutor which uses a fixed thread pool to execute the tasks.
-	 * See {@link Executors#newFixedThreadPool(int)}.
+	 * See {@link Executors#newFixedThreadPool(int)}. The pool is shut down once all tasks have
+	 * finished.
 	 *
 	 * @param n
 	 * 		the number of threads in the pool
@@ -94,7 +457,88 @@ public class CallbackExecutor {
 	 * @return the new CallbackExecutor
 	 */
 	public static CallbackExecutor usingFixedThreadPool(int n) {
-		return new CallbackExecutor(Executors.newFixedThreadPool(n));
+		return new CallbackExecutor(Executors.newFixedThreadPool(n), true, n);
+	}
+	
+	/**
+	 * Constructs a new CallbackExecutor which executes each task on a new virtual thread, if the
+	 * runtime supports virtual threads (Java 21 or later). This is ideal for large batches of
+	 * tasks which spend most of their time blocked, since the number of concurrent tasks is not
+	 * capped by a pool size and no platform thread is held while a task is blocked. If the runtime
+	 * does not support virtual threads, a cached thread pool is used instead. See {@link
+	 * #supportsVirtualThreads()}. The executor is shut down once all tasks have finished.
+	 *
+	 * @return the new CallbackExecutor
+	 */
+	public static CallbackExecutor usingVirtualThreads() {
+		final ExecutorService virtualThreadExecutor = newVirtualThreadPerTaskExecutor();
+		
+		if (virtualThreadExecutor == null) {
+			return usingCachedThreadPool();
+		} else {
+			return new CallbackExecutor(virtualThreadExecutor, true, 0);
+		}
+	}
+	
+	/**
+	 * @return true if the runtime supports virtual threads, in which case {@link
+	 * #usingVirtualThreads()} executes tasks on virtual threads, false otherwise
+	 */
+	public static boolean supportsVirtualThreads() {
+		return VIRTUAL_THREAD_EXECUTOR_FACTORY != null;
+	}
+	
+	/**
+	 * Constructs a new CallbackExecutor which uses a work-stealing ForkJoinPool to execute the
+	 * tasks, with one thread per available processor. Each thread has its own queue, and
+	 * subtasks spawned using {@link #spawn(Runnable)} are pushed onto the queue of the spawning
+	 * thread, so recursive workloads with many short tasks avoid contention on a single shared
+	 * queue. The pool is shut down once all tasks have finished.
+	 *
+	 * @return the new CallbackExecutor
+	 */
+	public static CallbackExecutor usingWorkStealingPool() {
+		return usingWorkStealingPool(Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * Constructs a new CallbackExecutor which uses a work-stealing ForkJoinPool to execute the
+	 * tasks. See {@link #usingWorkStealingPool()}. The pool is shut down once all tasks have
+	 * finished.
+	 *
+	 * @param parallelism
+	 * 		the number of threads in the pool, greater than zero
+	 *
+	 * @return the new CallbackExecutor
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code parallelism} is less than one
+	 */
+	public static CallbackExecutor usingWorkStealingPool(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be greater than zero");
+		}
+		
+		return new CallbackExecutor(new ForkJoinPool(parallelism), true, parallelism);
+	}
+	
+	/**
+	 * Constructs a new CallbackExecutor which uses an existing ExecutorService to execute the
+	 * tasks. The ExecutorService is not owned by the CallbackExecutor, so it can be shared by
+	 * many instances and is never shut down by them. The caller remains responsible for shutting
+	 * it down. Tasks which the ExecutorService rejects are reported to the OnTaskCompleteListeners
+	 * as failed with the RejectedExecutionException, and do not stop execution from completing.
+	 *
+	 * @param executorService
+	 * 		the ExecutorService to use for task execution, not null
+	 *
+	 * @return the new CallbackExecutor
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code executorService} is null
+	 */
+	public static CallbackExecutor usingExecutorService(ExecutorService executorService) {
+		return new CallbackExecutor(executorService, false, 0);
 	}
 	
 	/**
@@ -102,117 +546,2552 @@ public class CallbackExecutor {
 	 *
 	 * @param executor
 	 * 		the Executor to use for task execution, not null
+	 * @param ownsExecutor
+	 * 		whether or not the executor should be shut down when this CallbackExecutor terminates
+	 * @param threadCount
+	 * 		the number of threads in the executor, or zero if the number is unknown or unbounded
 	 *
 	 * @throws IllegalArgumentException
 	 * 		if {@code executor} is null
 	 */
-	private CallbackExecutor(ExecutorService executor) {
+	private CallbackExecutor(ExecutorService executor, boolean ownsExecutor, int threadCount) {
 		if (executor == null) {
 			throw new IllegalArgumentException("executor cannot be null");
 		}
 		
 		this.executorService = executor;
+		this.ownsExecutorService = ownsExecutor;
+		this.threadCount = threadCount;
 	}
 	
 	/**
-	 * Adds the supplied task to the execution queue. Tasks cannot be added to the queue if
-	 * execution has already started.
+	 * Limits the number of tasks which can wait in the queue. Tasks stop counting towards the
+	 * limit once they are passed to the underlying executor. When a task is added and the queue
+	 * is full, the supplied policy determines what happens. By default the queue is unbounded.
+	 * <p>
+	 * In batch mode, tasks cannot leave the queue until {@link #execute()} is called, so the
+	 * {@link OverflowPolicy#BLOCK} policy only makes sense if another thread calls it. Tasks
+	 * never run before execution starts, so until then the {@link OverflowPolicy#CALLER_RUNS}
+	 * policy rejects tasks instead of running them.
 	 *
-	 * @param task
-	 * 		the task to execute, not null
+	 * @param maxQueuedTasks
+	 * 		the maximum number of tasks which can wait in the queue, greater than zero
+	 * @param policy
+	 * 		what to do when the queue is full, not null
 	 *
 	 * @throws IllegalArgumentException
-	 * 		if {@code runnable} is null
+	 * 		if {@code maxQueuedTasks} is less than one, or if {@code policy} is null
 	 * @throws IllegalStateException
-	 * 		if execution has already started
+	 * 		if tasks have already been added, or if execution has already started
 	 */
-	public synchronized void addToQueue(Runnable task) {
-		if (task == null) {
-			throw new IllegalArgumentException("runnable cannot be null");
+	public void setMaxQueuedTasks(final int maxQueuedTasks, final OverflowPolicy policy) {
+		if (maxQueuedTasks < 1) {
+			throw new IllegalArgumentException("maxQueuedTasks must be greater than zero");
 		}
 		
-		if (!executionHasBegun) {
-			tasks.add(task);
-		} else {
-			throw new IllegalStateException("execution has already been started");
+		if (policy == null) {
+			throw new IllegalArgumentException("policy cannot be null");
 		}
+		
+		checkNotConfigured();
+		
+		queueSlots = new Semaphore(maxQueuedTasks);
+		overflowPolicy = policy;
 	}
 	
 	/**
-	 * Starts executing the queued tasks. Tasks are retrieved from the queue and started using a
-	 * FIFO basis. Note that no new tasks may be added to the queue once this method is called.
+	 * Limits the number of tasks which can be passed to the underlying executor at once. The
+	 * remaining tasks wait in the queue, and are passed to the executor as earlier tasks finish.
+	 * This keeps the executor's own queue small no matter how many tasks are added. By default
+	 * there is no limit.
+	 *
+	 * @param maxInFlightTasks
+	 * 		the maximum number of tasks which can be passed to the executor at once, greater than
+	 * 		zero
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code maxInFlightTasks} is less than one
+	 * @throws IllegalStateException
+	 * 		if tasks have already been added, or if execution has already started
 	 */
-	public synchronized void execute() {
-		if (!executionHasBegun) {
-			executionHasBegun = true;
-			
-			for (final Runnable r : tasks) {
-				executorService.execute(new Runnable() {
-					@Override
-					public void run() {
-						r.run();
-						
-						if (numberOfCompletedTasks.incrementAndGet() == tasks.size()) {
-							deliverCallbacks();
-						}
-					}
-				});
-			}
-		} else {
-			throw new IllegalStateException("execution has already been started");
+	public void setMaxInFlightTasks(final int maxInFlightTasks) {
+		if (maxInFlightTasks < 1) {
+			throw new IllegalArgumentException("maxInFlightTasks must be greater than zero");
 		}
+		
+		checkNotConfigured();
+		
+		this.maxInFlightTasks = maxInFlightTasks;
 	}
 	
 	/**
-	 * Registers an OnExecutionCompleteListener. The listener will receive callbacks when all
-	 * queued tasks finish executing. This method has no effect the supplied listener is null or
-	 * is already registered.
+	 * Limits the rate at which queued tasks are started, using a token bucket. The limit is
+	 * applied when tasks are passed to the executor service, so no thread is ever blocked waiting
+	 * for the rate limit: when the bucket is empty, dispatch is rescheduled on a shared timer for
+	 * the time the next task is allowed. The pool can therefore be sized for the work itself
+	 * while the rate limit protects a downstream resource.
+	 * <p>
+	 * The bucket starts full, so up to {@code burstSize} tasks can start at once before the
+	 * sustained rate applies. Tasks which are run on the calling thread by the {@link
+	 * OverflowPolicy#CALLER_RUNS} policy and subtasks passed to {@link #spawn(Runnable)} bypass
+	 * the queue and are not rate limited. Once execution is cancelled, the remaining tasks are
+	 * skipped without waiting for the rate limit.
 	 *
-	 * @param listener
-	 * 		the listener to register
+	 * @param tasksPerSecond
+	 * 		the maximum sustained number of tasks to start per second, greater than zero
+	 * @param burstSize
+	 * 		the maximum number of tasks to start at once, greater than zero
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code tasksPerSecond} is not greater than zero, or if {@code burstSize} is less
+	 * 		than one
+	 * @throws IllegalStateException
+	 * 		if tasks have already been added, or if execution has already started
 	 */
-	public synchronized void registerOnExecutionCompleteListener(
-			OnExecutionCompleteListener listener) {
-		if (listener != null) {
-			onExecutionCompleteListeners.add(listener);
+	public void setRateLimit(final double tasksPerSecond, final int burstSize) {
+		if (!(tasksPerSecond > 0)) {
+			throw new IllegalArgumentException("tasksPerSecond must be greater than zero");
+		}
+		
+		if (burstSize < 1) {
+			throw new IllegalArgumentException("burstSize must be greater than zero");
 		}
+		
+		checkNotConfigured();
+		
+		rateLimiter = new RateLimiter(tasksPerSecond, burstSize);
 	}
 	
 	/**
-	 * Unregisters an OnExecutionCompleteListener. The listener will not receive callbacks when
-	 * all queued tasks finish executing. This method has no effect the supplied listener is
-	 * null or
-	 * is not currently registered.
+	 * Groups queued tasks into chunks which are passed to the executor service as a single unit.
+	 * This greatly reduces the scheduling overhead for very small tasks, since each chunk only
+	 * needs one submission to the executor service, one update of the in-flight count, and one
+	 * update of the shared completion counter. Chunks are formed from the tasks which are waiting
+	 * in the queue when a thread becomes available, so tasks never wait for a chunk to fill up.
+	 * Each chunk counts once towards the in-flight limit. By default each task is dispatched on
+	 * its own.
+	 * <p>
+	 * Chunking is only worthwhile when tasks are very small. Tasks in a chunk run one after
+	 * another on the same thread, so large chunks of long tasks can leave other threads idle.
 	 *
-	 * @param listener
-	 * 		the listener to unregister
+	 * @param chunkSize
+	 * 		the maximum number of tasks in each chunk, greater than zero
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code chunkSize} is less than one
+	 * @throws IllegalStateException
+	 * 		if tasks have already been added, or if execution has already started
 	 */
-	public synchronized void unregisterOnExeutionCompleteListener(
-			OnExecutionCompleteListener listener) {
-		if (listener != null) {
-			onExecutionCompleteListeners.remove(listener);
+	public void setChunkSize(final int chunkSize) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("chunkSize must be greater than zero");
 		}
+		
+		checkNotConfigured();
+		
+		this.chunkSize = chunkSize;
 	}
 	
 	/**
-	 * Delivers callbacks to the registered listeners.
+	 * Adds all of the supplied tasks to the execution queue. This is equivalent to calling
+	 * {@link #addToQueue(Runnable)} for each task, but is more efficient for large numbers of
+	 * tasks since the tasks are counted in a single step. If the queue size is limited, the
+	 * tasks are added one at a time and the overflow policy is applied to each.
+	 *
+	 * @param tasks
+	 * 		the tasks to execute, not null, each not null
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code tasks} is null or contains null
+	 * @throws IllegalStateException
+	 * 		if execution has already started in batch mode, or has been finished in continuous
+	 * 		mode
+	 * @throws RejectedExecutionException
+	 * 		if the queue is full and the overflow policy is {@link OverflowPolicy#FAIL_FAST} (or
+	 * 		{@link OverflowPolicy#CALLER_RUNS} before execution starts), or if the thread is
+	 * 		interrupted while waiting for space in the queue
 	 */
-	private synchronized void deliverCallbacks() {
-		for (OnExecutionCompleteListener listener : onExecutionCompleteListeners) {
-			listener.onExecutionComplete(this);
+	public void addAllToQueue(final Collection<? extends Runnable> tasks) {
+		if (tasks == null) {
+			throw new IllegalArgumentException("tasks cannot be null");
 		}
-	}
-	
+		
+		for (final Runnable task : tasks) {
+			if (task == null) {
+				throw new IllegalArgumentException("tasks cannot contain null");
+			}
+		}
+		
+		if (queueSlots != null) {
+			for (final Runnable task : tasks) {
+				addToQueue(task);
+			}
+			
+			return;
+		}
+		
+		if (tasks.isEmpty()) {
+			return;
+		}
+		
+		final Epoch epoch = acquireEpoch(tasks.size());
+		
+		for (final Runnable task : tasks) {
+			this.tasks.add(new QueuedTask(task, epoch, 0));
+		}
+		
+		if (executionState.get() != NOT_STARTED) {
+			dispatchQueuedTasks();
+		}
+	}
+	
+	/**
+	 * Dispatches queued tasks in priority order instead of FIFO order. Tasks with higher
+	 * priorities are dispatched first, and tasks with equal priorities are dispatched in the
+	 * order they were added. Use {@link #addToQueue(Runnable, long)} and {@link #submit(Callable,
+	 * long)} to set the priorities. To minimise the time taken by a batch of tasks with very
+	 * different durations, use the estimated cost of each task as its priority so that the longest
+	 * tasks start first.
+	 * <p>
+	 * Ordering only applies to tasks waiting in the queue, so tasks are held in the queue until a
+	 * thread is free. If no in-flight limit has been set with {@link #setMaxInFlightTasks(int)},
+	 * then the limit is set to the number of threads in the pool. Executors with unbounded or
+	 * unknown pool sizes need an explicit in-flight limit for the ordering to have any effect.
+	 *
+	 * @throws IllegalStateException
+	 * 		if tasks have already been added, or if execution has already started
+	 */
+	public void enablePriorityOrdering() {
+		checkNotConfigured();
+		
+		if (maxInFlightTasks == Integer.MAX_VALUE && threadCount > 0) {
+			maxInFlightTasks = threadCount;
+		}
+		
+		tasks = new PriorityBlockingQueue<>(11, new PriorityOrder());
+		isPriorityOrdered = true;
+	}
+	
+	/**
+	 * Adds the supplied task to the execution queue. Tasks cannot be added to the queue if
+	 * execution has already started, unless it was started in continuous mode. In continuous
+	 * mode, tasks are added to the current epoch and are executed as soon as the in-flight limit
+	 * allows.
+	 * <p>
+	 * If the queue is full, the {@link OverflowPolicy} passed to {@link #setMaxQueuedTasks(int,
+	 * OverflowPolicy)} determines whether this method blocks, fails, or runs the task on the
+	 * calling thread.
+	 *
+	 * @param task
+	 * 		the task to execute, not null
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code runnable} is null
+	 * @throws IllegalStateException
+	 * 		if execution has already started in batch mode, or has been finished in continuous
+	 * 		mode
+	 * @throws RejectedExecutionException
+	 * 		if the queue is full and the overflow policy is {@link OverflowPolicy#FAIL_FAST} (or
+	 * 		{@link OverflowPolicy#CALLER_RUNS} before execution starts), or if the thread is
+	 * 		interrupted while waiting for space in the queue
+	 */
+	public void addToQueue(Runnable task) {
+		addToQueue(task, 0);
+	}
+	
+	/**
+	 * Adds the supplied task to the execution queue with a priority. The priority is only used
+	 * if priority ordering has been enabled using {@link #enablePriorityOrdering()}, otherwise
+	 * this method is equivalent to {@link #addToQueue(Runnable)}.
+	 *
+	 * @param task
+	 * 		the task to execute, not null
+	 * @param priority
+	 * 		the priority of the task, higher priorities are dispatched first
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code runnable} is null
+	 * @throws IllegalStateException
+	 * 		if execution has already started in batch mode, or has been finished in continuous
+	 * 		mode
+	 * @throws RejectedExecutionException
+	 * 		if the queue is full and the overflow policy is {@link OverflowPolicy#FAIL_FAST} (or
+	 * 		{@link OverflowPolicy#CALLER_RUNS} before execution starts), or if the thread is
+	 * 		interrupted while waiting for space in the queue
+	 */
+	public void addToQueue(Runnable task, long priority) {
+		if (task == null) {
+			throw new IllegalArgumentException("runnable cannot be null");
+		}
+		
+		enqueue(task, priority, null);
+	}
+	
+	/**
+	 * Adds the supplied task to the execution queue with a key. Tasks with equal keys run one at
+	 * a time, in the order they were added, while tasks with different keys run in parallel.
+	 * This gives per-key ordering (for example, all updates to one account are applied in
+	 * order) without serialising the whole queue.
+	 * <p>
+	 * Keys are hashed to a fixed number of serial lanes which share the thread pool, so tasks
+	 * with different keys may occasionally share a lane and run one after another. Use {@link
+	 * #setLaneCount(int)} to reduce such collisions when there are many keys. Tasks are only
+	 * ordered relative to tasks added to the same lane by the same thread, or by threads which
+	 * coordinate with each other. If the queue is full and the overflow policy is {@link
+	 * OverflowPolicy#CALLER_RUNS}, this method blocks instead, since running the task on the
+	 * calling thread could overtake earlier tasks with the same key.
+	 *
+	 * @param key
+	 * 		the key which determines the ordering of the task, not null
+	 * @param task
+	 * 		the task to execute, not null
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code key} or {@code task} is null
+	 * @throws IllegalStateException
+	 * 		if execution has already started in batch mode, or has been finished in continuous
+	 * 		mode
+	 * @throws RejectedExecutionException
+	 * 		if the queue is full and the overflow policy is {@link OverflowPolicy#FAIL_FAST}, or if
+	 * 		the thread is interrupted while waiting for space in the queue
+	 */
+	public void addToQueue(final Object key, final Runnable task) {
+		if (key == null) {
+			throw new IllegalArgumentException("key cannot be null");
+		}
+		
+		if (task == null) {
+			throw new IllegalArgumentException("task cannot be null");
+		}
+		
+		enqueue(task, 0, getLane(key));
+	}
+	
+	/**
+	 * Sets the number of serial lanes used for keyed tasks. Each key is hashed to one lane, so
+	 * more lanes means fewer unrelated keys are serialised together. Lanes are cheap, and are
+	 * only created when the first keyed task is added.
+	 *
+	 * @param laneCount
+	 * 		the number of lanes, greater than zero
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code laneCount} is less than one
+	 * @throws IllegalStateException
+	 * 		if tasks have already been added, or if execution has already started
+	 */
+	public void setLaneCount(final int laneCount) {
+		if (laneCount < 1) {
+			throw new IllegalArgumentException("laneCount must be greater than zero");
+		}
+		
+		checkNotConfigured();
+		
+		this.laneCount = laneCount;
+	}
+	
+	/**
+	 * Adds the supplied task to the execution queue and returns a future for its result. Tasks
+	 * cannot be added to the queue if execution has already started. The returned future
+	 * completes when the task finishes, and can be used to start dependent work without waiting
+	 * for the rest of the tasks.
+	 *
+	 * @param task
+	 * 		the task to execute, not null
+	 * @param <V>
+	 * 		the type of result produced by the task
+	 *
+	 * @return a future for the result of the task
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code task} is null
+	 * @throws IllegalStateException
+	 * 		if execution has already started
+	 */
+	public <V> CallbackFuture<V> submit(final Callable<V> task) {
+		return submit(task, 0);
+	}
+	
+	/**
+	 * Adds the supplied task to the execution queue with a priority, and returns a future for
+	 * its result. The priority is only used if priority ordering has been enabled using {@link
+	 * #enablePriorityOrdering()}, otherwise this method is equivalent to {@link
+	 * #submit(Callable)}.
+	 *
+	 * @param task
+	 * 		the task to execute, not null
+	 * @param priority
+	 * 		the priority of the task, higher priorities are dispatched first
+	 * @param <V>
+	 * 		the type of result produced by the task
+	 *
+	 * @return a future for the result of the task
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code task} is null
+	 * @throws IllegalStateException
+	 * 		if execution has already started
+	 */
+	public <V> CallbackFuture<V> submit(final Callable<V> task, final long priority) {
+		if (task == null) {
+			throw new IllegalArgumentException("task cannot be null");
+		}
+		
+		final CallbackFuture<V> future = new CallbackFuture<>(task);
+		addToQueue(future, priority);
+		
+		return future;
+	}
+	
+	/**
+	 * Spawns a subtask from within a running task. The subtask belongs to the same batch (or
+	 * epoch) as the task which spawned it, so the callbacks are only delivered once the whole
+	 * tree of tasks has finished. Subtasks can be spawned even after execution has started in
+	 * batch mode, and subtasks can spawn further subtasks. This allows tasks to split themselves
+	 * into smaller pieces, for example to process each subdirectory of a directory separately.
+	 * <p>
+	 * Subtasks are passed directly to the executor service and do not count towards the queue
+	 * or in-flight limits, since the spawning task would otherwise deadlock waiting for space.
+	 * With a work-stealing pool (see {@link #usingWorkStealingPool()}), subtasks are pushed onto
+	 * the queue of the spawning thread, and idle threads steal them.
+	 *
+	 * @param subtask
+	 * 		the subtask to execute, not null
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code subtask} is null
+	 * @throws IllegalStateException
+	 * 		if the calling thread is not running a task of this CallbackExecutor
+	 */
+	public void spawn(final Runnable subtask) {
+		if (subtask == null) {
+			throw new IllegalArgumentException("subtask cannot be null");
+		}
+		
+		final QueuedTask parent = CURRENT_TASK.get();
+		
+		if (parent == null || parent.getCallbackExecutor() != this) {
+			throw new IllegalStateException(
+					"subtasks can only be spawned by tasks running on this executor");
+		}
+		
+		// The parent is still pending, so the epoch cannot complete before the child is counted
+		parent.epoch.taskCounter.acquireChild();
+		
+		final QueuedTask child = new QueuedTask(subtask, parent.epoch, parent.priority);
+		
+		if (ForkJoinTask.getPool() == executorService) {
+			// Push onto the local queue of this worker so that other workers can steal it
+			ForkJoinTask.adapt(child).fork();
+		} else {
+			try {
+				executorService.execute(child);
+			} catch (final RejectedExecutionException e) {
+				child.rejection = e;
+				rejectedTasks.add(child);
+				reportRejectedTasks();
+			}
+		}
+	}
+	
+	/**
+	 * Returns a future which completes when all queued tasks finish executing, immediately after
+	 * the OnExecutionCompleteListeners are notified. The future has no result, and cancelling it
+	 * does not affect the tasks.
+	 *
+	 * @return the future for the batch, not null
+	 */
+	public CallbackFuture<Void> getBatchFuture() {
+		return batchFuture;
+	}
+	
+	/**
+	 * Starts executing the queued tasks. Tasks are retrieved from the queue and started on a FIFO
+	 * basis, unless priority ordering is enabled. Note that no new tasks may be added to the queue
+	 * once this method is called. If no tasks were queued, then callbacks are delivered
+	 * immediately.
+	 *
+	 * @throws IllegalStateException
+	 * 		if execution has already started
+	 */
+	public void execute() {
+		if (!executionState.compareAndSet(NOT_STARTED, BATCH)) {
+			throw new IllegalStateException("execution has already been started");
+		}
+		
+		executeBatch();
+	}
+	
+	/**
+	 * Closes the first epoch and dispatches all of its tasks. Must only be called once, after
+	 * changing the execution state to {@link #BATCH}.
+	 */
+	private void executeBatch() {
+		// Stop new tasks being added before closing the epoch
+		currentEpoch.set(null);
+		firstEpoch.isFinal = true;
+		
+		startBatchTimeout();
+		startMetrics();
+		
+		// Tasks still being added by other threads are dispatched by those threads
+		dispatchQueuedTasks();
+		closeEpoch(firstEpoch);
+	}
+	
+	/**
+	 * Starts executing the queued tasks in continuous mode. The queued tasks are started
+	 * immediately, and tasks added afterwards are started as soon as they are added. Tasks are
+	 * grouped into epochs: epoch 0 contains the tasks added before {@link #markEpoch()} is first
+	 * called, epoch 1 contains the tasks added before it is called again, and so on. The
+	 * OnEpochCompleteListeners are notified when each epoch completes, in epoch order, and the
+	 * same thread pool is used for all epochs.
+	 * <p>
+	 * Continuous execution continues until {@link #finishContinuousExecution()} is called, after
+	 * which the OnExecutionCompleteListeners are notified once all tasks complete.
+	 *
+	 * @throws IllegalStateException
+	 * 		if execution has already started
+	 */
+	public void executeContinuously() {
+		if (!executionState.compareAndSet(NOT_STARTED, CONTINUOUS)) {
+			throw new IllegalStateException("execution has already been started");
+		}
+		
+		startBatchTimeout();
+		startMetrics();
+		dispatchQueuedTasks();
+	}
+	
+	/**
+	 * Ends the current epoch and starts a new one. Tasks added after this method returns belong
+	 * to the new epoch. The OnEpochCompleteListeners will be notified once all tasks in the ended
+	 * epoch (and all earlier epochs) complete.
+	 *
+	 * @return the number of the epoch which was ended
+	 *
+	 * @throws IllegalStateException
+	 * 		if execution is not running in continuous mode
+	 */
+	public long markEpoch() {
+		checkContinuous();
+		
+		while (true) {
+			final Epoch epoch = currentEpoch.get();
+			
+			if (epoch == null) {
+				throw new IllegalStateException("continuous execution has been finished");
+			}
+			
+			if (currentEpoch.compareAndSet(epoch, new Epoch(epoch.number + 1))) {
+				closeEpoch(epoch);
+				return epoch.number;
+			}
+		}
+	}
+	
+	/**
+	 * Ends the current epoch and stops accepting new tasks. The OnExecutionCompleteListeners
+	 * will be notified, and the batch future will complete, once all tasks complete.
+	 *
+	 * @return the number of the final epoch
+	 *
+	 * @throws IllegalStateException
+	 * 		if execution is not running in continuous mode, or has already been finished
+	 */
+	public long finishContinuousExecution() {
+		checkContinuous();
+		
+		final Epoch epoch = closeFinalEpoch();
+		
+		if (epoch == null) {
+			throw new IllegalStateException("continuous execution has already been finished");
+		}
+		
+		return epoch.number;
+	}
+	
+	/**
+	 * Stops accepting new tasks. Tasks which have already been added are still executed, and
+	 * callbacks are delivered as normal once they finish. If execution has not started, it is
+	 * started in batch mode. If execution is running in continuous mode, it is finished. If the
+	 * CallbackExecutor owns its thread pool, the pool is shut down once all tasks have finished.
+	 * This method has no effect if called more than once.
+	 */
+	public void shutdown() {
+		if (executionState.compareAndSet(NOT_STARTED, BATCH)) {
+			executeBatch();
+		} else if (executionState.get() == CONTINUOUS) {
+			closeFinalEpoch();
+		}
+	}
+	
+	/**
+	 * @return true if no more tasks can be added to this CallbackExecutor, false otherwise
+	 */
+	public boolean isShutdown() {
+		return currentEpoch.get() == null;
+	}
+	
+	/**
+	 * @return true if all tasks have finished and all callbacks have been delivered, false
+	 * otherwise
+	 */
+	public boolean isTerminated() {
+		return terminationLatch.getCount() == 0;
+	}
+	
+	/**
+	 * Blocks until all tasks have finished and all callbacks have been delivered, or until the
+	 * timeout elapses. If the CallbackExecutor owns its thread pool, this method also waits for
+	 * the pool to terminate. This method does not initiate a shutdown.
+	 *
+	 * @param timeout
+	 * 		the maximum time to wait
+	 * @param unit
+	 * 		the unit of {@code timeout}, not null
+	 *
+	 * @return true if this CallbackExecutor terminated, false if the timeout elapsed first
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code unit} is null
+	 * @throws InterruptedException
+	 * 		if the current thread is interrupted while waiting
+	 */
+	public boolean awaitTermination(final long timeout, final TimeUnit unit)
+			throws InterruptedException {
+		if (unit == null) {
+			throw new IllegalArgumentException("unit cannot be null");
+		}
+		
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		
+		if (!terminationLatch.await(timeout, unit)) {
+			return false;
+		}
+		
+		return !ownsExecutorService ||
+				executorService.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+	}
+	
+	/**
+	 * Shuts down this CallbackExecutor and waits for it to terminate. See {@link #shutdown()}
+	 * and {@link #awaitTermination(long, TimeUnit)}. If the current thread is interrupted while
+	 * waiting, it continues to wait and the interrupt status is restored before returning.
+	 */
+	@Override
+	public void close() {
+		shutdown();
+		
+		boolean interrupted = false;
+		
+		while (!isTerminated() || (ownsExecutorService && !executorService.isTerminated())) {
+			try {
+				awaitTermination(1, TimeUnit.DAYS);
+			} catch (final InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Enables metrics, so that the progress of the tasks can be monitored with {@link
+	 * #getMetrics()}. The counters and histograms are striped across threads and are updated
+	 * without locking, so the overhead is small enough for metrics to stay enabled in production.
+	 *
+	 * @throws IllegalStateException
+	 * 		if tasks have already been added, or if execution has already started
+	 */
+	public void enableMetrics() {
+		checkNotConfigured();
+		
+		if (metrics == null) {
+			metrics = new Metrics();
+		}
+	}
+	
+	/**
+	 * Takes a snapshot of the metrics. Metrics can be read at any time, including while tasks are
+	 * running and after execution completes.
+	 *
+	 * @return the current metrics, not null
+	 *
+	 * @throws IllegalStateException
+	 * 		if metrics have not been enabled
+	 */
+	public ExecutorMetrics getMetrics() {
+		final Metrics currentMetrics = metrics;
+		
+		if (currentMetrics == null) {
+			throw new IllegalStateException("metrics have not been enabled");
+		}
+		
+		return currentMetrics.snapshot();
+	}
+	
+	/**
+	 * Delivers progress callbacks to the registered OnProgressListeners at a fixed interval
+	 * while execution is in progress. Metrics are enabled if they are not already enabled. The
+	 * callbacks are delivered on the callback executor if one has been set, otherwise they are
+	 * delivered on a shared timer thread (or on a thread which is already delivering epoch
+	 * callbacks) and listeners must return quickly. Progress callbacks are delivered one at a
+	 * time, and never at the same time as the epoch and execution callbacks. Exceptions thrown
+	 * by listeners are passed to the uncaught exception handler of the delivering thread, and do
+	 * not stop further callbacks.
+	 *
+	 * @param interval
+	 * 		the interval between progress callbacks, greater than zero
+	 * @param unit
+	 * 		the unit of {@code interval}, not null
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code interval} is not greater than zero, or if {@code unit} is null
+	 * @throws IllegalStateException
+	 * 		if tasks have already been added, or if execution has already started
+	 */
+	public void setProgressInterval(final long interval, final TimeUnit unit) {
+		if (interval <= 0) {
+			throw new IllegalArgumentException("interval must be greater than zero");
+		}
+		
+		if (unit == null) {
+			throw new IllegalArgumentException("unit cannot be null");
+		}
+		
+		enableMetrics();
+		progressIntervalNanos = unit.toNanos(interval);
+	}
+	
+	/**
+	 * Registers an OnProgressListener. The listener will receive callbacks at the interval set
+	 * by {@link #setProgressInterval(long, TimeUnit)}. This method has no effect if the supplied
+	 * listener is null or is already registered.
+	 *
+	 * @param listener
+	 * 		the listener to register
+	 */
+	public void registerOnProgressListener(final OnProgressListener listener) {
+		if (listener != null) {
+			onProgressListeners.add(listener);
+		}
+	}
+	
+	/**
+	 * Unregisters an OnProgressListener. The listener will not receive progress callbacks. This
+	 * method has no effect if the supplied listener is null or is not currently registered.
+	 *
+	 * @param listener
+	 * 		the listener to unregister
+	 */
+	public void unregisterOnProgressListener(final OnProgressListener listener) {
+		if (listener != null) {
+			onProgressListeners.remove(listener);
+		}
+	}
+	
+	/**
+	 * Sets the executor to deliver the epoch and execution callbacks on. By default the callbacks
+	 * are delivered on the thread which completed the last task, so slow listeners hold a thread
+	 * which could otherwise be running tasks. With a callback executor, completion notification
+	 * never takes threads away from the pool. Callbacks are still delivered one at a time and in
+	 * epoch order, even if the callback executor has many threads. If the callback executor
+	 * rejects the callbacks, they are delivered on the thread which completed the last task.
+	 * Either way, exceptions thrown by the listeners are passed to the uncaught exception
+	 * handler of the delivering thread, and do not stop the remaining callbacks.
+	 * <p>
+	 * The OnTaskCompleteListeners are always notified on the thread which ran the task.
+	 *
+	 * @param callbackExecutor
+	 * 		the executor to deliver callbacks on, or null to deliver them on the pool threads
+	 *
+	 * @throws IllegalStateException
+	 * 		if execution has already started
+	 */
+	public void setCallbackExecutor(final Executor callbackExecutor) {
+		if (executionState.get() != NOT_STARTED) {
+			throw new IllegalStateException(
+					"the callback executor cannot be changed after execution starts");
+		}
+		
+		this.callbackExecutor = callbackExecutor;
+	}
+	
+	/**
+	 * Registers an OnExecutionCompleteListener. The listener will receive callbacks when all
+	 * queued tasks finish executing. This method has no effect the supplied listener is null or
+	 * is already registered.
+	 *
+	 * @param listener
+	 * 		the listener to register
+	 */
+	public void registerOnExecutionCompleteListener(
+			OnExecutionCompleteListener listener) {
+		if (listener != null) {
+			onExecutionCompleteListeners.add(listener);
+		}
+	}
+	
+	/**
+	 * Unregisters an OnExecutionCompleteListener. The listener will not receive callbacks when
+	 * all queued tasks finish executing. This method has no effect the supplied listener is
+	 * null or
+	 * is not currently registered.
+	 *
+	 * @param listener
+	 * 		the listener to unregister
+	 */
+	public void unregisterOnExeutionCompleteListener(
+			OnExecutionCompleteListener listener) {
+		if (listener != null) {
+			onExecutionCompleteListeners.remove(listener);
+		}
+	}
+	
+	/**
+	 * Sets whether or not execution is cancelled when a task fails. See {@link #cancel()}.
+	 * Disabled by default, in which case failed tasks are reported and the remaining tasks
+	 * continue to execute.
+	 *
+	 * @param cancelOnFailure
+	 * 		true to cancel execution when a task fails, false otherwise
+	 */
+	public void setCancelOnFailure(final boolean cancelOnFailure) {
+		this.cancelOnFailure = cancelOnFailure;
+	}
+	
+	/**
+	 * Cancels execution. Tasks which have not started are skipped, and the threads running
+	 * tasks are interrupted, so that the threads are released as soon as possible. This includes
+	 * tasks which are added later in continuous mode. Cancelled tasks are reported to the
+	 * OnTaskCompleteListeners with the {@link TaskOutcome.Status#CANCELLED} status, and the
+	 * futures of cancelled Callables are cancelled, whether or not they had started running.
+	 * Callbacks are still delivered once all tasks have finished or been skipped. This method
+	 * has no effect if execution is already cancelled.
+	 * <p>
+	 * Running tasks are not interrupted if interrupting has been disabled using {@link
+	 * #setInterruptOnCancel(boolean)}.
+	 */
+	public void cancel() {
+		cancel(TaskOutcome.Status.CANCELLED);
+	}
+	
+	/**
+	 * Sets whether or not the threads running tasks are interrupted when execution is cancelled,
+	 * either by {@link #cancel()} or because the batch timeout expired. Enabled by default. When
+	 * disabled, the tasks which have already started are allowed to finish and are reported
+	 * normally, and the executor does not need to keep track of the running tasks, which
+	 * reduces the cost of each task. Tasks which have not started are still skipped, and the
+	 * task timeout still interrupts tasks which run for too long.
+	 *
+	 * @param interruptOnCancel
+	 * 		true to interrupt running tasks when execution is cancelled, false otherwise
+	 *
+	 * @throws IllegalStateException
+	 * 		if execution has already started
+	 */
+	public void setInterruptOnCancel(final boolean interruptOnCancel) {
+		if (executionState.get() != NOT_STARTED) {
+			throw new IllegalStateException(
+					"interrupting cannot be changed after execution starts");
+		}
+		
+		this.interruptOnCancel = interruptOnCancel;
+	}
+	
+	/**
+	 * @return true if execution has been cancelled, either explicitly or because the batch
+	 * timeout expired, false otherwise
+	 */
+	public boolean isCancelled() {
+		return cancellationReason.get() != null;
+	}
+	
+	/**
+	 * Limits how long each task can run for. Tasks which run for longer are interrupted, and are
+	 * reported with the {@link TaskOutcome.Status#TIMED_OUT} status. The limit applies from the
+	 * time the task starts running, so time spent in the queue is not included. Tasks which do
+	 * not respond to interruption will continue to run, but are still reported as timed out. The
+	 * futures of timed out Callables are cancelled, so they never complete with the resulting
+	 * InterruptedException. By default there is no limit.
+	 *
+	 * @param timeout
+	 * 		the maximum time each task can run for, greater than zero
+	 * @param unit
+	 * 		the unit of {@code timeout}, not null
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code timeout} is not greater than zero, or if {@code unit} is null
+	 * @throws IllegalStateException
+	 * 		if execution has already started
+	 */
+	public void setTaskTimeout(final long timeout, final TimeUnit unit) {
+		taskTimeoutNanos = toTimeoutNanos(timeout, unit);
+	}
+	
+	/**
+	 * Limits how long execution can run for, measured from the time {@link #execute()} or
+	 * {@link #executeContinuously()} is called. When the limit expires, execution is cancelled
+	 * as if by {@link #cancel()}, except that the skipped and interrupted tasks are reported with
+	 * the {@link TaskOutcome.Status#TIMED_OUT} status. By default there is no limit.
+	 *
+	 * @param timeout
+	 * 		the maximum time execution can run for, greater than zero
+	 * @param unit
+	 * 		the unit of {@code timeout}, not null
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code timeout} is not greater than zero, or if {@code unit} is null
+	 * @throws IllegalStateException
+	 * 		if execution has already started
+	 */
+	public void setBatchTimeout(final long timeout, final TimeUnit unit) {
+		batchTimeoutNanos = toTimeoutNanos(timeout, unit);
+	}
+	
+	/**
+	 * Returns the tasks which were interrupted or skipped because a timeout expired. This is
+	 * typically called from {@link OnExecutionCompleteListener#onExecutionComplete
+	 * (CallbackExecutor)} to find out which tasks did not finish in time.
+	 *
+	 * @return the timed out tasks, not null, may be empty
+	 */
+	public List<Runnable> getTimedOutTasks() {
+		return Collections.unmodifiableList(new ArrayList<>(timedOutTasks));
+	}
+	
+	/**
+	 * Registers an OnTaskCompleteListener. The listener will receive a callback when each task
+	 * finishes, including tasks which fail or are cancelled. Callbacks are delivered on the
+	 * thread which ran the task. This method has no effect if the supplied listener is null or is
+	 * already registered.
+	 *
+	 * @param listener
+	 * 		the listener to register
+	 */
+	public void registerOnTaskCompleteListener(final OnTaskCompleteListener listener) {
+		if (listener != null) {
+			onTaskCompleteListeners.add(listener);
+		}
+	}
+	
+	/**
+	 * Unregisters an OnTaskCompleteListener. The listener will not receive callbacks when tasks
+	 * finish. This method has no effect if the supplied listener is null or is not currently
+	 * registered.
+	 *
+	 * @param listener
+	 * 		the listener to unregister
+	 */
+	public void unregisterOnTaskCompleteListener(final OnTaskCompleteListener listener) {
+		if (listener != null) {
+			onTaskCompleteListeners.remove(listener);
+		}
+	}
+	
+	/**
+	 * Registers an OnEpochCompleteListener. The listener will receive a callback when each epoch
+	 * completes. In batch mode, the whole batch is epoch 0. This method has no effect if the
+	 * supplied listener is null or is already registered.
+	 *
+	 * @param listener
+	 * 		the listener to register
+	 */
+	public void registerOnEpochCompleteListener(final OnEpochCompleteListener listener) {
+		if (listener != null) {
+			onEpochCompleteListeners.add(listener);
+		}
+	}
+	
+	/**
+	 * Unregisters an OnEpochCompleteListener. The listener will not receive callbacks when
+	 * epochs complete. This method has no effect if the supplied listener is null or is not
+	 * currently registered.
+	 *
+	 * @param listener
+	 * 		the listener to unregister
+	 */
+	public void unregisterOnEpochCompleteListener(final OnEpochCompleteListener listener) {
+		if (listener != null) {
+			onEpochCompleteListeners.remove(listener);
+		}
+	}
+	
+	/**
+	 * Adds the task to the current epoch, retrying if the epoch is closed concurrently.
+	 *
+	 * @return the epoch the task was added to, not null
+	 *
+	 * @throws IllegalStateException
+	 * 		if no more tasks can be added
+	 */
+	private Epoch acquireEpoch() {
+		return acquireEpoch(1);
+	}
+	
+	/**
+	 * Adds a number of tasks to the current epoch, retrying if the epoch is closed concurrently.
+	 *
+	 * @param count
+	 * 		the number of tasks to add, greater than zero
+	 *
+	 * @return the epoch the tasks were added to, not null
+	 *
+	 * @throws IllegalStateException
+	 * 		if no more tasks can be added
+	 */
+	private Epoch acquireEpoch(final long count) {
+		while (true) {
+			final Epoch epoch = currentEpoch.get();
+			
+			if (epoch == null) {
+				throw new IllegalStateException("execution has already been started");
+			}
+			
+			if (epoch.taskCounter.tryAcquire(count)) {
+				return epoch;
+			}
+		}
+	}
+	
+	/**
+	 * Adds a task to the queue, or to its lane if it has one.
+	 *
+	 * @param task
+	 * 		the task to execute, not null
+	 * @param priority
+	 * 		the priority of the task
+	 * @param lane
+	 * 		the lane to run the task in, or null if the task is not keyed
+	 */
+	private void enqueue(final Runnable task, final long priority, final Lane lane) {
+		final Semaphore slots = queueSlots;
+		
+		if (slots != null && !acquireQueueSlot(slots, lane == null ? overflowPolicy :
+				OverflowPolicy.BLOCK)) {
+			// Caller runs policy
+			new QueuedTask(task, acquireEpoch(), priority, null).run();
+			return;
+		}
+		
+		final Epoch epoch;
+		
+		try {
+			epoch = acquireEpoch();
+		} catch (final IllegalStateException e) {
+			if (slots != null) {
+				slots.release();
+			}
+			
+			throw e;
+		}
+		
+		final QueuedTask queuedTask = new QueuedTask(task, epoch, priority, lane);
+		
+		if (lane != null) {
+			lane.add(queuedTask);
+			return;
+		}
+		
+		tasks.add(queuedTask);
+		
+		// Execution may have started after the task was acquired, so check after queueing
+		if (executionState.get() != NOT_STARTED) {
+			dispatchQueuedTasks();
+		}
+	}
+	
+	/**
+	 * Finds the lane for a key, creating the lanes if necessary.
+	 *
+	 * @param key
+	 * 		the key, not null
+	 *
+	 * @return the lane, not null
+	 */
+	private Lane getLane(final Object key) {
+		Lane[] currentLanes = lanes;
+		
+		if (currentLanes == null) {
+			synchronized (laneLock) {
+				if (lanes == null) {
+					final Lane[] newLanes = new Lane[laneCount];
+					
+					for (int i = 0; i < newLanes.length; i++) {
+						newLanes[i] = new Lane();
+					}
+					
+					lanes = newLanes;
+				}
+				
+				currentLanes = lanes;
+			}
+		}
+		
+		// Spread the high bits, since many hash codes only vary in the high bits
+		final int hash = key.hashCode();
+		final int spreadHash = (hash ^ (hash >>> 16)) & Integer.MAX_VALUE;
+		
+		return currentLanes[spreadHash % currentLanes.length];
+	}
+	
+	/**
+	 * Reserves a place in the queue, applying the overflow policy if the queue is full.
+	 *
+	 * @param slots
+	 * 		the semaphore which limits the queue size, not null
+	 * @param policy
+	 * 		the overflow policy to apply, not null
+	 *
+	 * @return true if a place was reserved, false if the task should be run on the calling
+	 * thread instead
+	 *
+	 * @throws RejectedExecutionException
+	 * 		if the task is rejected by the overflow policy, or if the thread is interrupted while
+	 * 		waiting
+	 */
+	private boolean acquireQueueSlot(final Semaphore slots, final OverflowPolicy policy) {
+		if (slots.tryAcquire()) {
+			return true;
+		}
+		
+		switch (policy) {
+			case BLOCK:
+				try {
+					slots.acquire();
+					return true;
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RejectedExecutionException(
+							"interrupted while waiting for space in the queue");
+				}
+			case CALLER_RUNS:
+				// Running the task now would break the guarantee that nothing runs early
+				if (executionState.get() == NOT_STARTED) {
+					throw new RejectedExecutionException(
+							"the queue is full and execution has not started");
+				}
+				
+				return false;
+			default:
+				throw new RejectedExecutionException("the queue is full");
+		}
+	}
+	
+	/**
+	 * Passes queued tasks to the executor service until either the queue is empty or the
+	 * in-flight limit is reached. Safe to call from multiple threads since each task can only be
+	 * removed from the queue once. Must only be called after execution has started.
+	 * <p>
+	 * Tasks which the executor service rejects (for example because a shared pool is full or is
+	 * shutting down) do not count towards the in-flight limit, and are reported as failed with
+	 * the RejectedExecutionException, so the epoch they belong to can still complete.
+	 */
+	private void dispatchQueuedTasks() {
+		try {
+			passQueuedTasksToExecutorService();
+		} finally {
+			reportRejectedTasks();
+		}
+	}
+	
+	/**
+	 * Does the work of {@link #dispatchQueuedTasks()}, except that rejected tasks are only added
+	 * to {@link #rejectedTasks}.
+	 */
+	private void passQueuedTasksToExecutorService() {
+		while (true) {
+			final int inFlight = inFlightTaskCount.get();
+			
+			if (inFlight >= maxInFlightTasks) {
+				// Tasks which finish later will dispatch the remaining tasks
+				return;
+			}
+			
+			if (!inFlightTaskCount.compareAndSet(inFlight, inFlight + 1)) {
+				continue;
+			}
+			
+			// Skipped tasks don't touch the downstream resource, so don't delay cancellation
+			final RateLimiter limiter = cancellationReason.get() == null ? rateLimiter : null;
+			
+			if (limiter != null) {
+				final long delay = limiter.tryAcquire();
+				
+				if (delay > 0) {
+					inFlightTaskCount.decrementAndGet();
+					scheduleDispatch(delay);
+					return;
+				}
+			}
+			
+			final QueuedTask task = tasks.poll();
+			
+			if (task == null) {
+				inFlightTaskCount.decrementAndGet();
+				
+				if (limiter != null) {
+					limiter.refund();
+				}
+				
+				// Another thread may have seen the reserved slot and left a task for this thread
+				if (tasks.isEmpty()) {
+					return;
+				} else {
+					continue;
+				}
+			}
+			
+			final int maxChunkSize = chunkSize;
+			
+			if (maxChunkSize == 1) {
+				releaseQueueSlots(1);
+				task.isInFlight = true;
+				
+				try {
+					executorService.execute(task);
+				} catch (final RejectedExecutionException e) {
+					inFlightTaskCount.decrementAndGet();
+					task.isInFlight = false;
+					task.rejection = e;
+					rejectedTasks.add(task);
+				}
+			} else {
+				final QueuedTask[] chunk = new QueuedTask[maxChunkSize];
+				chunk[0] = task;
+				int size = 1;
+				QueuedTask next;
+				
+				while (size < maxChunkSize && (limiter == null || limiter.tryAcquire() == 0)) {
+					next = tasks.poll();
+					
+					if (next == null) {
+						if (limiter != null) {
+							limiter.refund();
+						}
+						
+						break;
+					}
+					
+					chunk[size++] = next;
+				}
+				
+				releaseQueueSlots(size);
+				
+				try {
+					executorService.execute(new Chunk(chunk, size));
+				} catch (final RejectedExecutionException e) {
+					inFlightTaskCount.decrementAndGet();
+					
+					for (int i = 0; i < size; i++) {
+						chunk[i].rejection = e;
+						rejectedTasks.add(chunk[i]);
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Reports the tasks which were rejected by the executor service, unless another thread is
+	 * already reporting them. Reporting a task releases its lane, which may dispatch and reject
+	 * more tasks, so those are left for the loop rather than reported recursively.
+	 */
+	private void reportRejectedTasks() {
+		// Check again after releasing, in case a task was added after the last poll
+		while (!rejectedTasks.isEmpty() && isReportingRejectedTasks.compareAndSet(false, true)) {
+			try {
+				QueuedTask task;
+				
+				while ((task = rejectedTasks.poll()) != null) {
+					task.runRejected();
+				}
+			} finally {
+				isReportingRejectedTasks.set(false);
+			}
+		}
+	}
+	
+	/**
+	 * Schedules a dispatch on the shared timer, unless one is already scheduled. The scheduled
+	 * dispatch reschedules itself if the rate limit still does not allow a task.
+	 *
+	 * @param delayNanos
+	 * 		the time until the rate limit next allows a task, measured in nanoseconds
+	 */
+	private void scheduleDispatch(final long delayNanos) {
+		if (isDispatchScheduled.compareAndSet(false, true)) {
+			TimeoutScheduler.INSTANCE.schedule(scheduledDispatch, delayNanos, TimeUnit.NANOSECONDS);
+		}
+	}
+	
+	/**
+	 * Releases places in the queue, if the queue size is limited.
+	 *
+	 * @param count
+	 * 		the number of places to release
+	 */
+	private void releaseQueueSlots(final int count) {
+		final Semaphore slots = queueSlots;
+		
+		if (slots != null) {
+			slots.release(count);
+		}
+	}
+	
+	/**
+	 * Checks that the limits can still be configured.
+	 *
+	 * @throws IllegalStateException
+	 * 		if tasks have already been added, or if execution has already started
+	 */
+	private void checkNotConfigured() {
+		if (executionState.get() != NOT_STARTED || firstEpoch.taskCounter.getPendingCount() != 0) {
+			throw new IllegalStateException(
+					"limits cannot be changed after tasks are added or execution starts");
+		}
+	}
+	
+	/**
+	 * @return the {@code Executors.newVirtualThreadPerTaskExecutor()} method, or null if it does
+	 * not exist in the current runtime
+	 */
+	private static Method findVirtualThreadExecutorFactory() {
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (final NoSuchMethodException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * @return a new virtual thread per task executor, or null if one cannot be created in the
+	 * current runtime
+	 */
+	private static ExecutorService newVirtualThreadPerTaskExecutor() {
+		if (VIRTUAL_THREAD_EXECUTOR_FACTORY == null) {
+			return null;
+		}
+		
+		try {
+			return (ExecutorService) VIRTUAL_THREAD_EXECUTOR_FACTORY.invoke(null);
+		} catch (final ReflectiveOperationException | RuntimeException e) {
+			// For example, virtual threads are a disabled preview feature
+			return null;
+		}
+	}
+	
+	/**
+	 * Stops new tasks being added and closes the current epoch as the final epoch.
+	 *
+	 * @return the final epoch, or null if no more tasks could be added already
+	 */
+	private Epoch closeFinalEpoch() {
+		final Epoch epoch = currentEpoch.getAndSet(null);
+		
+		if (epoch != null) {
+			epoch.isFinal = true;
+			closeEpoch(epoch);
+		}
+		
+		return epoch;
+	}
+	
+	/**
+	 * Closes an epoch so that no more tasks can be added to it.
+	 *
+	 * @param epoch
+	 * 		the epoch to close, not null
+	 */
+	private void closeEpoch(final Epoch epoch) {
+		if (epoch.taskCounter.close() == 0) {
+			onEpochComplete(epoch);
+		}
+	}
+	
+	/**
+	 * Called exactly once for each epoch, when the epoch is closed and all of its tasks have
+	 * completed. Delivers the callbacks for all epochs which are ready, in epoch order.
+	 *
+	 * @param epoch
+	 * 		the epoch which completed, not null
+	 */
+	private void onEpochComplete(final Epoch epoch) {
+		completedEpochs.put(epoch.number, epoch);
+		
+		// Only queue the epochs under the lock, so that a slow listener never blocks other threads
+		synchronized (epochLock) {
+			Epoch next;
+			
+			while ((next = completedEpochs.remove(nextEpochToDeliver)) != null) {
+				nextEpochToDeliver++;
+				
+				final Epoch epochToDeliver = next;
+				
+				pendingDeliveries.add(new Runnable() {
+					@Override
+					public void run() {
+						deliverEpoch(epochToDeliver);
+					}
+				});
+			}
+		}
+		
+		deliverPending();
+	}
+	
+	/**
+	 * Delivers the pending callbacks, on the callback executor if there is one or on the
+	 * calling thread otherwise. If another thread is already delivering callbacks, the pending
+	 * callbacks are left for that thread to deliver so that they stay in order.
+	 */
+	private void deliverPending() {
+		if (callbackExecutor != null) {
+			if (!pendingDeliveries.isEmpty()) {
+				scheduleDeliveryDrain();
+			}
+			
+			return;
+		}
+		
+		// Check again after releasing, in case a delivery was added after the last poll
+		while (!pendingDeliveries.isEmpty() && isDeliveryScheduled.compareAndSet(false, true)) {
+			try {
+				runPendingDeliveries();
+			} finally {
+				isDeliveryScheduled.set(false);
+			}
+		}
+	}
+	
+	/**
+	 * Runs the pending deliveries until there are none left. Must only be called by the thread
+	 * which set {@link #isDeliveryScheduled}.
+	 */
+	private void runPendingDeliveries() {
+		Runnable delivery;
+		
+		while ((delivery = pendingDeliveries.poll()) != null) {
+			delivery.run();
+		}
+	}
+	
+	/**
+	 * Delivers the callbacks for a completed epoch, and for the whole execution if the epoch is
+	 * the final epoch.
+	 *
+	 * @param epoch
+	 * 		the epoch which completed, not null
+	 */
+	private void deliverEpoch(final Epoch epoch) {
+		if (epoch.isFinal) {
+			try {
+				deliverEpochCallbacks(epoch.number);
+				deliverCallbacks();
+			} finally {
+				terminate();
+			}
+		} else {
+			deliverEpochCallbacks(epoch.number);
+		}
+	}
+	
+	/**
+	 * Schedules the pending deliveries to run on the callback executor, unless they are already
+	 * scheduled. If the callback executor rejects the deliveries, they are run on the calling
+	 * thread instead so that the callbacks are never lost.
+	 */
+	private void scheduleDeliveryDrain() {
+		if (isDeliveryScheduled.compareAndSet(false, true)) {
+			try {
+				callbackExecutor.execute(deliveryDrain);
+			} catch (final RejectedExecutionException e) {
+				deliveryDrain.run();
+			}
+		}
+	}
+	
+	/**
+	 * Delivers callbacks to the registered OnEpochCompleteListeners.
+	 *
+	 * @param epochNumber
+	 * 		the number of the epoch which completed
+	 */
+	private void deliverEpochCallbacks(final long epochNumber) {
+		for (final OnEpochCompleteListener listener : onEpochCompleteListeners) {
+			try {
+				listener.onEpochComplete(this, epochNumber);
+			} catch (final RuntimeException e) {
+				reportListenerFailure(e);
+			}
+		}
+	}
+	
+	/**
+	 * Reports an exception thrown by a listener to the uncaught exception handler of the
+	 * current thread, so that one faulty listener cannot stop the remaining callbacks from
+	 * being delivered.
+	 *
+	 * @param failure
+	 * 		the exception thrown by the listener, not null
+	 */
+	private static void reportListenerFailure(final RuntimeException failure) {
+		final Thread thread = Thread.currentThread();
+		thread.getUncaughtExceptionHandler().uncaughtException(thread, failure);
+	}
+	
+	/**
+	 * Cancels execution, reporting the skipped and interrupted tasks with the supplied status.
+	 * Only the first cancellation has any effect.
+	 *
+	 * @param reason
+	 * 		the status to report for the cancelled tasks, not null
+	 */
+	private void cancel(final TaskOutcome.Status reason) {
+		if (!cancellationReason.compareAndSet(null, reason)) {
+			return;
+		}
+		
+		for (final Interruptible task : runningTasks) {
+			task.interrupt(reason);
+		}
+		
+		// Skip the queued tasks now, rather than when a rate limited dispatch is next due
+		if (executionState.get() != NOT_STARTED) {
+			dispatchQueuedTasks();
+		}
+	}
+	
+	/**
+	 * Converts a timeout to nanoseconds, checking that the timeout can still be set.
+	 *
+	 * @param timeout
+	 * 		the timeout, greater than zero
+	 * @param unit
+	 * 		the unit of {@code timeout}, not null
+	 *
+	 * @return the timeout in nanoseconds
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code timeout} is not greater than zero, or if {@code unit} is null
+	 * @throws IllegalStateException
+	 * 		if execution has already started
+	 */
+	private long toTimeoutNanos(final long timeout, final TimeUnit unit) {
+		if (timeout <= 0) {
+			throw new IllegalArgumentException("timeout must be greater than zero");
+		}
+		
+		if (unit == null) {
+			throw new IllegalArgumentException("unit cannot be null");
+		}
+		
+		if (executionState.get() != NOT_STARTED) {
+			throw new IllegalStateException("timeouts cannot be changed after execution starts");
+		}
+		
+		return unit.toNanos(timeout);
+	}
+	
+	/**
+	 * Schedules the batch timeout, if there is one. Must be called when execution starts.
+	 */
+	private void startBatchTimeout() {
+		if (batchTimeoutNanos > 0) {
+			batchTimeoutFuture = TimeoutScheduler.INSTANCE.schedule(new Runnable() {
+				@Override
+				public void run() {
+					cancel(TaskOutcome.Status.TIMED_OUT);
+				}
+			}, batchTimeoutNanos, TimeUnit.NANOSECONDS);
+		}
+	}
+	
+	/**
+	 * Starts the metrics clock and schedules the progress callbacks, if metrics are enabled.
+	 * Must be called when execution starts.
+	 */
+	private void startMetrics() {
+		final Metrics currentMetrics = metrics;
+		
+		if (currentMetrics == null) {
+			return;
+		}
+		
+		currentMetrics.startTime = System.nanoTime();
+		
+		if (progressIntervalNanos > 0) {
+			progressFuture = TimeoutScheduler.INSTANCE.scheduleAtFixedRate(new Runnable() {
+				@Override
+				public void run() {
+					reportProgress();
+				}
+			}, progressIntervalNanos, progressIntervalNanos, TimeUnit.NANOSECONDS);
+		}
+	}
+	
+	/**
+	 * Delivers a progress callback to the registered OnProgressListeners. The callback is
+	 * delivered in the same way as the epoch callbacks, so the listeners are never called at
+	 * the same time as each other or as the epoch and execution listeners.
+	 */
+	private void reportProgress() {
+		pendingDeliveries.add(new Runnable() {
+			@Override
+			public void run() {
+				final ExecutorMetrics snapshot = getMetrics();
+				
+				for (final OnProgressListener listener : onProgressListeners) {
+					try {
+						listener.onProgress(CallbackExecutor.this, snapshot);
+					} catch (final RuntimeException e) {
+						reportListenerFailure(e);
+					}
+				}
+			}
+		});
+		
+		deliverPending();
+	}
+	
+	/**
+	 * Returns whether or not the start and finish times of tasks are needed, either for the
+	 * metrics or for the outcomes delivered to the OnTaskCompleteListeners.
+	 *
+	 * @param currentMetrics
+	 * 		the current metrics, null if metrics are disabled
+	 *
+	 * @return true if the times are needed, false otherwise
+	 */
+	private boolean isTimed(final Metrics currentMetrics) {
+		return currentMetrics != null || !onTaskCompleteListeners.isEmpty();
+	}
+	
+	/**
+	 * Delivers callbacks to the registered OnTaskCompleteListeners.
+	 *
+	 * @param outcome
+	 * 		the outcome of the task, not null
+	 */
+	private void deliverTaskCallbacks(final TaskOutcome outcome) {
+		for (final OnTaskCompleteListener listener : onTaskCompleteListeners) {
+			listener.onTaskComplete(this, outcome);
+		}
+	}
+	
+	/**
+	 * Returns the exception thrown by the task of a completed future.
+	 *
+	 * @param future
+	 * 		the future, not null, must be done
+	 *
+	 * @return the exception, or null if the task did not fail
+	 */
+	private static Throwable getFailure(final Future<?> future) {
+		try {
+			future.get();
+			return null;
+		} catch (final ExecutionException e) {
+			return e.getCause();
+		} catch (final CancellationException e) {
+			return null;
+		} catch (final InterruptedException e) {
+			// The future is done so get() won't block, but restore the interrupt to be safe
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+	
+	/**
+	 * Checks that execution is running in continuous mode.
+	 *
+	 * @throws IllegalStateException
+	 * 		if execution is not running in continuous mode
+	 */
+	private void checkContinuous() {
+		if (executionState.get() != CONTINUOUS) {
+			throw new IllegalStateException("execution is not running in continuous mode");
+		}
+	}
+	
+	/**
+	 * Delivers callbacks to the registered listeners.
+	 */
+	private void deliverCallbacks() {
+		for (OnExecutionCompleteListener listener : onExecutionCompleteListeners) {
+			try {
+				listener.onExecutionComplete(this);
+			} catch (final RuntimeException e) {
+				reportListenerFailure(e);
+			}
+		}
+		
+		batchFuture.run();
+	}
+	
+	/**
+	 * Releases the thread pool if it is owned and marks this CallbackExecutor as terminated.
+	 */
+	private void terminate() {
+		final Future<?> timeout = batchTimeoutFuture;
+		
+		if (timeout != null) {
+			timeout.cancel(false);
+		}
+		
+		final Future<?> progress = progressFuture;
+		
+		if (progress != null) {
+			progress.cancel(false);
+		}
+		
+		final Metrics currentMetrics = metrics;
+		
+		if (currentMetrics != null) {
+			currentMetrics.endTime = System.nanoTime();
+		}
+		
+		if (ownsExecutorService) {
+			executorService.shutdown();
+		}
+		
+		terminationLatch.countDown();
+	}
+	
+	/**
+	 * Interface definition for a callback to be delivered when all tasks finish.
+	 */
+	public interface OnExecutionCompleteListener {
+		/**
+		 * Called when all tasks finish
+		 *
+		 * @param callbackExecutor
+		 * 		the CallbackExecutor which finished executing all tasks
+		 */
+		void onExecutionComplete(CallbackExecutor callbackExecutor);
+	}
+	
+	/**
+	 * Interface definition for a callback to be delivered when each task finishes.
+	 */
+	public interface OnTaskCompleteListener {
+		/**
+		 * Called when a task finishes, whether it succeeded, failed or was cancelled.
+		 *
+		 * @param callbackExecutor
+		 * 		the CallbackExecutor which executed the task
+		 * @param outcome
+		 * 		the outcome of the task
+		 */
+		void onTaskComplete(CallbackExecutor callbackExecutor, TaskOutcome outcome);
+	}
+	
+	/**
+	 * Interface definition for a callback to be delivered when an epoch finishes.
+	 */
+	public interface OnEpochCompleteListener {
+		/**
+		 * Called when all tasks in an epoch (and all earlier epochs) finish.
+		 *
+		 * @param callbackExecutor
+		 * 		the CallbackExecutor which finished executing the epoch
+		 * @param epoch
+		 * 		the number of the epoch which finished
+		 */
+		void onEpochComplete(CallbackExecutor callbackExecutor, long epoch);
+	}
+	
+	/**
+	 * Interface definition for a callback to be delivered periodically while tasks execute.
+	 */
+	public interface OnProgressListener {
+		/**
+		 * Called at each progress interval.
+		 *
+		 * @param callbackExecutor
+		 * 		the CallbackExecutor which is executing the tasks
+		 * @param metrics
+		 * 		a snapshot of the metrics at the time of the callback
+		 */
+		void onProgress(CallbackExecutor callbackExecutor, ExecutorMetrics metrics);
+	}
+	
+	/**
+	 * Policies for handling tasks which are added when the queue is full.
+	 */
+	public enum OverflowPolicy {
+		/**
+		 * Blocks the calling thread until there is space in the queue.
+		 */
+		BLOCK,
+		
+		/**
+		 * Throws a {@link RejectedExecutionException} immediately.
+		 */
+		FAIL_FAST,
+		
+		/**
+		 * Runs the task on the calling thread. The task still counts towards its epoch and the
+		 * batch, but does not count towards the in-flight limit. Before execution starts, tasks
+		 * are rejected with a {@link RejectedExecutionException} instead, since tasks must not
+		 * run until execution starts.
+		 */
+		CALLER_RUNS
+	}
+	
+	/**
+	 * A task which belongs to an epoch, and which updates the epoch when it finishes. The
+	 * bookkeeping is always done, even if the task fails or is cancelled.
+	 */
+	private class QueuedTask implements Runnable, Interruptible {
+		/**
+		 * State which indicates that the task has not started.
+		 */
+		private static final int NEW = 0;
+		
+		/**
+		 * State which indicates that the task is running.
+		 */
+		private static final int RUNNING = 1;
+		
+		/**
+		 * State which indicates that the thread running the task is being interrupted.
+		 */
+		private static final int INTERRUPTING = 2;
+		
+		/**
+		 * State which indicates that the thread running the task has been interrupted.
+		 */
+		private static final int INTERRUPTED = 3;
+		
+		/**
+		 * State which indicates that the task finished without being interrupted.
+		 */
+		private static final int DONE = 4;
+		
+		/**
+		 * The task to run.
+		 */
+		private final Runnable task;
+		
+		/**
+		 * The epoch the task belongs to.
+		 */
+		private final Epoch epoch;
+		
+		/**
+		 * The time the task was queued, measured by {@link System#nanoTime()}, or {@link
+		 * #NOT_RECORDED} if there were no metrics or OnTaskCompleteListeners to use it.
+		 */
+		private final long queuedTime;
+		
+		/**
+		 * The state of the task, used to make sure that the thread running the task is only
+		 * interrupted while it is actually running the task. Initially {@link #NEW}. Only
+		 * updated atomically using {@link #TASK_STATE}, and not private so that the updater can
+		 * access it.
+		 */
+		volatile int state;
+		
+		/**
+		 * The priority of the task, only used in priority mode.
+		 */
+		private final long priority;
+		
+		/**
+		 * The order in which the task was added, only used in priority mode.
+		 */
+		private final long sequenceNumber;
+		
+		/**
+		 * The lane the task runs in, or null if the task is not keyed.
+		 */
+		private final Lane lane;
+		
+		/**
+		 * Whether or not the task was passed to the executor service, and therefore counts
+		 * towards the in-flight limit.
+		 */
+		private boolean isInFlight = false;
+		
+		/**
+		 * The thread running the task, set before the task starts.
+		 */
+		private volatile Thread runner;
+		
+		/**
+		 * The reason the task was interrupted, set before the thread is interrupted.
+		 */
+		private volatile TaskOutcome.Status interruptReason;
+		
+		/**
+		 * The exception thrown when the executor service rejected the task, or null if the task
+		 * was not rejected. Set before the task is added to {@link #rejectedTasks}.
+		 */
+		private RejectedExecutionException rejection;
+		
+		/**
+		 * Constructs a new QueuedTask.
+		 *
+		 * @param task
+		 * 		the task to run, not null
+		 * @param epoch
+		 * 		the epoch the task belongs to, not null
+		 * @param priority
+		 * 		the priority of the task
+		 */
+		private QueuedTask(final Runnable task, final Epoch epoch, final long priority) {
+			this(task, epoch, priority, null);
+		}
+		
+		/**
+		 * Constructs a new QueuedTask which runs in a lane.
+		 *
+		 * @param task
+		 * 		the task to run, not null
+		 * @param epoch
+		 * 		the epoch the task belongs to, not null
+		 * @param priority
+		 * 		the priority of the task
+		 * @param lane
+		 * 		the lane to run the task in, or null if the task is not keyed
+		 */
+		private QueuedTask(final Runnable task, final Epoch epoch, final long priority,
+				final Lane lane) {
+			this.task = task;
+			this.epoch = epoch;
+			this.priority = priority;
+			this.lane = lane;
+			
+			// Avoid contention on the sequence numbers when they aren't needed
+			this.sequenceNumber = isPriorityOrdered ? sequenceNumbers.getAndIncrement() : 0;
+			
+			final Metrics currentMetrics = metrics;
+			
+			if (currentMetrics != null) {
+				currentMetrics.addedTaskCount.increment();
+			}
+			
+			// Avoid reading the clock when nothing needs the wait time
+			this.queuedTime = isTimed(currentMetrics) ? System.nanoTime() : NOT_RECORDED;
+		}
+		
+		@Override
+		public void run() {
+			try {
+				execute(true);
+			} finally {
+				releaseLane();
+				onTaskComplete();
+			}
+		}
+		
+		/**
+		 * Allows the next task in the lane to run, if the task is keyed.
+		 */
+		private void releaseLane() {
+			if (lane != null) {
+				lane.onTaskFinished();
+			}
+		}
+		
+		/**
+		 * Runs the task and reports its outcome, but does not update the in-flight count or
+		 * the epoch.
+		 *
+		 * @param register
+		 * 		whether or not to register the task as running so that it can be interrupted,
+		 * 		false if the task is part of a chunk which has registered itself instead
+		 */
+		private void execute(final boolean register) {
+			final Metrics currentMetrics = metrics;
+			final long startTime = isTimed(currentMetrics) ? System.nanoTime() : NOT_RECORDED;
+			final boolean isTracked = register && interruptOnCancel;
+			TaskOutcome.Status status = null;
+			Throwable failure = null;
+			
+			if (currentMetrics != null) {
+				currentMetrics.startedTaskCount.increment();
+				
+				if (queuedTime != NOT_RECORDED) {
+					currentMetrics.waitTimes.record(startTime - queuedTime);
+				}
+			}
+			
+			if (cancellationReason.get() == null) {
+				runner = Thread.currentThread();
+				state = RUNNING;
+				
+				if (isTracked) {
+					runningTasks.add(this);
+				}
+				
+				final Future<?> timeout = startTaskTimeout();
+				
+				try {
+					// Check again in case the running tasks were cancelled before this was added
+					if (cancellationReason.get() == null) {
+						runWithCurrentTask();
+						status = TaskOutcome.Status.SUCCEEDED;
+						
+						if (task instanceof Future && ((Future<?>) task).isDone()) {
+							final Future<?> future = (Future<?>) task;
+							failure = getFailure(future);
+							
+							if (future.isCancelled()) {
+								status = TaskOutcome.Status.CANCELLED;
+							} else if (failure != null) {
+								status = TaskOutcome.Status.FAILED;
+							}
+						}
+					}
+				} catch (final Throwable t) {
+					status = TaskOutcome.Status.FAILED;
+					failure = t;
+				} finally {
+					if (timeout != null) {
+						timeout.cancel(false);
+					}
+					
+					if (isTracked) {
+						runningTasks.remove(this);
+					}
+					
+					if (!TASK_STATE.compareAndSet(this, RUNNING, DONE)) {
+						while (state == INTERRUPTING) {
+							Thread.yield();
+						}
+						
+						// Don't leak the interrupt to the next task run by the thread
+						Thread.interrupted();
+						status = interruptReason;
+					}
+				}
+			}
+			
+			if (status == null) {
+				// The task was skipped because execution was cancelled
+				status = cancellationReason.get();
+			}
+			
+			if (status == TaskOutcome.Status.TIMED_OUT) {
+				timedOutTasks.add(task);
+			}
+			
+			if (status != TaskOutcome.Status.SUCCEEDED && status != TaskOutcome.Status.FAILED &&
+					task instanceof Future) {
+				// Release any threads waiting on the future
+				((Future<?>) task).cancel(false);
+			}
+			
+			if (status == TaskOutcome.Status.FAILED && cancelOnFailure) {
+				cancel();
+			}
+			
+			final boolean hasListeners = !onTaskCompleteListeners.isEmpty();
+			
+			// Avoid reading the clock and creating outcomes when nobody needs them
+			if (hasListeners || currentMetrics != null) {
+				// The times are unknown if the listeners or metrics were added part way through
+				final boolean isRunTimeKnown = runner != null && startTime != NOT_RECORDED;
+				final long runTime = isRunTimeKnown ? System.nanoTime() - startTime : 0;
+				
+				if (currentMetrics != null) {
+					currentMetrics.onTaskFinished(status, isRunTimeKnown ? runTime : -1);
+				}
+				
+				if (hasListeners) {
+					final long waitTime = queuedTime == NOT_RECORDED || startTime == NOT_RECORDED ?
+							0 : startTime - queuedTime;
+					
+					deliverTaskCallbacks(new TaskOutcome(task, status, failure, waitTime,
+							runTime));
+				}
+			}
+			
+			if (failure instanceof Error) {
+				throw (Error) failure;
+			}
+		}
+		
+		/**
+		 * Runs the task, recording it as the current task of the thread so that it can spawn
+		 * subtasks. The previous current task is restored afterwards, in case the task was run
+		 * on the thread of another task (for example, by the caller runs policy).
+		 */
+		private void runWithCurrentTask() {
+			final QueuedTask previous = CURRENT_TASK.get();
+			CURRENT_TASK.set(this);
+			
+			try {
+				task.run();
+			} finally {
+				if (previous == null) {
+					CURRENT_TASK.remove();
+				} else {
+					CURRENT_TASK.set(previous);
+				}
+			}
+		}
+		
+		/**
+		 * @return the CallbackExecutor which is running the task
+		 */
+		private CallbackExecutor getCallbackExecutor() {
+			return CallbackExecutor.this;
+		}
+		
+		/**
+		 * Schedules the task timeout, if there is one. Must be called after the task starts
+		 * running.
+		 *
+		 * @return the future for the scheduled timeout, or null if there is no task timeout
+		 */
+		private Future<?> startTaskTimeout() {
+			final long timeoutNanos = taskTimeoutNanos;
+			
+			if (timeoutNanos <= 0) {
+				return null;
+			}
+			
+			return TimeoutScheduler.INSTANCE.schedule(new Runnable() {
+				@Override
+				public void run() {
+					interrupt(TaskOutcome.Status.TIMED_OUT);
+				}
+			}, timeoutNanos, TimeUnit.NANOSECONDS);
+		}
+		
+		@Override
+		public void interrupt(final TaskOutcome.Status reason) {
+			if (TASK_STATE.compareAndSet(this, RUNNING, INTERRUPTING)) {
+				interruptReason = reason;
+				
+				try {
+					// Cancel first, so the future doesn't complete with the InterruptedException
+					if (task instanceof Future) {
+						((Future<?>) task).cancel(true);
+					}
+					
+					runner.interrupt();
+				} finally {
+					state = INTERRUPTED;
+				}
+			}
+		}
+		
+		/**
+		 * Reports the task as failed without running it, because the executor service rejected
+		 * it, and then updates the lane and the epoch as if the task had run. The future of a
+		 * rejected Callable is cancelled, so that nothing waits for it forever.
+		 */
+		private void runRejected() {
+			try {
+				final Metrics currentMetrics = metrics;
+				
+				if (currentMetrics != null) {
+					currentMetrics.startedTaskCount.increment();
+					currentMetrics.onTaskFinished(TaskOutcome.Status.FAILED, -1);
+				}
+				
+				if (task instanceof Future) {
+					((Future<?>) task).cancel(false);
+				}
+				
+				if (cancelOnFailure) {
+					cancel();
+				}
+				
+				if (!onTaskCompleteListeners.isEmpty()) {
+					final long waitTime = queuedTime == NOT_RECORDED ? 0 :
+							System.nanoTime() - queuedTime;
+					
+					deliverTaskCallbacks(new TaskOutcome(task, TaskOutcome.Status.FAILED,
+							rejection, waitTime, 0));
+				}
+			} finally {
+				releaseLane();
+				onTaskComplete();
+			}
+		}
+		
+		/**
+		 * Updates the in-flight count and the epoch once the task has finished. The epoch is
+		 * always updated, even if dispatching the next tasks fails.
+		 */
+		private void onTaskComplete() {
+			try {
+				if (isInFlight) {
+					inFlightTaskCount.decrementAndGet();
+					dispatchQueuedTasks();
+				}
+			} finally {
+				if (epoch.taskCounter.release(1)) {
+					onEpochComplete(epoch);
+				}
+			}
+		}
+	}
+	
 	/**
-	 * Interface definition for a callback to be delivered when all tasks finish.
+	 * A serial lane for keyed tasks. Only one task from each lane is in the main queue or
+	 * running at any time, and the next task is moved to the main queue when the previous task
+	 * finishes. Lanes hold no threads, so an idle lane costs nothing but memory.
 	 */
-	public interface OnExecutionCompleteListener {
+	private class Lane {
 		/**
-		 * Called when all tasks finish
+		 * The tasks in the lane which have not yet been moved to the main queue, in order.
+		 */
+		private final Queue<QueuedTask> waitingTasks = new ConcurrentLinkedQueue<>();
+		
+		/**
+		 * The number of tasks in the lane which have not finished, including the task which is
+		 * in the main queue or running.
+		 */
+		private final AtomicInteger unfinishedTaskCount = new AtomicInteger();
+		
+		/**
+		 * Adds a task to the end of the lane. The task is moved to the main queue immediately if
+		 * the lane is idle.
 		 *
-		 * @param callbackExecutor
-		 * 		the CallbackExecutor which finished executing all tasks
+		 * @param task
+		 * 		the task to add, not null
 		 */
-		void onExecutionComplete(CallbackExecutor callbackExecutor);
+		private void add(final QueuedTask task) {
+			// Add before counting, so that a counted task is always available to move
+			waitingTasks.add(task);
+			
+			if (unfinishedTaskCount.getAndIncrement() == 0) {
+				moveNextTaskToQueue();
+			}
+		}
+		
+		/**
+		 * Called when a task from the lane finishes, moves the next task to the main queue.
+		 */
+		private void onTaskFinished() {
+			if (unfinishedTaskCount.decrementAndGet() > 0) {
+				moveNextTaskToQueue();
+			}
+		}
+		
+		/**
+		 * Moves the task at the head of the lane to the main queue.
+		 */
+		private void moveNextTaskToQueue() {
+			tasks.add(waitingTasks.poll());
+			
+			if (executionState.get() != NOT_STARTED) {
+				dispatchQueuedTasks();
+			}
+		}
+	}
+	
+	/**
+	 * The counters and histograms which record the progress of the tasks.
+	 */
+	private static class Metrics {
+		/**
+		 * The number of tasks which have been added.
+		 */
+		private final StripedCounter addedTaskCount = new StripedCounter();
+		
+		/**
+		 * The number of tasks which have started or been skipped.
+		 */
+		private final StripedCounter startedTaskCount = new StripedCounter();
+		
+		/**
+		 * The number of tasks which have finished, indexed by the ordinal of their status.
+		 */
+		private final StripedCounter[] finishedTaskCounts =
+				new StripedCounter[TaskOutcome.Status.values().length];
+		
+		/**
+		 * The times tasks spent waiting to start.
+		 */
+		private final LatencyRecorder waitTimes = new LatencyRecorder();
+		
+		/**
+		 * The times tasks spent running.
+		 */
+		private final LatencyRecorder runTimes = new LatencyRecorder();
+		
+		/**
+		 * The time execution started, according to {@link System#nanoTime()}, or zero if
+		 * execution has not started.
+		 */
+		private volatile long startTime;
+		
+		/**
+		 * The time execution finished, according to {@link System#nanoTime()}, or zero if
+		 * execution has not finished.
+		 */
+		private volatile long endTime;
+		
+		/**
+		 * Constructs a new Metrics.
+		 */
+		private Metrics() {
+			for (int i = 0; i < finishedTaskCounts.length; i++) {
+				finishedTaskCounts[i] = new StripedCounter();
+			}
+		}
+		
+		/**
+		 * Records a task which finished.
+		 *
+		 * @param status
+		 * 		how the task finished, not null
+		 * @param runTime
+		 * 		the time the task spent running, measured in nanoseconds, negative if the task
+		 * 		was skipped or its run time was not measured
+		 */
+		private void onTaskFinished(final TaskOutcome.Status status, final long runTime) {
+			finishedTaskCounts[status.ordinal()].increment();
+			
+			if (runTime >= 0) {
+				runTimes.record(runTime);
+			}
+		}
+		
+		/**
+		 * @return a snapshot of the metrics, not null
+		 */
+		private ExecutorMetrics snapshot() {
+			// Read in the opposite order to the updates, so that no count is negative
+			final long[] finishedCounts = new long[finishedTaskCounts.length];
+			long finishedCount = 0;
+			
+			for (int i = 0; i < finishedCounts.length; i++) {
+				finishedCounts[i] = finishedTaskCounts[i].sum();
+				finishedCount += finishedCounts[i];
+			}
+			
+			final long startedCount = startedTaskCount.sum();
+			final long addedCount = addedTaskCount.sum();
+			
+			final long start = startTime;
+			final long end = endTime;
+			final long elapsed = start == 0 ? 0 : (end == 0 ? System.nanoTime() : end) - start;
+			
+			return new ExecutorMetrics(addedCount - startedCount, startedCount - finishedCount,
+					finishedCounts, waitTimes.snapshot(), runTimes.snapshot(), elapsed);
+		}
+	}
+	
+	/**
+	 * Work which can be interrupted when execution is cancelled.
+	 */
+	private interface Interruptible {
+		/**
+		 * Interrupts the thread running the work, if the work is currently running.
+		 *
+		 * @param reason
+		 * 		the reason to report in the outcome of the interrupted task, not null
+		 */
+		void interrupt(TaskOutcome.Status reason);
+	}
+	
+	/**
+	 * A group of queued tasks which are run one after another as a single unit. The in-flight
+	 * count and the epochs are only updated once the whole chunk has finished.
+	 */
+	private class Chunk implements Runnable, Interruptible {
+		/**
+		 * The tasks to run. Only the first {@link #size} elements are used.
+		 */
+		private final QueuedTask[] tasks;
+		
+		/**
+		 * The number of tasks in the chunk.
+		 */
+		private final int size;
+		
+		/**
+		 * The task which is currently running, or null if no task is running.
+		 */
+		private volatile QueuedTask currentTask;
+		
+		/**
+		 * Constructs a new Chunk.
+		 *
+		 * @param tasks
+		 * 		the tasks to run, not null
+		 * @param size
+		 * 		the number of tasks in the chunk
+		 */
+		private Chunk(final QueuedTask[] tasks, final int size) {
+			this.tasks = tasks;
+			this.size = size;
+		}
+		
+		@Override
+		public void run() {
+			final boolean isTracked = interruptOnCancel;
+			Throwable firstFailure = null;
+			
+			if (isTracked) {
+				runningTasks.add(this);
+			}
+			
+			try {
+				for (int i = 0; i < size; i++) {
+					currentTask = tasks[i];
+					
+					try {
+						tasks[i].execute(false);
+					} catch (final Throwable t) {
+						// Keep going so that the rest of the chunk is still run and reported
+						if (firstFailure == null) {
+							firstFailure = t;
+						}
+					}
+					
+					tasks[i].releaseLane();
+				}
+			} finally {
+				currentTask = null;
+				
+				if (isTracked) {
+					runningTasks.remove(this);
+				}
+				
+				onChunkComplete();
+			}
+			
+			if (firstFailure instanceof Error) {
+				throw (Error) firstFailure;
+			} else if (firstFailure instanceof RuntimeException) {
+				throw (RuntimeException) firstFailure;
+			}
+		}
+		
+		@Override
+		public void interrupt(final TaskOutcome.Status reason) {
+			final QueuedTask task = currentTask;
+			
+			if (task != null) {
+				task.interrupt(reason);
+			}
+		}
+		
+		/**
+		 * Updates the in-flight count and the epochs once all tasks in the chunk have finished.
+		 * Consecutive tasks from the same epoch are released together.
+		 */
+		private void onChunkComplete() {
+			try {
+				inFlightTaskCount.decrementAndGet();
+				dispatchQueuedTasks();
+			} finally {
+				releaseEpochs();
+			}
+		}
+		
+		/**
+		 * Releases the tasks of the chunk from their epochs.
+		 */
+		private void releaseEpochs() {
+			int start = 0;
+			
+			while (start < size) {
+				final Epoch epoch = tasks[start].epoch;
+				int end = start + 1;
+				
+				while (end < size && tasks[end].epoch == epoch) {
+					end++;
+				}
+				
+				if (epoch.taskCounter.release(end - start)) {
+					onEpochComplete(epoch);
+				}
+				
+				start = end;
+			}
+		}
+	}
+	
+	/**
+	 * Orders tasks by descending priority, then by ascending sequence number.
+	 */
+	private static class PriorityOrder implements Comparator<QueuedTask> {
+		@Override
+		public int compare(final QueuedTask task1, final QueuedTask task2) {
+			if (task1.priority != task2.priority) {
+				return task1.priority > task2.priority ? -1 : 1;
+			}
+			
+			return task1.sequenceNumber < task2.sequenceNumber ? -1 :
+					(task1.sequenceNumber == task2.sequenceNumber ? 0 : 1);
+		}
+	}
+	
+	/**
+	 * Holds the scheduler used to expire timeouts and deliver progress callbacks. The scheduler
+	 * is shared by all instances and is only created when it is first used. It uses a single
+	 * daemon thread, since the scheduled actions only interrupt threads, hand work to other
+	 * executors, or deliver progress callbacks which are documented to return quickly.
+	 */
+	private static class TimeoutScheduler {
+		/**
+		 * The shared scheduler.
+		 */
+		private static final ScheduledThreadPoolExecutor INSTANCE = createScheduler();
+		
+		/**
+		 * @return a new scheduler which runs on a single daemon thread and removes cancelled
+		 * timeouts immediately
+		 */
+		private static ScheduledThreadPoolExecutor createScheduler() {
+			final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1,
+					new ThreadFactory() {
+						@Override
+						public Thread newThread(final Runnable r) {
+							final Thread thread = new Thread(r, "CallbackExecutor-timeouts");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			
+			// Most timeouts are cancelled, so don't let them build up in the queue
+			scheduler.setRemoveOnCancelPolicy(true);
+			
+			return scheduler;
+		}
+	}
+	
+	/**
+	 * A group of tasks which is tracked as a unit.
+	 */
+	private static class Epoch {
+		/**
+		 * The sequence number of the epoch.
+		 */
+		private final long number;
+		
+		/**
+		 * Counts the tasks in the epoch which have not completed, and whether or not the epoch
+		 * is closed.
+		 */
+		private final TaskCounter taskCounter = new TaskCounter();
+		
+		/**
+		 * Whether or not this is the last epoch. Always set before the epoch is closed.
+		 */
+		private volatile boolean isFinal = false;
+		
+		/**
+		 * Constructs a new Epoch.
+		 *
+		 * @param number
+		 * 		the sequence number of the epoch
+		 */
+		private Epoch(final long number) {
+			this.number = number;
+		}
 	}
 }
\ No newline at end of file
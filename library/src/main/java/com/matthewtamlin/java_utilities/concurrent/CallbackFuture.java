@@ -0,0 +1,153 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.matthewtamlin.java_utilities.concurrent;
+
+import com.matthewtamlin.java_utilities.testing.Tested;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A FutureTask which delivers callbacks when it completes, so that dependent work can start as
+ * soon as the result is available rather than waiting in {@link #get()}. Callbacks are delivered
+ * when the task completes normally, completes exceptionally, or is cancelled. This is especially
+ * useful when Java 1.8 (and CompletableFuture) isn't available.
+ *
+ * @param <V>
+ * 		the type of result produced by the task
+ *
+ * @deprecated this entire library has been deprecated.
+ */
+@SuppressWarnings("WeakerAccess") // This is a public API class
+@Tested(testMethod = "automated")
+@Deprecated
+public class CallbackFuture<V> extends FutureTask<V> {
+	/**
+	 * The listeners to notify when the task completes. Set to null once the listeners have
+	 * been notified, and guarded by the intrinsic lock of this object.
+	 */
+	private List<OnCompleteListener<V>> onCompleteListeners = new ArrayList<>();
+	
+	/**
+	 * Constructs a new CallbackFuture which will run the supplied Callable.
+	 *
+	 * @param callable
+	 * 		the task to run, not null
+	 *
+	 * @throws NullPointerException
+	 * 		if {@code callable} is null
+	 */
+	public CallbackFuture(final Callable<V> callable) {
+		super(callable);
+	}
+	
+	/**
+	 * Constructs a new CallbackFuture which will run the supplied Runnable, and produce the
+	 * supplied result on successful completion.
+	 *
+	 * @param runnable
+	 * 		the task to run, not null
+	 * @param result
+	 * 		the result to produce on successful completion, may be null
+	 *
+	 * @throws NullPointerException
+	 * 		if {@code runnable} is null
+	 */
+	public CallbackFuture(final Runnable runnable, final V result) {
+		super(runnable, result);
+	}
+	
+	/**
+	 * Registers an OnCompleteListener. The listener will receive a callback when the task
+	 * completes. If the task has already completed, then the callback is delivered immediately
+	 * on the calling thread and any exception it throws propagates to the caller, otherwise it
+	 * is delivered on the thread which completes the task. This method has no effect if the
+	 * supplied listener is null.
+	 *
+	 * @param listener
+	 * 		the listener to register
+	 */
+	public void addOnCompleteListener(final OnCompleteListener<V> listener) {
+		if (listener == null) {
+			return;
+		}
+		
+		synchronized (this) {
+			if (onCompleteListeners != null) {
+				onCompleteListeners.add(listener);
+				return;
+			}
+		}
+		
+		// Deliver outside of the lock since the task has already completed
+		listener.onComplete(this);
+	}
+	
+	/**
+	 * Delivers callbacks to the registered listeners. An exception thrown by a listener is
+	 * passed to the uncaught exception handler of the current thread, so that one faulty
+	 * listener cannot stop the others from receiving callbacks.
+	 */
+	@Override
+	protected void done() {
+		final List<OnCompleteListener<V>> listeners;
+		
+		synchronized (this) {
+			listeners = onCompleteListeners;
+			onCompleteListeners = null;
+		}
+		
+		for (final OnCompleteListener<V> listener : listeners) {
+			try {
+				listener.onComplete(this);
+			} catch (final RuntimeException e) {
+				reportListenerFailure(e);
+			}
+		}
+	}
+	
+	/**
+	 * Reports an exception thrown by a listener to the uncaught exception handler of the
+	 * current thread.
+	 *
+	 * @param failure
+	 * 		the exception thrown by the listener, not null
+	 */
+	private static void reportListenerFailure(final RuntimeException failure) {
+		final Thread thread = Thread.currentThread();
+		thread.getUncaughtExceptionHandler().uncaughtException(thread, failure);
+	}
+	
+	/**
+	 * Interface definition for a callback to be delivered when a task completes.
+	 *
+	 * @param <V>
+	 * 		the type of result produced by the task
+	 */
+	public interface OnCompleteListener<V> {
+		/**
+		 * Called when the task completes. The future is done, so calls to {@link
+		 * CallbackFuture#get()} will not block.
+		 *
+		 * @param future
+		 * 		the CallbackFuture which completed
+		 */
+		void onComplete(CallbackFuture<V> future);
+	}
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.matthewtamlin.java_utilities.concurrent;
+
+import com.matthewtamlin.java_utilities.testing.Tested;
+
+/**
+ * A snapshot of the metrics recorded by a {@link CallbackExecutor}. The values are read from
+ * counters which are updated without locking, so a snapshot taken while tasks are running may be
+ * slightly inconsistent (for example, a task may be counted as both running and completed).
+ * Snapshots taken after execution completes are exact.
+ *
+ * @deprecated this entire library has been deprecated.
+ */
+@SuppressWarnings("WeakerAccess") // This is a public API class
+@Tested(testMethod = "automated")
+@Deprecated
+public final class ExecutorMetrics {
+	/**
+	 * The number of tasks which have been added but have not started.
+	 */
+	private final long queuedTaskCount;
+	
+	/**
+	 * The number of tasks which have started but have not finished.
+	 */
+	private final long runningTaskCount;
+	
+	/**
+	 * The number of tasks which have finished, indexed by the ordinal of their status.
+	 */
+	private final long[] completedTaskCounts;
+	
+	/**
+	 * The times tasks spent waiting to start.
+	 */
+	private final Histogram waitTimes;
+	
+	/**
+	 * The times tasks spent running.
+	 */
+	private final Histogram runTimes;
+	
+	/**
+	 * The time since execution started, measured in nanoseconds.
+	 */
+	private final long elapsedNanos;
+	
+	/**
+	 * Constructs a new ExecutorMetrics.
+	 *
+	 * @param queuedTaskCount
+	 * 		the number of tasks which have been added but have not started
+	 * @param runningTaskCount
+	 * 		the number of tasks which have started but have not finished
+	 * @param completedTaskCounts
+	 * 		the number of tasks which have finished, indexed by the ordinal of their status, not
+	 * 		null
+	 * @param waitTimes
+	 * 		the times tasks spent waiting to start, not null
+	 * @param runTimes
+	 * 		the times tasks spent running, not null
+	 * @param elapsedNanos
+	 * 		the time since execution started, measured in nanoseconds
+	 */
+	ExecutorMetrics(final long queuedTaskCount, final long runningTaskCount,
+			final long[] completedTaskCounts, final Histogram waitTimes, final Histogram runTimes,
+			final long elapsedNanos) {
+		this.queuedTaskCount = queuedTaskCount;
+		this.runningTaskCount = runningTaskCount;
+		this.completedTaskCounts = completedTaskCounts;
+		this.waitTimes = waitTimes;
+		this.runTimes = runTimes;
+		this.elapsedNanos = elapsedNanos;
+	}
+	
+	/**
+	 * @return the number of tasks which have been added but have not started, including tasks
+	 * which have been passed to the thread pool but are waiting for a thread
+	 */
+	public long getQueuedTaskCount() {
+		return queuedTaskCount;
+	}
+	
+	/**
+	 * @return the number of tasks which are currently running
+	 */
+	public long getRunningTaskCount() {
+		return runningTaskCount;
+	}
+	
+	/**
+	 * @return the number of tasks which have finished, including tasks which failed, were
+	 * cancelled or timed out
+	 */
+	public long getCompletedTaskCount() {
+		long count = 0;
+		
+		for (final long statusCount : completedTaskCounts) {
+			count += statusCount;
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Returns the number of tasks which finished with a particular status.
+	 *
+	 * @param status
+	 * 		the status to count, not null
+	 *
+	 * @return the number of tasks which finished with {@code status}
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code status} is null
+	 */
+	public long getCompletedTaskCount(final TaskOutcome.Status status) {
+		if (status == null) {
+			throw new IllegalArgumentException("status cannot be null");
+		}
+		
+		return completedTaskCounts[status.ordinal()];
+	}
+	
+	/**
+	 * @return the times tasks spent waiting to start, not null
+	 */
+	public Histogram getWaitTimes() {
+		return waitTimes;
+	}
+	
+	/**
+	 * @return the times tasks spent running, not including tasks which were skipped, not null
+	 */
+	public Histogram getRunTimes() {
+		return runTimes;
+	}
+	
+	/**
+	 * @return the time between the start of execution and this snapshot (or the end of execution
+	 * if execution has finished), measured in nanoseconds, zero if execution has not started
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+	
+	/**
+	 * @return the average number of tasks completed per second since execution started, zero if
+	 * execution has not started
+	 */
+	public double getTasksPerSecond() {
+		return elapsedNanos == 0 ? 0 : getCompletedTaskCount() * 1e9 / elapsedNanos;
+	}
+	
+	@Override
+	public String toString() {
+		return "ExecutorMetrics{queued=" + queuedTaskCount + ", running=" + runningTaskCount +
+				", completed=" + getCompletedTaskCount() + ", tasksPerSecond=" +
+				getTasksPerSecond() + ", waitTimes=" + waitTimes + ", runTimes=" + runTimes + "}";
+	}
+	
+	/**
+	 * A snapshot of a histogram of durations. Durations are grouped into buckets with power of
+	 * two bounds, so percentiles are estimates which are never less than the true value and never
+	 * more than twice the true value.
+	 */
+	public static final class Histogram {
+		/**
+		 * The number of durations in each bucket. Bucket {@code b} counts the durations between
+		 * 2<sup>b-1</sup> and 2<sup>b</sup> - 1 nanoseconds, and bucket zero counts zero
+		 * durations.
+		 */
+		private final long[] bucketCounts;
+		
+		/**
+		 * The total number of durations.
+		 */
+		private final long count;
+		
+		/**
+		 * The sum of the durations, measured in nanoseconds.
+		 */
+		private final long totalNanos;
+		
+		/**
+		 * Constructs a new Histogram.
+		 *
+		 * @param bucketCounts
+		 * 		the number of durations in each bucket, not null
+		 * @param totalNanos
+		 * 		the sum of the durations, measured in nanoseconds
+		 */
+		Histogram(final long[] bucketCounts, final long totalNanos) {
+			long count = 0;
+			
+			for (final long bucketCount : bucketCounts) {
+				count += bucketCount;
+			}
+			
+			this.bucketCounts = bucketCounts;
+			this.count = count;
+			this.totalNanos = totalNanos;
+		}
+		
+		/**
+		 * @return the number of durations recorded
+		 */
+		public long getCount() {
+			return count;
+		}
+		
+		/**
+		 * @return the sum of the durations, measured in nanoseconds
+		 */
+		public long getTotalNanos() {
+			return totalNanos;
+		}
+		
+		/**
+		 * @return the mean duration, measured in nanoseconds, zero if no durations were recorded
+		 */
+		public double getMeanNanos() {
+			return count == 0 ? 0 : (double) totalNanos / count;
+		}
+		
+		/**
+		 * Estimates a percentile of the durations. The estimate is the upper bound of the bucket
+		 * which contains the percentile.
+		 *
+		 * @param percentile
+		 * 		the percentile to estimate, between 0 and 100 inclusive
+		 *
+		 * @return the estimated percentile, measured in nanoseconds, zero if no durations were
+		 * recorded
+		 *
+		 * @throws IllegalArgumentException
+		 * 		if {@code percentile} is not between 0 and 100 inclusive
+		 */
+		public long getPercentileNanos(final double percentile) {
+			if (!(percentile >= 0 && percentile <= 100)) {
+				throw new IllegalArgumentException("percentile must be between 0 and 100");
+			}
+			
+			final double rank = Math.max(1, Math.ceil(count * percentile / 100));
+			long cumulativeCount = 0;
+			
+			for (int bucket = 0; bucket < bucketCounts.length; bucket++) {
+				cumulativeCount += bucketCounts[bucket];
+				
+				if (cumulativeCount >= rank) {
+					return bucket == 0 ? 0 : (1L << bucket) - 1;
+				}
+			}
+			
+			return 0;
+		}
+		
+		@Override
+		public String toString() {
+			return "Histogram{count=" + count + ", meanNanos=" + getMeanNanos() + ", p50Nanos=" +
+					getPercentileNanos(50) + ", p99Nanos=" + getPercentileNanos(99) + "}";
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.matthewtamlin.java_utilities.concurrent;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records durations in a histogram with power of two buckets, so that percentiles can be
+ * estimated without storing every duration. Bucket {@code b} counts the durations between
+ * 2<sup>b-1</sup> and 2<sup>b</sup> - 1 nanoseconds, and bucket zero counts zero durations. Each
+ * thread records into its own stripe of buckets, so many threads can record at once without
+ * contention.
+ */
+class LatencyRecorder {
+	/**
+	 * The number of buckets, enough for any non-negative long.
+	 */
+	static final int BUCKET_COUNT = 64;
+	
+	/**
+	 * The bucket counts of all stripes. Each stripe spans several cache lines, so threads
+	 * recording into different stripes rarely share a line.
+	 */
+	private final AtomicLongArray buckets =
+			new AtomicLongArray(StripedCounter.STRIPES * BUCKET_COUNT);
+	
+	/**
+	 * The sum of all recorded durations, measured in nanoseconds.
+	 */
+	private final StripedCounter totalNanos = new StripedCounter();
+	
+	/**
+	 * Records a duration. Negative durations are recorded as zero.
+	 *
+	 * @param nanos
+	 * 		the duration, measured in nanoseconds
+	 */
+	void record(final long nanos) {
+		final long duration = Math.max(0, nanos);
+		final int bucket = BUCKET_COUNT - Long.numberOfLeadingZeros(duration);
+		
+		buckets.getAndIncrement(StripedCounter.stripe() * BUCKET_COUNT + bucket);
+		totalNanos.add(duration);
+	}
+	
+	/**
+	 * @return a snapshot of the recorded durations, not null
+	 */
+	ExecutorMetrics.Histogram snapshot() {
+		final long[] counts = new long[BUCKET_COUNT];
+		
+		for (int i = 0; i < buckets.length(); i++) {
+			counts[i % BUCKET_COUNT] += buckets.get(i);
+		}
+		
+		return new ExecutorMetrics.Histogram(counts, totalNanos.sum());
+	}
+}
\ No newline at end of file
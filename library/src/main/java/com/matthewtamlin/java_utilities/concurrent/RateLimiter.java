@@ -0,0 +1,112 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.matthewtamlin.java_utilities.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket which limits the rate of an operation without blocking. Instead of counting
+ * tokens, the bucket stores the time at which it will next be empty and refills continuously, so
+ * that permits can be taken with a single compare-and-set. Callers which are refused a permit
+ * are told how long to wait, so they can schedule a retry instead of parking a thread.
+ */
+class RateLimiter {
+	/**
+	 * The longest time the bucket may take to refill completely, measured in nanoseconds.
+	 * Keeps every time the bucket calculates well within the range in which {@link
+	 * System#nanoTime()} values can be compared by subtraction, so that very low rates and very
+	 * large bursts cannot overflow. This is roughly 73 years.
+	 */
+	private static final long MAX_REFILL_NANOS = Long.MAX_VALUE / 4;
+	
+	/**
+	 * The time taken to refill one permit, measured in nanoseconds.
+	 */
+	private final long intervalNanos;
+	
+	/**
+	 * How far ahead of the current time the bucket may be drawn down, measured in nanoseconds.
+	 * Allows up to the burst size of permits to be taken at once.
+	 */
+	private final long burstNanos;
+	
+	/**
+	 * The time at which all permits taken so far will have been refilled, according to {@link
+	 * System#nanoTime()}.
+	 */
+	private final AtomicLong refilledTime = new AtomicLong(System.nanoTime());
+	
+	/**
+	 * Constructs a new RateLimiter with a full bucket. Rates so low that the bucket would take
+	 * longer than {@link #MAX_REFILL_NANOS} to refill are raised until it does not.
+	 *
+	 * @param permitsPerSecond
+	 * 		the sustained rate, greater than zero
+	 * @param burstSize
+	 * 		the maximum number of permits which can be taken at once, greater than zero
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code permitsPerSecond} is not greater than zero, or if {@code burstSize} is less
+	 * 		than one
+	 */
+	RateLimiter(final double permitsPerSecond, final int burstSize) {
+		if (!(permitsPerSecond > 0)) {
+			throw new IllegalArgumentException("permitsPerSecond must be greater than zero");
+		}
+		
+		if (burstSize < 1) {
+			throw new IllegalArgumentException("burstSize must be greater than zero");
+		}
+		
+		// The cast saturates for tiny rates, and the clamp then keeps burstSize intervals in range
+		final long interval = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+		intervalNanos = Math.max(1, Math.min(interval, MAX_REFILL_NANOS / burstSize));
+		burstNanos = (burstSize - 1) * intervalNanos;
+	}
+	
+	/**
+	 * Takes a permit if one is available.
+	 *
+	 * @return zero if a permit was taken, otherwise the time until the next permit is available,
+	 * measured in nanoseconds
+	 */
+	long tryAcquire() {
+		while (true) {
+			final long now = System.nanoTime();
+			final long refilled = refilledTime.get();
+			final long earliest = refilled - burstNanos;
+			
+			if (now - earliest < 0) {
+				return earliest - now;
+			}
+			
+			final long next = (refilled - now > 0 ? refilled : now) + intervalNanos;
+			
+			if (refilledTime.compareAndSet(refilled, next)) {
+				return 0;
+			}
+		}
+	}
+	
+	/**
+	 * Returns a permit which was taken but not used.
+	 */
+	void refund() {
+		refilledTime.addAndGet(-intervalNanos);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.matthewtamlin.java_utilities.concurrent;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter which can be updated by many threads at once without contention. Each thread adds to
+ * one of several cells, which are spaced a cache line apart so that threads updating different
+ * cells do not invalidate each other's caches. Reading the value sums the cells, so reads are
+ * slower than updates and are not atomic with respect to concurrent updates.
+ */
+class StripedCounter {
+	/**
+	 * The number of cells. Always a power of two, and at least twice the number of processors.
+	 */
+	static final int STRIPES = Integer.highestOneBit(
+			Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1) * 2;
+	
+	/**
+	 * The spacing between cells, measured in longs. Eight longs fill a 64 byte cache line.
+	 */
+	private static final int SPACING = 8;
+	
+	/**
+	 * The cells, only every {@link #SPACING}th element is used.
+	 */
+	private final AtomicLongArray cells = new AtomicLongArray(STRIPES * SPACING);
+	
+	/**
+	 * Adds to the counter.
+	 *
+	 * @param delta
+	 * 		the amount to add, may be negative
+	 */
+	void add(final long delta) {
+		cells.getAndAdd(stripe() * SPACING, delta);
+	}
+	
+	/**
+	 * Adds one to the counter.
+	 */
+	void increment() {
+		add(1);
+	}
+	
+	/**
+	 * @return the sum of all updates made to the counter
+	 */
+	long sum() {
+		long sum = 0;
+		
+		for (int i = 0; i < STRIPES; i++) {
+			sum += cells.get(i * SPACING);
+		}
+		
+		return sum;
+	}
+	
+	/**
+	 * Selects the cell for the current thread. Thread IDs are usually allocated sequentially, so
+	 * the threads of a pool are spread evenly across the cells.
+	 *
+	 * @return the index of the cell to update, between zero and {@link #STRIPES} exclusive
+	 */
+	static int stripe() {
+		return (int) Thread.currentThread().getId() & (STRIPES - 1);
+	}
+}
\ No newline at end of file
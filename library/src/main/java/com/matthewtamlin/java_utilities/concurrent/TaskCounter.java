@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.matthewtamlin.java_utilities.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the tasks which have been accepted but not yet completed, and tracks whether or not new
+ * tasks may still be accepted. Both values are packed into a single atomic long, so that tasks
+ * can be accepted and completed by many threads without locking, and so that exactly one thread
+ * observes the transition to the closed and drained state.
+ */
+class TaskCounter {
+	/**
+	 * The bit which is set once the counter is closed. The lower bits hold the pending count.
+	 */
+	private static final long CLOSED = 1L << 62;
+	
+	/**
+	 * The closed bit and the pending count.
+	 */
+	private final AtomicLong state = new AtomicLong(0);
+	
+	/**
+	 * Accepts a new task if the counter is not closed.
+	 *
+	 * @return true if the task was accepted, false if the counter is closed
+	 */
+	boolean tryAcquire() {
+		return tryAcquire(1);
+	}
+	
+	/**
+	 * Accepts a number of new tasks if the counter is not closed.
+	 *
+	 * @param count
+	 * 		the number of tasks to accept
+	 *
+	 * @return true if the tasks were accepted, false if the counter is closed
+	 */
+	boolean tryAcquire(final long count) {
+		while (true) {
+			final long current = state.get();
+			
+			if ((current & CLOSED) != 0) {
+				return false;
+			}
+			
+			if (state.compareAndSet(current, current + count)) {
+				return true;
+			}
+		}
+	}
+	
+	/**
+	 * Accepts a new task even if the counter is closed. Must only be called while another
+	 * accepted task is pending (for example, by a task which is spawning a subtask), so that the
+	 * counter cannot drain before the new task is accepted.
+	 */
+	void acquireChild() {
+		state.incrementAndGet();
+	}
+	
+	/**
+	 * Closes the counter so that no new tasks can be accepted.
+	 *
+	 * @return the number of pending tasks at the time of closing, or -1 if the counter was
+	 * already closed
+	 */
+	long close() {
+		while (true) {
+			final long current = state.get();
+			
+			if ((current & CLOSED) != 0) {
+				return -1;
+			}
+			
+			if (state.compareAndSet(current, current | CLOSED)) {
+				return current;
+			}
+		}
+	}
+	
+	/**
+	 * Marks a number of accepted tasks as complete.
+	 *
+	 * @param count
+	 * 		the number of tasks which completed
+	 *
+	 * @return true if the counter is closed and no tasks remain pending after this call, false
+	 * otherwise (true is only ever returned to one caller)
+	 */
+	boolean release(final long count) {
+		return state.addAndGet(-count) == CLOSED;
+	}
+	
+	/**
+	 * @return true if the counter has been closed, false otherwise
+	 */
+	boolean isClosed() {
+		return (state.get() & CLOSED) != 0;
+	}
+	
+	/**
+	 * @return the number of tasks which have been accepted but not yet completed
+	 */
+	long getPendingCount() {
+		return state.get() & ~CLOSED;
+	}
+}
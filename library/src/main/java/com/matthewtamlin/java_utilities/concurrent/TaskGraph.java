@@ -0,0 +1,530 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.matthewtamlin.java_utilities.concurrent;
+
+import com.matthewtamlin.java_utilities.concurrent.CallbackExecutor.OnExecutionCompleteListener;
+import com.matthewtamlin.java_utilities.concurrent.CallbackExecutor.OnTaskCompleteListener;
+import com.matthewtamlin.java_utilities.testing.Tested;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A graph of tasks with dependencies between them, executed using a {@link CallbackExecutor}.
+ * Each task starts as soon as all of the tasks it depends on have finished, rather than waiting
+ * for a whole stage of tasks to finish, so independent branches of the graph run at the same
+ * time. Tasks can only depend on tasks which have already been added, so the graph can never
+ * contain a cycle.
+ * <p>
+ * Callbacks are delivered when each task finishes and when the whole graph has finished. An
+ * exception thrown by a listener is passed to the uncaught exception handler of the thread
+ * delivering the callback, and does not stop the other callbacks or the graph. If a task fails,
+ * the tasks which depend on it (directly or indirectly) are skipped, but the rest of the graph
+ * still runs. If execution is cancelled or times out, the tasks which have not started
+ * are cancelled along with all of the tasks which depend on them, and their callbacks are still
+ * delivered before the graph callbacks.
+ *
+ * @deprecated this entire library has been deprecated.
+ */
+@SuppressWarnings("WeakerAccess") // This is a public API class
+@Tested(testMethod = "automated")
+@Deprecated
+public class TaskGraph {
+	/**
+	 * The nodes of the graph, in the order they were added.
+	 */
+	private final List<Node> nodes = new ArrayList<>();
+	
+	/**
+	 * Whether or not the graph has been executed.
+	 */
+	private final AtomicBoolean isExecuted = new AtomicBoolean(false);
+	
+	/**
+	 * The executor running the graph, set when the graph is executed.
+	 */
+	private volatile CallbackExecutor executor;
+	
+	/**
+	 * The listeners to notify when each node finishes.
+	 */
+	private final Set<OnNodeCompleteListener> onNodeCompleteListeners =
+			new CopyOnWriteArraySet<>();
+	
+	/**
+	 * The listeners to notify when the whole graph finishes.
+	 */
+	private final Set<OnGraphCompleteListener> onGraphCompleteListeners =
+			new CopyOnWriteArraySet<>();
+	
+	/**
+	 * Adds a task to the graph. The task will not start until all of the supplied dependencies
+	 * have finished successfully.
+	 *
+	 * @param task
+	 * 		the task to add, not null
+	 * @param dependencies
+	 * 		the nodes of the tasks which must finish first, each not null and from this graph
+	 *
+	 * @return the node for the task, which can be used as a dependency of later tasks
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code task} is null, or if any dependency is null or belongs to another graph
+	 * @throws IllegalStateException
+	 * 		if the graph has already been executed
+	 */
+	public Node addTask(final Runnable task, final Node... dependencies) {
+		if (task == null) {
+			throw new IllegalArgumentException("task cannot be null");
+		}
+		
+		if (dependencies == null) {
+			throw new IllegalArgumentException("dependencies cannot be null");
+		}
+		
+		for (final Node dependency : dependencies) {
+			if (dependency == null) {
+				throw new IllegalArgumentException("dependencies cannot contain null");
+			}
+			
+			if (dependency.getGraph() != this) {
+				throw new IllegalArgumentException("dependencies must belong to this graph");
+			}
+		}
+		
+		synchronized (nodes) {
+			if (isExecuted.get()) {
+				throw new IllegalStateException("the graph has already been executed");
+			}
+			
+			final Node node = new Node(this, task, dependencies.length);
+			
+			for (final Node dependency : dependencies) {
+				dependency.dependents.add(node);
+			}
+			
+			nodes.add(node);
+			
+			return node;
+		}
+	}
+	
+	/**
+	 * @return the nodes of the graph in the order they were added, not null
+	 */
+	public List<Node> getNodes() {
+		synchronized (nodes) {
+			return Collections.unmodifiableList(new ArrayList<>(nodes));
+		}
+	}
+	
+	/**
+	 * Executes the graph using the supplied CallbackExecutor. The tasks with no dependencies are
+	 * added to the executor and execution is started in batch mode. The other tasks are spawned
+	 * (see {@link CallbackExecutor#spawn(Runnable)}) as their dependencies finish, so the
+	 * executor's completion callbacks are delivered once the whole graph has finished. The graph
+	 * can only be executed once, and the executor must not have been started.
+	 * <p>
+	 * Only the tasks with no dependencies pass through the queue of the executor. The spawned
+	 * tasks bypass the queue, so they are not subject to the maximum number of in-flight tasks,
+	 * the rate limit or priority ordering, but they are still subject to the task timeout and to
+	 * cancellation.
+	 *
+	 * @param executor
+	 * 		the executor to run the tasks, not null
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code executor} is null
+	 * @throws IllegalStateException
+	 * 		if the graph has already been executed, or if the executor has already been started
+	 */
+	public void execute(final CallbackExecutor executor) {
+		if (executor == null) {
+			throw new IllegalArgumentException("executor cannot be null");
+		}
+		
+		final List<Node> roots = new ArrayList<>();
+		
+		synchronized (nodes) {
+			if (!isExecuted.compareAndSet(false, true)) {
+				throw new IllegalStateException("the graph has already been executed");
+			}
+			
+			for (final Node node : nodes) {
+				if (node.remainingDependencies.get() == 0) {
+					roots.add(node);
+				}
+			}
+		}
+		
+		this.executor = executor;
+		
+		// Tasks skipped by the executor never run, so they must be completed here instead
+		executor.registerOnTaskCompleteListener(new OnTaskCompleteListener() {
+			@Override
+			public void onTaskComplete(final CallbackExecutor callbackExecutor,
+					final TaskOutcome outcome) {
+				if (outcome.getTask() instanceof NodeTask) {
+					final Node node = ((NodeTask) outcome.getTask()).node;
+					
+					if (node.getGraph() == TaskGraph.this &&
+							node.getStatus() == Node.Status.PENDING) {
+						onNodeComplete(node, Node.Status.CANCELLED, null);
+					}
+				}
+			}
+		});
+		
+		executor.registerOnExecutionCompleteListener(new OnExecutionCompleteListener() {
+			@Override
+			public void onExecutionComplete(final CallbackExecutor callbackExecutor) {
+				for (final OnGraphCompleteListener listener : onGraphCompleteListeners) {
+					try {
+						listener.onGraphComplete(TaskGraph.this);
+					} catch (final RuntimeException e) {
+						reportListenerFailure(e);
+					}
+				}
+			}
+		});
+		
+		for (final Node root : roots) {
+			executor.addToQueue(new NodeTask(root));
+		}
+		
+		executor.execute();
+	}
+	
+	/**
+	 * Registers an OnNodeCompleteListener. The listener will receive a callback when each node
+	 * finishes, fails, is skipped or is cancelled. Callbacks are delivered on the thread which
+	 * ran or skipped the task. This method has no effect if the supplied listener is null or is
+	 * already registered.
+	 *
+	 * @param listener
+	 * 		the listener to register
+	 */
+	public void registerOnNodeCompleteListener(final OnNodeCompleteListener listener) {
+		if (listener != null) {
+			onNodeCompleteListeners.add(listener);
+		}
+	}
+	
+	/**
+	 * Unregisters an OnNodeCompleteListener. The listener will not receive callbacks when nodes
+	 * finish. This method has no effect if the supplied listener is null or is not currently
+	 * registered.
+	 *
+	 * @param listener
+	 * 		the listener to unregister
+	 */
+	public void unregisterOnNodeCompleteListener(final OnNodeCompleteListener listener) {
+		if (listener != null) {
+			onNodeCompleteListeners.remove(listener);
+		}
+	}
+	
+	/**
+	 * Registers an OnGraphCompleteListener. The listener will receive a callback when all nodes
+	 * have finished or been skipped. This method has no effect if the supplied listener is null
+	 * or is already registered.
+	 *
+	 * @param listener
+	 * 		the listener to register
+	 */
+	public void registerOnGraphCompleteListener(final OnGraphCompleteListener listener) {
+		if (listener != null) {
+			onGraphCompleteListeners.add(listener);
+		}
+	}
+	
+	/**
+	 * Unregisters an OnGraphCompleteListener. The listener will not receive a callback when the
+	 * graph finishes. This method has no effect if the supplied listener is null or is not
+	 * currently registered.
+	 *
+	 * @param listener
+	 * 		the listener to unregister
+	 */
+	public void unregisterOnGraphCompleteListener(final OnGraphCompleteListener listener) {
+		if (listener != null) {
+			onGraphCompleteListeners.remove(listener);
+		}
+	}
+	
+	/**
+	 * Records the result of a node, delivers the node callbacks, and releases the nodes which
+	 * depend on it. Dependents which are ready to run are spawned, dependents which can no longer
+	 * run are skipped, and all dependents are cancelled once execution is cancelled. A work list
+	 * is used instead of recursion, since skipping can cascade through a long chain of nodes.
+	 *
+	 * @param node
+	 * 		the node which finished, not null
+	 * @param status
+	 * 		how the node finished, not null
+	 * @param failure
+	 * 		the exception thrown by the task, null if the task did not fail
+	 */
+	private void onNodeComplete(final Node node, final Node.Status status,
+			final Throwable failure) {
+		final Deque<Node> finishedNodes = new ArrayDeque<>();
+		node.finish(status, failure);
+		finishedNodes.add(node);
+		
+		while (!finishedNodes.isEmpty()) {
+			final Node finished = finishedNodes.poll();
+			
+			for (final OnNodeCompleteListener listener : onNodeCompleteListeners) {
+				try {
+					listener.onNodeComplete(this, finished);
+				} catch (final RuntimeException e) {
+					reportListenerFailure(e);
+				}
+			}
+			
+			for (final Node dependent : finished.dependents) {
+				if (finished.getStatus() != Node.Status.SUCCEEDED) {
+					dependent.hasUnsuccessfulDependency = true;
+				}
+				
+				if (dependent.remainingDependencies.decrementAndGet() == 0) {
+					if (executor.isCancelled()) {
+						dependent.finish(Node.Status.CANCELLED, null);
+						finishedNodes.add(dependent);
+					} else if (dependent.hasUnsuccessfulDependency) {
+						dependent.finish(Node.Status.SKIPPED, null);
+						finishedNodes.add(dependent);
+					} else {
+						executor.spawn(new NodeTask(dependent));
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Reports an exception thrown by a listener to the uncaught exception handler of the
+	 * current thread, so that one faulty listener cannot stop the remaining callbacks from
+	 * being delivered or the dependents of a node from being released.
+	 *
+	 * @param failure
+	 * 		the exception thrown by the listener, not null
+	 */
+	private static void reportListenerFailure(final RuntimeException failure) {
+		final Thread thread = Thread.currentThread();
+		thread.getUncaughtExceptionHandler().uncaughtException(thread, failure);
+	}
+	
+	/**
+	 * A task in the graph.
+	 */
+	public static final class Node {
+		/**
+		 * The graph this node belongs to.
+		 */
+		private final TaskGraph graph;
+		
+		/**
+		 * The task to run.
+		 */
+		private final Runnable task;
+		
+		/**
+		 * The nodes which depend on this node. Only modified before the graph is executed.
+		 */
+		private final List<Node> dependents = new ArrayList<>();
+		
+		/**
+		 * The number of dependencies which have not finished.
+		 */
+		private final AtomicInteger remainingDependencies;
+		
+		/**
+		 * Whether or not any dependency failed or was skipped. Always set before the remaining
+		 * dependencies are decremented.
+		 */
+		private volatile boolean hasUnsuccessfulDependency = false;
+		
+		/**
+		 * How the node finished.
+		 */
+		private volatile Status status = Status.PENDING;
+		
+		/**
+		 * The exception thrown by the task, or null if the task did not fail.
+		 */
+		private volatile Throwable failure = null;
+		
+		/**
+		 * Constructs a new Node.
+		 *
+		 * @param graph
+		 * 		the graph the node belongs to, not null
+		 * @param task
+		 * 		the task to run, not null
+		 * @param dependencyCount
+		 * 		the number of dependencies
+		 */
+		private Node(final TaskGraph graph, final Runnable task, final int dependencyCount) {
+			this.graph = graph;
+			this.task = task;
+			this.remainingDependencies = new AtomicInteger(dependencyCount);
+		}
+		
+		/**
+		 * @return the task of this node, not null
+		 */
+		public Runnable getTask() {
+			return task;
+		}
+		
+		/**
+		 * @return how the node finished, or {@link Status#PENDING} if it has not finished
+		 */
+		public Status getStatus() {
+			return status;
+		}
+		
+		/**
+		 * @return the exception thrown by the task, or null if the task did not fail
+		 */
+		public Throwable getFailure() {
+			return failure;
+		}
+		
+		/**
+		 * @return the graph this node belongs to, not null
+		 */
+		private TaskGraph getGraph() {
+			return graph;
+		}
+		
+		/**
+		 * Records how the node finished.
+		 *
+		 * @param status
+		 * 		how the node finished, not null
+		 * @param failure
+		 * 		the exception thrown by the task, null if the task did not fail
+		 */
+		private void finish(final Status status, final Throwable failure) {
+			this.failure = failure;
+			this.status = status;
+		}
+		
+		/**
+		 * The states of a node.
+		 */
+		public enum Status {
+			/**
+			 * The node has not finished.
+			 */
+			PENDING,
+			
+			/**
+			 * The task ran and completed normally.
+			 */
+			SUCCEEDED,
+			
+			/**
+			 * The task ran and threw an exception.
+			 */
+			FAILED,
+			
+			/**
+			 * The task did not run because one of its dependencies failed or was skipped.
+			 */
+			SKIPPED,
+			
+			/**
+			 * The task did not run because execution was cancelled or timed out.
+			 */
+			CANCELLED
+		}
+	}
+	
+	/**
+	 * Runs the task of a node and reports the result to the graph.
+	 */
+	private class NodeTask implements Runnable {
+		/**
+		 * The node to run.
+		 */
+		private final Node node;
+		
+		/**
+		 * Constructs a new NodeTask.
+		 *
+		 * @param node
+		 * 		the node to run, not null
+		 */
+		private NodeTask(final Node node) {
+			this.node = node;
+		}
+		
+		@Override
+		public void run() {
+			try {
+				node.task.run();
+			} catch (final RuntimeException | Error e) {
+				onNodeComplete(node, Node.Status.FAILED, e);
+				
+				// Let the executor report the failure too
+				throw e;
+			}
+			
+			onNodeComplete(node, Node.Status.SUCCEEDED, null);
+		}
+	}
+	
+	/**
+	 * Interface definition for a callback to be delivered when a node finishes.
+	 */
+	public interface OnNodeCompleteListener {
+		/**
+		 * Called when a node finishes, fails, is skipped or is cancelled. The dependents of the
+		 * node are released after this callback returns, even if it throws an exception.
+		 *
+		 * @param graph
+		 * 		the graph containing the node
+		 * @param node
+		 * 		the node which finished
+		 */
+		void onNodeComplete(TaskGraph graph, Node node);
+	}
+	
+	/**
+	 * Interface definition for a callback to be delivered when the whole graph finishes.
+	 */
+	public interface OnGraphCompleteListener {
+		/**
+		 * Called when all nodes in the graph have finished, been skipped or been cancelled.
+		 *
+		 * @param graph
+		 * 		the graph which finished
+		 */
+		void onGraphComplete(TaskGraph graph);
+	}
+}
\ No newline at end of file
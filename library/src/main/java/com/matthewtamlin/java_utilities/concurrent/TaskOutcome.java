@@ -0,0 +1,158 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.matthewtamlin.java_utilities.concurrent;
+
+import com.matthewtamlin.java_utilities.testing.Tested;
+
+/**
+ * The outcome of a single task executed by a {@link CallbackExecutor}. Records how the task
+ * finished, the failure if there was one, and how long the task spent waiting and running.
+ *
+ * @deprecated this entire library has been deprecated.
+ */
+@SuppressWarnings("WeakerAccess") // This is a public API class
+@Tested(testMethod = "automated")
+@Deprecated
+public final class TaskOutcome {
+	/**
+	 * The task which finished.
+	 */
+	private final Runnable task;
+	
+	/**
+	 * How the task finished.
+	 */
+	private final Status status;
+	
+	/**
+	 * The exception thrown by the task, or null if the task did not fail.
+	 */
+	private final Throwable failure;
+	
+	/**
+	 * The time the task spent waiting to start, measured in nanoseconds.
+	 */
+	private final long waitTimeNanos;
+	
+	/**
+	 * The time the task spent running, measured in nanoseconds.
+	 */
+	private final long runTimeNanos;
+	
+	/**
+	 * Constructs a new TaskOutcome.
+	 *
+	 * @param task
+	 * 		the task which finished, not null
+	 * @param status
+	 * 		how the task finished, not null
+	 * @param failure
+	 * 		the exception thrown by the task, null if the task did not fail
+	 * @param waitTimeNanos
+	 * 		the time the task spent waiting to start, measured in nanoseconds
+	 * @param runTimeNanos
+	 * 		the time the task spent running, measured in nanoseconds
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code task} or {@code status} is null
+	 */
+	public TaskOutcome(final Runnable task, final Status status, final Throwable failure,
+			final long waitTimeNanos, final long runTimeNanos) {
+		if (task == null) {
+			throw new IllegalArgumentException("task cannot be null");
+		}
+		
+		if (status == null) {
+			throw new IllegalArgumentException("status cannot be null");
+		}
+		
+		this.task = task;
+		this.status = status;
+		this.failure = failure;
+		this.waitTimeNanos = waitTimeNanos;
+		this.runTimeNanos = runTimeNanos;
+	}
+	
+	/**
+	 * @return the task which finished, not null
+	 */
+	public Runnable getTask() {
+		return task;
+	}
+	
+	/**
+	 * @return how the task finished, not null
+	 */
+	public Status getStatus() {
+		return status;
+	}
+	
+	/**
+	 * @return the exception thrown by the task, or null if the task did not fail
+	 */
+	public Throwable getFailure() {
+		return failure;
+	}
+	
+	/**
+	 * @return the time the task spent waiting to start, measured in nanoseconds
+	 */
+	public long getWaitTimeNanos() {
+		return waitTimeNanos;
+	}
+	
+	/**
+	 * @return the time the task spent running, measured in nanoseconds, zero if the task never
+	 * started
+	 */
+	public long getRunTimeNanos() {
+		return runTimeNanos;
+	}
+	
+	@Override
+	public String toString() {
+		return "TaskOutcome{task=" + task + ", status=" + status + ", failure=" + failure +
+				", waitTimeNanos=" + waitTimeNanos + ", runTimeNanos=" + runTimeNanos + "}";
+	}
+	
+	/**
+	 * The ways in which a task can finish.
+	 */
+	public enum Status {
+		/**
+		 * The task ran and completed normally.
+		 */
+		SUCCEEDED,
+		
+		/**
+		 * The task ran and threw an exception.
+		 */
+		FAILED,
+		
+		/**
+		 * The task was cancelled, either before it started or by interrupting it.
+		 */
+		CANCELLED,
+		
+		/**
+		 * A timeout expired, either before the task started or while it was running. Tasks which
+		 * time out while running are interrupted.
+		 */
+		TIMED_OUT
+	}
+}
\ No newline at end of file
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.matthewtamlin.java_utilities.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A hierarchical timing wheel which tracks timeouts measured in ticks. Each level is a ring of
+ * slots, and each slot of a level spans a full rotation of the level below. A timeout is stored
+ * in the lowest level which can hold its deadline, and is moved down a level (cascaded) when the
+ * level below reaches its slot. Adding a timeout and advancing by one tick are both constant time
+ * operations (cascading is amortised across the ticks of a rotation), no matter how many timeouts
+ * are pending, unlike a priority queue which costs a logarithmic heap operation per timeout.
+ * <p>
+ * This class is not thread safe. It is intended to be owned by a single ticker thread, with
+ * timeouts from other threads handed over through a concurrent queue.
+ */
+class TimingWheel {
+	/**
+	 * The number of bits of the tick count resolved by each level.
+	 */
+	private static final int BITS_PER_LEVEL = 6;
+	
+	/**
+	 * The number of slots in each level.
+	 */
+	private static final int SLOTS_PER_LEVEL = 1 << BITS_PER_LEVEL;
+	
+	/**
+	 * Masks a tick count to find a slot index.
+	 */
+	private static final long SLOT_MASK = SLOTS_PER_LEVEL - 1;
+	
+	/**
+	 * The maximum number of levels, enough for any deadline which fits in a long.
+	 */
+	private static final int MAX_LEVELS = 63 / BITS_PER_LEVEL + 1;
+	
+	/**
+	 * The slots of each level. Each slot holds a linked list of timeouts. Levels are only created
+	 * when a timeout needs them.
+	 */
+	private final List<Timeout[]> levels = new ArrayList<>();
+	
+	/**
+	 * The tick which was most recently processed.
+	 */
+	private long currentTick;
+	
+	/**
+	 * The number of timeouts in the wheel.
+	 */
+	private int size;
+	
+	/**
+	 * Constructs a new TimingWheel starting at tick zero.
+	 */
+	TimingWheel() {
+		levels.add(new Timeout[SLOTS_PER_LEVEL]);
+	}
+	
+	/**
+	 * Adds a timeout to the wheel.
+	 *
+	 * @param timeout
+	 * 		the timeout to add, not null, not already in the wheel
+	 *
+	 * @return true if the timeout was added, false if its deadline has already been reached (in
+	 * which case the caller should expire it immediately)
+	 */
+	boolean add(final Timeout timeout) {
+		final long ticksRemaining = timeout.deadlineTick - currentTick;
+		
+		if (ticksRemaining <= 0) {
+			return false;
+		}
+		
+		int level = 0;
+		
+		while (level < MAX_LEVELS - 1 && ticksRemaining >= 1L << (BITS_PER_LEVEL * (level + 1))) {
+			level++;
+		}
+		
+		while (levels.size() <= level) {
+			levels.add(new Timeout[SLOTS_PER_LEVEL]);
+		}
+		
+		final Timeout[] slots = levels.get(level);
+		final int index = (int) ((timeout.deadlineTick >>> (BITS_PER_LEVEL * level)) & SLOT_MASK);
+		
+		timeout.next = slots[index];
+		slots[index] = timeout;
+		size++;
+		
+		return true;
+	}
+	
+	/**
+	 * Advances the wheel by one tick, and collects the timeouts which expire on the new tick.
+	 *
+	 * @param expired
+	 * 		the list to add the expired timeouts to, not null
+	 */
+	void tick(final List<Timeout> expired) {
+		currentTick++;
+		
+		// Find the levels whose lower levels have completed a rotation
+		int wrappedLevels = 1;
+		
+		while (wrappedLevels < levels.size() &&
+				(currentTick & ((1L << (BITS_PER_LEVEL * wrappedLevels)) - 1)) == 0) {
+			wrappedLevels++;
+		}
+		
+		// Cascade from the top, so that timeouts can fall through several levels in one tick
+		for (int level = wrappedLevels - 1; level >= 1; level--) {
+			Timeout timeout = removeSlot(level);
+			
+			while (timeout != null) {
+				final Timeout next = timeout.next;
+				timeout.next = null;
+				
+				if (!add(timeout)) {
+					expired.add(timeout);
+				}
+				
+				timeout = next;
+			}
+		}
+		
+		Timeout timeout = removeSlot(0);
+		
+		while (timeout != null) {
+			final Timeout next = timeout.next;
+			timeout.next = null;
+			expired.add(timeout);
+			timeout = next;
+		}
+	}
+	
+	/**
+	 * @return the tick which was most recently processed
+	 */
+	long getCurrentTick() {
+		return currentTick;
+	}
+	
+	/**
+	 * @return the number of timeouts in the wheel
+	 */
+	int size() {
+		return size;
+	}
+	
+	/**
+	 * Removes all timeouts from the slot of a level which corresponds to the current tick.
+	 *
+	 * @param level
+	 * 		the level to remove the slot from
+	 *
+	 * @return the first timeout in the slot, or null if the slot was empty
+	 */
+	private Timeout removeSlot(final int level) {
+		final Timeout[] slots = levels.get(level);
+		final int index = (int) ((currentTick >>> (BITS_PER_LEVEL * level)) & SLOT_MASK);
+		final Timeout head = slots[index];
+		
+		slots[index] = null;
+		
+		for (Timeout timeout = head; timeout != null; timeout = timeout.next) {
+			size--;
+		}
+		
+		return head;
+	}
+	
+	/**
+	 * An action to run when a deadline is reached.
+	 */
+	static class Timeout {
+		/**
+		 * The tick on which the timeout expires.
+		 */
+		long deadlineTick;
+		
+		/**
+		 * The action to run when the timeout expires.
+		 */
+		final Runnable action;
+		
+		/**
+		 * The next timeout in the same slot, or null if this is the last.
+		 */
+		private Timeout next;
+		
+		/**
+		 * Constructs a new Timeout.
+		 *
+		 * @param deadlineTick
+		 * 		the tick on which the timeout expires
+		 * @param action
+		 * 		the action to run when the timeout expires, not null
+		 */
+		Timeout(final long deadlineTick, final Runnable action) {
+			this.deadlineTick = deadlineTick;
+			this.action = action;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,732 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.matthewtamlin.java_utilities.file;
+
+import com.matthewtamlin.java_utilities.testing.Tested;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An index of the files in a directory tree, which can be updated incrementally and persisted
+ * between runs. The snapshot records the last modified time and the listing of every directory
+ * in the tree. When the snapshot is updated, only the directories with changed modification
+ * times are listed again, so the cost of an update is proportional to the number of directories
+ * plus the number of changed entries, rather than to the total number of files.
+ * <p>
+ * Modifying a file in place does not change the modification time of its directory. Such
+ * modifications are only detected if {@link #update(boolean)} is asked to check every file,
+ * which costs one attribute read per file but still avoids listing unchanged directories. Like
+ * {@link PathFinder}, symbolic links are not followed and are recorded as files. Changes made in
+ * the same file system timestamp tick as the previous update may not be detected until the next
+ * change to the directory.
+ * <p>
+ * Directories which cannot be read due to their permissions are skipped rather than failing the
+ * whole update, and are reported by {@link Changes#getUnreadable()}. The last successful listing
+ * of a skipped directory is kept, so its files are not reported as removed, and the directory is
+ * listed again on every later update until it can be read.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @deprecated this entire library has been deprecated.
+ */
+@SuppressWarnings("WeakerAccess") // This is a public API class
+@Tested(testMethod = "automated")
+@Deprecated
+public class DirectorySnapshot {
+	/**
+	 * Identifies snapshot files.
+	 */
+	private static final int MAGIC = 0x4A555344;
+	
+	/**
+	 * The version of the snapshot file format.
+	 */
+	private static final int FORMAT_VERSION = 1;
+	
+	/**
+	 * The modification time recorded for a directory which has never been read successfully.
+	 * No real modification time matches it, so the directory is listed again on every update.
+	 */
+	private static final long UNREAD = Long.MIN_VALUE;
+	
+	/**
+	 * The root of the tree.
+	 */
+	private final Path root;
+	
+	/**
+	 * The record of each directory in the tree, keyed by path. Records which were committed by
+	 * a previous update are never modified, so that an update can work on a copy of this map
+	 * and simply discard it if the update fails.
+	 */
+	private Map<Path, DirectoryRecord> directories = new HashMap<>();
+	
+	/**
+	 * Constructs a new DirectorySnapshot.
+	 *
+	 * @param root
+	 * 		the root of the tree, not null
+	 */
+	private DirectorySnapshot(final Path root) {
+		this.root = root;
+	}
+	
+	/**
+	 * Creates a snapshot by walking the entire tree below the supplied directory.
+	 *
+	 * @param root
+	 * 		the directory to snapshot, not null
+	 *
+	 * @return the new snapshot
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code root} is null
+	 * @throws NotDirectoryException
+	 * 		if {@code root} is not a directory
+	 * @throws AccessDeniedException
+	 * 		if {@code root} cannot be read (unreadable sub-directories are skipped instead)
+	 * @throws IOException
+	 * 		if the tree cannot be read
+	 */
+	public static DirectorySnapshot capture(final Path root) throws IOException {
+		if (root == null) {
+			throw new IllegalArgumentException("root cannot be null");
+		}
+		
+		final DirectorySnapshot snapshot = new DirectorySnapshot(root);
+		final Changes changes = new Changes();
+		
+		if (snapshot.updateDirectory(root, changes, false) == null) {
+			throw new NotDirectoryException(root.toString());
+		}
+		
+		if (changes.unreadable.contains(root)) {
+			throw new AccessDeniedException(root.toString());
+		}
+		
+		return snapshot;
+	}
+	
+	/**
+	 * Reads a snapshot previously written by {@link #writeTo(Path)}.
+	 *
+	 * @param file
+	 * 		the file to read from, not null
+	 *
+	 * @return the snapshot
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code file} is null
+	 * @throws IOException
+	 * 		if the file cannot be read or is not a snapshot file
+	 */
+	public static DirectorySnapshot readFrom(final Path file) throws IOException {
+		if (file == null) {
+			throw new IllegalArgumentException("file cannot be null");
+		}
+		
+		try (final DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new GZIPInputStream(Files.newInputStream(file))))) {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+				throw new IOException("unrecognised snapshot file: " + file);
+			}
+			
+			final Path root = file.getFileSystem().getPath(in.readUTF());
+			final DirectorySnapshot snapshot = new DirectorySnapshot(root);
+			final int directoryCount = in.readInt();
+			
+			for (int i = 0; i < directoryCount; i++) {
+				final Path dir = root.resolve(in.readUTF());
+				final DirectoryRecord record = new DirectoryRecord(in.readLong());
+				final int entryCount = in.readInt();
+				
+				for (int j = 0; j < entryCount; j++) {
+					final String name = in.readUTF();
+					final boolean isDirectory = in.readBoolean();
+					final long size = in.readLong();
+					final long lastModified = in.readLong();
+					
+					record.entries.put(name, new EntryRecord(isDirectory, size, lastModified));
+				}
+				
+				snapshot.directories.put(dir, record);
+			}
+			
+			return snapshot;
+		}
+	}
+	
+	/**
+	 * Writes this snapshot to a compressed binary file, replacing any existing content. Paths
+	 * are stored relative to the root of the tree. The snapshot is first written to a temporary
+	 * file in the same directory, which is then atomically moved over the target, so a failed or
+	 * interrupted write never leaves a truncated snapshot behind.
+	 *
+	 * @param file
+	 * 		the file to write to, not null
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code file} is null
+	 * @throws IOException
+	 * 		if the file cannot be written
+	 */
+	public void writeTo(final Path file) throws IOException {
+		if (file == null) {
+			throw new IllegalArgumentException("file cannot be null");
+		}
+		
+		final Path directory = file.toAbsolutePath().getParent();
+		final Path temporaryFile = Files.createTempFile(directory, file.getFileName().toString(),
+				".tmp");
+		
+		try {
+			writeContents(temporaryFile);
+			Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			// Only exists if the write or the move failed
+			Files.deleteIfExists(temporaryFile);
+		}
+	}
+	
+	/**
+	 * Writes the contents of this snapshot to a file.
+	 *
+	 * @param file
+	 * 		the file to write to, not null
+	 *
+	 * @throws IOException
+	 * 		if the file cannot be written
+	 */
+	private void writeContents(final Path file) throws IOException {
+		try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new GZIPOutputStream(Files.newOutputStream(file))))) {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeUTF(root.toString());
+			out.writeInt(directories.size());
+			
+			for (final Map.Entry<Path, DirectoryRecord> directory : directories.entrySet()) {
+				final DirectoryRecord record = directory.getValue();
+				
+				out.writeUTF(root.relativize(directory.getKey()).toString());
+				out.writeLong(record.lastModified);
+				out.writeInt(record.entries.size());
+				
+				for (final Map.Entry<String, EntryRecord> entry : record.entries.entrySet()) {
+					out.writeUTF(entry.getKey());
+					out.writeBoolean(entry.getValue().isDirectory);
+					out.writeLong(entry.getValue().size);
+					out.writeLong(entry.getValue().lastModified);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @return the root of the tree
+	 */
+	public Path getRoot() {
+		return root;
+	}
+	
+	/**
+	 * @return all files in the tree at the time of the last update, not null
+	 */
+	public Set<Path> getFiles() {
+		final Set<Path> files = new HashSet<>();
+		
+		for (final Map.Entry<Path, DirectoryRecord> directory : directories.entrySet()) {
+			for (final Map.Entry<String, EntryRecord> entry :
+					directory.getValue().entries.entrySet()) {
+				if (!entry.getValue().isDirectory) {
+					files.add(directory.getKey().resolve(entry.getKey()));
+				}
+			}
+		}
+		
+		return files;
+	}
+	
+	/**
+	 * Updates this snapshot to reflect the current state of the tree, without checking files in
+	 * unchanged directories for in place modification. Equivalent to {@code update(false)}.
+	 *
+	 * @return the changes since the last update, not null
+	 *
+	 * @throws IOException
+	 * 		if the tree cannot be read
+	 */
+	public Changes update() throws IOException {
+		return update(false);
+	}
+	
+	/**
+	 * Updates this snapshot to reflect the current state of the tree. Only directories which
+	 * have been modified since the last update are listed again. If the root directory no longer
+	 * exists, then all files are reported as removed. If the update fails, the snapshot is left
+	 * unchanged so that the next update reports all changes since the last successful update.
+	 *
+	 * @param checkAllFiles
+	 * 		true to read the attributes of every file so that files modified in place are
+	 * 		detected, false to only detect modifications in directories which have changed
+	 *
+	 * @return the changes since the last update, not null
+	 *
+	 * @throws IOException
+	 * 		if the tree cannot be read
+	 */
+	public Changes update(final boolean checkAllFiles) throws IOException {
+		final Changes changes = new Changes();
+		final Map<Path, DirectoryRecord> committed = directories;
+		boolean isComplete = false;
+		
+		directories = new HashMap<>(committed);
+		
+		try {
+			updateDirectory(root, changes, checkAllFiles);
+			isComplete = true;
+		} finally {
+			if (!isComplete) {
+				directories = committed;
+			}
+		}
+		
+		return changes;
+	}
+	
+	/**
+	 * Updates the record of a single directory and recursively updates its sub-directories.
+	 *
+	 * @param dir
+	 * 		the directory to update, not null
+	 * @param changes
+	 * 		the changes to add to, not null
+	 * @param checkAllFiles
+	 * 		whether or not to check the files in unchanged directories for modification
+	 *
+	 * @return the updated record, or null if the directory no longer exists
+	 *
+	 * @throws IOException
+	 * 		if the directory cannot be read
+	 */
+	private DirectoryRecord updateDirectory(final Path dir, final Changes changes,
+			final boolean checkAllFiles) throws IOException {
+		final DirectoryRecord oldRecord = directories.get(dir);
+		final BasicFileAttributes attributes = readAttributes(dir);
+		
+		if (attributes == null || !attributes.isDirectory()) {
+			removeDirectory(dir, changes);
+			return null;
+		}
+		
+		final long lastModified = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+		
+		if (oldRecord != null && oldRecord.lastModified == lastModified) {
+			return updateUnchangedDirectory(dir, oldRecord, changes, checkAllFiles);
+		}
+		
+		final DirectoryRecord newRecord = new DirectoryRecord(lastModified);
+		
+		try (final DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+			for (final Path path : stream) {
+				final BasicFileAttributes entryAttributes = readAttributes(path);
+				
+				// Skip entries deleted since the directory was listed
+				if (entryAttributes != null) {
+					newRecord.entries.put(path.getFileName().toString(),
+							new EntryRecord(entryAttributes));
+				}
+			}
+		} catch (final AccessDeniedException e) {
+			return skipUnreadableDirectory(dir, oldRecord, changes);
+		}
+		
+		// Only publish the record once the listing is complete, so that a failed listing leaves
+		// the old record in place and the directory is listed again by the next update
+		directories.put(dir, newRecord);
+		
+		final Map<String, EntryRecord> oldEntries = oldRecord == null ?
+				Collections.<String, EntryRecord>emptyMap() :
+				oldRecord.entries;
+		
+		// Report entries which no longer exist, or which changed between file and directory
+		for (final Map.Entry<String, EntryRecord> oldEntry : oldEntries.entrySet()) {
+			final EntryRecord newEntry = newRecord.entries.get(oldEntry.getKey());
+			
+			if (newEntry == null || newEntry.isDirectory != oldEntry.getValue().isDirectory) {
+				removeEntry(dir.resolve(oldEntry.getKey()), oldEntry.getValue(), changes);
+			}
+		}
+		
+		final Iterator<Map.Entry<String, EntryRecord>> newEntries =
+				newRecord.entries.entrySet().iterator();
+		
+		while (newEntries.hasNext()) {
+			final Map.Entry<String, EntryRecord> newEntry = newEntries.next();
+			final EntryRecord oldEntry = oldEntries.get(newEntry.getKey());
+			final Path path = dir.resolve(newEntry.getKey());
+			
+			if (newEntry.getValue().isDirectory) {
+				// Removes the entry if the directory was deleted before it could be visited
+				if (updateDirectory(path, changes, checkAllFiles) == null) {
+					newEntries.remove();
+				}
+			} else if (oldEntry == null || oldEntry.isDirectory) {
+				changes.added.add(path);
+			} else if (oldEntry.isModified(newEntry.getValue())) {
+				changes.modified.add(path);
+			}
+		}
+		
+		return newRecord;
+	}
+	
+	/**
+	 * Handles a directory which cannot be read. The old record is kept if there is one, so that
+	 * the files last seen in the directory are not reported as removed. Otherwise an empty record
+	 * is added which never matches the modification time of the directory, so that the directory
+	 * is listed again on the next update.
+	 *
+	 * @param dir
+	 * 		the directory which could not be read, not null
+	 * @param oldRecord
+	 * 		the existing record of the directory, or null if the directory is new
+	 * @param changes
+	 * 		the changes to add to, not null
+	 *
+	 * @return the record of the directory, not null
+	 */
+	private DirectoryRecord skipUnreadableDirectory(final Path dir,
+			final DirectoryRecord oldRecord, final Changes changes) {
+		changes.unreadable.add(dir);
+		
+		if (oldRecord != null) {
+			return oldRecord;
+		}
+		
+		final DirectoryRecord record = new DirectoryRecord(UNREAD);
+		directories.put(dir, record);
+		
+		return record;
+	}
+	
+	/**
+	 * Updates a directory which has not been modified since the last update. The listing is
+	 * reused, but sub-directories are still updated since changes deeper in the tree do not
+	 * affect the modification time of this directory. The existing record is not modified; if
+	 * any entry changes then a copy of the record replaces it.
+	 *
+	 * @param dir
+	 * 		the directory to update, not null
+	 * @param record
+	 * 		the existing record of the directory, not null
+	 * @param changes
+	 * 		the changes to add to, not null
+	 * @param checkAllFiles
+	 * 		whether or not to check the files in the directory for modification
+	 *
+	 * @return the updated record, not null
+	 *
+	 * @throws IOException
+	 * 		if the tree cannot be read
+	 */
+	private DirectoryRecord updateUnchangedDirectory(final Path dir, final DirectoryRecord record,
+			final Changes changes, final boolean checkAllFiles) throws IOException {
+		DirectoryRecord updatedRecord = record;
+		
+		for (final Map.Entry<String, EntryRecord> entry : record.entries.entrySet()) {
+			final Path path = dir.resolve(entry.getKey());
+			
+			if (entry.getValue().isDirectory) {
+				if (updateDirectory(path, changes, checkAllFiles) == null) {
+					updatedRecord = copyIfCommitted(dir, record, updatedRecord);
+					updatedRecord.entries.remove(entry.getKey());
+				}
+			} else if (checkAllFiles) {
+				final BasicFileAttributes attributes = readAttributes(path);
+				
+				if (attributes == null) {
+					changes.removed.add(path);
+					updatedRecord = copyIfCommitted(dir, record, updatedRecord);
+					updatedRecord.entries.remove(entry.getKey());
+				} else {
+					final EntryRecord current = new EntryRecord(attributes);
+					
+					if (entry.getValue().isModified(current)) {
+						changes.modified.add(path);
+						updatedRecord = copyIfCommitted(dir, record, updatedRecord);
+						updatedRecord.entries.put(entry.getKey(), current);
+					}
+				}
+			}
+		}
+		
+		return updatedRecord;
+	}
+	
+	/**
+	 * Returns a record which can be modified by the current update. If the record has not yet
+	 * been copied, a copy is made and replaces the committed record in the snapshot.
+	 *
+	 * @param dir
+	 * 		the directory the record belongs to, not null
+	 * @param committed
+	 * 		the record committed by a previous update, not null
+	 * @param current
+	 * 		the current record of the directory, either {@code committed} or a copy of it
+	 *
+	 * @return a record which is safe to modify, not null
+	 */
+	private DirectoryRecord copyIfCommitted(final Path dir, final DirectoryRecord committed,
+			final DirectoryRecord current) {
+		if (current != committed) {
+			return current;
+		}
+		
+		final DirectoryRecord copy = new DirectoryRecord(committed.lastModified);
+		copy.entries.putAll(committed.entries);
+		directories.put(dir, copy);
+		
+		return copy;
+	}
+	
+	/**
+	 * Removes a file or directory from the snapshot and reports the removed files.
+	 *
+	 * @param path
+	 * 		the path of the entry, not null
+	 * @param entry
+	 * 		the record of the entry, not null
+	 * @param changes
+	 * 		the changes to add to, not null
+	 */
+	private void removeEntry(final Path path, final EntryRecord entry, final Changes changes) {
+		if (entry.isDirectory) {
+			removeDirectory(path, changes);
+		} else {
+			changes.removed.add(path);
+		}
+	}
+	
+	/**
+	 * Removes a directory and everything below it from the snapshot, and reports the removed
+	 * files.
+	 *
+	 * @param dir
+	 * 		the directory to remove, not null
+	 * @param changes
+	 * 		the changes to add to, not null
+	 */
+	private void removeDirectory(final Path dir, final Changes changes) {
+		final DirectoryRecord record = directories.remove(dir);
+		
+		if (record != null) {
+			for (final Map.Entry<String, EntryRecord> entry : record.entries.entrySet()) {
+				removeEntry(dir.resolve(entry.getKey()), entry.getValue(), changes);
+			}
+		}
+	}
+	
+	/**
+	 * Reads the attributes of a file without following symbolic links.
+	 *
+	 * @param path
+	 * 		the file to read, not null
+	 *
+	 * @return the attributes, or null if the file does not exist
+	 *
+	 * @throws IOException
+	 * 		if the attributes cannot be read
+	 */
+	private static BasicFileAttributes readAttributes(final Path path) throws IOException {
+		try {
+			return Files.readAttributes(path, BasicFileAttributes.class,
+					LinkOption.NOFOLLOW_LINKS);
+		} catch (final NoSuchFileException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * The changes found by an update. Each set contains the paths of files (not directories),
+	 * except for the set of unreadable directories.
+	 */
+	public static class Changes {
+		/**
+		 * The files which were added.
+		 */
+		private final Set<Path> added = new HashSet<>();
+		
+		/**
+		 * The files which were removed.
+		 */
+		private final Set<Path> removed = new HashSet<>();
+		
+		/**
+		 * The files which were modified.
+		 */
+		private final Set<Path> modified = new HashSet<>();
+		
+		/**
+		 * The directories which could not be read.
+		 */
+		private final Set<Path> unreadable = new HashSet<>();
+		
+		/**
+		 * @return the files which were added, not null
+		 */
+		public Set<Path> getAdded() {
+			return Collections.unmodifiableSet(added);
+		}
+		
+		/**
+		 * @return the files which were removed, not null
+		 */
+		public Set<Path> getRemoved() {
+			return Collections.unmodifiableSet(removed);
+		}
+		
+		/**
+		 * @return the files which were modified, not null
+		 */
+		public Set<Path> getModified() {
+			return Collections.unmodifiableSet(modified);
+		}
+		
+		/**
+		 * @return the directories which were skipped because they could not be read, not null
+		 */
+		public Set<Path> getUnreadable() {
+			return Collections.unmodifiableSet(unreadable);
+		}
+		
+		/**
+		 * @return true if no files were added, removed or modified, false otherwise
+		 */
+		public boolean isEmpty() {
+			return added.isEmpty() && removed.isEmpty() && modified.isEmpty();
+		}
+	}
+	
+	/**
+	 * The recorded state of a directory.
+	 */
+	private static class DirectoryRecord {
+		/**
+		 * The last modified time of the directory when it was listed, measured in nanoseconds
+		 * since the epoch.
+		 */
+		private final long lastModified;
+		
+		/**
+		 * The contents of the directory, keyed by file name.
+		 */
+		private final Map<String, EntryRecord> entries = new HashMap<>();
+		
+		/**
+		 * Constructs a new DirectoryRecord.
+		 *
+		 * @param lastModified
+		 * 		the last modified time of the directory, measured in nanoseconds since the epoch
+		 */
+		private DirectoryRecord(final long lastModified) {
+			this.lastModified = lastModified;
+		}
+	}
+	
+	/**
+	 * The recorded state of a single entry in a directory listing.
+	 */
+	private static class EntryRecord {
+		/**
+		 * Whether or not the entry is a directory.
+		 */
+		private final boolean isDirectory;
+		
+		/**
+		 * The size of the entry, measured in bytes.
+		 */
+		private final long size;
+		
+		/**
+		 * The last modified time of the entry, measured in nanoseconds since the epoch.
+		 */
+		private final long lastModified;
+		
+		/**
+		 * Constructs a new EntryRecord.
+		 *
+		 * @param isDirectory
+		 * 		whether or not the entry is a directory
+		 * @param size
+		 * 		the size of the entry, measured in bytes
+		 * @param lastModified
+		 * 		the last modified time of the entry, measured in nanoseconds since the epoch
+		 */
+		private EntryRecord(final boolean isDirectory, final long size, final long lastModified) {
+			this.isDirectory = isDirectory;
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+		
+		/**
+		 * Constructs a new EntryRecord from file attributes.
+		 *
+		 * @param attributes
+		 * 		the attributes of the entry, not null
+		 */
+		private EntryRecord(final BasicFileAttributes attributes) {
+			this(attributes.isDirectory(), attributes.size(),
+					attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS));
+		}
+		
+		/**
+		 * Determines whether or not the supplied record shows a modification to this entry.
+		 *
+		 * @param current
+		 * 		the current record of the entry, not null
+		 *
+		 * @return true if the size or last modified time differs, false otherwise
+		 */
+		private boolean isModified(final EntryRecord current) {
+			return current.size != size || current.lastModified != lastModified;
+		}
+	}
+}
@@ -18,13 +18,31 @@ package com.matthewtamlin.java_utilities.file;
 
 import com.matthewtamlin.java_utilities.testing.Tested;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Searches a directory to find all contained files. The search is recursive and will continue
- * down the file tree until there are no more directories to explore.
+ * down the file tree until there are no more directories to explore. Searches can be performed
+ * on the calling thread, in parallel using a ForkJoinPool, or lazily as the results are
+ * iterated.
  *
  * @deprecated this entire library has been deprecated.
  */
@@ -45,22 +63,387 @@ public class FileFinder {
 	 *
 	 * @return all files contained within the supplied directory and its recursive sub-directories
 	 */
-	@SuppressWarnings("ConstantConditions") // Check for isDirectory() eliminates NPE risk
 	public static Set<File> searchDownTreeFrom(final File dir) {
 		final Set<File> files = new HashSet<>();
+		searchDownTreeFrom(dir, files);
 		
-		if (dir.isDirectory()) {
-			for (final File f : dir.listFiles()) {
-				// If the file is a directory then recurse, otherwise add the file to the
-				// collection
+		return files;
+	}
+	
+	/**
+	 * Performs the search using a new ForkJoinPool, so that sub-directories are searched
+	 * concurrently. The pool is shut down once the search completes. The results are the same as
+	 * those returned by {@link #searchDownTreeFrom(File)}.
+	 *
+	 * @param dir
+	 * 		the directory to search, not null
+	 * @param parallelism
+	 * 		the number of threads to use, greater than zero
+	 *
+	 * @return all files contained within the supplied directory and its recursive
+	 * sub-directories, as a thread-safe set
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code dir} is null
+	 * @throws IllegalArgumentException
+	 * 		if {@code parallelism} is less than 1
+	 */
+	public static Set<File> searchDownTreeInParallelFrom(final File dir, final int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be greater than zero");
+		}
+		
+		final ForkJoinPool pool = new ForkJoinPool(parallelism);
+		
+		try {
+			return searchDownTreeInParallelFrom(dir, pool);
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * Performs the search using the supplied ForkJoinPool, so that sub-directories are searched
+	 * concurrently. The pool is not shut down once the search completes. The results are the
+	 * same as those returned by {@link #searchDownTreeFrom(File)}.
+	 *
+	 * @param dir
+	 * 		the directory to search, not null
+	 * @param pool
+	 * 		the pool to use for the search, not null
+	 *
+	 * @return all files contained within the supplied directory and its recursive
+	 * sub-directories, as a thread-safe set
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code dir} is null
+	 * @throws IllegalArgumentException
+	 * 		if {@code pool} is null
+	 */
+	public static Set<File> searchDownTreeInParallelFrom(final File dir, final ForkJoinPool pool) {
+		if (dir == null) {
+			throw new IllegalArgumentException("dir cannot be null");
+		}
+		
+		if (pool == null) {
+			throw new IllegalArgumentException("pool cannot be null");
+		}
+		
+		// All tasks add directly to the same set, so no merging is needed when tasks complete
+		final Set<File> files = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+		pool.invoke(new SearchTask(dir, files));
+		
+		return files;
+	}
+	
+	/**
+	 * Lazily performs the search. Rather than collecting all files before returning, the returned
+	 * Iterable walks the tree as it is iterated, so the first files are available immediately.
+	 * Each directory is read through a {@link DirectoryStream} as the walk passes through it, so
+	 * only one open stream per level between {@code dir} and the current position is held, and
+	 * memory use is bounded by the depth of the tree rather than the number of files in it. Each
+	 * call to {@link Iterable#iterator()} starts a new walk, and returns a {@link TreeIterator}.
+	 * The streams are closed once the walk is complete, so iterations which stop early should
+	 * close the iterator, or use {@link #iteratorDownTreeFrom(File)} in a try-with-resources
+	 * statement. The iterated files are the same as those returned by {@link
+	 * #searchDownTreeFrom(File)}, however no guarantee is made about ordering.
+	 *
+	 * @param dir
+	 * 		the directory to search, not null
+	 *
+	 * @return all files contained within the supplied directory and its recursive
+	 * sub-directories, as a lazily evaluated Iterable
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code dir} is null
+	 */
+	public static Iterable<File> iterateDownTreeFrom(final File dir) {
+		if (dir == null) {
+			throw new IllegalArgumentException("dir cannot be null");
+		}
+		
+		return new Iterable<File>() {
+			@Override
+			public Iterator<File> iterator() {
+				return new TreeIterator(dir);
+			}
+		};
+	}
+	
+	/**
+	 * Starts a lazy walk of the tree, as described in {@link #iterateDownTreeFrom(File)}. The
+	 * returned iterator holds open directory streams until it is exhausted or closed, so it
+	 * should be closed if the walk is stopped early.
+	 *
+	 * @param dir
+	 * 		the directory to search, not null
+	 *
+	 * @return an iterator over all files contained within the supplied directory and its
+	 * recursive sub-directories, not null
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code dir} is null
+	 */
+	public static TreeIterator iteratorDownTreeFrom(final File dir) {
+		if (dir == null) {
+			throw new IllegalArgumentException("dir cannot be null");
+		}
+		
+		return new TreeIterator(dir);
+	}
+	
+	/**
+	 * Recursively searches the supplied directory and adds all files found to the supplied set.
+	 *
+	 * @param dir
+	 * 		the directory to search, not null
+	 * @param files
+	 * 		the set to add the files to, not null
+	 */
+	private static void searchDownTreeFrom(final File dir, final Set<File> files) {
+		final File[] contents = dir.isDirectory() ? dir.listFiles() : null;
+		
+		// Null indicates the directory could not be read, so it is skipped like in the other
+		// searches
+		if (contents == null) {
+			return;
+		}
+		
+		for (final File f : contents) {
+			// If the file is a directory then recurse, otherwise add the file to the collection
+			if (f.isDirectory()) {
+				searchDownTreeFrom(f, files);
+			} else {
+				files.add(f);
+			}
+		}
+	}
+	
+	/**
+	 * Searches a single directory, adding the contained files to a shared set and forking a new
+	 * task for each contained directory.
+	 */
+	private static class SearchTask extends RecursiveAction {
+		/**
+		 * Version of the serialized form. Tasks are never serialized, but ForkJoinTask is
+		 * Serializable.
+		 */
+		private static final long serialVersionUID = 1L;
+		
+		/**
+		 * The directory to search.
+		 */
+		private final File dir;
+		
+		/**
+		 * The set to add the files to. The set is shared by all tasks in the search.
+		 */
+		private final Set<File> files;
+		
+		/**
+		 * Constructs a new SearchTask.
+		 *
+		 * @param dir
+		 * 		the directory to search, not null
+		 * @param files
+		 * 		the thread-safe set to add the files to, not null
+		 */
+		private SearchTask(final File dir, final Set<File> files) {
+			this.dir = dir;
+			this.files = files;
+		}
+		
+		@Override
+		protected void compute() {
+			final File[] contents = dir.isDirectory() ? dir.listFiles() : null;
+			
+			// Null indicates the directory could not be read
+			if (contents == null) {
+				return;
+			}
+			
+			final List<SearchTask> subTasks = new ArrayList<>();
+			
+			for (final File f : contents) {
 				if (f.isDirectory()) {
-					files.addAll(searchDownTreeFrom(f));
+					subTasks.add(new SearchTask(f, files));
 				} else {
 					files.add(f);
 				}
 			}
+			
+			invokeAll(subTasks);
 		}
+	}
+	
+	/**
+	 * Walks a file tree depth first, opening a stream for each directory only when the walk
+	 * reaches it and closing the stream as soon as all of its entries have been visited. The
+	 * remaining streams are closed when the iterator is closed. Directories which cannot be read
+	 * are skipped, and a directory which fails part way through is treated as finished.
+	 */
+	public static final class TreeIterator implements Iterator<File>, Closeable {
+		/**
+		 * The streams of the directories currently being walked. The top of the stack is the
+		 * deepest directory.
+		 */
+		private final Deque<Listing> listings = new ArrayDeque<>();
 		
-		return files;
+		/**
+		 * The next file to return, or null if the walk has not yet found the next file.
+		 */
+		private File next;
+		
+		/**
+		 * Constructs a new TreeIterator.
+		 *
+		 * @param root
+		 * 		the directory to walk, not null
+		 */
+		private TreeIterator(final File root) {
+			pushListing(root.toPath());
+		}
+		
+		@Override
+		public boolean hasNext() {
+			if (next == null) {
+				next = findNext();
+			}
+			
+			return next != null;
+		}
+		
+		@Override
+		public File next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			
+			final File result = next;
+			next = null;
+			
+			return result;
+		}
+		
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("remove() is not supported");
+		}
+		
+		/**
+		 * Closes the streams of the directories currently being walked, and ends the walk. This
+		 * method has no effect if the walk is already complete or the iterator is already
+		 * closed.
+		 *
+		 * @throws IOException
+		 * 		if a stream cannot be closed, after attempting to close all of the streams
+		 */
+		@Override
+		public void close() throws IOException {
+			IOException failure = null;
+			next = null;
+			
+			while (!listings.isEmpty()) {
+				try {
+					listings.pop().stream.close();
+				} catch (final IOException e) {
+					if (failure == null) {
+						failure = e;
+					}
+				}
+			}
+			
+			if (failure != null) {
+				throw failure;
+			}
+		}
+		
+		/**
+		 * Continues the walk until the next file is found.
+		 *
+		 * @return the next file, or null if the walk is complete
+		 */
+		private File findNext() {
+			while (!listings.isEmpty()) {
+				final Listing listing = listings.peek();
+				final Path entry = listing.nextEntry();
+				
+				if (entry == null) {
+					listings.pop().closeQuietly();
+				} else if (Files.isDirectory(entry)) {
+					pushListing(entry);
+				} else {
+					return entry.toFile();
+				}
+			}
+			
+			return null;
+		}
+		
+		/**
+		 * Opens a stream for the supplied directory and pushes it onto the stack. Nothing is
+		 * pushed if the supplied path is not a directory or cannot be read.
+		 *
+		 * @param dir
+		 * 		the directory to open, not null
+		 */
+		private void pushListing(final Path dir) {
+			if (Files.isDirectory(dir)) {
+				try {
+					listings.push(new Listing(Files.newDirectoryStream(dir)));
+				} catch (final IOException | SecurityException e) {
+					// The directory cannot be read, so it is skipped like in the other searches
+				}
+			}
+		}
+	}
+	
+	/**
+	 * An open stream over the contents of a single directory.
+	 */
+	private static class Listing {
+		/**
+		 * The stream over the contents of the directory.
+		 */
+		private final DirectoryStream<Path> stream;
+		
+		/**
+		 * The position of the walk within the stream.
+		 */
+		private final Iterator<Path> entries;
+		
+		/**
+		 * Constructs a new Listing.
+		 *
+		 * @param stream
+		 * 		the stream over the contents of the directory, not null
+		 */
+		private Listing(final DirectoryStream<Path> stream) {
+			this.stream = stream;
+			this.entries = stream.iterator();
+		}
+		
+		/**
+		 * @return the next entry in the directory, or null if there are no more entries or the
+		 * directory can no longer be read
+		 */
+		private Path nextEntry() {
+			try {
+				return entries.hasNext() ? entries.next() : null;
+			} catch (final DirectoryIteratorException e) {
+				return null;
+			}
+		}
+		
+		/**
+		 * Closes the stream. Failures are ignored since all entries have already been read.
+		 */
+		private void closeQuietly() {
+			try {
+				stream.close();
+			} catch (final IOException e) {
+				// Nothing further is read from the stream
+			}
+		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,585 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.matthewtamlin.java_utilities.file;
+
+import com.matthewtamlin.java_utilities.testing.Tested;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A live view of all files below a directory. The set is populated by walking the tree once, and
+ * is then kept up to date by a background thread which receives events from a {@link
+ * WatchService}. New sub-directories are watched as soon as they are created. The files are
+ * indexed by directory, so creating or deleting a directory only costs time proportional to the
+ * size of that sub-tree. If the watch service overflows and events are lost, only the
+ * directories which overflowed are searched again, once the pending events have been processed.
+ * Directories inside another overflowed directory are covered by the search of that directory,
+ * so a platform which reports an overflow for every directory causes a single search of the
+ * whole tree.
+ * <p>
+ * Reads return immutable snapshots, which are published by swapping a volatile reference after
+ * each batch of events has been processed. Reads therefore never block, never wait for updates
+ * and never observe a partially applied batch. The snapshots are updated asynchronously, so
+ * recent changes to the tree may not be visible immediately. Like {@link PathFinder}, symbolic
+ * links are not followed and are included as files. The background thread is stopped by calling
+ * {@link #close()}. If processing an event or searching a directory fails unexpectedly, the
+ * exception is passed to the background thread's uncaught exception handler and the affected
+ * directory is searched again, so the set keeps being updated.
+ *
+ * @deprecated this entire library has been deprecated.
+ */
+@SuppressWarnings("WeakerAccess") // This is a public API class
+@Tested(testMethod = "automated")
+@Deprecated
+public class LiveFileSet implements Closeable {
+	/**
+	 * The root of the watched tree.
+	 */
+	private final Path root;
+	
+	/**
+	 * Delivers the file system events.
+	 */
+	private final WatchService watchService;
+	
+	/**
+	 * The directory each watch key was registered for. Only accessed by the thread which
+	 * registers directories (the constructing thread during seeding, then the watcher thread).
+	 */
+	private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+	
+	/**
+	 * The contents of each directory in the tree, keyed by directory. Only accessed by the
+	 * thread which registers directories.
+	 */
+	private final Map<Path, DirectoryContents> directories = new HashMap<>();
+	
+	/**
+	 * The directories which have lost events since the last batch was processed, and which
+	 * must therefore be searched again. Only accessed by the watcher thread.
+	 */
+	private final Set<Path> overflowedDirectories = new HashSet<>();
+	
+	/**
+	 * The files currently in the tree, including changes which have not been published. Only
+	 * accessed by the thread which registers directories.
+	 */
+	private final Set<Path> files = new HashSet<>();
+	
+	/**
+	 * Whether or not the files have changed since the snapshot was last published. Only
+	 * accessed by the thread which registers directories.
+	 */
+	private boolean isPublishNeeded = false;
+	
+	/**
+	 * An immutable copy of the files, published after each batch of events.
+	 */
+	private volatile Set<Path> snapshot;
+	
+	/**
+	 * Processes events from the watch service.
+	 */
+	private final Thread watcherThread;
+	
+	/**
+	 * Constructs a new LiveFileSet and seeds it by walking the tree.
+	 *
+	 * @param root
+	 * 		the directory to watch, not null
+	 *
+	 * @throws IOException
+	 * 		if the tree cannot be read or watched
+	 */
+	private LiveFileSet(final Path root) throws IOException {
+		this.root = root;
+		this.watchService = root.getFileSystem().newWatchService();
+		
+		try {
+			files.addAll(registerTree(root));
+		} catch (final IOException e) {
+			watchService.close();
+			throw e;
+		}
+		
+		publish();
+		
+		watcherThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				processEvents();
+			}
+		}, "LiveFileSet-watcher");
+		
+		watcherThread.setDaemon(true);
+	}
+	
+	/**
+	 * Creates a new LiveFileSet which watches the supplied directory. The returned set contains
+	 * all files in the tree, and will be kept up to date until it is closed.
+	 *
+	 * @param root
+	 * 		the directory to watch, not null
+	 *
+	 * @return the new LiveFileSet
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code root} is null
+	 * @throws NotDirectoryException
+	 * 		if {@code root} is not a directory
+	 * @throws IOException
+	 * 		if the tree cannot be read or watched
+	 */
+	public static LiveFileSet watch(final Path root) throws IOException {
+		if (root == null) {
+			throw new IllegalArgumentException("root cannot be null");
+		}
+		
+		if (!Files.isDirectory(root)) {
+			throw new NotDirectoryException(root.toString());
+		}
+		
+		final LiveFileSet liveFileSet = new LiveFileSet(root);
+		liveFileSet.watcherThread.start();
+		
+		return liveFileSet;
+	}
+	
+	/**
+	 * @return the root of the watched tree
+	 */
+	public Path getRoot() {
+		return root;
+	}
+	
+	/**
+	 * Returns an immutable snapshot of the files, as of the most recently processed batch of
+	 * events. The snapshot never changes, so call this method again to see later updates.
+	 *
+	 * @return the files currently in the tree, not null
+	 */
+	public Set<Path> getFiles() {
+		return snapshot;
+	}
+	
+	/**
+	 * Returns an immutable snapshot of the files. Equivalent to {@link #getFiles()}.
+	 *
+	 * @return the files currently in the tree, not null
+	 */
+	public Set<Path> snapshot() {
+		return snapshot;
+	}
+	
+	/**
+	 * Stops watching the tree. The set will no longer be updated.
+	 *
+	 * @throws IOException
+	 * 		if the watch service cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		watchService.close();
+	}
+	
+	/**
+	 * Receives and processes events until the watch service is closed. All keys which are ready
+	 * are processed as one batch before the overflowed directories are searched again, so that
+	 * an overflow which is reported to many keys only causes one search of each sub-tree. The
+	 * snapshot is published at the end of each batch.
+	 */
+	private void processEvents() {
+		try {
+			while (true) {
+				WatchKey key = watchService.take();
+				
+				while (key != null) {
+					processKey(key);
+					key = watchService.poll();
+				}
+				
+				rescanOverflowedDirectories();
+				publish();
+			}
+		} catch (final ClosedWatchServiceException | InterruptedException e) {
+			// The set has been closed
+		}
+	}
+	
+	/**
+	 * Searches the overflowed directories again. Only the top-most directories are searched,
+	 * since searching a directory also searches everything inside it.
+	 */
+	private void rescanOverflowedDirectories() {
+		for (final Path dir : overflowedDirectories) {
+			if (!hasOverflowedAncestor(dir)) {
+				try {
+					rescan(dir);
+				} catch (final ClosedWatchServiceException e) {
+					throw e;
+				} catch (final RuntimeException e) {
+					// Don't let one bad search stop the watcher thread
+					reportFailure(e);
+				}
+			}
+		}
+		
+		overflowedDirectories.clear();
+	}
+	
+	/**
+	 * Returns whether or not any ancestor of a directory has overflowed.
+	 *
+	 * @param dir
+	 * 		the directory to check, not null
+	 *
+	 * @return true if an ancestor of {@code dir} is in the overflowed directories, false
+	 * otherwise
+	 */
+	private boolean hasOverflowedAncestor(final Path dir) {
+		for (Path ancestor = dir.getParent(); ancestor != null; ancestor = ancestor.getParent()) {
+			if (overflowedDirectories.contains(ancestor)) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Publishes an immutable copy of the files, if they have changed since the last copy was
+	 * published.
+	 */
+	private void publish() {
+		if (snapshot == null || isPublishNeeded) {
+			isPublishNeeded = false;
+			snapshot = Collections.unmodifiableSet(new HashSet<>(files));
+		}
+	}
+	
+	/**
+	 * Passes an unexpected exception to the uncaught exception handler of the current thread.
+	 *
+	 * @param failure
+	 * 		the exception, not null
+	 */
+	private static void reportFailure(final RuntimeException failure) {
+		final Thread thread = Thread.currentThread();
+		thread.getUncaughtExceptionHandler().uncaughtException(thread, failure);
+	}
+	
+	/**
+	 * Processes the pending events for a single key, and then resets the key. If processing
+	 * fails unexpectedly, the exception is reported and the directory is searched again so that
+	 * the set recovers from any events which were not applied.
+	 *
+	 * @param key
+	 * 		the key to process, not null
+	 */
+	private void processKey(final WatchKey key) {
+		final Path dir = watchedDirectories.get(key);
+		
+		try {
+			if (dir != null) {
+				processEvents(dir, key);
+			}
+		} catch (final ClosedWatchServiceException e) {
+			throw e;
+		} catch (final RuntimeException e) {
+			overflowedDirectories.add(dir);
+			reportFailure(e);
+		}
+		
+		// Stop tracking directories which have been deleted or become inaccessible
+		if (!key.reset()) {
+			watchedDirectories.remove(key);
+		}
+	}
+	
+	/**
+	 * Processes the pending events for a single directory.
+	 *
+	 * @param dir
+	 * 		the directory the events occurred in, not null
+	 * @param key
+	 * 		the key for the directory, not null
+	 */
+	private void processEvents(final Path dir, final WatchKey key) {
+		for (final WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				// Searched once all ready keys have been processed, in case others overflowed too
+				overflowedDirectories.add(dir);
+			} else {
+				final Path child = dir.resolve((Path) event.context());
+				
+				if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+					if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+						// Files may be created before the new directory is registered
+						rescan(child);
+					} else {
+						addFile(child);
+					}
+				} else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+					// The deleted entry may have been a directory, so remove its contents too
+					if (!removeFile(child)) {
+						removeTree(child);
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Searches a sub-tree again and updates the set so that it reflects the current contents of
+	 * the sub-tree. Files which still exist are not removed at any point during the update.
+	 *
+	 * @param dir
+	 * 		the root of the sub-tree, not null
+	 */
+	private void rescan(final Path dir) {
+		final Set<Path> previous = new HashSet<>();
+		detachTree(dir, previous);
+		
+		Set<Path> current;
+		
+		try {
+			current = registerTree(dir);
+		} catch (final IOException e) {
+			// The directory no longer exists or cannot be read, so discard any partial index
+			detachTree(dir, previous);
+			current = Collections.emptySet();
+		}
+		
+		previous.removeAll(current);
+		removeAll(previous);
+		files.addAll(current);
+		isPublishNeeded = true;
+	}
+	
+	/**
+	 * Adds a file to the set and to the index of its directory.
+	 *
+	 * @param file
+	 * 		the file to add, not null
+	 */
+	private void addFile(final Path file) {
+		final DirectoryContents parent = directories.get(file.getParent());
+		
+		if (parent != null) {
+			parent.files.add(file);
+		}
+		
+		isPublishNeeded |= files.add(file);
+	}
+	
+	/**
+	 * Removes a file from the set and from the index of its directory.
+	 *
+	 * @param file
+	 * 		the file to remove, not null
+	 *
+	 * @return true if the file was in the set, false otherwise
+	 */
+	private boolean removeFile(final Path file) {
+		final DirectoryContents parent = directories.get(file.getParent());
+		
+		if (parent != null) {
+			parent.files.remove(file);
+		}
+		
+		final boolean isRemoved = files.remove(file);
+		isPublishNeeded |= isRemoved;
+		
+		return isRemoved;
+	}
+	
+	/**
+	 * Removes all files in a sub-tree from the set.
+	 *
+	 * @param dir
+	 * 		the root of the sub-tree, not null
+	 */
+	private void removeTree(final Path dir) {
+		final Set<Path> removed = new HashSet<>();
+		detachTree(dir, removed);
+		
+		removeAll(removed);
+	}
+	
+	/**
+	 * Removes a sub-tree from the index and collects the files it contained. The files are not
+	 * removed from the set, so that the caller can decide which of them no longer exist.
+	 *
+	 * @param dir
+	 * 		the root of the sub-tree, not null
+	 * @param removed
+	 * 		the set to add the files of the sub-tree to, not null
+	 */
+	private void detachTree(final Path dir, final Set<Path> removed) {
+		final DirectoryContents parent = directories.get(dir.getParent());
+		
+		if (parent != null) {
+			parent.subdirectories.remove(dir);
+		}
+		
+		detachContents(dir, removed);
+	}
+	
+	/**
+	 * Recursively removes the index entries of a directory and its sub-directories.
+	 *
+	 * @param dir
+	 * 		the directory to remove, not null
+	 * @param removed
+	 * 		the set to add the files of the directories to, not null
+	 */
+	private void detachContents(final Path dir, final Set<Path> removed) {
+		final DirectoryContents contents = directories.remove(dir);
+		
+		if (contents != null) {
+			removed.addAll(contents.files);
+			
+			for (final Path subdirectory : contents.subdirectories) {
+				detachContents(subdirectory, removed);
+			}
+		}
+	}
+	
+	/**
+	 * Removes files from the set one at a time. The bulk removal method may iterate over the
+	 * whole set, which would defeat the index.
+	 *
+	 * @param removed
+	 * 		the files to remove, not null
+	 */
+	private void removeAll(final Set<Path> removed) {
+		for (final Path file : removed) {
+			isPublishNeeded |= files.remove(file);
+		}
+	}
+	
+	/**
+	 * Walks a sub-tree, registering each directory with the watch service and adding it to the
+	 * index. Directories which are already registered with the watch service are not affected.
+	 * The sub-tree must not already be in the index.
+	 *
+	 * @param dir
+	 * 		the root of the sub-tree, not null
+	 *
+	 * @return the files found in the sub-tree, not null
+	 *
+	 * @throws IOException
+	 * 		if the root of the sub-tree cannot be read
+	 */
+	private Set<Path> registerTree(final Path dir) throws IOException {
+		final Set<Path> found = new HashSet<>();
+		
+		Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(final Path directory,
+					final BasicFileAttributes attrs) throws IOException {
+				// Register before listing so that no entries are missed
+				try {
+					final WatchKey key = directory.register(watchService,
+							StandardWatchEventKinds.ENTRY_CREATE,
+							StandardWatchEventKinds.ENTRY_DELETE);
+					
+					watchedDirectories.put(key, directory);
+				} catch (final IOException e) {
+					// Only fail if the root of the sub-tree cannot be watched
+					if (directory.equals(dir)) {
+						throw e;
+					}
+				}
+				
+				final DirectoryContents parent = directories.get(directory.getParent());
+				
+				if (parent != null) {
+					parent.subdirectories.add(directory);
+				}
+				
+				directories.put(directory, new DirectoryContents());
+				
+				return FileVisitResult.CONTINUE;
+			}
+			
+			@Override
+			public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+				final DirectoryContents parent = directories.get(file.getParent());
+				
+				if (parent != null) {
+					parent.files.add(file);
+				}
+				
+				found.add(file);
+				return FileVisitResult.CONTINUE;
+			}
+			
+			@Override
+			public FileVisitResult visitFileFailed(final Path file, final IOException e)
+					throws IOException {
+				// Only fail if the root of the sub-tree cannot be read
+				if (file.equals(dir)) {
+					throw e;
+				}
+				
+				return FileVisitResult.CONTINUE;
+			}
+			
+			@Override
+			public FileVisitResult postVisitDirectory(final Path directory,
+					final IOException e) {
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		
+		return found;
+	}
+	
+	/**
+	 * The files and sub-directories directly inside a directory.
+	 */
+	private static class DirectoryContents {
+		/**
+		 * The files in the directory.
+		 */
+		private final Set<Path> files = new HashSet<>();
+		
+		/**
+		 * The sub-directories of the directory.
+		 */
+		private final Set<Path> subdirectories = new HashSet<>();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.matthewtamlin.java_utilities.file;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Decides whether or not a file or directory should be included in a {@link PathFinder} search.
+ * Filters are applied while the tree is being walked, so the attributes are supplied by the walk
+ * and do not need to be read again. See {@link PathFilters} for common implementations.
+ *
+ * @deprecated this entire library has been deprecated.
+ */
+@Deprecated
+public interface PathFilter {
+	/**
+	 * Called for each file or directory reached by the search.
+	 *
+	 * @param path
+	 * 		the path of the file or directory, not null
+	 * @param attributes
+	 * 		the attributes of the file or directory, not null
+	 *
+	 * @return true to include the file or to search the directory, false otherwise
+	 */
+	boolean accept(Path path, BasicFileAttributes attributes);
+}
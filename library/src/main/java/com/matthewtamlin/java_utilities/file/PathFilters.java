@@ -0,0 +1,305 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.matthewtamlin.java_utilities.file;
+
+import com.matthewtamlin.java_utilities.testing.Tested;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Factory methods for common {@link PathFilter} implementations. Name based filters match
+ * against the file name only (the last element of the path), so they behave the same regardless
+ * of where the search starts.
+ *
+ * @deprecated this entire library has been deprecated.
+ */
+@SuppressWarnings("WeakerAccess") // This is a public API class
+@Tested(testMethod = "automated")
+@Deprecated
+public class PathFilters {
+	/**
+	 * Accepts every path.
+	 */
+	private static final PathFilter ACCEPT_ALL = new PathFilter() {
+		@Override
+		public boolean accept(final Path path, final BasicFileAttributes attributes) {
+			return true;
+		}
+	};
+	
+	/**
+	 * @return a filter which accepts every path
+	 */
+	public static PathFilter acceptAll() {
+		return ACCEPT_ALL;
+	}
+	
+	/**
+	 * Creates a filter which accepts paths with file names matching a glob pattern. See {@link
+	 * java.nio.file.FileSystem#getPathMatcher(String)} for the glob syntax.
+	 *
+	 * @param glob
+	 * 		the pattern to match, not null
+	 *
+	 * @return the new filter
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code glob} is null or is not a valid pattern
+	 */
+	public static PathFilter matchingGlob(final String glob) {
+		if (glob == null) {
+			throw new IllegalArgumentException("glob cannot be null");
+		}
+		
+		return matching(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+	}
+	
+	/**
+	 * Creates a filter which accepts paths with file names matching a regular expression.
+	 *
+	 * @param regex
+	 * 		the expression to match, not null
+	 *
+	 * @return the new filter
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code regex} is null or is not a valid expression
+	 */
+	public static PathFilter matchingRegex(final String regex) {
+		if (regex == null) {
+			throw new IllegalArgumentException("regex cannot be null");
+		}
+		
+		return matching(FileSystems.getDefault().getPathMatcher("regex:" + regex));
+	}
+	
+	/**
+	 * Creates a filter which accepts paths with any of the supplied file names. This is useful
+	 * for pruning directories such as ".git" from a search.
+	 *
+	 * @param names
+	 * 		the file names to accept, not null
+	 *
+	 * @return the new filter
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code names} is null
+	 */
+	public static PathFilter named(final String... names) {
+		if (names == null) {
+			throw new IllegalArgumentException("names cannot be null");
+		}
+		
+		final Set<String> nameSet = new HashSet<>(Arrays.asList(names));
+		
+		return new PathFilter() {
+			@Override
+			public boolean accept(final Path path, final BasicFileAttributes attributes) {
+				final Path fileName = path.getFileName();
+				return fileName != null && nameSet.contains(fileName.toString());
+			}
+		};
+	}
+	
+	/**
+	 * Creates a filter which accepts paths with sizes in an interval inclusive of the bounds.
+	 *
+	 * @param minBytes
+	 * 		the minimum size, measured in bytes
+	 * @param maxBytes
+	 * 		the maximum size, measured in bytes
+	 *
+	 * @return the new filter
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code minBytes} is greater than {@code maxBytes}
+	 */
+	public static PathFilter sizeBetween(final long minBytes, final long maxBytes) {
+		if (minBytes > maxBytes) {
+			throw new IllegalArgumentException("minBytes cannot be greater than maxBytes");
+		}
+		
+		return new PathFilter() {
+			@Override
+			public boolean accept(final Path path, final BasicFileAttributes attributes) {
+				final long size = attributes.size();
+				return size >= minBytes && size <= maxBytes;
+			}
+		};
+	}
+	
+	/**
+	 * Creates a filter which accepts paths with last modified times in an interval inclusive of
+	 * the bounds.
+	 *
+	 * @param minMillis
+	 * 		the earliest modification time, measured in milliseconds since the epoch
+	 * @param maxMillis
+	 * 		the latest modification time, measured in milliseconds since the epoch
+	 *
+	 * @return the new filter
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code minMillis} is greater than {@code maxMillis}
+	 */
+	public static PathFilter modifiedBetween(final long minMillis, final long maxMillis) {
+		if (minMillis > maxMillis) {
+			throw new IllegalArgumentException("minMillis cannot be greater than maxMillis");
+		}
+		
+		return new PathFilter() {
+			@Override
+			public boolean accept(final Path path, final BasicFileAttributes attributes) {
+				final long modified = attributes.lastModifiedTime().toMillis();
+				return modified >= minMillis && modified <= maxMillis;
+			}
+		};
+	}
+	
+	/**
+	 * Creates a filter which accepts paths which are rejected by the supplied filter.
+	 *
+	 * @param filter
+	 * 		the filter to negate, not null
+	 *
+	 * @return the new filter
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code filter} is null
+	 */
+	public static PathFilter not(final PathFilter filter) {
+		if (filter == null) {
+			throw new IllegalArgumentException("filter cannot be null");
+		}
+		
+		return new PathFilter() {
+			@Override
+			public boolean accept(final Path path, final BasicFileAttributes attributes) {
+				return !filter.accept(path, attributes);
+			}
+		};
+	}
+	
+	/**
+	 * Creates a filter which accepts paths which are accepted by all of the supplied filters. The
+	 * filters are evaluated in order, and evaluation stops at the first rejection.
+	 *
+	 * @param filters
+	 * 		the filters to combine, not null, containing no nulls
+	 *
+	 * @return the new filter
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code filters} is null or contains null
+	 */
+	public static PathFilter allOf(final PathFilter... filters) {
+		final PathFilter[] copy = copyOf(filters);
+		
+		return new PathFilter() {
+			@Override
+			public boolean accept(final Path path, final BasicFileAttributes attributes) {
+				for (final PathFilter filter : copy) {
+					if (!filter.accept(path, attributes)) {
+						return false;
+					}
+				}
+				
+				return true;
+			}
+		};
+	}
+	
+	/**
+	 * Creates a filter which accepts paths which are accepted by at least one of the supplied
+	 * filters. The filters are evaluated in order, and evaluation stops at the first acceptance.
+	 *
+	 * @param filters
+	 * 		the filters to combine, not null, containing no nulls
+	 *
+	 * @return the new filter
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code filters} is null or contains null
+	 */
+	public static PathFilter anyOf(final PathFilter... filters) {
+		final PathFilter[] copy = copyOf(filters);
+		
+		return new PathFilter() {
+			@Override
+			public boolean accept(final Path path, final BasicFileAttributes attributes) {
+				for (final PathFilter filter : copy) {
+					if (filter.accept(path, attributes)) {
+						return true;
+					}
+				}
+				
+				return false;
+			}
+		};
+	}
+	
+	/**
+	 * Creates a filter which accepts paths with file names matched by the supplied matcher.
+	 *
+	 * @param matcher
+	 * 		the matcher to use, not null
+	 *
+	 * @return the new filter
+	 */
+	private static PathFilter matching(final PathMatcher matcher) {
+		return new PathFilter() {
+			@Override
+			public boolean accept(final Path path, final BasicFileAttributes attributes) {
+				final Path fileName = path.getFileName();
+				return fileName != null && matcher.matches(fileName);
+			}
+		};
+	}
+	
+	/**
+	 * Copies an array of filters, checking that neither the array nor its elements are null.
+	 *
+	 * @param filters
+	 * 		the filters to copy
+	 *
+	 * @return the copy
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code filters} is null or contains null
+	 */
+	private static PathFilter[] copyOf(final PathFilter[] filters) {
+		if (filters == null) {
+			throw new IllegalArgumentException("filters cannot be null");
+		}
+		
+		final PathFilter[] copy = filters.clone();
+		
+		for (final PathFilter filter : copy) {
+			if (filter == null) {
+				throw new IllegalArgumentException("filters cannot contain null");
+			}
+		}
+		
+		return copy;
+	}
+}
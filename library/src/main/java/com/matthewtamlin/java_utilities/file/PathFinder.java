@@ -0,0 +1,160 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.matthewtamlin.java_utilities.file;
+
+import com.matthewtamlin.java_utilities.testing.Tested;
+
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Searches a directory to find all contained files using the NIO.2 file API. The search is
+ * recursive and will continue down the file tree until there are no more directories to explore.
+ * <p>
+ * This class is an alternative to {@link FileFinder} for large trees. The type of each entry is
+ * read from the attributes supplied by {@link Files#walkFileTree(Path,
+ * java.nio.file.FileVisitor)}, which are taken directly from the directory listing where the
+ * platform supports it, rather than querying each file separately. Results are returned as Path
+ * objects so they do not need to be resolved again by the caller. Symbolic links are not
+ * followed, and entries which cannot be read are skipped. Searches can be narrowed with {@link
+ * PathFilter}s and a maximum depth, which are applied during the walk so that excluded
+ * directories are never listed.
+ *
+ * @deprecated this entire library has been deprecated.
+ */
+@SuppressWarnings("WeakerAccess") // This is a public API class
+@Tested(testMethod = "automated")
+@Deprecated
+public class PathFinder {
+	/**
+	 * Performs the search. If the search finds no files, or if {@code dir} is not a directory,
+	 * then an empty Set will be returned.
+	 *
+	 * @param dir
+	 * 		the directory to search, not null
+	 *
+	 * @return all files contained within the supplied directory and its recursive sub-directories
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code dir} is null
+	 * @throws IOException
+	 * 		if an I/O error prevents the search from completing
+	 */
+	public static Set<Path> searchDownTreeFrom(final Path dir) throws IOException {
+		return searchDownTreeFrom(dir, Integer.MAX_VALUE, PathFilters.acceptAll(),
+				PathFilters.acceptAll());
+	}
+	
+	/**
+	 * Performs a filtered search. The filters are applied as the tree is walked, so directories
+	 * rejected by {@code directoryFilter} are never opened and nothing below them is visited. If
+	 * the search finds no matching files, or if {@code dir} is not a directory, then an empty Set
+	 * will be returned.
+	 *
+	 * @param dir
+	 * 		the directory to search, not null
+	 * @param maxDepth
+	 * 		the maximum number of directory levels to search below {@code dir}, where files
+	 * 		directly inside {@code dir} are at depth 1, not negative
+	 * @param fileFilter
+	 * 		decides which files are included in the results, not null
+	 * @param directoryFilter
+	 * 		decides which sub-directories are searched, not null (it is not applied to {@code
+	 * 		dir} itself)
+	 *
+	 * @return the files contained within the supplied directory and its searched sub-directories
+	 * which were accepted by {@code fileFilter}
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if {@code dir} is null
+	 * @throws IllegalArgumentException
+	 * 		if {@code maxDepth} is negative
+	 * @throws IllegalArgumentException
+	 * 		if {@code fileFilter} or {@code directoryFilter} is null
+	 * @throws IOException
+	 * 		if an I/O error prevents the search from completing
+	 */
+	public static Set<Path> searchDownTreeFrom(final Path dir, final int maxDepth,
+			final PathFilter fileFilter, final PathFilter directoryFilter) throws IOException {
+		if (dir == null) {
+			throw new IllegalArgumentException("dir cannot be null");
+		}
+		
+		if (maxDepth < 0) {
+			throw new IllegalArgumentException("maxDepth cannot be negative");
+		}
+		
+		if (fileFilter == null) {
+			throw new IllegalArgumentException("fileFilter cannot be null");
+		}
+		
+		if (directoryFilter == null) {
+			throw new IllegalArgumentException("directoryFilter cannot be null");
+		}
+		
+		final Set<Path> files = new HashSet<>();
+		
+		if (Files.isDirectory(dir)) {
+			final Set<FileVisitOption> options = EnumSet.noneOf(FileVisitOption.class);
+			
+			Files.walkFileTree(dir, options, maxDepth, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult preVisitDirectory(final Path directory,
+						final BasicFileAttributes attrs) {
+					if (directory.equals(dir) || directoryFilter.accept(directory, attrs)) {
+						return FileVisitResult.CONTINUE;
+					} else {
+						return FileVisitResult.SKIP_SUBTREE;
+					}
+				}
+				
+				@Override
+				public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+					// Directories at the maximum depth are passed here instead of being visited
+					if (!attrs.isDirectory() && fileFilter.accept(file, attrs)) {
+						files.add(file);
+					}
+					
+					return FileVisitResult.CONTINUE;
+				}
+				
+				@Override
+				public FileVisitResult visitFileFailed(final Path file, final IOException e) {
+					// Skip entries which cannot be read rather than failing the whole search
+					return FileVisitResult.CONTINUE;
+				}
+				
+				@Override
+				public FileVisitResult postVisitDirectory(final Path directory,
+						final IOException e) {
+					// Keep any results found before the directory listing failed
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		}
+		
+		return files;
+	}
+}
\ No newline at end of file
@@ -16,6 +16,7 @@
 
 package com.matthewtamlin.java_utilities.checkers;
 
+import com.matthewtamlin.java_utilities.checkers.NullChecker.ExceptionFactory;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -27,6 +28,10 @@ import java.util.Collection;
 import static com.matthewtamlin.java_utilities.checkers.NullChecker.checkEachElementIsNotNull;
 import static com.matthewtamlin.java_utilities.checkers.NullChecker.checkNotNull;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * Unit tests for the {@link NullChecker} class.
@@ -48,8 +53,17 @@ public class TestNullChecker {
 	 */
 	private Collection<String> notContainingNull = new ArrayList<>();
 	
+	/**
+	 * A mock ExceptionFactory which creates IllegalStateExceptions.
+	 */
+	private ExceptionFactory<IllegalStateException> mockExceptionFactory;
+	
+	@SuppressWarnings("unchecked") // Mocks cannot be created with generic types
 	@Before
 	public void setup() {
+		mockExceptionFactory = mock(ExceptionFactory.class);
+		when(mockExceptionFactory.createException()).thenReturn(new IllegalStateException());
+		
 		containingNull.clear();
 		containingNull.add(null);
 		containingNull.add(TEST_STRING);
@@ -244,4 +258,75 @@ public class TestNullChecker {
 	public void testCheckEachElementIsNotNull_3_nullExceptionSupplied() throws Exception {
 		checkEachElementIsNotNull(null, (Exception) null);
 	}
+	
+	/**
+	 * Test to verify that the {@link NullChecker#checkNotNull(Object, ExceptionFactory)} method
+	 * functions correctly when null is passed for the {@code object} argument. The test will
+	 * only pass if the exception created by the factory is thrown.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testCheckNotNull_4_nullObjectPassed() {
+		checkNotNull(null, mockExceptionFactory);
+	}
+	
+	/**
+	 * Test to verify that the {@link NullChecker#checkNotNull(Object, ExceptionFactory)} method
+	 * functions correctly when a non-null String is passed for the {@code object} argument. The
+	 * test will only pass if the same String instance is returned and the factory is never used.
+	 */
+	@SuppressWarnings("StringEquality") // Reference equality is needed for test to pass
+	@Test
+	public void testCheckNotNull_4_nonNullObjectPassed() {
+		final String result = checkNotNull(TEST_STRING, mockExceptionFactory);
+		assertThat("incorrect object returned", result == TEST_STRING);
+		verify(mockExceptionFactory, never()).createException();
+	}
+	
+	/**
+	 * Test to verify that the {@link NullChecker#checkNotNull(Object, ExceptionFactory)} method
+	 * fails correctly when null is passed for the {@code exceptionFactory} argument. The test
+	 * will only pass if an IllegalArgumentException is thrown.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testCheckNotNull_4_nullFactoryPassed() {
+		checkNotNull(TEST_STRING, (ExceptionFactory<IllegalStateException>) null);
+	}
+	
+	/**
+	 * Test to verify that the
+	 * {@link NullChecker#checkEachElementIsNotNull(Collection, ExceptionFactory)} method
+	 * functions correctly when a collection containing at least one null element is supplied for
+	 * the {@code collection} argument. The test will only pass if the exception created by the
+	 * factory is thrown.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testCheckEachElementIsNotNull_4_collectionContainingNull() {
+		checkEachElementIsNotNull(containingNull, mockExceptionFactory);
+	}
+	
+	/**
+	 * Test to verify that the
+	 * {@link NullChecker#checkEachElementIsNotNull(Collection, ExceptionFactory)} method
+	 * functions correctly when a collection containing no null elements is supplied. The test
+	 * will only pass if the collection is returned and the factory is never used.
+	 */
+	@Test
+	public void testCheckEachElementIsNotNull_4_collectionNotContainingNull() {
+		final Collection<String> result = checkEachElementIsNotNull(notContainingNull,
+				mockExceptionFactory);
+		assertThat("incorrect collection returned", result == notContainingNull);
+		verify(mockExceptionFactory, never()).createException();
+	}
+	
+	/**
+	 * Test to verify that the
+	 * {@link NullChecker#checkEachElementIsNotNull(Collection, ExceptionFactory)} method
+	 * fails correctly when null is supplied for the {@code exceptionFactory} argument. The test
+	 * will only pass if an IllegalArgumentException is thrown.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testCheckEachElementIsNotNull_4_nullFactorySupplied() {
+		checkEachElementIsNotNull(notContainingNull,
+				(ExceptionFactory<IllegalStateException>) null);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,454 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.matthewtamlin.java_utilities.concurrent;
+
+import com.matthewtamlin.java_utilities.concurrent.BatchScheduler.BatchFactory;
+import com.matthewtamlin.java_utilities.concurrent.BatchScheduler.ScheduledBatch;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit tests for the {@link BatchScheduler} class.
+ */
+public class TestBatchScheduler {
+	/**
+	 * The maximum time to wait for a batch to run, measured in milliseconds.
+	 */
+	private static final int MAX_WAIT_TIME_MS = 10000;
+	
+	/**
+	 * The tick duration used by the scheduler under test, measured in milliseconds.
+	 */
+	private static final int TICK_MS = 5;
+	
+	/**
+	 * The pool which runs the batches.
+	 */
+	private ExecutorService pool;
+	
+	/**
+	 * The scheduler under test.
+	 */
+	private BatchScheduler scheduler;
+	
+	/**
+	 * Initialises the testing environment.
+	 */
+	@Before
+	public void setup() {
+		pool = Executors.newCachedThreadPool();
+		scheduler = BatchScheduler.usingExecutorService(pool, TICK_MS, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Cleans up the testing environment.
+	 */
+	@After
+	public void tearDown() {
+		scheduler.shutdown();
+		pool.shutdownNow();
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the {@code executorService}
+	 * argument of {@link BatchScheduler#usingExecutorService(ExecutorService)} is null.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testUsingExecutorService_invalidArg_nullExecutorService() {
+		BatchScheduler.usingExecutorService(null);
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the {@code tickDuration} argument
+	 * of {@link BatchScheduler#usingExecutorService(ExecutorService, long, TimeUnit)} is zero.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testUsingExecutorService_invalidArg_zeroTickDuration() {
+		BatchScheduler.usingExecutorService(pool, 0, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the {@code unit} argument of
+	 * {@link BatchScheduler#usingExecutorService(ExecutorService, long, TimeUnit)} is null.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testUsingExecutorService_invalidArg_nullUnit() {
+		BatchScheduler.usingExecutorService(pool, 1, null);
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the {@code factory} argument of
+	 * {@link BatchScheduler#schedule(BatchFactory, long, TimeUnit)} is null.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testSchedule_invalidArg_nullFactory() {
+		scheduler.schedule(null, 0, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the {@code delay} argument of
+	 * {@link BatchScheduler#schedule(BatchFactory, long, TimeUnit)} is negative.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testSchedule_invalidArg_negativeDelay() {
+		scheduler.schedule(mock(BatchFactory.class), -1, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the {@code period} argument of
+	 * {@link BatchScheduler#scheduleAtFixedRate(BatchFactory, long, long, TimeUnit)} is zero.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testScheduleAtFixedRate_invalidArg_zeroPeriod() {
+		scheduler.scheduleAtFixedRate(mock(BatchFactory.class), 0, 0, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when a batch is scheduled after the
+	 * scheduler has been shut down.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testSchedule_afterShutdown() {
+		scheduler.shutdown();
+		scheduler.schedule(mock(BatchFactory.class), 0, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Test to verify that a delayed batch runs its tasks once, and not before the delay has
+	 * elapsed.
+	 */
+	@Test
+	public void testSchedule_runsOnceAfterDelay() throws InterruptedException {
+		final long delayMs = 50;
+		final CountDownLatch tasksRun = new CountDownLatch(2);
+		final AtomicInteger factoryCalls = new AtomicInteger();
+		final long startTime = System.nanoTime();
+		
+		final ScheduledBatch batch = scheduler.schedule(new BatchFactory() {
+			@Override
+			public void createBatch(final CallbackExecutor callbackExecutor) {
+				factoryCalls.incrementAndGet();
+				callbackExecutor.addToQueue(new CountDownTask(tasksRun));
+				callbackExecutor.addToQueue(new CountDownTask(tasksRun));
+			}
+		}, delayMs, TimeUnit.MILLISECONDS);
+		
+		assertThat(tasksRun.await(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS), is(true));
+		
+		final long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+		assertThat(elapsedMs >= delayMs, is(true));
+		
+		awaitCompletedRuns(batch, 1);
+		Thread.sleep(100);
+		
+		assertThat(factoryCalls.get(), is(1));
+		assertThat(batch.getCompletedRunCount(), is(1L));
+		assertThat(batch.isPeriodic(), is(false));
+	}
+	
+	/**
+	 * Test to verify that a fixed rate batch runs repeatedly, and stops running once cancelled.
+	 */
+	@Test
+	public void testScheduleAtFixedRate_runsUntilCancelled() throws InterruptedException {
+		final CountDownLatch runs = new CountDownLatch(5);
+		
+		final ScheduledBatch batch = scheduler.scheduleAtFixedRate(new BatchFactory() {
+			@Override
+			public void createBatch(final CallbackExecutor callbackExecutor) {
+				callbackExecutor.addToQueue(new CountDownTask(runs));
+			}
+		}, 0, 10, TimeUnit.MILLISECONDS);
+		
+		assertThat(runs.await(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS), is(true));
+		
+		batch.cancel();
+		Thread.sleep(50);
+		final long runCount = batch.getCompletedRunCount();
+		Thread.sleep(100);
+		
+		assertThat(batch.isCancelled(), is(true));
+		assertThat(batch.getCompletedRunCount(), is(runCount));
+	}
+	
+	/**
+	 * Test to verify that the runs of a fixed rate batch never overlap, even when each run takes
+	 * longer than the period.
+	 */
+	@Test
+	public void testScheduleAtFixedRate_runsDoNotOverlap() throws InterruptedException {
+		final AtomicInteger activeRuns = new AtomicInteger();
+		final AtomicInteger maxActiveRuns = new AtomicInteger();
+		final CountDownLatch runs = new CountDownLatch(3);
+		
+		final ScheduledBatch batch = scheduler.scheduleAtFixedRate(new BatchFactory() {
+			@Override
+			public void createBatch(final CallbackExecutor callbackExecutor) {
+				callbackExecutor.addToQueue(new Runnable() {
+					@Override
+					public void run() {
+						final int active = activeRuns.incrementAndGet();
+						
+						if (active > maxActiveRuns.get()) {
+							maxActiveRuns.set(active);
+						}
+						
+						try {
+							Thread.sleep(30);
+						} catch (final InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+						
+						activeRuns.decrementAndGet();
+						runs.countDown();
+					}
+				});
+			}
+		}, 0, 5, TimeUnit.MILLISECONDS);
+		
+		assertThat(runs.await(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS), is(true));
+		batch.cancel();
+		
+		assertThat(maxActiveRuns.get(), is(1));
+	}
+	
+	/**
+	 * Test to verify that a batch which is cancelled before its delay elapses never runs.
+	 */
+	@Test
+	public void testCancel_beforeDelay() throws InterruptedException {
+		final BatchFactory factory = mock(BatchFactory.class);
+		final ScheduledBatch batch = scheduler.schedule(factory, 50, TimeUnit.MILLISECONDS);
+		
+		batch.cancel();
+		Thread.sleep(150);
+		
+		assertThat(batch.getCompletedRunCount(), is(0L));
+	}
+	
+	/**
+	 * Test to verify that many batches with different delays all run, including batches whose
+	 * deadlines are beyond the first level of the timing wheel.
+	 */
+	@Test
+	public void testSchedule_manyBatches() throws InterruptedException {
+		final int batchCount = 1000;
+		final CountDownLatch tasksRun = new CountDownLatch(batchCount);
+		
+		for (int i = 0; i < batchCount; i++) {
+			scheduler.schedule(new BatchFactory() {
+				@Override
+				public void createBatch(final CallbackExecutor callbackExecutor) {
+					callbackExecutor.addToQueue(new CountDownTask(tasksRun));
+				}
+			}, i % 500, TimeUnit.MILLISECONDS);
+		}
+		
+		assertThat(tasksRun.await(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS), is(true));
+	}
+	
+	/**
+	 * Test to verify that a batch still runs again after its factory throws an exception, and
+	 * that the failed runs are not counted as completed.
+	 */
+	@Test
+	public void testScheduleAtFixedRate_factoryThrows() throws InterruptedException {
+		final CountDownLatch runs = new CountDownLatch(3);
+		
+		final ScheduledBatch batch = scheduler.scheduleAtFixedRate(new BatchFactory() {
+			@Override
+			public void createBatch(final CallbackExecutor callbackExecutor) {
+				runs.countDown();
+				throw new RuntimeException();
+			}
+		}, 0, 10, TimeUnit.MILLISECONDS);
+		
+		assertThat(runs.await(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS), is(true));
+		batch.cancel();
+		
+		assertThat(batch.getCompletedRunCount(), is(0L));
+		assertThat(batch.getFailedRunCount() >= 2, is(true));
+	}
+	
+	/**
+	 * Test to verify that a batch still runs again after starting execution throws an exception.
+	 * The factory starts execution itself, so the scheduler's call to start it fails.
+	 */
+	@Test
+	public void testScheduleAtFixedRate_executeThrows() throws InterruptedException {
+		final CountDownLatch runs = new CountDownLatch(3);
+		
+		final ScheduledBatch batch = scheduler.scheduleAtFixedRate(new BatchFactory() {
+			@Override
+			public void createBatch(final CallbackExecutor callbackExecutor) {
+				runs.countDown();
+				
+				// Continuous execution never completes, so only the failure can end the run
+				callbackExecutor.executeContinuously();
+			}
+		}, 0, 10, TimeUnit.MILLISECONDS);
+		
+		assertThat(runs.await(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS), is(true));
+		batch.cancel();
+		
+		assertThat(batch.getCompletedRunCount(), is(0L));
+		assertThat(batch.getFailedRunCount() >= 2, is(true));
+	}
+	
+	/**
+	 * Test to verify that the scheduler keeps running batches after the pool throws an
+	 * unexpected exception.
+	 */
+	@Test
+	public void testScheduleAtFixedRate_poolThrows() throws InterruptedException {
+		final ExecutorService failingPool = new FailingOnceExecutorService(pool);
+		final BatchScheduler failingScheduler = BatchScheduler.usingExecutorService(failingPool,
+				TICK_MS, TimeUnit.MILLISECONDS);
+		final CountDownLatch runs = new CountDownLatch(2);
+		
+		try {
+			final ScheduledBatch batch = failingScheduler.scheduleAtFixedRate(new BatchFactory() {
+				@Override
+				public void createBatch(final CallbackExecutor callbackExecutor) {
+					callbackExecutor.addToQueue(new CountDownTask(runs));
+				}
+			}, 0, 10, TimeUnit.MILLISECONDS);
+			
+			assertThat(runs.await(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS), is(true));
+			assertThat(batch.isCancelled(), is(false));
+		} finally {
+			failingScheduler.shutdown();
+		}
+	}
+	
+	/**
+	 * Waits until a batch has completed a number of runs.
+	 *
+	 * @param batch
+	 * 		the batch to wait for
+	 * @param runCount
+	 * 		the number of runs to wait for
+	 */
+	private static void awaitCompletedRuns(final ScheduledBatch batch, final long runCount)
+			throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + MAX_WAIT_TIME_MS;
+		
+		while (batch.getCompletedRunCount() < runCount && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+	}
+	
+	/**
+	 * A task which counts down a latch.
+	 */
+	private static class CountDownTask implements Runnable {
+		/**
+		 * The latch to count down.
+		 */
+		private final CountDownLatch latch;
+		
+		/**
+		 * Constructs a new CountDownTask.
+		 *
+		 * @param latch
+		 * 		the latch to count down, not null
+		 */
+		private CountDownTask(final CountDownLatch latch) {
+			this.latch = latch;
+		}
+		
+		@Override
+		public void run() {
+			latch.countDown();
+		}
+	}
+	
+	/**
+	 * An ExecutorService which throws an unexpected exception the first time a task is
+	 * executed, and passes all other tasks to another ExecutorService.
+	 */
+	private static class FailingOnceExecutorService extends AbstractExecutorService {
+		/**
+		 * The ExecutorService which runs the tasks.
+		 */
+		private final ExecutorService delegate;
+		
+		/**
+		 * Whether or not the exception has been thrown.
+		 */
+		private final AtomicBoolean hasFailed = new AtomicBoolean();
+		
+		/**
+		 * Constructs a new FailingOnceExecutorService.
+		 *
+		 * @param delegate
+		 * 		the ExecutorService which runs the tasks, not null
+		 */
+		private FailingOnceExecutorService(final ExecutorService delegate) {
+			this.delegate = delegate;
+		}
+		
+		@Override
+		public void execute(final Runnable command) {
+			if (hasFailed.compareAndSet(false, true)) {
+				throw new IllegalStateException("expected failure");
+			}
+			
+			delegate.execute(command);
+		}
+		
+		@Override
+		public void shutdown() {
+			delegate.shutdown();
+		}
+		
+		@Override
+		public List<Runnable> shutdownNow() {
+			return delegate.shutdownNow();
+		}
+		
+		@Override
+		public boolean isShutdown() {
+			return delegate.isShutdown();
+		}
+		
+		@Override
+		public boolean isTerminated() {
+			return delegate.isTerminated();
+		}
+		
+		@Override
+		public boolean awaitTermination(final long timeout, final TimeUnit unit)
+				throws InterruptedException {
+			return delegate.awaitTermination(timeout, unit);
+		}
+	}
+}
\ No newline at end of file
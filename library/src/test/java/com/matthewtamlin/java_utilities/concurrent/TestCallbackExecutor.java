@@ -16,14 +16,35 @@
 
 package com.matthewtamlin.java_utilities.concurrent;
 
+import com.matthewtamlin.java_utilities.concurrent.CallbackExecutor.OnEpochCompleteListener;
 import com.matthewtamlin.java_utilities.concurrent.CallbackExecutor.OnExecutionCompleteListener;
+import com.matthewtamlin.java_utilities.concurrent.CallbackExecutor.OnProgressListener;
+import com.matthewtamlin.java_utilities.concurrent.CallbackExecutor.OnTaskCompleteListener;
+import com.matthewtamlin.java_utilities.concurrent.CallbackExecutor.OverflowPolicy;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.InOrder;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
 /**
@@ -38,6 +59,11 @@ public class TestCallbackExecutor {
 	 */
 	private static final int TASK_EXECUTION_TIME_MS = 2000;
 	
+	/**
+	 * The maximum length of time to wait for a result, measured in milliseconds.
+	 */
+	private static final int MAX_WAIT_TIME_MS = TASK_EXECUTION_TIME_MS * 5;
+	
 	/**
 	 * A task for use in testing. The task runs for approximately 2000 ms.
 	 */
@@ -292,4 +318,1945 @@ public class TestCallbackExecutor {
 		verify(callback1, times(1)).onExecutionComplete(executorUnderTest);
 		verify(callback2, times(1)).onExecutionComplete(executorUnderTest);
 	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the {@code task} argument of {@link
+	 * CallbackExecutor#submit(Callable)} is null.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testSubmit_invalidArg_nullTask() {
+		CallbackExecutor.usingSingleThreadExecutor().submit(null);
+	}
+	
+	/**
+	 * Test to verify that the futures returned by {@link CallbackExecutor#submit(Callable)}
+	 * produce the task results, and that the batch future completes after all tasks finish.
+	 *
+	 * @throws Exception
+	 * 		if the test fails
+	 */
+	@Test
+	public void testSubmit_resultsDelivered() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingFixedThreadPool(2);
+		
+		final CallbackFuture<Integer> future1 = executorUnderTest.submit(constant(1));
+		final CallbackFuture<Integer> future2 = executorUnderTest.submit(constant(2));
+		executorUnderTest.addToQueue(task1);
+		
+		assertThat("task ran before execute()", future1.isDone(), is(false));
+		
+		executorUnderTest.execute();
+		
+		assertThat(future1.get(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS), is(1));
+		assertThat(future2.get(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS), is(2));
+		
+		executorUnderTest.getBatchFuture().get(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS);
+		assertThat("task 1 did not finish", task1Finished.get(), is(true));
+	}
+	
+	/**
+	 * Test to verify that tasks can be queued concurrently by many threads. The test will only
+	 * pass if every queued task is executed exactly once and the callbacks are delivered once.
+	 *
+	 * @throws Exception
+	 * 		if the test fails
+	 */
+	@Test
+	public void testAddToQueue_concurrentProducers() throws Exception {
+		final int producerCount = 8;
+		final int tasksPerProducer = 1000;
+		
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingFixedThreadPool(4);
+		executorUnderTest.registerOnExecutionCompleteListener(mockCallback1);
+		
+		final AtomicInteger executedCount = new AtomicInteger();
+		final Runnable countingTask = new Runnable() {
+			@Override
+			public void run() {
+				executedCount.incrementAndGet();
+			}
+		};
+		
+		final Thread[] producers = new Thread[producerCount];
+		
+		for (int i = 0; i < producerCount; i++) {
+			producers[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int j = 0; j < tasksPerProducer; j++) {
+						executorUnderTest.addToQueue(countingTask);
+					}
+				}
+			});
+			
+			producers[i].start();
+		}
+		
+		for (final Thread producer : producers) {
+			producer.join();
+		}
+		
+		executorUnderTest.execute();
+		executorUnderTest.getBatchFuture().get(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS);
+		
+		assertThat(executedCount.get(), is(producerCount * tasksPerProducer));
+		verify(mockCallback1, times(1)).onExecutionComplete(executorUnderTest);
+	}
+	
+	/**
+	 * Test to verify that callbacks are delivered immediately when execution starts with no
+	 * queued tasks.
+	 */
+	@Test
+	public void testExecute_noTasks() {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		executorUnderTest.registerOnExecutionCompleteListener(mockCallback1);
+		
+		executorUnderTest.execute();
+		
+		verify(mockCallback1, times(1)).onExecutionComplete(executorUnderTest);
+		assertThat(executorUnderTest.getBatchFuture().isDone(), is(true));
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when tasks are queued after execution
+	 * has started.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testAddToQueue_afterExecute() {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		executorUnderTest.execute();
+		executorUnderTest.addToQueue(task1);
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when execution is started twice.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testExecute_calledTwice() {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		executorUnderTest.execute();
+		executorUnderTest.execute();
+	}
+	
+	/**
+	 * Test to verify that tasks can be added while continuous execution is in progress, and that
+	 * epoch callbacks are delivered in order.
+	 */
+	@Test
+	public void testExecuteContinuously_epochsDeliveredInOrder() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingFixedThreadPool(4);
+		final OnEpochCompleteListener mockEpochListener = mock(OnEpochCompleteListener.class);
+		final AtomicInteger executedCount = new AtomicInteger();
+		final int epochCount = 5;
+		final int tasksPerEpoch = 100;
+		
+		executorUnderTest.registerOnExecutionCompleteListener(mockCallback1);
+		executorUnderTest.registerOnEpochCompleteListener(mockEpochListener);
+		executorUnderTest.executeContinuously();
+		
+		for (int epoch = 0; epoch < epochCount; epoch++) {
+			for (int i = 0; i < tasksPerEpoch; i++) {
+				executorUnderTest.addToQueue(new Runnable() {
+					@Override
+					public void run() {
+						executedCount.incrementAndGet();
+					}
+				});
+			}
+			
+			assertThat(executorUnderTest.markEpoch(), is((long) epoch));
+		}
+		
+		assertThat(executorUnderTest.finishContinuousExecution(), is((long) epochCount));
+		executorUnderTest.getBatchFuture().get(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS);
+		
+		assertThat(executedCount.get(), is(epochCount * tasksPerEpoch));
+		
+		final InOrder inOrder = inOrder(mockEpochListener, mockCallback1);
+		
+		for (long epoch = 0; epoch <= epochCount; epoch++) {
+			inOrder.verify(mockEpochListener).onEpochComplete(executorUnderTest, epoch);
+		}
+		
+		inOrder.verify(mockCallback1).onExecutionComplete(executorUnderTest);
+	}
+	
+	/**
+	 * Test to verify that tasks queued before continuous execution starts are executed, and that
+	 * the execution callbacks are not delivered until continuous execution is finished.
+	 */
+	@Test
+	public void testExecuteContinuously_queuedTasksExecuted() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		executorUnderTest.registerOnExecutionCompleteListener(mockCallback1);
+		executorUnderTest.addToQueue(task1);
+		
+		executorUnderTest.executeContinuously();
+		pause(TASK_EXECUTION_TIME_MS / 2);
+		assertThat(task1Started.get(), is(true));
+		
+		executorUnderTest.addToQueue(task2);
+		pause(TASK_EXECUTION_TIME_MS * 2);
+		
+		assertThat(task1Finished.get(), is(true));
+		assertThat(task2Finished.get(), is(true));
+		verify(mockCallback1, never()).onExecutionComplete(executorUnderTest);
+		
+		executorUnderTest.finishContinuousExecution();
+		executorUnderTest.getBatchFuture().get(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS);
+		
+		verify(mockCallback1, times(1)).onExecutionComplete(executorUnderTest);
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when tasks are queued after continuous
+	 * execution has been finished.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testAddToQueue_afterFinishContinuousExecution() {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		executorUnderTest.executeContinuously();
+		executorUnderTest.finishContinuousExecution();
+		executorUnderTest.addToQueue(task1);
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when an epoch is marked in batch mode.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testMarkEpoch_batchMode() {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		executorUnderTest.execute();
+		executorUnderTest.markEpoch();
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when continuous execution is started
+	 * after batch execution.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testExecuteContinuously_afterExecute() {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		executorUnderTest.execute();
+		executorUnderTest.executeContinuously();
+	}
+	
+	/**
+	 * Test to verify that the CallbackExecutor works as expected when using virtual threads, or
+	 * the fallback on runtimes which do not support virtual threads. Many more tasks than there
+	 * are processors are blocked at once.
+	 */
+	@Test
+	public void testCallbackExecutor_usingVirtualThreads() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingVirtualThreads();
+		final int taskCount = 1000;
+		final CountDownLatch allTasksStarted = new CountDownLatch(taskCount);
+		final AtomicInteger executedCount = new AtomicInteger();
+		
+		executorUnderTest.registerOnExecutionCompleteListener(mockCallback1);
+		
+		for (int i = 0; i < taskCount; i++) {
+			executorUnderTest.addToQueue(new Runnable() {
+				@Override
+				public void run() {
+					allTasksStarted.countDown();
+					
+					try {
+						// Only completes if all tasks are running concurrently
+						allTasksStarted.await(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS);
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					
+					executedCount.incrementAndGet();
+				}
+			});
+		}
+		
+		executorUnderTest.execute();
+		
+		assertThat(allTasksStarted.await(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS), is(true));
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		assertThat(executedCount.get(), is(taskCount));
+		verify(mockCallback1, times(1)).onExecutionComplete(executorUnderTest);
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the shared ExecutorService is
+	 * null.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testUsingExecutorService_invalidArg_nullExecutorService() {
+		CallbackExecutor.usingExecutorService(null);
+	}
+	
+	/**
+	 * Test to verify that multiple CallbackExecutors can share an ExecutorService, and that the
+	 * shared ExecutorService is not shut down when they terminate.
+	 */
+	@Test
+	public void testUsingExecutorService_sharedPoolNotShutDown() throws Exception {
+		final ExecutorService sharedPool = Executors.newFixedThreadPool(2);
+		
+		try {
+			final CallbackExecutor executor1 = CallbackExecutor.usingExecutorService(sharedPool);
+			final CallbackExecutor executor2 = CallbackExecutor.usingExecutorService(sharedPool);
+			executor1.registerOnExecutionCompleteListener(mockCallback1);
+			executor2.registerOnExecutionCompleteListener(mockCallback2);
+			executor1.addToQueue(task1);
+			executor2.addToQueue(task2);
+			
+			executor1.execute();
+			executor2.execute();
+			
+			assertThat(executor1.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS), is(true));
+			assertThat(executor2.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS), is(true));
+			
+			assertThat(task1Finished.get(), is(true));
+			assertThat(task2Finished.get(), is(true));
+			verify(mockCallback1, times(1)).onExecutionComplete(executor1);
+			verify(mockCallback2, times(1)).onExecutionComplete(executor2);
+			assertThat(sharedPool.isShutdown(), is(false));
+		} finally {
+			sharedPool.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Test to verify that closing a CallbackExecutor executes the queued tasks, waits for them to
+	 * finish, and shuts down the owned ExecutorService.
+	 */
+	@Test
+	public void testClose_notStarted() {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingFixedThreadPool(2);
+		executorUnderTest.registerOnExecutionCompleteListener(mockCallback1);
+		executorUnderTest.addToQueue(task1);
+		executorUnderTest.addToQueue(task2);
+		
+		executorUnderTest.close();
+		
+		assertThat(task1Finished.get(), is(true));
+		assertThat(task2Finished.get(), is(true));
+		assertThat(executorUnderTest.isShutdown(), is(true));
+		assertThat(executorUnderTest.isTerminated(), is(true));
+		verify(mockCallback1, times(1)).onExecutionComplete(executorUnderTest);
+	}
+	
+	/**
+	 * Test to verify that shutting down a CallbackExecutor in continuous mode finishes continuous
+	 * execution.
+	 */
+	@Test
+	public void testShutdown_continuousMode() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		executorUnderTest.registerOnExecutionCompleteListener(mockCallback1);
+		executorUnderTest.executeContinuously();
+		executorUnderTest.addToQueue(task1);
+		
+		executorUnderTest.shutdown();
+		executorUnderTest.shutdown();
+		
+		assertThat(executorUnderTest.isShutdown(), is(true));
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS), is(true));
+		assertThat(task1Finished.get(), is(true));
+		verify(mockCallback1, times(1)).onExecutionComplete(executorUnderTest);
+	}
+	
+	/**
+	 * Test to verify that a CallbackExecutor does not terminate before execution starts.
+	 */
+	@Test
+	public void testAwaitTermination_notStarted() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		executorUnderTest.addToQueue(task1);
+		
+		assertThat(executorUnderTest.awaitTermination(10, TimeUnit.MILLISECONDS), is(false));
+		assertThat(executorUnderTest.isShutdown(), is(false));
+		assertThat(executorUnderTest.isTerminated(), is(false));
+		
+		executorUnderTest.close();
+	}
+	
+	/**
+	 * Test to verify that the number of tasks passed to the underlying executor never exceeds
+	 * the in-flight limit.
+	 */
+	@Test
+	public void testSetMaxInFlightTasks_limitRespected() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingCachedThreadPool();
+		final int maxInFlightTasks = 2;
+		final int taskCount = 20;
+		final AtomicInteger runningCount = new AtomicInteger();
+		final AtomicInteger maxRunningCount = new AtomicInteger();
+		final AtomicInteger executedCount = new AtomicInteger();
+		
+		executorUnderTest.setMaxInFlightTasks(maxInFlightTasks);
+		
+		for (int i = 0; i < taskCount; i++) {
+			executorUnderTest.addToQueue(new Runnable() {
+				@Override
+				public void run() {
+					final int running = runningCount.incrementAndGet();
+					
+					int max;
+					
+					do {
+						max = maxRunningCount.get();
+					} while (running > max && !maxRunningCount.compareAndSet(max, running));
+					
+					pause(10);
+					runningCount.decrementAndGet();
+					executedCount.incrementAndGet();
+				}
+			});
+		}
+		
+		executorUnderTest.execute();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		assertThat(executedCount.get(), is(taskCount));
+		assertThat(maxRunningCount.get() <= maxInFlightTasks, is(true));
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when a task is added to a full queue
+	 * and the fail fast policy is used.
+	 */
+	@Test(expected = RejectedExecutionException.class)
+	public void testSetMaxQueuedTasks_failFast() {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		executorUnderTest.setMaxQueuedTasks(1, OverflowPolicy.FAIL_FAST);
+		
+		executorUnderTest.addToQueue(task1);
+		executorUnderTest.addToQueue(task2);
+	}
+	
+	/**
+	 * Test to verify that a task added to a full queue is run on the calling thread when the
+	 * caller runs policy is used during execution, and that it still counts towards the epoch.
+	 */
+	@Test
+	public void testSetMaxQueuedTasks_callerRuns() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		final CountDownLatch blockingTaskStarted = new CountDownLatch(1);
+		final CountDownLatch releaseBlockingTask = new CountDownLatch(1);
+		final AtomicReference<Thread> executingThread = new AtomicReference<>();
+		
+		executorUnderTest.setMaxQueuedTasks(1, OverflowPolicy.CALLER_RUNS);
+		executorUnderTest.setMaxInFlightTasks(1);
+		executorUnderTest.registerOnExecutionCompleteListener(mockCallback1);
+		executorUnderTest.executeContinuously();
+		
+		// Occupies the only in-flight place, so that the next task stays in the queue
+		executorUnderTest.addToQueue(new Runnable() {
+			@Override
+			public void run() {
+				blockingTaskStarted.countDown();
+				
+				try {
+					releaseBlockingTask.await();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		
+		assertThat(blockingTaskStarted.await(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS), is(true));
+		
+		executorUnderTest.addToQueue(task1);
+		executorUnderTest.addToQueue(new Runnable() {
+			@Override
+			public void run() {
+				executingThread.set(Thread.currentThread());
+			}
+		});
+		
+		assertThat(executingThread.get(), is(Thread.currentThread()));
+		assertThat(task1Started.get(), is(false));
+		
+		releaseBlockingTask.countDown();
+		executorUnderTest.finishContinuousExecution();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		assertThat(task1Finished.get(), is(true));
+		verify(mockCallback1, times(1)).onExecutionComplete(executorUnderTest);
+	}
+	
+	/**
+	 * Test to verify that the caller runs policy rejects a task added to a full queue before
+	 * execution starts, rather than running it early, and that the queued tasks are unaffected.
+	 */
+	@Test
+	public void testSetMaxQueuedTasks_callerRunsBeforeExecute() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		
+		executorUnderTest.setMaxQueuedTasks(1, OverflowPolicy.CALLER_RUNS);
+		executorUnderTest.addToQueue(task1);
+		
+		try {
+			executorUnderTest.addToQueue(task2);
+			fail("the task should have been rejected");
+		} catch (final RejectedExecutionException e) {
+			// Expected
+		}
+		
+		assertThat(task1Started.get(), is(false));
+		assertThat(task2Started.get(), is(false));
+		
+		executorUnderTest.execute();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		assertThat(task1Finished.get(), is(true));
+		assertThat(task2Started.get(), is(false));
+	}
+	
+	/**
+	 * Test to verify that adding tasks blocks while the queue is full when the block policy is
+	 * used, and that all tasks are still executed.
+	 */
+	@Test
+	public void testSetMaxQueuedTasks_block() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		final int taskCount = 1000;
+		final AtomicInteger executedCount = new AtomicInteger();
+		
+		executorUnderTest.setMaxQueuedTasks(10, OverflowPolicy.BLOCK);
+		executorUnderTest.setMaxInFlightTasks(1);
+		executorUnderTest.executeContinuously();
+		
+		for (int i = 0; i < taskCount; i++) {
+			executorUnderTest.addToQueue(new Runnable() {
+				@Override
+				public void run() {
+					executedCount.incrementAndGet();
+				}
+			});
+		}
+		
+		executorUnderTest.finishContinuousExecution();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		assertThat(executedCount.get(), is(taskCount));
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the limits are changed after
+	 * tasks have been added.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testSetMaxInFlightTasks_afterTasksAdded() {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		executorUnderTest.addToQueue(task1);
+		executorUnderTest.setMaxInFlightTasks(1);
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the queue limit is invalid.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetMaxQueuedTasks_invalidArg_zero() {
+		CallbackExecutor.usingSingleThreadExecutor().setMaxQueuedTasks(0, OverflowPolicy.BLOCK);
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the overflow policy is null.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetMaxQueuedTasks_invalidArg_nullPolicy() {
+		CallbackExecutor.usingSingleThreadExecutor().setMaxQueuedTasks(1, null);
+	}
+	
+	/**
+	 * Test to verify that a failing task does not prevent the callbacks from being delivered,
+	 * and that the outcome of each task is reported.
+	 */
+	@Test
+	public void testAddToQueue_failingTask() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		final Map<Runnable, TaskOutcome> outcomes = recordOutcomes(executorUnderTest);
+		final RuntimeException failure = new RuntimeException("expected failure");
+		final Runnable failingTask = failingTask(failure);
+		
+		executorUnderTest.registerOnExecutionCompleteListener(mockCallback1);
+		executorUnderTest.addToQueue(failingTask);
+		executorUnderTest.addToQueue(task1);
+		executorUnderTest.execute();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		verify(mockCallback1, times(1)).onExecutionComplete(executorUnderTest);
+		assertThat(task1Finished.get(), is(true));
+		
+		assertThat(outcomes.get(failingTask).getStatus(), is(TaskOutcome.Status.FAILED));
+		assertThat(outcomes.get(failingTask).getFailure(), is((Throwable) failure));
+		assertThat(outcomes.get(task1).getStatus(), is(TaskOutcome.Status.SUCCEEDED));
+		assertThat(outcomes.get(task1).getFailure(), is(nullValue()));
+		assertThat(outcomes.get(task1).getRunTimeNanos() >=
+				TimeUnit.MILLISECONDS.toNanos(TASK_EXECUTION_TIME_MS), is(true));
+		assertThat(outcomes.get(task1).getWaitTimeNanos() > 0, is(true));
+	}
+	
+	/**
+	 * Test to verify that the failure of a submitted Callable is reported.
+	 */
+	@Test
+	public void testSubmit_failingTask() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		final Map<Runnable, TaskOutcome> outcomes = recordOutcomes(executorUnderTest);
+		final Exception failure = new Exception("expected failure");
+		
+		final CallbackFuture<Integer> future = executorUnderTest.submit(new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				throw failure;
+			}
+		});
+		
+		executorUnderTest.execute();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		assertThat(outcomes.get(future).getStatus(), is(TaskOutcome.Status.FAILED));
+		assertThat(outcomes.get(future).getFailure(), is((Throwable) failure));
+	}
+	
+	/**
+	 * Test to verify that the remaining tasks are skipped when a task fails and cancel on failure
+	 * is enabled.
+	 */
+	@Test
+	public void testSetCancelOnFailure_remainingTasksSkipped() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		final Map<Runnable, TaskOutcome> outcomes = recordOutcomes(executorUnderTest);
+		final Runnable failingTask = failingTask(new RuntimeException("expected failure"));
+		
+		executorUnderTest.setCancelOnFailure(true);
+		executorUnderTest.registerOnExecutionCompleteListener(mockCallback1);
+		executorUnderTest.addToQueue(failingTask);
+		executorUnderTest.addToQueue(task1);
+		executorUnderTest.addToQueue(task2);
+		executorUnderTest.execute();
+		
+		// Must finish before the skipped tasks would have finished
+		assertThat(executorUnderTest.awaitTermination(TASK_EXECUTION_TIME_MS / 2,
+				TimeUnit.MILLISECONDS), is(true));
+		verify(mockCallback1, times(1)).onExecutionComplete(executorUnderTest);
+		assertThat(executorUnderTest.isCancelled(), is(true));
+		assertThat(task1Started.get(), is(false));
+		assertThat(task2Started.get(), is(false));
+		assertThat(outcomes.get(failingTask).getStatus(), is(TaskOutcome.Status.FAILED));
+		assertThat(outcomes.get(task1).getStatus(), is(TaskOutcome.Status.CANCELLED));
+		assertThat(outcomes.get(task2).getStatus(), is(TaskOutcome.Status.CANCELLED));
+	}
+	
+	/**
+	 * Test to verify that tasks rejected by the executor service are reported as failed, and that
+	 * execution still completes.
+	 */
+	@Test
+	public void testExecute_rejectingExecutorService() throws Exception {
+		final ExecutorService pool = Executors.newSingleThreadExecutor();
+		pool.shutdown();
+		
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingExecutorService(pool);
+		final Map<Runnable, TaskOutcome> outcomes = recordOutcomes(executorUnderTest);
+		final Runnable rejectedTask = mock(Runnable.class);
+		
+		executorUnderTest.registerOnExecutionCompleteListener(mockCallback1);
+		executorUnderTest.addToQueue(rejectedTask);
+		final CallbackFuture<Integer> future = executorUnderTest.submit(constant(1));
+		executorUnderTest.execute();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		verify(mockCallback1, times(1)).onExecutionComplete(executorUnderTest);
+		verify(rejectedTask, never()).run();
+		assertThat(future.isCancelled(), is(true));
+		assertThat(outcomes.get(rejectedTask).getStatus(), is(TaskOutcome.Status.FAILED));
+		assertThat(outcomes.get(rejectedTask).getFailure() instanceof RejectedExecutionException,
+				is(true));
+		assertThat(outcomes.get(future).getStatus(), is(TaskOutcome.Status.FAILED));
+	}
+	
+	/**
+	 * Test to verify that a task which is rejected when a finishing task dispatches it does not
+	 * stop the in-flight count and the epoch from being updated.
+	 */
+	@Test
+	public void testSetMaxInFlightTasks_rejectedOnRedispatch() throws Exception {
+		final ExecutorService pool = Executors.newSingleThreadExecutor();
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingExecutorService(pool);
+		final Map<Runnable, TaskOutcome> outcomes = recordOutcomes(executorUnderTest);
+		final Runnable rejectedTask = mock(Runnable.class);
+		
+		// The first task shuts the pool down, so the pool rejects the second task
+		final Runnable shutdownTask = new Runnable() {
+			@Override
+			public void run() {
+				pool.shutdown();
+			}
+		};
+		
+		executorUnderTest.setMaxInFlightTasks(1);
+		executorUnderTest.registerOnExecutionCompleteListener(mockCallback1);
+		executorUnderTest.addToQueue(shutdownTask);
+		executorUnderTest.addToQueue(rejectedTask);
+		executorUnderTest.execute();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		verify(mockCallback1, times(1)).onExecutionComplete(executorUnderTest);
+		verify(rejectedTask, never()).run();
+		assertThat(outcomes.get(shutdownTask).getStatus(), is(TaskOutcome.Status.SUCCEEDED));
+		assertThat(outcomes.get(rejectedTask).getStatus(), is(TaskOutcome.Status.FAILED));
+	}
+	
+	/**
+	 * Test to verify that cancelling execution interrupts running tasks and cancels the futures
+	 * of tasks which have not started.
+	 */
+	@Test
+	public void testCancel_runningTaskInterrupted() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		final Map<Runnable, TaskOutcome> outcomes = recordOutcomes(executorUnderTest);
+		final CountDownLatch blockingTaskStarted = new CountDownLatch(1);
+		final AtomicBoolean blockingTaskInterrupted = new AtomicBoolean();
+		
+		final Runnable blockingTask = new Runnable() {
+			@Override
+			public void run() {
+				blockingTaskStarted.countDown();
+				
+				try {
+					Thread.sleep(MAX_WAIT_TIME_MS * 2);
+				} catch (final InterruptedException e) {
+					blockingTaskInterrupted.set(true);
+				}
+			}
+		};
+		
+		executorUnderTest.addToQueue(blockingTask);
+		final CallbackFuture<Integer> future = executorUnderTest.submit(constant(1));
+		executorUnderTest.execute();
+		
+		assertThat(blockingTaskStarted.await(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS), is(true));
+		executorUnderTest.cancel();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		assertThat(blockingTaskInterrupted.get(), is(true));
+		assertThat(future.isCancelled(), is(true));
+		assertThat(outcomes.get(blockingTask).getStatus(), is(TaskOutcome.Status.CANCELLED));
+		assertThat(outcomes.get(future).getStatus(), is(TaskOutcome.Status.CANCELLED));
+	}
+	
+	/**
+	 * Test to verify that cancelling execution does not interrupt running tasks when interrupting
+	 * is disabled, but still skips the tasks which have not started.
+	 */
+	@Test
+	public void testSetInterruptOnCancel_runningTaskNotInterrupted() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		final Map<Runnable, TaskOutcome> outcomes = recordOutcomes(executorUnderTest);
+		final CountDownLatch blockingTaskStarted = new CountDownLatch(1);
+		final CountDownLatch releaseBlockingTask = new CountDownLatch(1);
+		final AtomicBoolean blockingTaskInterrupted = new AtomicBoolean();
+		final Runnable skippedTask = mock(Runnable.class);
+		
+		final Runnable blockingTask = new Runnable() {
+			@Override
+			public void run() {
+				blockingTaskStarted.countDown();
+				
+				try {
+					releaseBlockingTask.await();
+				} catch (final InterruptedException e) {
+					blockingTaskInterrupted.set(true);
+				}
+			}
+		};
+		
+		executorUnderTest.setInterruptOnCancel(false);
+		executorUnderTest.addToQueue(blockingTask);
+		executorUnderTest.addToQueue(skippedTask);
+		executorUnderTest.execute();
+		
+		assertThat(blockingTaskStarted.await(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS), is(true));
+		executorUnderTest.cancel();
+		releaseBlockingTask.countDown();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		assertThat(blockingTaskInterrupted.get(), is(false));
+		assertThat(outcomes.get(blockingTask).getStatus(), is(TaskOutcome.Status.SUCCEEDED));
+		assertThat(outcomes.get(skippedTask).getStatus(), is(TaskOutcome.Status.CANCELLED));
+		verify(skippedTask, never()).run();
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when {@link
+	 * CallbackExecutor#setInterruptOnCancel(boolean)} is called after execution starts.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testSetInterruptOnCancel_afterExecute() {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		executorUnderTest.execute();
+		
+		executorUnderTest.setInterruptOnCancel(false);
+	}
+	
+	/**
+	 * Test to verify that a task which runs for longer than the task timeout is interrupted and
+	 * reported as timed out, without affecting the other tasks.
+	 */
+	@Test
+	public void testSetTaskTimeout_longTaskInterrupted() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingFixedThreadPool(2);
+		final Map<Runnable, TaskOutcome> outcomes = recordOutcomes(executorUnderTest);
+		final AtomicBoolean slowTaskInterrupted = new AtomicBoolean();
+		final Runnable slowTask = sleepingTask(MAX_WAIT_TIME_MS * 2, slowTaskInterrupted);
+		final Runnable quickTask = mock(Runnable.class);
+		
+		executorUnderTest.setTaskTimeout(100, TimeUnit.MILLISECONDS);
+		executorUnderTest.registerOnExecutionCompleteListener(mockCallback1);
+		executorUnderTest.addToQueue(slowTask);
+		executorUnderTest.addToQueue(quickTask);
+		executorUnderTest.execute();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		verify(mockCallback1, times(1)).onExecutionComplete(executorUnderTest);
+		assertThat(slowTaskInterrupted.get(), is(true));
+		assertThat(outcomes.get(slowTask).getStatus(), is(TaskOutcome.Status.TIMED_OUT));
+		assertThat(outcomes.get(quickTask).getStatus(), is(TaskOutcome.Status.SUCCEEDED));
+		assertThat(executorUnderTest.getTimedOutTasks(), is(Arrays.asList(slowTask)));
+		assertThat(executorUnderTest.isCancelled(), is(false));
+	}
+	
+	/**
+	 * Test to verify that cancelling execution while a submitted Callable is running cancels its
+	 * future, rather than completing it with the InterruptedException.
+	 */
+	@Test
+	public void testCancel_runningCallableCancelled() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		final Map<Runnable, TaskOutcome> outcomes = recordOutcomes(executorUnderTest);
+		final CountDownLatch callableStarted = new CountDownLatch(1);
+		
+		final CallbackFuture<Integer> future = executorUnderTest.submit(
+				sleepingCallable(callableStarted));
+		executorUnderTest.execute();
+		
+		assertThat(callableStarted.await(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS), is(true));
+		executorUnderTest.cancel();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		assertThat(future.isCancelled(), is(true));
+		assertThat(outcomes.get(future).getStatus(), is(TaskOutcome.Status.CANCELLED));
+	}
+	
+	/**
+	 * Test to verify that the future of a submitted Callable which times out while running is
+	 * cancelled, rather than completed with the InterruptedException.
+	 */
+	@Test
+	public void testSetTaskTimeout_runningCallableCancelled() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		final Map<Runnable, TaskOutcome> outcomes = recordOutcomes(executorUnderTest);
+		
+		executorUnderTest.setTaskTimeout(100, TimeUnit.MILLISECONDS);
+		final CallbackFuture<Integer> future = executorUnderTest.submit(
+				sleepingCallable(new CountDownLatch(1)));
+		executorUnderTest.execute();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		assertThat(future.isCancelled(), is(true));
+		assertThat(outcomes.get(future).getStatus(), is(TaskOutcome.Status.TIMED_OUT));
+		assertThat(executorUnderTest.getTimedOutTasks(), is(Arrays.<Runnable>asList(future)));
+	}
+	
+	/**
+	 * Test to verify that execution is cancelled when the batch timeout expires, and that the
+	 * interrupted and skipped tasks are reported as timed out.
+	 */
+	@Test
+	public void testSetBatchTimeout_batchCancelled() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		final Map<Runnable, TaskOutcome> outcomes = recordOutcomes(executorUnderTest);
+		final AtomicBoolean slowTaskInterrupted = new AtomicBoolean();
+		final Runnable slowTask = sleepingTask(MAX_WAIT_TIME_MS * 2, slowTaskInterrupted);
+		
+		executorUnderTest.setBatchTimeout(100, TimeUnit.MILLISECONDS);
+		executorUnderTest.registerOnExecutionCompleteListener(mockCallback1);
+		executorUnderTest.addToQueue(slowTask);
+		executorUnderTest.addToQueue(task1);
+		executorUnderTest.execute();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		verify(mockCallback1, times(1)).onExecutionComplete(executorUnderTest);
+		assertThat(slowTaskInterrupted.get(), is(true));
+		assertThat(task1Started.get(), is(false));
+		assertThat(executorUnderTest.isCancelled(), is(true));
+		assertThat(outcomes.get(slowTask).getStatus(), is(TaskOutcome.Status.TIMED_OUT));
+		assertThat(outcomes.get(task1).getStatus(), is(TaskOutcome.Status.TIMED_OUT));
+		assertThat(executorUnderTest.getTimedOutTasks(), is(Arrays.asList(slowTask, task1)));
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the task timeout is not positive.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetTaskTimeout_invalidArg_zeroTimeout() {
+		CallbackExecutor.usingSingleThreadExecutor().setTaskTimeout(0, TimeUnit.SECONDS);
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the batch timeout unit is null.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetBatchTimeout_invalidArg_nullUnit() {
+		CallbackExecutor.usingSingleThreadExecutor().setBatchTimeout(1, null);
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the batch timeout is set after
+	 * execution has started.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testSetBatchTimeout_afterExecute() {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		executorUnderTest.execute();
+		executorUnderTest.setBatchTimeout(1, TimeUnit.SECONDS);
+	}
+	
+	/**
+	 * Test to verify that tasks are dispatched in priority order when priority ordering is
+	 * enabled, and that tasks with equal priorities are dispatched in FIFO order.
+	 */
+	@Test
+	public void testEnablePriorityOrdering_tasksDispatchedInPriorityOrder() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		final List<String> executionOrder = Collections.synchronizedList(new ArrayList<String>());
+		
+		executorUnderTest.enablePriorityOrdering();
+		executorUnderTest.addToQueue(recordingTask(executionOrder, "low"), 1);
+		executorUnderTest.addToQueue(recordingTask(executionOrder, "high"), 5);
+		executorUnderTest.addToQueue(recordingTask(executionOrder, "medium 1"), 3);
+		executorUnderTest.addToQueue(recordingTask(executionOrder, "medium 2"), 3);
+		executorUnderTest.addToQueue(recordingTask(executionOrder, "default"));
+		executorUnderTest.execute();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		assertThat(executionOrder,
+				is(Arrays.asList("high", "medium 1", "medium 2", "low", "default")));
+	}
+	
+	/**
+	 * Test to verify that priorities are ignored when priority ordering is not enabled.
+	 */
+	@Test
+	public void testAddToQueue_priorityIgnoredByDefault() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		final List<String> executionOrder = Collections.synchronizedList(new ArrayList<String>());
+		
+		executorUnderTest.addToQueue(recordingTask(executionOrder, "low"), 1);
+		executorUnderTest.addToQueue(recordingTask(executionOrder, "high"), 5);
+		executorUnderTest.execute();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		assertThat(executionOrder, is(Arrays.asList("low", "high")));
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when priority ordering is enabled after
+	 * tasks have been added.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testEnablePriorityOrdering_afterTasksAdded() {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		executorUnderTest.addToQueue(task1);
+		executorUnderTest.enablePriorityOrdering();
+	}
+	
+	/**
+	 * Test to verify that a recursive tree of subtasks is executed by a work-stealing pool, and
+	 * that the callbacks are only delivered once the whole tree has finished.
+	 */
+	@Test
+	public void testSpawn_workStealingPool() throws Exception {
+		checkSpawnedTreeExecuted(CallbackExecutor.usingWorkStealingPool());
+	}
+	
+	/**
+	 * Test to verify that a recursive tree of subtasks is executed by a fixed thread pool, and
+	 * that the callbacks are only delivered once the whole tree has finished.
+	 */
+	@Test
+	public void testSpawn_fixedThreadPool() throws Exception {
+		checkSpawnedTreeExecuted(CallbackExecutor.usingFixedThreadPool(4));
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when a subtask is spawned from outside
+	 * of a running task.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testSpawn_notInTask() {
+		CallbackExecutor.usingSingleThreadExecutor().spawn(task1);
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the {@code subtask} argument of
+	 * {@link CallbackExecutor#spawn(Runnable)} is null.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testSpawn_invalidArg_nullSubtask() {
+		CallbackExecutor.usingSingleThreadExecutor().spawn(null);
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the parallelism of a work-stealing
+	 * pool is not positive.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testUsingWorkStealingPool_invalidArg_zeroParallelism() {
+		CallbackExecutor.usingWorkStealingPool(0);
+	}
+	
+	@Test
+	public void testSetChunkSize_allTasksExecutedAndReported() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingFixedThreadPool(2);
+		final Map<Runnable, TaskOutcome> outcomes = recordOutcomes(executorUnderTest);
+		final OnExecutionCompleteListener listener = mock(OnExecutionCompleteListener.class);
+		final AtomicInteger executedCount = new AtomicInteger();
+		final RuntimeException failure = new RuntimeException();
+		final Runnable failingTask = failingTask(failure);
+		final List<Runnable> tasks = new ArrayList<>();
+		
+		for (int i = 0; i < 1000; i++) {
+			tasks.add(new Runnable() {
+				@Override
+				public void run() {
+					executedCount.incrementAndGet();
+				}
+			});
+		}
+		
+		tasks.add(500, failingTask);
+		
+		executorUnderTest.setChunkSize(64);
+		executorUnderTest.registerOnExecutionCompleteListener(listener);
+		executorUnderTest.addAllToQueue(tasks);
+		executorUnderTest.execute();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		assertThat(executedCount.get(), is(1000));
+		assertThat(outcomes.size(), is(1001));
+		assertThat(outcomes.get(failingTask).getStatus(), is(TaskOutcome.Status.FAILED));
+		assertThat(outcomes.get(failingTask).getFailure(), is((Throwable) failure));
+		verify(listener, times(1)).onExecutionComplete(executorUnderTest);
+	}
+	
+	@Test
+	public void testSetChunkSize_continuousExecution() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		final OnEpochCompleteListener listener = mock(OnEpochCompleteListener.class);
+		final AtomicInteger executedCount = new AtomicInteger();
+		
+		final Runnable countingTask = new Runnable() {
+			@Override
+			public void run() {
+				executedCount.incrementAndGet();
+			}
+		};
+		
+		executorUnderTest.setChunkSize(16);
+		executorUnderTest.registerOnEpochCompleteListener(listener);
+		executorUnderTest.executeContinuously();
+		
+		for (int epoch = 0; epoch < 3; epoch++) {
+			for (int i = 0; i < 50; i++) {
+				executorUnderTest.addToQueue(countingTask);
+			}
+			
+			executorUnderTest.markEpoch();
+		}
+		
+		executorUnderTest.finishContinuousExecution();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		assertThat(executedCount.get(), is(150));
+		
+		final InOrder inOrder = inOrder(listener);
+		
+		for (long epoch = 0; epoch < 4; epoch++) {
+			inOrder.verify(listener).onEpochComplete(executorUnderTest, epoch);
+		}
+	}
+	
+	@Test
+	public void testSetChunkSize_cancelInterruptsChunk() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		final Map<Runnable, TaskOutcome> outcomes = recordOutcomes(executorUnderTest);
+		final CountDownLatch blockingTaskStarted = new CountDownLatch(1);
+		final AtomicBoolean blockingTaskInterrupted = new AtomicBoolean();
+		
+		final Runnable blockingTask = new Runnable() {
+			@Override
+			public void run() {
+				blockingTaskStarted.countDown();
+				
+				try {
+					Thread.sleep(MAX_WAIT_TIME_MS * 2);
+				} catch (final InterruptedException e) {
+					blockingTaskInterrupted.set(true);
+				}
+			}
+		};
+		
+		executorUnderTest.setChunkSize(10);
+		executorUnderTest.addToQueue(blockingTask);
+		executorUnderTest.addToQueue(task1);
+		executorUnderTest.execute();
+		
+		assertThat(blockingTaskStarted.await(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS), is(true));
+		executorUnderTest.cancel();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		assertThat(blockingTaskInterrupted.get(), is(true));
+		assertThat(outcomes.get(blockingTask).getStatus(), is(TaskOutcome.Status.CANCELLED));
+		assertThat(outcomes.get(task1).getStatus(), is(TaskOutcome.Status.CANCELLED));
+		assertThat(task1Started.get(), is(false));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetChunkSize_invalidArg_zeroChunkSize() {
+		CallbackExecutor.usingSingleThreadExecutor().setChunkSize(0);
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void testSetChunkSize_afterTasksAdded() {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		executorUnderTest.addToQueue(task1);
+		executorUnderTest.setChunkSize(10);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testAddAllToQueue_invalidArg_nullElement() {
+		CallbackExecutor.usingSingleThreadExecutor().addAllToQueue(Arrays.asList(task1, null));
+	}
+	
+	@Test
+	public void testSetCallbackExecutor_callbacksDeliveredOnCallbackExecutor() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		final ExecutorService callbackExecutor = Executors.newSingleThreadExecutor();
+		final AtomicReference<Thread> callbackThread = new AtomicReference<>();
+		final AtomicReference<Thread> taskThread = new AtomicReference<>();
+		
+		executorUnderTest.setCallbackExecutor(callbackExecutor);
+		executorUnderTest.registerOnExecutionCompleteListener(new OnExecutionCompleteListener() {
+			@Override
+			public void onExecutionComplete(final CallbackExecutor callbackExecutor) {
+				callbackThread.set(Thread.currentThread());
+			}
+		});
+		
+		executorUnderTest.addToQueue(new Runnable() {
+			@Override
+			public void run() {
+				taskThread.set(Thread.currentThread());
+			}
+		});
+		
+		executorUnderTest.execute();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		assertThat(callbackThread.get() == null, is(false));
+		assertThat(callbackThread.get() == taskThread.get(), is(false));
+		
+		callbackExecutor.shutdown();
+	}
+	
+	@Test
+	public void testSetCallbackExecutor_epochsDeliveredInOrder() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingFixedThreadPool(4);
+		final ExecutorService callbackExecutor = Executors.newFixedThreadPool(4);
+		final OnEpochCompleteListener listener = mock(OnEpochCompleteListener.class);
+		final OnExecutionCompleteListener executionListener =
+				mock(OnExecutionCompleteListener.class);
+		
+		executorUnderTest.setCallbackExecutor(callbackExecutor);
+		executorUnderTest.registerOnEpochCompleteListener(listener);
+		executorUnderTest.registerOnExecutionCompleteListener(executionListener);
+		executorUnderTest.executeContinuously();
+		
+		for (int epoch = 0; epoch < 20; epoch++) {
+			executorUnderTest.addToQueue(mock(Runnable.class));
+			executorUnderTest.markEpoch();
+		}
+		
+		executorUnderTest.finishContinuousExecution();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		
+		final InOrder inOrder = inOrder(listener, executionListener);
+		
+		for (long epoch = 0; epoch < 21; epoch++) {
+			inOrder.verify(listener).onEpochComplete(executorUnderTest, epoch);
+		}
+		
+		inOrder.verify(executionListener).onExecutionComplete(executorUnderTest);
+		
+		callbackExecutor.shutdown();
+	}
+	
+	@Test
+	public void testSetCallbackExecutor_rejectedCallbacksStillDelivered() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		final ExecutorService callbackExecutor = Executors.newSingleThreadExecutor();
+		final OnExecutionCompleteListener listener = mock(OnExecutionCompleteListener.class);
+		
+		callbackExecutor.shutdown();
+		
+		executorUnderTest.setCallbackExecutor(callbackExecutor);
+		executorUnderTest.registerOnExecutionCompleteListener(listener);
+		executorUnderTest.addToQueue(mock(Runnable.class));
+		executorUnderTest.execute();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		verify(listener, times(1)).onExecutionComplete(executorUnderTest);
+	}
+	
+	/**
+	 * Test to verify that an epoch listener which throws does not stop the later epochs and the
+	 * execution callbacks from being delivered when there is no callback executor.
+	 */
+	@Test
+	public void testRegisterOnEpochCompleteListener_throwingListener() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingFixedThreadPool(4);
+		final OnEpochCompleteListener listener = mock(OnEpochCompleteListener.class);
+		final OnExecutionCompleteListener executionListener =
+				mock(OnExecutionCompleteListener.class);
+		
+		executorUnderTest.registerOnEpochCompleteListener(new OnEpochCompleteListener() {
+			@Override
+			public void onEpochComplete(final CallbackExecutor callbackExecutor,
+					final long epoch) {
+				if (epoch == 0) {
+					throw new RuntimeException("expected failure");
+				}
+			}
+		});
+		
+		executorUnderTest.registerOnEpochCompleteListener(listener);
+		executorUnderTest.registerOnExecutionCompleteListener(executionListener);
+		executorUnderTest.executeContinuously();
+		
+		for (int epoch = 0; epoch < 20; epoch++) {
+			executorUnderTest.addToQueue(mock(Runnable.class));
+			executorUnderTest.markEpoch();
+		}
+		
+		executorUnderTest.finishContinuousExecution();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		
+		final InOrder inOrder = inOrder(listener, executionListener);
+		
+		for (long epoch = 0; epoch < 21; epoch++) {
+			inOrder.verify(listener).onEpochComplete(executorUnderTest, epoch);
+		}
+		
+		inOrder.verify(executionListener).onExecutionComplete(executorUnderTest);
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void testSetCallbackExecutor_afterExecute() {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		executorUnderTest.execute();
+		executorUnderTest.setCallbackExecutor(null);
+	}
+	
+	@Test
+	public void testEnableMetrics_countsAndTimesRecorded() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingFixedThreadPool(2);
+		
+		executorUnderTest.enableMetrics();
+		
+		for (int i = 0; i < 10; i++) {
+			executorUnderTest.addToQueue(sleepingTask(1, new AtomicBoolean()));
+		}
+		
+		executorUnderTest.addToQueue(failingTask(new RuntimeException()));
+		
+		final ExecutorMetrics before = executorUnderTest.getMetrics();
+		
+		assertThat(before.getQueuedTaskCount(), is(11L));
+		assertThat(before.getCompletedTaskCount(), is(0L));
+		assertThat(before.getElapsedNanos(), is(0L));
+		
+		executorUnderTest.execute();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		
+		final ExecutorMetrics after = executorUnderTest.getMetrics();
+		
+		assertThat(after.getQueuedTaskCount(), is(0L));
+		assertThat(after.getRunningTaskCount(), is(0L));
+		assertThat(after.getCompletedTaskCount(), is(11L));
+		assertThat(after.getCompletedTaskCount(TaskOutcome.Status.SUCCEEDED), is(10L));
+		assertThat(after.getCompletedTaskCount(TaskOutcome.Status.FAILED), is(1L));
+		assertThat(after.getRunTimes().getCount(), is(11L));
+		assertThat(after.getWaitTimes().getCount(), is(11L));
+		assertThat(after.getRunTimes().getPercentileNanos(50) >= 1000000, is(true));
+		assertThat(after.getTasksPerSecond() > 0, is(true));
+		
+		// The clock stops when execution finishes
+		assertThat(executorUnderTest.getMetrics().getElapsedNanos(), is(after.getElapsedNanos()));
+	}
+	
+	@Test
+	public void testSetProgressInterval_progressCallbacksDelivered() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		final List<ExecutorMetrics> reports = Collections.synchronizedList(
+				new ArrayList<ExecutorMetrics>());
+		
+		executorUnderTest.setProgressInterval(10, TimeUnit.MILLISECONDS);
+		executorUnderTest.registerOnProgressListener(new OnProgressListener() {
+			@Override
+			public void onProgress(final CallbackExecutor callbackExecutor,
+					final ExecutorMetrics metrics) {
+				reports.add(metrics);
+			}
+		});
+		
+		for (int i = 0; i < 10; i++) {
+			executorUnderTest.addToQueue(sleepingTask(10, new AtomicBoolean()));
+		}
+		
+		executorUnderTest.execute();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		assertThat(reports.isEmpty(), is(false));
+		
+		final int reportCount = reports.size();
+		pause(50);
+		
+		// Progress callbacks stop when execution finishes
+		assertThat(reports.size() <= reportCount + 1, is(true));
+	}
+	
+	/**
+	 * Test to verify that progress callbacks are never delivered at the same time as the epoch
+	 * callbacks.
+	 */
+	@Test
+	public void testSetProgressInterval_serializedWithEpochCallbacks() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		final AtomicInteger activeListenerCount = new AtomicInteger();
+		final AtomicInteger overlapCount = new AtomicInteger();
+		final AtomicInteger progressCount = new AtomicInteger();
+		
+		executorUnderTest.setProgressInterval(1, TimeUnit.MILLISECONDS);
+		executorUnderTest.registerOnProgressListener(new OnProgressListener() {
+			@Override
+			public void onProgress(final CallbackExecutor callbackExecutor,
+					final ExecutorMetrics metrics) {
+				if (activeListenerCount.incrementAndGet() > 1) {
+					overlapCount.incrementAndGet();
+				}
+				
+				progressCount.incrementAndGet();
+				activeListenerCount.decrementAndGet();
+			}
+		});
+		
+		executorUnderTest.registerOnEpochCompleteListener(new OnEpochCompleteListener() {
+			@Override
+			public void onEpochComplete(final CallbackExecutor callbackExecutor,
+					final long epoch) {
+				if (activeListenerCount.incrementAndGet() > 1) {
+					overlapCount.incrementAndGet();
+				}
+				
+				pause(5);
+				activeListenerCount.decrementAndGet();
+			}
+		});
+		
+		executorUnderTest.executeContinuously();
+		
+		for (int epoch = 0; epoch < 20; epoch++) {
+			executorUnderTest.addToQueue(mock(Runnable.class));
+			executorUnderTest.markEpoch();
+		}
+		
+		executorUnderTest.finishContinuousExecution();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		assertThat(progressCount.get() > 0, is(true));
+		assertThat(overlapCount.get(), is(0));
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void testGetMetrics_notEnabled() {
+		CallbackExecutor.usingSingleThreadExecutor().getMetrics();
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void testEnableMetrics_afterTasksAdded() {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		executorUnderTest.addToQueue(task1);
+		executorUnderTest.enableMetrics();
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetProgressInterval_invalidArg_zeroInterval() {
+		CallbackExecutor.usingSingleThreadExecutor().setProgressInterval(0, TimeUnit.SECONDS);
+	}
+	
+	@Test
+	public void testSetRateLimit_rateRespected() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingFixedThreadPool(4);
+		final List<Long> startTimes = Collections.synchronizedList(new ArrayList<Long>());
+		
+		executorUnderTest.setRateLimit(50, 1);
+		
+		for (int i = 0; i < 6; i++) {
+			executorUnderTest.addToQueue(new Runnable() {
+				@Override
+				public void run() {
+					startTimes.add(System.nanoTime());
+				}
+			});
+		}
+		
+		final long startTime = System.nanoTime();
+		executorUnderTest.execute();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		assertThat(startTimes.size(), is(6));
+		
+		// Five intervals of 20 milliseconds must pass between the first and last tasks
+		final long elapsedMs = TimeUnit.NANOSECONDS.toMillis(Collections.max(startTimes) -
+				startTime);
+		assertThat(elapsedMs >= 90, is(true));
+	}
+	
+	@Test
+	public void testSetRateLimit_burstStartsImmediately() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingFixedThreadPool(2);
+		final AtomicInteger executedCount = new AtomicInteger();
+		
+		executorUnderTest.setRateLimit(0.1, 5);
+		executorUnderTest.setChunkSize(2);
+		
+		for (int i = 0; i < 5; i++) {
+			executorUnderTest.addToQueue(new Runnable() {
+				@Override
+				public void run() {
+					executedCount.incrementAndGet();
+				}
+			});
+		}
+		
+		executorUnderTest.execute();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		assertThat(executedCount.get(), is(5));
+	}
+	
+	@Test
+	public void testSetRateLimit_cancelledTasksNotDelayed() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingFixedThreadPool(2);
+		final Map<Runnable, TaskOutcome> outcomes = recordOutcomes(executorUnderTest);
+		final CountDownLatch firstTaskStarted = new CountDownLatch(1);
+		
+		executorUnderTest.setRateLimit(0.1, 1);
+		
+		executorUnderTest.addToQueue(new Runnable() {
+			@Override
+			public void run() {
+				firstTaskStarted.countDown();
+			}
+		});
+		
+		executorUnderTest.addToQueue(task1);
+		executorUnderTest.addToQueue(task2);
+		executorUnderTest.execute();
+		
+		assertThat(firstTaskStarted.await(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS), is(true));
+		executorUnderTest.cancel();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		assertThat(outcomes.get(task1).getStatus(), is(TaskOutcome.Status.CANCELLED));
+		assertThat(outcomes.get(task2).getStatus(), is(TaskOutcome.Status.CANCELLED));
+	}
+	
+	@Test
+	public void testSetRateLimit_tinyRateWithLargeBurst() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingFixedThreadPool(2);
+		final AtomicInteger executedCount = new AtomicInteger();
+		
+		// The interval and burst window must saturate rather than overflow
+		executorUnderTest.setRateLimit(Double.MIN_VALUE, Integer.MAX_VALUE);
+		
+		for (int i = 0; i < 5; i++) {
+			executorUnderTest.addToQueue(new Runnable() {
+				@Override
+				public void run() {
+					executedCount.incrementAndGet();
+				}
+			});
+		}
+		
+		executorUnderTest.execute();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		assertThat(executedCount.get(), is(5));
+	}
+	
+	@Test
+	public void testSetRateLimit_tinyRateWithSmallBurst() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingFixedThreadPool(2);
+		final Map<Runnable, TaskOutcome> outcomes = recordOutcomes(executorUnderTest);
+		
+		executorUnderTest.setRateLimit(Double.MIN_VALUE, 3);
+		
+		final List<Runnable> burstTasks = new ArrayList<>();
+		
+		for (int i = 0; i < 3; i++) {
+			final Runnable task = mock(Runnable.class);
+			burstTasks.add(task);
+			executorUnderTest.addToQueue(task);
+		}
+		
+		final Runnable delayedTask = mock(Runnable.class);
+		executorUnderTest.addToQueue(delayedTask);
+		executorUnderTest.execute();
+		
+		// Only the burst may start, and the next task must not be due for a very long time
+		assertThat(executorUnderTest.awaitTermination(200, TimeUnit.MILLISECONDS), is(false));
+		executorUnderTest.cancel();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		
+		for (final Runnable task : burstTasks) {
+			assertThat(outcomes.get(task).getStatus(), is(TaskOutcome.Status.SUCCEEDED));
+		}
+		
+		assertThat(outcomes.get(delayedTask).getStatus(), is(TaskOutcome.Status.CANCELLED));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetRateLimit_invalidArg_zeroRate() {
+		CallbackExecutor.usingSingleThreadExecutor().setRateLimit(0, 1);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetRateLimit_invalidArg_zeroBurstSize() {
+		CallbackExecutor.usingSingleThreadExecutor().setRateLimit(10, 0);
+	}
+	
+	@Test
+	public void testAddToQueue_keyedTasksRunInOrderPerKey() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingFixedThreadPool(4);
+		final int keyCount = 8;
+		final int tasksPerKey = 50;
+		final Map<Integer, List<Integer>> executionOrders = new ConcurrentHashMap<>();
+		final Map<Integer, AtomicInteger> runningCounts = new ConcurrentHashMap<>();
+		final AtomicBoolean overlapped = new AtomicBoolean();
+		
+		executorUnderTest.setChunkSize(4);
+		
+		for (int key = 0; key < keyCount; key++) {
+			executionOrders.put(key, Collections.synchronizedList(new ArrayList<Integer>()));
+			runningCounts.put(key, new AtomicInteger());
+		}
+		
+		for (int i = 0; i < tasksPerKey; i++) {
+			for (int key = 0; key < keyCount; key++) {
+				final int taskKey = key;
+				final int taskIndex = i;
+				
+				executorUnderTest.addToQueue(taskKey, new Runnable() {
+					@Override
+					public void run() {
+						if (runningCounts.get(taskKey).incrementAndGet() > 1) {
+							overlapped.set(true);
+						}
+						
+						executionOrders.get(taskKey).add(taskIndex);
+						runningCounts.get(taskKey).decrementAndGet();
+					}
+				});
+			}
+		}
+		
+		executorUnderTest.execute();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		assertThat(overlapped.get(), is(false));
+		
+		for (int key = 0; key < keyCount; key++) {
+			final List<Integer> executionOrder = executionOrders.get(key);
+			
+			assertThat(executionOrder.size(), is(tasksPerKey));
+			
+			for (int i = 0; i < tasksPerKey; i++) {
+				assertThat(executionOrder.get(i), is(i));
+			}
+		}
+	}
+	
+	@Test
+	public void testAddToQueue_differentKeysRunInParallel() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingFixedThreadPool(2);
+		final CountDownLatch bothStarted = new CountDownLatch(2);
+		final AtomicBoolean ranInParallel = new AtomicBoolean();
+		
+		executorUnderTest.setLaneCount(1024);
+		
+		for (final String key : Arrays.asList("a", "b")) {
+			executorUnderTest.addToQueue(key, new Runnable() {
+				@Override
+				public void run() {
+					bothStarted.countDown();
+					
+					try {
+						ranInParallel.compareAndSet(false,
+								bothStarted.await(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS));
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+		}
+		
+		executorUnderTest.execute();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS * 2,
+				TimeUnit.MILLISECONDS), is(true));
+		assertThat(ranInParallel.get(), is(true));
+	}
+	
+	@Test
+	public void testAddToQueue_keyedTasksInContinuousMode() throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingFixedThreadPool(2);
+		final List<String> executionOrder = Collections.synchronizedList(
+				new ArrayList<String>());
+		
+		executorUnderTest.executeContinuously();
+		
+		for (int i = 0; i < 20; i++) {
+			executorUnderTest.addToQueue("key", recordingTask(executionOrder, "task" + i));
+		}
+		
+		executorUnderTest.finishContinuousExecution();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		
+		for (int i = 0; i < 20; i++) {
+			assertThat(executionOrder.get(i), is("task" + i));
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testAddToQueue_invalidArg_nullKey() {
+		CallbackExecutor.usingSingleThreadExecutor().addToQueue((Object) null, task1);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetLaneCount_invalidArg_zeroLaneCount() {
+		CallbackExecutor.usingSingleThreadExecutor().setLaneCount(0);
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void testSetLaneCount_afterTasksAdded() {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		executorUnderTest.addToQueue("key", task1);
+		executorUnderTest.setLaneCount(8);
+	}
+	
+	@Test
+	public void testRegisterOnExecutionCompleteListener_notBlockedBySlowListener()
+			throws Exception {
+		final CallbackExecutor executorUnderTest = CallbackExecutor.usingSingleThreadExecutor();
+		final CountDownLatch listenerStarted = new CountDownLatch(1);
+		final CountDownLatch releaseListener = new CountDownLatch(1);
+		final CountDownLatch executeReturned = new CountDownLatch(1);
+		final OnExecutionCompleteListener executionListener =
+				mock(OnExecutionCompleteListener.class);
+		final OnEpochCompleteListener epochListener = mock(OnEpochCompleteListener.class);
+		
+		executorUnderTest.registerOnExecutionCompleteListener(new OnExecutionCompleteListener() {
+			@Override
+			public void onExecutionComplete(final CallbackExecutor callbackExecutor) {
+				listenerStarted.countDown();
+				
+				try {
+					releaseListener.await();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		
+		// Hold the task until execute returns, so that the callbacks are delivered on the pool
+		executorUnderTest.addToQueue(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					executeReturned.await();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		
+		executorUnderTest.execute();
+		executeReturned.countDown();
+		
+		try {
+			assertThat(listenerStarted.await(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS), is(true));
+			
+			// Would block until the listener returns if delivery held a lock
+			executorUnderTest.registerOnExecutionCompleteListener(executionListener);
+			executorUnderTest.registerOnEpochCompleteListener(epochListener);
+			
+			assertThat(executorUnderTest.isTerminated(), is(false));
+		} finally {
+			releaseListener.countDown();
+		}
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+	}
+	
+	/**
+	 * Executes a binary tree of tasks where each task spawns its children, and checks that every
+	 * task runs before the completion callback is delivered.
+	 *
+	 * @param executorUnderTest
+	 * 		the executor to test
+	 *
+	 * @throws Exception
+	 * 		if the test fails
+	 */
+	private void checkSpawnedTreeExecuted(final CallbackExecutor executorUnderTest)
+			throws Exception {
+		final int depth = 10;
+		final int expectedTaskCount = (1 << (depth + 1)) - 1;
+		final AtomicInteger executedCount = new AtomicInteger();
+		final AtomicInteger executedCountAtCompletion = new AtomicInteger(-1);
+		
+		executorUnderTest.registerOnExecutionCompleteListener(new OnExecutionCompleteListener() {
+			@Override
+			public void onExecutionComplete(final CallbackExecutor callbackExecutor) {
+				executedCountAtCompletion.set(executedCount.get());
+			}
+		});
+		
+		executorUnderTest.addToQueue(new TreeTask(executorUnderTest, executedCount, depth));
+		executorUnderTest.execute();
+		
+		assertThat(executorUnderTest.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+				is(true));
+		assertThat(executedCount.get(), is(expectedTaskCount));
+		assertThat(executedCountAtCompletion.get(), is(expectedTaskCount));
+	}
+	
+	/**
+	 * Registers a listener which records the outcome of each task.
+	 *
+	 * @param executor
+	 * 		the executor to record the outcomes of
+	 *
+	 * @return the outcomes, keyed by task
+	 */
+	private static Map<Runnable, TaskOutcome> recordOutcomes(final CallbackExecutor executor) {
+		final Map<Runnable, TaskOutcome> outcomes = new ConcurrentHashMap<>();
+		
+		executor.registerOnTaskCompleteListener(new OnTaskCompleteListener() {
+			@Override
+			public void onTaskComplete(final CallbackExecutor callbackExecutor,
+					final TaskOutcome outcome) {
+				outcomes.put(outcome.getTask(), outcome);
+			}
+		});
+		
+		return outcomes;
+	}
+	
+	/**
+	 * Creates a Runnable which sleeps, and records whether or not it was interrupted.
+	 *
+	 * @param sleepTimeMs
+	 * 		the time to sleep for, measured in milliseconds
+	 * @param interrupted
+	 * 		set to true if the Runnable is interrupted
+	 *
+	 * @return the new Runnable
+	 */
+	private static Runnable sleepingTask(final int sleepTimeMs, final AtomicBoolean interrupted) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(sleepTimeMs);
+				} catch (final InterruptedException e) {
+					interrupted.set(true);
+				}
+			}
+		};
+	}
+	
+	/**
+	 * Creates a Runnable which records its name when it runs.
+	 *
+	 * @param executionOrder
+	 * 		the list to add the name to
+	 * @param name
+	 * 		the name of the Runnable
+	 *
+	 * @return the new Runnable
+	 */
+	private static Runnable recordingTask(final List<String> executionOrder, final String name) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				executionOrder.add(name);
+			}
+		};
+	}
+	
+	/**
+	 * Creates a Runnable which throws an exception.
+	 *
+	 * @param failure
+	 * 		the exception to throw
+	 *
+	 * @return the new Runnable
+	 */
+	private static Runnable failingTask(final RuntimeException failure) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				throw failure;
+			}
+		};
+	}
+	
+	/**
+	 * Creates a Callable which returns a constant.
+	 *
+	 * @param value
+	 * 		the value to return
+	 *
+	 * @return the new Callable
+	 */
+	private static Callable<Integer> constant(final int value) {
+		return new Callable<Integer>() {
+			@Override
+			public Integer call() {
+				return value;
+			}
+		};
+	}
+	
+	/**
+	 * Creates a Callable which sleeps for much longer than the tests wait, and which throws the
+	 * InterruptedException if it is interrupted.
+	 *
+	 * @param started
+	 * 		the latch to count down when the Callable starts
+	 *
+	 * @return the new Callable
+	 */
+	private static Callable<Integer> sleepingCallable(final CountDownLatch started) {
+		return new Callable<Integer>() {
+			@Override
+			public Integer call() throws InterruptedException {
+				started.countDown();
+				Thread.sleep(MAX_WAIT_TIME_MS * 2);
+				
+				return 0;
+			}
+		};
+	}
+	
+	/**
+	 * A task which spawns two children until the maximum depth is reached.
+	 */
+	private static class TreeTask implements Runnable {
+		/**
+		 * The executor to spawn the children in.
+		 */
+		private final CallbackExecutor executor;
+		
+		/**
+		 * Counts the executed tasks.
+		 */
+		private final AtomicInteger executedCount;
+		
+		/**
+		 * The number of levels below this task.
+		 */
+		private final int remainingDepth;
+		
+		/**
+		 * Constructs a new TreeTask.
+		 *
+		 * @param executor
+		 * 		the executor to spawn the children in
+		 * @param executedCount
+		 * 		counts the executed tasks
+		 * @param remainingDepth
+		 * 		the number of levels below this task
+		 */
+		private TreeTask(final CallbackExecutor executor, final AtomicInteger executedCount,
+				final int remainingDepth) {
+			this.executor = executor;
+			this.executedCount = executedCount;
+			this.remainingDepth = remainingDepth;
+		}
+		
+		@Override
+		public void run() {
+			if (remainingDepth > 0) {
+				executor.spawn(new TreeTask(executor, executedCount, remainingDepth - 1));
+				executor.spawn(new TreeTask(executor, executedCount, remainingDepth - 1));
+			}
+			
+			executedCount.incrementAndGet();
+		}
+	}
 }
\ No newline at end of file
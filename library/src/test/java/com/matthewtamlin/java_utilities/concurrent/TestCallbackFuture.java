@@ -0,0 +1,159 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.matthewtamlin.java_utilities.concurrent;
+
+import com.matthewtamlin.java_utilities.concurrent.CallbackFuture.OnCompleteListener;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Unit tests for the {@link CallbackFuture} class.
+ */
+public class TestCallbackFuture {
+	/**
+	 * The result produced by the test task.
+	 */
+	private static final String RESULT = "result";
+	
+	/**
+	 * The future under test.
+	 */
+	private CallbackFuture<String> future;
+	
+	/**
+	 * A mock of the OnCompleteListener interface.
+	 */
+	private OnCompleteListener<String> mockListener;
+	
+	/**
+	 * Initialises the testing environment.
+	 */
+	@SuppressWarnings("unchecked") // Mocks cannot be created with generic types
+	@Before
+	public void setup() {
+		future = new CallbackFuture<>(new Callable<String>() {
+			@Override
+			public String call() {
+				return RESULT;
+			}
+		});
+		
+		mockListener = mock(OnCompleteListener.class);
+	}
+	
+	/**
+	 * Test to verify that listeners registered before completion receive a callback when the
+	 * task runs, and not before.
+	 *
+	 * @throws Exception
+	 * 		if the test fails
+	 */
+	@Test
+	public void testListenerRegisteredBeforeCompletion() throws Exception {
+		future.addOnCompleteListener(mockListener);
+		verify(mockListener, never()).onComplete(future);
+		
+		future.run();
+		
+		verify(mockListener, times(1)).onComplete(future);
+		assertThat(future.get(), is(RESULT));
+	}
+	
+	/**
+	 * Test to verify that listeners registered after completion receive a callback immediately.
+	 */
+	@Test
+	public void testListenerRegisteredAfterCompletion() {
+		future.run();
+		future.addOnCompleteListener(mockListener);
+		
+		verify(mockListener, times(1)).onComplete(future);
+	}
+	
+	/**
+	 * Test to verify that listeners receive a callback when the future is cancelled.
+	 */
+	@Test
+	public void testListenerNotifiedOfCancellation() {
+		future.addOnCompleteListener(mockListener);
+		future.cancel(false);
+		
+		verify(mockListener, times(1)).onComplete(future);
+	}
+	
+	/**
+	 * Test to verify that a listener which throws does not stop the other listeners from
+	 * receiving callbacks, and that the exception is passed to the uncaught exception handler of
+	 * the thread which completed the task.
+	 *
+	 * @throws Exception
+	 * 		if the test fails
+	 */
+	@Test
+	public void testThrowingListener() throws Exception {
+		final RuntimeException failure = new RuntimeException("expected failure");
+		final AtomicReference<Throwable> reported = new AtomicReference<>();
+		final Thread thread = Thread.currentThread();
+		final UncaughtExceptionHandler originalHandler = thread.getUncaughtExceptionHandler();
+		
+		future.addOnCompleteListener(new OnCompleteListener<String>() {
+			@Override
+			public void onComplete(final CallbackFuture<String> future) {
+				throw failure;
+			}
+		});
+		
+		future.addOnCompleteListener(mockListener);
+		
+		thread.setUncaughtExceptionHandler(new UncaughtExceptionHandler() {
+			@Override
+			public void uncaughtException(final Thread t, final Throwable e) {
+				reported.set(e);
+			}
+		});
+		
+		try {
+			future.run();
+		} finally {
+			thread.setUncaughtExceptionHandler(originalHandler);
+		}
+		
+		verify(mockListener, times(1)).onComplete(future);
+		assertThat(reported.get(), is((Throwable) failure));
+		assertThat(future.get(), is(RESULT));
+	}
+	
+	/**
+	 * Test to verify that registering a null listener has no effect.
+	 */
+	@Test
+	public void testNullListener() {
+		future.addOnCompleteListener(null);
+		future.run();
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.matthewtamlin.java_utilities.concurrent;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Unit tests for the {@link ExecutorMetrics} class.
+ */
+public class TestExecutorMetrics {
+	/**
+	 * Test to verify that the counts are derived correctly from the values passed to the
+	 * constructor.
+	 */
+	@Test
+	public void testCounts() {
+		final ExecutorMetrics metrics = new ExecutorMetrics(5, 2, new long[]{6, 3, 1, 0},
+				new LatencyRecorder().snapshot(), new LatencyRecorder().snapshot(), 2000000000L);
+		
+		assertThat(metrics.getQueuedTaskCount(), is(5L));
+		assertThat(metrics.getRunningTaskCount(), is(2L));
+		assertThat(metrics.getCompletedTaskCount(), is(10L));
+		assertThat(metrics.getCompletedTaskCount(TaskOutcome.Status.SUCCEEDED), is(6L));
+		assertThat(metrics.getCompletedTaskCount(TaskOutcome.Status.FAILED), is(3L));
+		assertThat(metrics.getCompletedTaskCount(TaskOutcome.Status.CANCELLED), is(1L));
+		assertThat(metrics.getElapsedNanos(), is(2000000000L));
+		assertThat(metrics.getTasksPerSecond(), is(5.0));
+	}
+	
+	/**
+	 * Test to verify that the throughput is zero if execution has not started.
+	 */
+	@Test
+	public void testGetTasksPerSecond_notStarted() {
+		final ExecutorMetrics metrics = new ExecutorMetrics(5, 0, new long[4],
+				new LatencyRecorder().snapshot(), new LatencyRecorder().snapshot(), 0);
+		
+		assertThat(metrics.getTasksPerSecond(), is(0.0));
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the {@code status} argument of
+	 * {@link ExecutorMetrics#getCompletedTaskCount(TaskOutcome.Status)} is null.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testGetCompletedTaskCount_invalidArg_nullStatus() {
+		new ExecutorMetrics(0, 0, new long[4], new LatencyRecorder().snapshot(),
+				new LatencyRecorder().snapshot(), 0).getCompletedTaskCount(null);
+	}
+	
+	/**
+	 * Test to verify that the histogram summarises the recorded durations, and that the
+	 * percentiles are upper bounds within a factor of two.
+	 */
+	@Test
+	public void testHistogram() {
+		final LatencyRecorder recorder = new LatencyRecorder();
+		
+		for (int i = 1; i <= 100; i++) {
+			recorder.record(i * 1000);
+		}
+		
+		final ExecutorMetrics.Histogram histogram = recorder.snapshot();
+		
+		assertThat(histogram.getCount(), is(100L));
+		assertThat(histogram.getTotalNanos(), is(5050000L));
+		assertThat(histogram.getMeanNanos(), is(50500.0));
+		
+		final long median = histogram.getPercentileNanos(50);
+		final long max = histogram.getPercentileNanos(100);
+		
+		assertThat(median >= 50000 && median < 100000, is(true));
+		assertThat(max >= 100000 && max < 200000, is(true));
+		assertThat(histogram.getPercentileNanos(0) >= 1000, is(true));
+	}
+	
+	/**
+	 * Test to verify that an empty histogram reports zero for all values.
+	 */
+	@Test
+	public void testHistogram_empty() {
+		final ExecutorMetrics.Histogram histogram = new LatencyRecorder().snapshot();
+		
+		assertThat(histogram.getCount(), is(0L));
+		assertThat(histogram.getMeanNanos(), is(0.0));
+		assertThat(histogram.getPercentileNanos(99), is(0L));
+	}
+	
+	/**
+	 * Test to verify that zero and negative durations are recorded in the lowest bucket.
+	 */
+	@Test
+	public void testHistogram_zeroAndNegativeDurations() {
+		final LatencyRecorder recorder = new LatencyRecorder();
+		recorder.record(0);
+		recorder.record(-5);
+		
+		final ExecutorMetrics.Histogram histogram = recorder.snapshot();
+		
+		assertThat(histogram.getCount(), is(2L));
+		assertThat(histogram.getTotalNanos(), is(0L));
+		assertThat(histogram.getPercentileNanos(100), is(0L));
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the {@code percentile} argument of
+	 * {@link ExecutorMetrics.Histogram#getPercentileNanos(double)} is greater than 100.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testGetPercentileNanos_invalidArg_percentileTooLarge() {
+		new LatencyRecorder().snapshot().getPercentileNanos(101);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,400 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.matthewtamlin.java_utilities.concurrent;
+
+import com.matthewtamlin.java_utilities.concurrent.TaskGraph.Node;
+import com.matthewtamlin.java_utilities.concurrent.TaskGraph.OnGraphCompleteListener;
+import com.matthewtamlin.java_utilities.concurrent.TaskGraph.OnNodeCompleteListener;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Unit tests for the {@link TaskGraph} class.
+ */
+public class TestTaskGraph {
+	/**
+	 * The maximum time to wait for a graph to finish, measured in milliseconds.
+	 */
+	private static final int MAX_WAIT_TIME_MS = 10000;
+	
+	/**
+	 * The graph under test.
+	 */
+	private TaskGraph graph;
+	
+	/**
+	 * The names of the tasks, in the order they finished.
+	 */
+	private List<String> executionOrder;
+	
+	/**
+	 * Initialises the testing environment.
+	 */
+	@Before
+	public void setup() {
+		graph = new TaskGraph();
+		executionOrder = Collections.synchronizedList(new ArrayList<String>());
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the {@code task} argument of
+	 * {@link TaskGraph#addTask(Runnable, Node...)} is null.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testAddTask_invalidArg_nullTask() {
+		graph.addTask(null);
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when a dependency is null.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testAddTask_invalidArg_nullDependency() {
+		graph.addTask(mock(Runnable.class), (Node) null);
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when a dependency belongs to another
+	 * graph.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testAddTask_invalidArg_dependencyFromOtherGraph() {
+		final Node otherNode = new TaskGraph().addTask(mock(Runnable.class));
+		graph.addTask(mock(Runnable.class), otherNode);
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when a task is added after the graph
+	 * has been executed.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testAddTask_afterExecute() {
+		graph.execute(CallbackExecutor.usingSingleThreadExecutor());
+		graph.addTask(mock(Runnable.class));
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the graph is executed twice.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testExecute_calledTwice() {
+		graph.execute(CallbackExecutor.usingSingleThreadExecutor());
+		graph.execute(CallbackExecutor.usingSingleThreadExecutor());
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the {@code executor} argument of
+	 * {@link TaskGraph#execute(CallbackExecutor)} is null.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testExecute_invalidArg_nullExecutor() {
+		graph.execute(null);
+	}
+	
+	/**
+	 * Test to verify that the graph callbacks are delivered when an empty graph is executed.
+	 */
+	@Test
+	public void testExecute_emptyGraph() {
+		final OnGraphCompleteListener mockGraphListener = mock(OnGraphCompleteListener.class);
+		graph.registerOnGraphCompleteListener(mockGraphListener);
+		
+		graph.execute(CallbackExecutor.usingSingleThreadExecutor());
+		
+		verify(mockGraphListener, times(1)).onGraphComplete(graph);
+	}
+	
+	/**
+	 * Test to verify that tasks in a diamond shaped graph run after their dependencies, and that
+	 * the callbacks are delivered for each node and for the whole graph.
+	 */
+	@Test
+	public void testExecute_diamond() throws Exception {
+		final OnNodeCompleteListener mockNodeListener = mock(OnNodeCompleteListener.class);
+		final OnGraphCompleteListener mockGraphListener = mock(OnGraphCompleteListener.class);
+		final CallbackExecutor executor = CallbackExecutor.usingFixedThreadPool(4);
+		
+		final Node a = graph.addTask(recordingTask("a"));
+		final Node b = graph.addTask(recordingTask("b"), a);
+		final Node c = graph.addTask(recordingTask("c"), a);
+		final Node d = graph.addTask(recordingTask("d"), b, c);
+		
+		graph.registerOnNodeCompleteListener(mockNodeListener);
+		graph.registerOnGraphCompleteListener(mockGraphListener);
+		graph.execute(executor);
+		
+		assertThat(executor.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS), is(true));
+		
+		assertThat(executionOrder.size(), is(4));
+		assertThat(executionOrder.get(0), is("a"));
+		assertThat(executionOrder.get(3), is("d"));
+		
+		for (final Node node : graph.getNodes()) {
+			assertThat(node.getStatus(), is(Node.Status.SUCCEEDED));
+			verify(mockNodeListener, times(1)).onNodeComplete(graph, node);
+		}
+		
+		verify(mockGraphListener, times(1)).onGraphComplete(graph);
+	}
+	
+	/**
+	 * Test to verify that independent branches run at the same time rather than waiting for
+	 * each other.
+	 */
+	@Test
+	public void testExecute_independentBranchesOverlap() throws Exception {
+		final CallbackExecutor executor = CallbackExecutor.usingFixedThreadPool(2);
+		final CountDownLatch bothBranchesStarted = new CountDownLatch(2);
+		
+		final Runnable branchTask = new Runnable() {
+			@Override
+			public void run() {
+				bothBranchesStarted.countDown();
+				
+				try {
+					// Only completes if the other branch runs at the same time
+					assertThat(bothBranchesStarted.await(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS),
+							is(true));
+				} catch (final InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+		
+		final Node root = graph.addTask(recordingTask("root"));
+		final Node slowBranch = graph.addTask(branchTask, root);
+		final Node quickBranch = graph.addTask(recordingTask("quick"), root);
+		final Node quickBranchEnd = graph.addTask(branchTask, quickBranch);
+		
+		graph.execute(executor);
+		
+		assertThat(executor.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS), is(true));
+		assertThat(slowBranch.getStatus(), is(Node.Status.SUCCEEDED));
+		assertThat(quickBranchEnd.getStatus(), is(Node.Status.SUCCEEDED));
+	}
+	
+	/**
+	 * Test to verify that the dependents of a failed task are skipped, and that the rest of the
+	 * graph still runs.
+	 */
+	@Test
+	public void testExecute_failedTaskSkipsDependents() throws Exception {
+		final OnGraphCompleteListener mockGraphListener = mock(OnGraphCompleteListener.class);
+		final CallbackExecutor executor = CallbackExecutor.usingFixedThreadPool(2);
+		final RuntimeException failure = new RuntimeException("expected failure");
+		
+		final Node root = graph.addTask(recordingTask("root"));
+		final Node failing = graph.addTask(new Runnable() {
+			@Override
+			public void run() {
+				throw failure;
+			}
+		}, root);
+		final Node dependent = graph.addTask(recordingTask("dependent"), failing);
+		final Node indirectDependent = graph.addTask(recordingTask("indirect"), dependent, root);
+		final Node independent = graph.addTask(recordingTask("independent"), root);
+		
+		graph.registerOnGraphCompleteListener(mockGraphListener);
+		graph.execute(executor);
+		
+		assertThat(executor.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS), is(true));
+		verify(mockGraphListener, times(1)).onGraphComplete(graph);
+		
+		assertThat(failing.getStatus(), is(Node.Status.FAILED));
+		assertThat(failing.getFailure(), is((Throwable) failure));
+		assertThat(dependent.getStatus(), is(Node.Status.SKIPPED));
+		assertThat(indirectDependent.getStatus(), is(Node.Status.SKIPPED));
+		assertThat(independent.getStatus(), is(Node.Status.SUCCEEDED));
+		assertThat(executionOrder.contains("dependent"), is(false));
+		assertThat(executionOrder.contains("indirect"), is(false));
+	}
+	
+	/**
+	 * Test to verify that cancelling execution part way through the graph cancels the tasks
+	 * which have not started and all of their dependents, and that their callbacks are
+	 * delivered before the graph callback.
+	 */
+	@Test
+	public void testExecute_cancelledMidGraph() throws Exception {
+		final CallbackExecutor executor = CallbackExecutor.usingFixedThreadPool(2);
+		final CountDownLatch blockingTaskStarted = new CountDownLatch(1);
+		final CountDownLatch releaseBlockingTask = new CountDownLatch(1);
+		final List<String> callbackOrder = Collections.synchronizedList(new ArrayList<String>());
+		
+		// Only one task can run at a time, so the second root stays queued
+		executor.setMaxInFlightTasks(1);
+		
+		final Node blocking = graph.addTask(new Runnable() {
+			@Override
+			public void run() {
+				blockingTaskStarted.countDown();
+				
+				try {
+					releaseBlockingTask.await();
+				} catch (final InterruptedException e) {
+					// Interrupted by the cancellation, so just finish
+				}
+			}
+		});
+		final Node dependent = graph.addTask(recordingTask("dependent"), blocking);
+		final Node indirectDependent = graph.addTask(recordingTask("indirect"), dependent);
+		final Node queuedRoot = graph.addTask(recordingTask("queued root"));
+		final Node queuedDependent = graph.addTask(recordingTask("queued dependent"),
+				queuedRoot);
+		
+		graph.registerOnNodeCompleteListener(new OnNodeCompleteListener() {
+			@Override
+			public void onNodeComplete(final TaskGraph graph, final Node node) {
+				callbackOrder.add("node");
+			}
+		});
+		
+		graph.registerOnGraphCompleteListener(new OnGraphCompleteListener() {
+			@Override
+			public void onGraphComplete(final TaskGraph graph) {
+				callbackOrder.add("graph");
+			}
+		});
+		
+		graph.execute(executor);
+		
+		assertThat(blockingTaskStarted.await(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS), is(true));
+		executor.cancel();
+		releaseBlockingTask.countDown();
+		
+		assertThat(executor.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS), is(true));
+		
+		assertThat(blocking.getStatus(), is(Node.Status.SUCCEEDED));
+		assertThat(dependent.getStatus(), is(Node.Status.CANCELLED));
+		assertThat(indirectDependent.getStatus(), is(Node.Status.CANCELLED));
+		assertThat(queuedRoot.getStatus(), is(Node.Status.CANCELLED));
+		assertThat(queuedDependent.getStatus(), is(Node.Status.CANCELLED));
+		assertThat(executionOrder.isEmpty(), is(true));
+		assertThat(callbackOrder, is(Arrays.asList("node", "node", "node", "node", "node",
+				"graph")));
+	}
+	
+	/**
+	 * Test to verify that listeners which throw do not stop the other listeners from receiving
+	 * callbacks, and do not stop the dependents of a node from being released.
+	 */
+	@Test
+	public void testExecute_throwingListeners() throws Exception {
+		final CallbackExecutor executor = CallbackExecutor.usingFixedThreadPool(2);
+		final OnNodeCompleteListener mockNodeListener = mock(OnNodeCompleteListener.class);
+		final OnGraphCompleteListener mockGraphListener = mock(OnGraphCompleteListener.class);
+		
+		final Node root = graph.addTask(recordingTask("root"));
+		final Node dependent = graph.addTask(recordingTask("dependent"), root);
+		final Node indirectDependent = graph.addTask(recordingTask("indirect"), dependent);
+		
+		graph.registerOnNodeCompleteListener(new OnNodeCompleteListener() {
+			@Override
+			public void onNodeComplete(final TaskGraph graph, final Node node) {
+				throw new RuntimeException("expected failure");
+			}
+		});
+		
+		graph.registerOnGraphCompleteListener(new OnGraphCompleteListener() {
+			@Override
+			public void onGraphComplete(final TaskGraph graph) {
+				throw new RuntimeException("expected failure");
+			}
+		});
+		
+		graph.registerOnNodeCompleteListener(mockNodeListener);
+		graph.registerOnGraphCompleteListener(mockGraphListener);
+		graph.execute(executor);
+		
+		assertThat(executor.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS), is(true));
+		
+		assertThat(root.getStatus(), is(Node.Status.SUCCEEDED));
+		assertThat(dependent.getStatus(), is(Node.Status.SUCCEEDED));
+		assertThat(indirectDependent.getStatus(), is(Node.Status.SUCCEEDED));
+		assertThat(executionOrder, is(Arrays.asList("root", "dependent", "indirect")));
+		verify(mockNodeListener, times(1)).onNodeComplete(graph, root);
+		verify(mockNodeListener, times(1)).onNodeComplete(graph, dependent);
+		verify(mockNodeListener, times(1)).onNodeComplete(graph, indirectDependent);
+		verify(mockGraphListener, times(1)).onGraphComplete(graph);
+	}
+	
+	/**
+	 * Test to verify that a long chain of tasks runs in order.
+	 */
+	@Test
+	public void testExecute_longChain() throws Exception {
+		final CallbackExecutor executor = CallbackExecutor.usingWorkStealingPool(2);
+		final int chainLength = 10000;
+		final AtomicInteger counter = new AtomicInteger();
+		final AtomicInteger outOfOrderCount = new AtomicInteger();
+		
+		Node previous = null;
+		
+		for (int i = 0; i < chainLength; i++) {
+			final int expectedCount = i;
+			
+			final Runnable task = new Runnable() {
+				@Override
+				public void run() {
+					if (counter.getAndIncrement() != expectedCount) {
+						outOfOrderCount.incrementAndGet();
+					}
+				}
+			};
+			
+			previous = previous == null ? graph.addTask(task) : graph.addTask(task, previous);
+		}
+		
+		graph.execute(executor);
+		
+		assertThat(executor.awaitTermination(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS), is(true));
+		assertThat(counter.get(), is(chainLength));
+		assertThat(outOfOrderCount.get(), is(0));
+	}
+	
+	/**
+	 * Creates a task which records its name when it runs.
+	 *
+	 * @param name
+	 * 		the name of the task
+	 *
+	 * @return the new task
+	 */
+	private Runnable recordingTask(final String name) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				executionOrder.add(name);
+			}
+		};
+	}
+}
\ No newline at end of file
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.matthewtamlin.java_utilities.concurrent;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit tests for the {@link TaskOutcome} class.
+ */
+public class TestTaskOutcome {
+	/**
+	 * Test to verify that the correct exception is thrown when the {@code task} argument of the
+	 * constructor is null.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testConstructor_invalidArg_nullTask() {
+		new TaskOutcome(null, TaskOutcome.Status.SUCCEEDED, null, 0, 0);
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the {@code status} argument of the
+	 * constructor is null.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testConstructor_invalidArg_nullStatus() {
+		new TaskOutcome(mock(Runnable.class), null, null, 0, 0);
+	}
+	
+	/**
+	 * Test to verify that the getters return the values passed to the constructor.
+	 */
+	@Test
+	public void testGetters() {
+		final Runnable task = mock(Runnable.class);
+		final Throwable failure = new RuntimeException();
+		
+		final TaskOutcome successfulOutcome = new TaskOutcome(task, TaskOutcome.Status.SUCCEEDED,
+				null, 10, 20);
+		
+		assertThat(successfulOutcome.getTask(), is(task));
+		assertThat(successfulOutcome.getStatus(), is(TaskOutcome.Status.SUCCEEDED));
+		assertThat(successfulOutcome.getFailure(), is(nullValue()));
+		assertThat(successfulOutcome.getWaitTimeNanos(), is(10L));
+		assertThat(successfulOutcome.getRunTimeNanos(), is(20L));
+		
+		final TaskOutcome failedOutcome = new TaskOutcome(task, TaskOutcome.Status.FAILED,
+				failure, 30, 40);
+		
+		assertThat(failedOutcome.getStatus(), is(TaskOutcome.Status.FAILED));
+		assertThat(failedOutcome.getFailure(), is(failure));
+	}
+}
\ No newline at end of file
@@ -0,0 +1,479 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.matthewtamlin.java_utilities.file;
+
+import com.matthewtamlin.java_utilities.file.DirectorySnapshot.Changes;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the {@link DirectorySnapshot} class. Modification times are set explicitly
+ * after each change, so that the tests do not depend on the timestamp resolution of the file
+ * system. Read failures are simulated using a mock file system, since they cannot be produced
+ * with real files when the tests run with elevated permissions.
+ */
+public class TestDirectorySnapshot {
+	/**
+	 * Provides a temporary directory for the test file tree.
+	 */
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+	
+	/**
+	 * The root of the test file tree.
+	 */
+	private Path root;
+	
+	/**
+	 * A directory in the root directory.
+	 */
+	private Path subDir;
+	
+	/**
+	 * A file in the root directory.
+	 */
+	private Path rootFile;
+	
+	/**
+	 * A file in {@code subDir}.
+	 */
+	private Path subDirFile;
+	
+	/**
+	 * Used to generate modification times which differ from all previous ones.
+	 */
+	private long nextModifiedTime = 1000000;
+	
+	/**
+	 * The provider of the mock file system.
+	 */
+	private FileSystemProvider mockProvider;
+	
+	/**
+	 * The mock file system.
+	 */
+	private FileSystem mockFileSystem;
+	
+	/**
+	 * Initialises the testing environment.
+	 *
+	 * @throws IOException
+	 * 		if the test file tree cannot be created
+	 */
+	@Before
+	public void setup() throws IOException {
+		root = temporaryFolder.newFolder("root").toPath();
+		subDir = Files.createDirectory(root.resolve("sub"));
+		rootFile = Files.createFile(root.resolve("a.txt"));
+		subDirFile = Files.createFile(subDir.resolve("b.txt"));
+		
+		mockProvider = mock(FileSystemProvider.class);
+		mockFileSystem = mock(FileSystem.class);
+		when(mockFileSystem.provider()).thenReturn(mockProvider);
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the {@code root} argument of
+	 * {@link DirectorySnapshot#capture(Path)} is null.
+	 *
+	 * @throws IOException
+	 * 		if the snapshot fails
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testCapture_invalidArg_nullRoot() throws IOException {
+		DirectorySnapshot.capture(null);
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the {@code root} argument of
+	 * {@link DirectorySnapshot#capture(Path)} is not a directory.
+	 *
+	 * @throws IOException
+	 * 		if the snapshot fails
+	 */
+	@Test(expected = NotDirectoryException.class)
+	public void testCapture_invalidArg_fileRoot() throws IOException {
+		DirectorySnapshot.capture(rootFile);
+	}
+	
+	/**
+	 * Test to verify that a captured snapshot contains all files in the tree, and that an
+	 * immediate update finds no changes.
+	 *
+	 * @throws IOException
+	 * 		if the snapshot fails
+	 */
+	@Test
+	public void testCapture() throws IOException {
+		final DirectorySnapshot snapshot = DirectorySnapshot.capture(root);
+		
+		assertThat(snapshot.getFiles(), is(setOf(rootFile, subDirFile)));
+		assertThat(snapshot.getFiles(), is(PathFinder.searchDownTreeFrom(root)));
+		assertThat(snapshot.update().isEmpty(), is(true));
+	}
+	
+	/**
+	 * Test to verify that added files are reported, including files in new directories.
+	 *
+	 * @throws IOException
+	 * 		if the snapshot fails
+	 */
+	@Test
+	public void testUpdate_filesAdded() throws IOException {
+		final DirectorySnapshot snapshot = DirectorySnapshot.capture(root);
+		
+		final Path newFile = Files.createFile(subDir.resolve("c.txt"));
+		final Path newDir = Files.createDirectory(root.resolve("new"));
+		final Path newDirFile = Files.createFile(newDir.resolve("d.txt"));
+		touch(subDir);
+		touch(root);
+		
+		final Changes changes = snapshot.update();
+		
+		assertThat(changes.getAdded(), is(setOf(newFile, newDirFile)));
+		assertThat(changes.getRemoved().isEmpty(), is(true));
+		assertThat(changes.getModified().isEmpty(), is(true));
+		assertThat(snapshot.getFiles(), is(setOf(rootFile, subDirFile, newFile, newDirFile)));
+	}
+	
+	/**
+	 * Test to verify that removed files are reported, including files in removed directories.
+	 *
+	 * @throws IOException
+	 * 		if the snapshot fails
+	 */
+	@Test
+	public void testUpdate_filesRemoved() throws IOException {
+		final DirectorySnapshot snapshot = DirectorySnapshot.capture(root);
+		
+		Files.delete(subDirFile);
+		Files.delete(subDir);
+		touch(root);
+		
+		final Changes changes = snapshot.update();
+		
+		assertThat(changes.getAdded().isEmpty(), is(true));
+		assertThat(changes.getRemoved(), is(setOf(subDirFile)));
+		assertThat(snapshot.getFiles(), is(setOf(rootFile)));
+	}
+	
+	/**
+	 * Test to verify that files modified in place are only reported when all files are checked.
+	 *
+	 * @throws IOException
+	 * 		if the snapshot fails
+	 */
+	@Test
+	public void testUpdate_fileModifiedInPlace() throws IOException {
+		final DirectorySnapshot snapshot = DirectorySnapshot.capture(root);
+		
+		Files.write(subDirFile, new byte[]{1, 2, 3});
+		touch(subDirFile);
+		
+		assertThat(snapshot.update(false).isEmpty(), is(true));
+		assertThat(snapshot.update(true).getModified(), is(setOf(subDirFile)));
+		assertThat(snapshot.update(true).isEmpty(), is(true));
+	}
+	
+	/**
+	 * Test to verify that a snapshot can be written to a file and read back, and that the read
+	 * snapshot can be updated.
+	 *
+	 * @throws IOException
+	 * 		if the snapshot fails
+	 */
+	@Test
+	public void testWriteToAndReadFrom() throws IOException {
+		final Path snapshotFile = temporaryFolder.newFile("snapshot").toPath();
+		DirectorySnapshot.capture(root).writeTo(snapshotFile);
+		
+		final DirectorySnapshot snapshot = DirectorySnapshot.readFrom(snapshotFile);
+		
+		assertThat(snapshot.getRoot(), is(root));
+		assertThat(snapshot.getFiles(), is(setOf(rootFile, subDirFile)));
+		assertThat(snapshot.update().isEmpty(), is(true));
+		
+		Files.delete(rootFile);
+		touch(root);
+		
+		assertThat(snapshot.update().getRemoved(), is(setOf(rootFile)));
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when {@link
+	 * DirectorySnapshot#readFrom(Path)} is given a file which is not a snapshot.
+	 *
+	 * @throws IOException
+	 * 		if the snapshot fails
+	 */
+	@Test(expected = IOException.class)
+	public void testReadFrom_notASnapshot() throws IOException {
+		DirectorySnapshot.readFrom(rootFile);
+	}
+	
+	/**
+	 * Test to verify that an update which fails part way through leaves the snapshot unchanged,
+	 * so that the next update reports every change since the last successful update, including
+	 * the files in the directory which failed and in its parent.
+	 *
+	 * @throws IOException
+	 * 		if the snapshot fails
+	 */
+	@Test
+	public void testUpdate_listingFails() throws IOException {
+		final Path mockRoot = createMockPath(null, "root", true);
+		final Path mockSubDir = createMockPath(mockRoot, "sub", true);
+		final Path mockFile1 = createMockPath(mockSubDir, "1.txt", false);
+		final Path mockFile2 = createMockPath(mockSubDir, "2.txt", false);
+		final Path mockFile3 = createMockPath(mockRoot, "3.txt", false);
+		setMockContents(mockRoot, mockSubDir);
+		setMockContents(mockSubDir, mockFile1);
+		
+		final DirectorySnapshot snapshot = DirectorySnapshot.capture(mockRoot);
+		
+		setMockAttributes(mockRoot, true);
+		setMockAttributes(mockSubDir, true);
+		setMockContents(mockRoot, mockSubDir, mockFile3);
+		doThrow(new IOException()).when(mockProvider).newDirectoryStream(eq(mockSubDir),
+				any(DirectoryStream.Filter.class));
+		
+		try {
+			snapshot.update();
+			fail("the update should have failed");
+		} catch (final IOException e) {
+			// Expected
+		}
+		
+		assertThat(snapshot.getFiles(), is(setOf(mockFile1)));
+		
+		setMockContents(mockSubDir, mockFile1, mockFile2);
+		final Changes changes = snapshot.update();
+		
+		assertThat(changes.getAdded(), is(setOf(mockFile2, mockFile3)));
+		assertThat(changes.getRemoved().isEmpty(), is(true));
+		assertThat(snapshot.getFiles(), is(setOf(mockFile1, mockFile2, mockFile3)));
+	}
+	
+	/**
+	 * Test to verify that a directory which cannot be read is skipped and reported, without
+	 * failing the update or reporting its files as removed, and that it is read once it becomes
+	 * readable.
+	 *
+	 * @throws IOException
+	 * 		if the snapshot fails
+	 */
+	@Test
+	public void testUpdate_unreadableDirectory() throws IOException {
+		final Path mockRoot = createMockPath(null, "root", true);
+		final Path mockLockedDir = createMockPath(mockRoot, "locked", true);
+		final Path mockFile1 = createMockPath(mockRoot, "1.txt", false);
+		final Path mockFile2 = createMockPath(mockLockedDir, "2.txt", false);
+		setMockContents(mockRoot, mockLockedDir, mockFile1);
+		setMockUnreadable(mockLockedDir);
+		
+		final DirectorySnapshot snapshot = DirectorySnapshot.capture(mockRoot);
+		assertThat(snapshot.getFiles(), is(setOf(mockFile1)));
+		
+		final Changes unreadableChanges = snapshot.update();
+		assertThat(unreadableChanges.isEmpty(), is(true));
+		assertThat(unreadableChanges.getUnreadable(), is(setOf(mockLockedDir)));
+		
+		setMockContents(mockLockedDir, mockFile2);
+		final Changes readableChanges = snapshot.update();
+		assertThat(readableChanges.getAdded(), is(setOf(mockFile2)));
+		assertThat(readableChanges.getUnreadable().isEmpty(), is(true));
+		
+		setMockAttributes(mockLockedDir, true);
+		setMockUnreadable(mockLockedDir);
+		final Changes relockedChanges = snapshot.update();
+		assertThat(relockedChanges.isEmpty(), is(true));
+		assertThat(relockedChanges.getUnreadable(), is(setOf(mockLockedDir)));
+		assertThat(snapshot.getFiles(), is(setOf(mockFile1, mockFile2)));
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the {@code root} argument of
+	 * {@link DirectorySnapshot#capture(Path)} cannot be read.
+	 *
+	 * @throws IOException
+	 * 		if the snapshot fails
+	 */
+	@Test(expected = AccessDeniedException.class)
+	public void testCapture_unreadableRoot() throws IOException {
+		final Path mockRoot = createMockPath(null, "root", true);
+		setMockUnreadable(mockRoot);
+		
+		DirectorySnapshot.capture(mockRoot);
+	}
+	
+	/**
+	 * Sets the last modified time of a file to a value which differs from all previous ones.
+	 *
+	 * @param path
+	 * 		the file to modify
+	 *
+	 * @throws IOException
+	 * 		if the modification time cannot be set
+	 */
+	private void touch(final Path path) throws IOException {
+		Files.setLastModifiedTime(path, FileTime.fromMillis(nextModifiedTime));
+		nextModifiedTime += 1000;
+	}
+	
+	/**
+	 * Creates a path in the mock file system. Directories are initially empty.
+	 *
+	 * @param parent
+	 * 		the directory containing the path, or null if the path is a root
+	 * @param name
+	 * 		the name of the path
+	 * @param isDirectory
+	 * 		whether or not the path is a directory
+	 *
+	 * @return the new path
+	 *
+	 * @throws IOException
+	 * 		never, the exception is declared by the mocked methods
+	 */
+	private Path createMockPath(final Path parent, final String name, final boolean isDirectory)
+			throws IOException {
+		final String pathString = parent == null ? name : parent + "/" + name;
+		final Path path = mock(Path.class);
+		final Path fileName = mock(Path.class);
+		
+		when(path.getFileSystem()).thenReturn(mockFileSystem);
+		when(path.getFileName()).thenReturn(fileName);
+		when(path.toString()).thenReturn(pathString);
+		when(fileName.toString()).thenReturn(name);
+		
+		if (parent != null) {
+			when(parent.resolve(name)).thenReturn(path);
+		}
+		
+		setMockAttributes(path, isDirectory);
+		
+		if (isDirectory) {
+			setMockContents(path);
+		}
+		
+		return path;
+	}
+	
+	/**
+	 * Sets the attributes of a path in the mock file system, using a last modified time which
+	 * differs from all previous ones.
+	 *
+	 * @param path
+	 * 		the path to set the attributes of
+	 * @param isDirectory
+	 * 		whether or not the path is a directory
+	 *
+	 * @throws IOException
+	 * 		never, the exception is declared by the mocked methods
+	 */
+	private void setMockAttributes(final Path path, final boolean isDirectory)
+			throws IOException {
+		final BasicFileAttributes attributes = mock(BasicFileAttributes.class);
+		when(attributes.isDirectory()).thenReturn(isDirectory);
+		when(attributes.lastModifiedTime()).thenReturn(FileTime.fromMillis(nextModifiedTime));
+		nextModifiedTime += 1000;
+		
+		doReturn(attributes).when(mockProvider).readAttributes(path, BasicFileAttributes.class,
+				LinkOption.NOFOLLOW_LINKS);
+	}
+	
+	/**
+	 * Sets the contents of a directory in the mock file system.
+	 *
+	 * @param dir
+	 * 		the directory to set the contents of
+	 * @param contents
+	 * 		the paths in the directory
+	 *
+	 * @throws IOException
+	 * 		never, the exception is declared by the mocked methods
+	 */
+	private void setMockContents(final Path dir, final Path... contents) throws IOException {
+		doReturn(new DirectoryStream<Path>() {
+			@Override
+			public Iterator<Path> iterator() {
+				return Arrays.asList(contents).iterator();
+			}
+			
+			@Override
+			public void close() {}
+		}).when(mockProvider).newDirectoryStream(eq(dir), any(DirectoryStream.Filter.class));
+	}
+	
+	/**
+	 * Makes a directory in the mock file system unreadable.
+	 *
+	 * @param dir
+	 * 		the directory to make unreadable
+	 *
+	 * @throws IOException
+	 * 		never, the exception is declared by the mocked methods
+	 */
+	private void setMockUnreadable(final Path dir) throws IOException {
+		doThrow(new AccessDeniedException(dir.toString())).when(mockProvider)
+				.newDirectoryStream(eq(dir), any(DirectoryStream.Filter.class));
+	}
+	
+	/**
+	 * Creates a set containing the supplied paths.
+	 *
+	 * @param paths
+	 * 		the paths to add to the set
+	 *
+	 * @return the new set
+	 */
+	private static Set<Path> setOf(final Path... paths) {
+		final Set<Path> set = new HashSet<>();
+		Collections.addAll(set, paths);
+		
+		return set;
+	}
+}
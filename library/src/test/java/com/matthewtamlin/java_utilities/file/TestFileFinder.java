@@ -17,11 +17,17 @@
 package com.matthewtamlin.java_utilities.file;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -32,6 +38,12 @@ import static org.mockito.Mockito.when;
  * Unit tests for the {@link FileFinder} class.
  */
 public class TestFileFinder {
+	/**
+	 * Provides a temporary directory for the tests which need a real file tree.
+	 */
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+	
 	/**
 	 * The directory to search.
 	 */
@@ -117,4 +129,227 @@ public class TestFileFinder {
 		final Set<File> files = FileFinder.searchDownTreeFrom(rootTestDirectory);
 		assertThat(files, is(expectedFiles));
 	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the {@code dir} argument of {@link
+	 * FileFinder#searchDownTreeInParallelFrom(File, int)} is null.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testSearchDownTreeInParallelFrom_invalidArg_nullDir() {
+		FileFinder.searchDownTreeInParallelFrom(null, 4);
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the {@code parallelism} argument of
+	 * {@link FileFinder#searchDownTreeInParallelFrom(File, int)} is less than 1.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testSearchDownTreeInParallelFrom_invalidArg_zeroParallelism() {
+		FileFinder.searchDownTreeInParallelFrom(rootTestDirectory, 0);
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the {@code pool} argument of {@link
+	 * FileFinder#searchDownTreeInParallelFrom(File, ForkJoinPool)} is null.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testSearchDownTreeInParallelFrom_invalidArg_nullPool() {
+		FileFinder.searchDownTreeInParallelFrom(rootTestDirectory, (ForkJoinPool) null);
+	}
+	
+	/**
+	 * Test to verify that the {@link FileFinder#searchDownTreeInParallelFrom(File, int)} method
+	 * functions correctly when provided with valid arguments. The test will only pass if the
+	 * results match those of the sequential search.
+	 */
+	@Test
+	public void testSearchDownTreeInParallelFrom_validArgs() {
+		final Set<File> files = FileFinder.searchDownTreeInParallelFrom(rootTestDirectory, 4);
+		assertThat(files, is(expectedFiles));
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the {@code dir} argument of {@link
+	 * FileFinder#iterateDownTreeFrom(File)} is null.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testIterateDownTreeFrom_invalidArg_nullDir() {
+		FileFinder.iterateDownTreeFrom(null);
+	}
+	
+	/**
+	 * Test to verify that the {@link FileFinder#iterateDownTreeFrom(File)} method functions
+	 * correctly when provided with valid arguments. The test will only pass if all the expected
+	 * Files are iterated exactly once. The lazy walk reads directories from the file system
+	 * directly, so a real copy of the tree is used.
+	 *
+	 * @throws IOException
+	 * 		if the tree cannot be created
+	 */
+	@Test
+	public void testIterateDownTreeFrom_validArgs() throws IOException {
+		final File root = createRealTree();
+		final List<File> files = new ArrayList<>();
+		
+		for (final File f : FileFinder.iterateDownTreeFrom(root)) {
+			files.add(f);
+		}
+		
+		assertThat(files.size(), is(4));
+		assertThat(new HashSet<>(files), is(FileFinder.searchDownTreeFrom(root)));
+	}
+	
+	/**
+	 * Test to verify that the {@link FileFinder#iteratorDownTreeFrom(File)} method evaluates
+	 * lazily. The test will only pass if a file created in a directory which the walk has not
+	 * yet reached is found when iteration continues.
+	 *
+	 * @throws IOException
+	 * 		if the tree cannot be created
+	 */
+	@Test
+	public void testIteratorDownTreeFrom_lazy() throws IOException {
+		final File root = temporaryFolder.newFolder("lazy");
+		final File dir1 = createDirectory(root, "dir1");
+		final File dir2 = createDirectory(root, "dir2");
+		createFile(dir1, "a.txt");
+		createFile(dir2, "b.txt");
+		
+		try (final FileFinder.TreeIterator iterator = FileFinder.iteratorDownTreeFrom(root)) {
+			final File first = iterator.next();
+			final File unreachedDir = first.getParentFile().equals(dir1) ? dir2 : dir1;
+			final File laterFile = createFile(unreachedDir, "c.txt");
+			
+			final Set<File> remaining = new HashSet<>();
+			
+			while (iterator.hasNext()) {
+				remaining.add(iterator.next());
+			}
+			
+			assertThat(remaining.contains(laterFile), is(true));
+			assertThat(remaining.size(), is(2));
+		}
+	}
+	
+	/**
+	 * Test to verify that closing the iterator returned by {@link
+	 * FileFinder#iteratorDownTreeFrom(File)} part way through the walk ends the walk.
+	 *
+	 * @throws IOException
+	 * 		if the tree cannot be created
+	 */
+	@Test
+	public void testIteratorDownTreeFrom_closedEarly() throws IOException {
+		final FileFinder.TreeIterator iterator = FileFinder.iteratorDownTreeFrom(createRealTree());
+		
+		assertThat(iterator.hasNext(), is(true));
+		iterator.next();
+		
+		iterator.close();
+		iterator.close();
+		
+		assertThat(iterator.hasNext(), is(false));
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the {@code dir} argument of {@link
+	 * FileFinder#iteratorDownTreeFrom(File)} is null.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testIteratorDownTreeFrom_invalidArg_nullDir() {
+		FileFinder.iteratorDownTreeFrom(null);
+	}
+	
+	/**
+	 * Test to verify that the sequential and parallel searches both skip a directory which cannot
+	 * be read. The test will only pass if both searches return the same results.
+	 */
+	@Test
+	public void testSearchDownTree_unreadableDirectory() {
+		final File unreadableDir = mock(File.class);
+		when(unreadableDir.isDirectory()).thenReturn(true);
+		when(unreadableDir.listFiles()).thenReturn(null);
+		
+		final File file = mock(File.class);
+		when(file.isDirectory()).thenReturn(false);
+		
+		final File root = mock(File.class);
+		when(root.isDirectory()).thenReturn(true);
+		when(root.listFiles()).thenReturn(new File[]{unreadableDir, file});
+		
+		final Set<File> expected = new HashSet<>();
+		expected.add(file);
+		
+		assertThat(FileFinder.searchDownTreeFrom(root), is(expected));
+		assertThat(FileFinder.searchDownTreeInParallelFrom(root, 2), is(expected));
+	}
+	
+	/**
+	 * Creates a real copy of the mocked file tree in the temporary folder.
+	 *
+	 * @return the root of the tree, not null
+	 *
+	 * @throws IOException
+	 * 		if the tree cannot be created
+	 */
+	private File createRealTree() throws IOException {
+		final File tier1Dir = temporaryFolder.newFolder("tier1");
+		final File tier2Dir1 = createDirectory(tier1Dir, "tier2_1");
+		final File tier3Dir = createDirectory(tier2Dir1, "tier3");
+		
+		createDirectory(tier1Dir, "tier2_2");
+		createFile(tier2Dir1, "tier3.txt");
+		createFile(tier3Dir, "tier4_1.txt");
+		createFile(tier3Dir, "tier4_2.txt");
+		createFile(tier3Dir, "tier4_3.txt");
+		
+		return tier1Dir;
+	}
+	
+	/**
+	 * Creates a directory.
+	 *
+	 * @param parent
+	 * 		the directory to create the new directory in, not null
+	 * @param name
+	 * 		the name of the new directory, not null
+	 *
+	 * @return the new directory, not null
+	 *
+	 * @throws IOException
+	 * 		if the directory cannot be created
+	 */
+	private static File createDirectory(final File parent, final String name)
+			throws IOException {
+		final File dir = new File(parent, name);
+		
+		if (!dir.mkdir()) {
+			throw new IOException("could not create " + dir);
+		}
+		
+		return dir;
+	}
+	
+	/**
+	 * Creates an empty file.
+	 *
+	 * @param parent
+	 * 		the directory to create the file in, not null
+	 * @param name
+	 * 		the name of the file, not null
+	 *
+	 * @return the new file, not null
+	 *
+	 * @throws IOException
+	 * 		if the file cannot be created
+	 */
+	private static File createFile(final File parent, final String name) throws IOException {
+		final File file = new File(parent, name);
+		
+		if (!file.createNewFile()) {
+			throw new IOException("could not create " + file);
+		}
+		
+		return file;
+	}
 }
\ No newline at end of file
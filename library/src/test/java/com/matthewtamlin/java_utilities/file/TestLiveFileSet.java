@@ -0,0 +1,270 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.matthewtamlin.java_utilities.file;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the {@link LiveFileSet} class. These tests make real changes to a temporary file tree
+ * and wait for the changes to be reflected in the set.
+ */
+public class TestLiveFileSet {
+	/**
+	 * The maximum length of time to wait for a change to be reflected in the set, measured in
+	 * milliseconds. Some platforms poll for changes rather than receiving them from the OS.
+	 */
+	private static final int MAX_WAIT_TIME_MS = 15000;
+	
+	/**
+	 * Provides a temporary directory for the test file tree.
+	 */
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+	
+	/**
+	 * The root of the test file tree.
+	 */
+	private Path root;
+	
+	/**
+	 * A directory in the root directory.
+	 */
+	private Path subDir;
+	
+	/**
+	 * A file in {@code subDir}.
+	 */
+	private Path subDirFile;
+	
+	/**
+	 * The set under test.
+	 */
+	private LiveFileSet liveFileSet;
+	
+	/**
+	 * Initialises the testing environment.
+	 *
+	 * @throws IOException
+	 * 		if the test file tree cannot be created
+	 */
+	@Before
+	public void setup() throws IOException {
+		root = temporaryFolder.newFolder("root").toPath();
+		subDir = Files.createDirectory(root.resolve("sub"));
+		subDirFile = Files.createFile(subDir.resolve("a.txt"));
+		liveFileSet = LiveFileSet.watch(root);
+	}
+	
+	/**
+	 * Stops watching the test file tree.
+	 *
+	 * @throws IOException
+	 * 		if the set cannot be closed
+	 */
+	@After
+	public void tearDown() throws IOException {
+		liveFileSet.close();
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the {@code root} argument of
+	 * {@link LiveFileSet#watch(Path)} is null.
+	 *
+	 * @throws IOException
+	 * 		if the tree cannot be watched
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testWatch_invalidArg_nullRoot() throws IOException {
+		LiveFileSet.watch(null);
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the {@code root} argument of
+	 * {@link LiveFileSet#watch(Path)} is not a directory.
+	 *
+	 * @throws IOException
+	 * 		if the tree cannot be watched
+	 */
+	@Test(expected = NotDirectoryException.class)
+	public void testWatch_invalidArg_fileRoot() throws IOException {
+		LiveFileSet.watch(subDirFile);
+	}
+	
+	/**
+	 * Test to verify that the set initially contains all files in the tree.
+	 */
+	@Test
+	public void testWatch_seeded() {
+		assertThat(liveFileSet.getFiles(), is(setOf(subDirFile)));
+	}
+	
+	/**
+	 * Test to verify that the set returned by {@link LiveFileSet#getFiles()} is an immutable
+	 * snapshot, which is not affected by later changes to the tree.
+	 *
+	 * @throws Exception
+	 * 		if the test fails
+	 */
+	@Test
+	public void testGetFiles_immutableSnapshot() throws Exception {
+		final Set<Path> before = liveFileSet.getFiles();
+		
+		try {
+			before.clear();
+			fail("The snapshot was modifiable");
+		} catch (final UnsupportedOperationException e) {
+			// Expected
+		}
+		
+		final Path newFile = Files.createFile(subDir.resolve("b.txt"));
+		
+		waitForFiles(setOf(subDirFile, newFile));
+		
+		assertThat(before, is(setOf(subDirFile)));
+	}
+	
+	/**
+	 * Test to verify that files added to the tree are added to the set, including files in new
+	 * directories.
+	 *
+	 * @throws Exception
+	 * 		if the test fails
+	 */
+	@Test
+	public void testFilesAdded() throws Exception {
+		final Path newFile = Files.createFile(subDir.resolve("b.txt"));
+		final Path newDir = Files.createDirectory(root.resolve("new"));
+		final Path newDirFile = Files.createFile(newDir.resolve("c.txt"));
+		
+		waitForFiles(setOf(subDirFile, newFile, newDirFile));
+		
+		// Files created after the new directory was registered must be found too
+		final Path laterFile = Files.createFile(newDir.resolve("d.txt"));
+		
+		waitForFiles(setOf(subDirFile, newFile, newDirFile, laterFile));
+	}
+	
+	/**
+	 * Test to verify that files removed from the tree are removed from the set, including files
+	 * in deleted directories.
+	 *
+	 * @throws Exception
+	 * 		if the test fails
+	 */
+	@Test
+	public void testFilesRemoved() throws Exception {
+		Files.delete(subDirFile);
+		Files.delete(subDir);
+		
+		waitForFiles(new HashSet<Path>());
+	}
+	
+	/**
+	 * Test to verify that deleting a nested directory tree removes only the files in that tree.
+	 *
+	 * @throws Exception
+	 * 		if the test fails
+	 */
+	@Test
+	public void testNestedTreeRemoved() throws Exception {
+		final Path outerDir = Files.createDirectory(root.resolve("outer"));
+		final Path innerDir = Files.createDirectory(outerDir.resolve("inner"));
+		final Path outerFile = Files.createFile(outerDir.resolve("b.txt"));
+		final Path innerFile = Files.createFile(innerDir.resolve("c.txt"));
+		
+		waitForFiles(setOf(subDirFile, outerFile, innerFile));
+		
+		Files.delete(innerFile);
+		Files.delete(outerFile);
+		Files.delete(innerDir);
+		Files.delete(outerDir);
+		
+		waitForFiles(setOf(subDirFile));
+	}
+	
+	/**
+	 * Test to verify that moving a directory within the tree moves its files in the set, and
+	 * that the moved directory is still watched.
+	 *
+	 * @throws Exception
+	 * 		if the test fails
+	 */
+	@Test
+	public void testDirectoryMoved() throws Exception {
+		final Path movedDir = Files.move(subDir, root.resolve("moved"));
+		final Path movedFile = movedDir.resolve(subDirFile.getFileName());
+		
+		waitForFiles(setOf(movedFile));
+		
+		final Path laterFile = Files.createFile(movedDir.resolve("b.txt"));
+		
+		waitForFiles(setOf(movedFile, laterFile));
+	}
+	
+	/**
+	 * Waits until the set under test contains exactly the expected files, and fails if this does
+	 * not happen within {@link #MAX_WAIT_TIME_MS}.
+	 *
+	 * @param expected
+	 * 		the expected files
+	 *
+	 * @throws InterruptedException
+	 * 		if the thread is interrupted while waiting
+	 */
+	private void waitForFiles(final Set<Path> expected) throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + MAX_WAIT_TIME_MS;
+		
+		while (!liveFileSet.snapshot().equals(expected) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+		
+		assertThat(liveFileSet.snapshot(), is(expected));
+	}
+	
+	/**
+	 * Creates a set containing the supplied paths.
+	 *
+	 * @param paths
+	 * 		the paths to add to the set
+	 *
+	 * @return the new set
+	 */
+	private static Set<Path> setOf(final Path... paths) {
+		final Set<Path> set = new HashSet<>();
+		
+		for (final Path path : paths) {
+			set.add(path);
+		}
+		
+		return set;
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.matthewtamlin.java_utilities.file;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the {@link PathFilters} class.
+ */
+public class TestPathFilters {
+	/**
+	 * A path for use in testing.
+	 */
+	private static final Path PATH = Paths.get("parent", "file.txt");
+	
+	/**
+	 * Mock attributes for {@code PATH}, describing a 100 byte file modified at 1000 ms.
+	 */
+	private BasicFileAttributes attributes;
+	
+	/**
+	 * Initialises the testing environment.
+	 */
+	@Before
+	public void setup() {
+		attributes = mock(BasicFileAttributes.class);
+		when(attributes.size()).thenReturn(100L);
+		when(attributes.lastModifiedTime()).thenReturn(FileTime.fromMillis(1000));
+	}
+	
+	/**
+	 * Test to verify that the {@link PathFilters#acceptAll()} filter accepts paths.
+	 */
+	@Test
+	public void testAcceptAll() {
+		assertThat(PathFilters.acceptAll().accept(PATH, attributes), is(true));
+	}
+	
+	/**
+	 * Test to verify that the {@link PathFilters#matchingGlob(String)} filter matches against the
+	 * file name.
+	 */
+	@Test
+	public void testMatchingGlob() {
+		assertThat(PathFilters.matchingGlob("*.txt").accept(PATH, attributes), is(true));
+		assertThat(PathFilters.matchingGlob("*.java").accept(PATH, attributes), is(false));
+		assertThat(PathFilters.matchingGlob("parent*").accept(PATH, attributes), is(false));
+	}
+	
+	/**
+	 * Test to verify that the {@link PathFilters#matchingRegex(String)} filter matches against
+	 * the file name.
+	 */
+	@Test
+	public void testMatchingRegex() {
+		assertThat(PathFilters.matchingRegex("f.*\\.txt").accept(PATH, attributes), is(true));
+		assertThat(PathFilters.matchingRegex("g.*").accept(PATH, attributes), is(false));
+	}
+	
+	/**
+	 * Test to verify that the {@link PathFilters#named(String...)} filter matches against the
+	 * file name.
+	 */
+	@Test
+	public void testNamed() {
+		assertThat(PathFilters.named(".git", "file.txt").accept(PATH, attributes), is(true));
+		assertThat(PathFilters.named("parent").accept(PATH, attributes), is(false));
+	}
+	
+	/**
+	 * Test to verify that the {@link PathFilters#sizeBetween(long, long)} filter includes the
+	 * bounds.
+	 */
+	@Test
+	public void testSizeBetween() {
+		assertThat(PathFilters.sizeBetween(100, 200).accept(PATH, attributes), is(true));
+		assertThat(PathFilters.sizeBetween(0, 100).accept(PATH, attributes), is(true));
+		assertThat(PathFilters.sizeBetween(101, 200).accept(PATH, attributes), is(false));
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the bounds passed to {@link
+	 * PathFilters#sizeBetween(long, long)} are reversed.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testSizeBetween_invalidArgs() {
+		PathFilters.sizeBetween(200, 100);
+	}
+	
+	/**
+	 * Test to verify that the {@link PathFilters#modifiedBetween(long, long)} filter includes the
+	 * bounds.
+	 */
+	@Test
+	public void testModifiedBetween() {
+		assertThat(PathFilters.modifiedBetween(1000, 2000).accept(PATH, attributes), is(true));
+		assertThat(PathFilters.modifiedBetween(0, 999).accept(PATH, attributes), is(false));
+	}
+	
+	/**
+	 * Test to verify that the {@link PathFilters#not(PathFilter)}, {@link
+	 * PathFilters#allOf(PathFilter...)} and {@link PathFilters#anyOf(PathFilter...)} filters
+	 * combine other filters correctly.
+	 */
+	@Test
+	public void testCombinations() {
+		final PathFilter accept = PathFilters.acceptAll();
+		final PathFilter reject = PathFilters.not(accept);
+		
+		assertThat(reject.accept(PATH, attributes), is(false));
+		assertThat(PathFilters.allOf(accept, accept).accept(PATH, attributes), is(true));
+		assertThat(PathFilters.allOf(accept, reject).accept(PATH, attributes), is(false));
+		assertThat(PathFilters.anyOf(reject, accept).accept(PATH, attributes), is(true));
+		assertThat(PathFilters.anyOf(reject, reject).accept(PATH, attributes), is(false));
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the filters passed to {@link
+	 * PathFilters#allOf(PathFilter...)} contain null.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testAllOf_containsNull() {
+		PathFilters.allOf(PathFilters.acceptAll(), null);
+	}
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2016 Matthew Tamlin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.matthewtamlin.java_utilities.file;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Unit tests for the {@link PathFinder} class.
+ */
+public class TestPathFinder {
+	/**
+	 * Provides a temporary directory for the test file tree.
+	 */
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+	
+	/**
+	 * The directory to search.
+	 */
+	private Path rootTestDirectory;
+	
+	/**
+	 * The expected search results {@code rootTestDirectory}.
+	 */
+	private Set<Path> expectedFiles;
+	
+	/**
+	 * The only file at depth 2 of the test tree.
+	 */
+	private Path tier3File;
+	
+	/**
+	 * Initialises the testing environment.
+	 * <p>
+	 * A File tree is constructed as follows:<br> - Tier 1 directory<br> --- Tier 2 directory (1)
+	 * <br> ----- Tier 3 directory<br> ------- Tier 4 file (1)<br> ------- Tier 4 file (2)<br>
+	 * ------- Tier 4 file (3)<br> ----- Tier 3 file<br> --- Tier 2 directory (2)<br>
+	 *
+	 * @throws IOException
+	 * 		if the file tree cannot be created
+	 */
+	@Before
+	public void setup() throws IOException {
+		final Path tier1Dir = temporaryFolder.newFolder("tier1").toPath();
+		final Path tier2Dir1 = Files.createDirectory(tier1Dir.resolve("tier2-1"));
+		Files.createDirectory(tier1Dir.resolve("tier2-2"));
+		final Path tier3Dir = Files.createDirectory(tier2Dir1.resolve("tier3"));
+		tier3File = Files.createFile(tier2Dir1.resolve("tier3.txt"));
+		final Path tier4File1 = Files.createFile(tier3Dir.resolve("tier4-1.txt"));
+		final Path tier4File2 = Files.createFile(tier3Dir.resolve("tier4-2.txt"));
+		final Path tier4File3 = Files.createFile(tier3Dir.resolve("tier4-3.txt"));
+		
+		rootTestDirectory = tier1Dir;
+		
+		expectedFiles = new HashSet<>();
+		expectedFiles.add(tier3File);
+		expectedFiles.add(tier4File1);
+		expectedFiles.add(tier4File2);
+		expectedFiles.add(tier4File3);
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the {@code dir} argument of {@link
+	 * PathFinder#searchDownTreeFrom(Path)} is null.
+	 *
+	 * @throws IOException
+	 * 		if the search fails
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testSearchDownTreeFrom_invalidArg_nullDir() throws IOException {
+		PathFinder.searchDownTreeFrom(null);
+	}
+	
+	/**
+	 * Test to verify that the {@link PathFinder#searchDownTreeFrom(Path)} method functions
+	 * correctly when provided with valid arguments. The test will only pass if all the expected
+	 * Paths are returned.
+	 *
+	 * @throws IOException
+	 * 		if the search fails
+	 */
+	@Test
+	public void testSearchDownTreeFrom_validArgs() throws IOException {
+		final Set<Path> files = PathFinder.searchDownTreeFrom(rootTestDirectory);
+		assertThat(files, is(expectedFiles));
+	}
+	
+	/**
+	 * Test to verify that the {@link PathFinder#searchDownTreeFrom(Path)} method returns the same
+	 * files as {@link FileFinder#searchDownTreeFrom(File)}.
+	 *
+	 * @throws IOException
+	 * 		if the search fails
+	 */
+	@Test
+	public void testSearchDownTreeFrom_matchesFileFinder() throws IOException {
+		final Set<Path> expected = new HashSet<>();
+		
+		for (final File f : FileFinder.searchDownTreeFrom(rootTestDirectory.toFile())) {
+			expected.add(f.toPath());
+		}
+		
+		assertThat(PathFinder.searchDownTreeFrom(rootTestDirectory), is(expected));
+	}
+	
+	/**
+	 * Test to verify that the {@link PathFinder#searchDownTreeFrom(Path)} method returns an empty
+	 * set when the supplied path is a file rather than a directory.
+	 *
+	 * @throws IOException
+	 * 		if the search fails
+	 */
+	@Test
+	public void testSearchDownTreeFrom_fileSupplied() throws IOException {
+		final Path file = expectedFiles.iterator().next();
+		assertThat(PathFinder.searchDownTreeFrom(file).isEmpty(), is(true));
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the {@code maxDepth} argument of
+	 * {@link PathFinder#searchDownTreeFrom(Path, int, PathFilter, PathFilter)} is negative.
+	 *
+	 * @throws IOException
+	 * 		if the search fails
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testSearchDownTreeFrom_filtered_invalidArg_negativeMaxDepth() throws IOException {
+		PathFinder.searchDownTreeFrom(rootTestDirectory, -1, PathFilters.acceptAll(),
+				PathFilters.acceptAll());
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the {@code fileFilter} argument of
+	 * {@link PathFinder#searchDownTreeFrom(Path, int, PathFilter, PathFilter)} is null.
+	 *
+	 * @throws IOException
+	 * 		if the search fails
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testSearchDownTreeFrom_filtered_invalidArg_nullFileFilter() throws IOException {
+		PathFinder.searchDownTreeFrom(rootTestDirectory, 1, null, PathFilters.acceptAll());
+	}
+	
+	/**
+	 * Test to verify that the correct exception is thrown when the {@code directoryFilter}
+	 * argument of {@link PathFinder#searchDownTreeFrom(Path, int, PathFilter, PathFilter)} is
+	 * null.
+	 *
+	 * @throws IOException
+	 * 		if the search fails
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testSearchDownTreeFrom_filtered_invalidArg_nullDirectoryFilter()
+			throws IOException {
+		PathFinder.searchDownTreeFrom(rootTestDirectory, 1, PathFilters.acceptAll(), null);
+	}
+	
+	/**
+	 * Test to verify that the {@link PathFinder#searchDownTreeFrom(Path, int, PathFilter,
+	 * PathFilter)} method only returns files accepted by the file filter.
+	 *
+	 * @throws IOException
+	 * 		if the search fails
+	 */
+	@Test
+	public void testSearchDownTreeFrom_filtered_fileFilter() throws IOException {
+		final Set<Path> files = PathFinder.searchDownTreeFrom(rootTestDirectory,
+				Integer.MAX_VALUE, PathFilters.matchingGlob("tier4-*"), PathFilters.acceptAll());
+		
+		final Set<Path> expected = new HashSet<>(expectedFiles);
+		expected.remove(tier3File);
+		
+		assertThat(files, is(expected));
+	}
+	
+	/**
+	 * Test to verify that the {@link PathFinder#searchDownTreeFrom(Path, int, PathFilter,
+	 * PathFilter)} method does not search directories rejected by the directory filter.
+	 *
+	 * @throws IOException
+	 * 		if the search fails
+	 */
+	@Test
+	public void testSearchDownTreeFrom_filtered_directoryFilter() throws IOException {
+		final Set<Path> files = PathFinder.searchDownTreeFrom(rootTestDirectory,
+				Integer.MAX_VALUE, PathFilters.acceptAll(),
+				PathFilters.not(PathFilters.named("tier3")));
+		
+		final Set<Path> expected = new HashSet<>();
+		expected.add(tier3File);
+		
+		assertThat(files, is(expected));
+	}
+	
+	/**
+	 * Test to verify that the {@link PathFinder#searchDownTreeFrom(Path, int, PathFilter,
+	 * PathFilter)} method does not search below the maximum depth.
+	 *
+	 * @throws IOException
+	 * 		if the search fails
+	 */
+	@Test
+	public void testSearchDownTreeFrom_filtered_maxDepth() throws IOException {
+		final Set<Path> files = PathFinder.searchDownTreeFrom(rootTestDirectory, 2,
+				PathFilters.acceptAll(), PathFilters.acceptAll());
+		
+		final Set<Path> expected = new HashSet<>();
+		expected.add(tier3File);
+		
+		assertThat(files, is(expected));
+	}
+}
\ No newline at end of file